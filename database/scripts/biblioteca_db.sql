@@ -31,9 +31,12 @@ CREATE TABLE usuarios (
     username VARCHAR(50) NOT NULL UNIQUE,
     password VARCHAR(255) NOT NULL,
     activo BOOLEAN DEFAULT TRUE,
+    version BIGINT NOT NULL DEFAULT 0,
+    INDEX idx_nombre (nombre),
     INDEX idx_username (username),
     INDEX idx_email (email),
-    INDEX idx_tipo (tipo)
+    INDEX idx_tipo (tipo),
+    INDEX idx_version (version)
 ) ENGINE=InnoDB;
 
 -- ============================================
@@ -48,10 +51,12 @@ CREATE TABLE libros (
     anio_publicacion INT,
     isbn VARCHAR(20) UNIQUE,
     editorial VARCHAR(150),
+    version BIGINT NOT NULL DEFAULT 0,
     INDEX idx_titulo (titulo),
     INDEX idx_autor (autor),
     INDEX idx_categoria (categoria),
-    INDEX idx_isbn (isbn)
+    INDEX idx_isbn (isbn),
+    INDEX idx_version (version)
 ) ENGINE=InnoDB;
 
 -- ============================================
@@ -66,14 +71,283 @@ CREATE TABLE prestamos (
     fecha_devolucion_real DATE NULL,
     estado ENUM('PENDIENTE', 'DEVUELTO', 'RETRASADO', 'RENOVADO') NOT NULL DEFAULT 'PENDIENTE',
     observaciones TEXT,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (id_usuario) REFERENCES usuarios(id) ON DELETE RESTRICT,
     FOREIGN KEY (id_libro) REFERENCES libros(id) ON DELETE RESTRICT,
     INDEX idx_usuario (id_usuario),
     INDEX idx_libro (id_libro),
     INDEX idx_estado (estado),
-    INDEX idx_fecha_prestamo (fecha_prestamo)
+    INDEX idx_fecha_prestamo (fecha_prestamo),
+    INDEX idx_version (version)
 ) ENGINE=InnoDB;
 
+-- ============================================
+-- TABLA: prestamos_vista (modelo de lectura de préstamos)
+-- ============================================
+-- Copia de prestamos con el nombre del usuario y el título del libro ya
+-- resueltos. La mantienen los triggers de prestamos, usuarios y libros;
+-- las consultas de listados leen sólo esta tabla, sin JOIN ni CONCAT.
+-- Cada índice resuelve el filtro y el orden de un listado de PrestamoDAO
+-- sin ordenar en memoria; no son índices cubrientes: las columnas del
+-- listado se leen de la fila por clave primaria.
+CREATE TABLE prestamos_vista (
+    id INT PRIMARY KEY,
+    id_usuario INT NOT NULL,
+    id_libro INT NOT NULL,
+    fecha_prestamo DATE NOT NULL,
+    fecha_devolucion_esperada DATE NOT NULL,
+    fecha_devolucion_real DATE NULL,
+    estado ENUM('PENDIENTE', 'DEVUELTO', 'RETRASADO', 'RENOVADO') NOT NULL,
+    observaciones TEXT,
+    version BIGINT NOT NULL,
+    nombre_usuario VARCHAR(201) NOT NULL,
+    titulo_libro VARCHAR(255) NOT NULL,
+    INDEX idx_fecha_prestamo (fecha_prestamo, id),
+    INDEX idx_vencimiento (fecha_devolucion_esperada),
+    INDEX idx_estado_vencimiento (estado, fecha_devolucion_esperada, id),
+    INDEX idx_estado_fecha (estado, fecha_prestamo, id),
+    INDEX idx_usuario_fecha (id_usuario, fecha_prestamo),
+    INDEX idx_libro_fecha (id_libro, fecha_prestamo),
+    INDEX idx_libro_estado (id_libro, estado, fecha_devolucion_esperada),
+    INDEX idx_nombre_usuario (nombre_usuario),
+    INDEX idx_titulo_libro (titulo_libro),
+    INDEX idx_version (version)
+) ENGINE=InnoDB;
+
+-- ============================================
+-- TABLA: prestamos_historico (archivo de préstamos devueltos)
+-- ============================================
+-- ArchivadorPrestamos mueve aquí, por lotes, los préstamos devueltos
+-- hace más de N meses, para que prestamos y prestamos_vista sólo
+-- contengan préstamos recientes. InnoDB no permite particionar tablas con
+-- claves foráneas, así que la tabla caliente no se particiona; el archivo
+-- no tiene FK y se particiona por año de fecha_prestamo (la clave
+-- primaria debe incluir la columna de partición). Los nombres van
+-- materializados como en prestamos_vista.
+CREATE TABLE prestamos_historico (
+    id INT NOT NULL,
+    id_usuario INT NOT NULL,
+    id_libro INT NOT NULL,
+    fecha_prestamo DATE NOT NULL,
+    fecha_devolucion_esperada DATE NOT NULL,
+    fecha_devolucion_real DATE NULL,
+    estado ENUM('PENDIENTE', 'DEVUELTO', 'RETRASADO', 'RENOVADO') NOT NULL,
+    observaciones TEXT,
+    version BIGINT NOT NULL,
+    nombre_usuario VARCHAR(201) NOT NULL,
+    titulo_libro VARCHAR(255) NOT NULL,
+    fecha_archivado TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, fecha_prestamo),
+    INDEX idx_usuario_fecha (id_usuario, fecha_prestamo),
+    INDEX idx_libro_fecha (id_libro, fecha_prestamo)
+) ENGINE=InnoDB
+PARTITION BY RANGE (YEAR(fecha_prestamo)) (
+    PARTITION p2024 VALUES LESS THAN (2025),
+    PARTITION p2025 VALUES LESS THAN (2026),
+    PARTITION p2026 VALUES LESS THAN (2027),
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+-- ============================================
+-- TABLA: resumen_usuarios (resumen de préstamos por usuario)
+-- ============================================
+-- Contadores de préstamos de cada usuario, mantenidos por los triggers de
+-- prestamos en cada alta, cambio de estado y baja. Consultar si un
+-- usuario tiene préstamos activos o retrasados es una búsqueda por clave
+-- primaria, sin contar filas de prestamos. Los préstamos archivados
+-- siguen contando en total_prestamos. Un usuario sin fila no tiene
+-- préstamos.
+CREATE TABLE resumen_usuarios (
+    id_usuario INT PRIMARY KEY,
+    prestamos_activos INT NOT NULL DEFAULT 0,
+    prestamos_retrasados INT NOT NULL DEFAULT 0,
+    total_prestamos INT NOT NULL DEFAULT 0,
+    ultimo_prestamo DATE NULL,
+    FOREIGN KEY (id_usuario) REFERENCES usuarios(id) ON DELETE CASCADE
+) ENGINE=InnoDB;
+
+-- ============================================
+-- TABLA: reservas (cola de espera de libros sin stock)
+-- ============================================
+-- Las reservas EN_ESPERA de un libro se atienden por orden de id (FIFO).
+-- Al devolver un ejemplar, PrestamoDAO asigna en la misma transacción la
+-- primera reserva: crea el préstamo y la marca ASIGNADA. idx_libro_estado
+-- encuentra la primera de la cola con una sola búsqueda en el índice,
+-- tenga el libro diez reservas o diez mil. Sin FK a prestamos: los
+-- préstamos se archivan y se borran de la tabla activa.
+CREATE TABLE reservas (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    id_usuario INT NOT NULL,
+    id_libro INT NOT NULL,
+    fecha_reserva DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    estado ENUM('EN_ESPERA', 'ASIGNADA', 'CANCELADA') NOT NULL DEFAULT 'EN_ESPERA',
+    id_prestamo INT NULL,
+    fecha_asignacion DATETIME NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    FOREIGN KEY (id_usuario) REFERENCES usuarios(id) ON DELETE RESTRICT,
+    FOREIGN KEY (id_libro) REFERENCES libros(id) ON DELETE RESTRICT,
+    INDEX idx_libro_estado (id_libro, estado, id),
+    INDEX idx_usuario_estado (id_usuario, estado),
+    INDEX idx_version (version)
+) ENGINE=InnoDB;
+
+-- ============================================
+-- TABLA: stock_recomendado (pronóstico de demanda por libro)
+-- ============================================
+-- La escribe PronosticoDemanda en cada cálculo: demanda semanal prevista
+-- y ejemplares necesarios para atenderla. Los libros sin préstamos en el
+-- periodo analizado no tienen fila. Sin FK a libros: el cálculo corre en
+-- segundo plano y un libro borrado mientras tanto no debe abortar el lote.
+CREATE TABLE stock_recomendado (
+    id_libro INT PRIMARY KEY,
+    demanda_semanal DECIMAL(10,3) NOT NULL,
+    ejemplares_recomendados INT NOT NULL,
+    fecha_calculo DATETIME NOT NULL,
+    INDEX idx_fecha_calculo (fecha_calculo)
+) ENGINE=InnoDB;
+
+-- ============================================
+-- TABLA: operaciones_aplicadas (cola local del modo sucursal)
+-- ============================================
+-- ColaEscrituras inserta aquí el UUID de cada operación encolada en la
+-- misma transacción que la aplica. Si la mesa se cierra entre el commit
+-- y la reescritura de su diario, al reenviar el lote la clave primaria
+-- delata las operaciones ya aplicadas y se saltan; id_prestamo da el ID
+-- real de un préstamo ya insertado a las devoluciones que lo siguen.
+CREATE TABLE operaciones_aplicadas (
+    uuid CHAR(36) PRIMARY KEY,
+    id_prestamo INT NULL,
+    fecha_aplicacion DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB;
+
+-- ============================================
+-- TABLA: cambios (bus de invalidación entre instancias)
+-- ============================================
+-- Registro de cambios escrito por los triggers. Cada instancia de la
+-- aplicación lo sondea (BusCambios) para invalidar sus cachés.
+-- idx_version resuelve MIN(version) (historialCompleto) leyendo una sola
+-- entrada y permite purgar siempre las versiones más antiguas primero.
+CREATE TABLE cambios (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entidad VARCHAR(20) NOT NULL,
+    id_entidad INT NOT NULL,
+    operacion ENUM('ALTA', 'MODIFICACION', 'BAJA', 'ARCHIVO') NOT NULL,
+    id_usuario INT NULL,
+    id_libro INT NULL,
+    version BIGINT NOT NULL,
+    fecha TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_fecha (fecha),
+    INDEX idx_version (version),
+    INDEX idx_entidad_version (entidad, version)
+) ENGINE=InnoDB;
+
+-- ============================================
+-- TABLA: secuencia_version (versión de fila monótona)
+-- ============================================
+-- Cada alta, modificación o baja de libros, usuarios y prestamos toma
+-- el siguiente valor. La fila queda bloqueada hasta el commit, por lo
+-- que el orden de versiones coincide con el orden de confirmación y
+-- los DAO pueden pedir "todo lo cambiado desde la versión N".
+--
+-- El bloqueo es global a propósito: serializa las escrituras de todo el
+-- esquema desde la primera de cada transacción hasta su commit. A cambio
+-- basta un solo número para saber qué se ha visto (cambiosDesde,
+-- historialCompleto y la marca de lectura de las réplicas comparan
+-- versiones de tablas distintas). Con un contador por tabla, un préstamo
+-- (que escribe prestamos y, por el stock, libros) tomaría versiones de
+-- dos series sin orden entre sí, y una marca por tabla no bastaría para
+-- saber si una réplica o una caché ya tiene la transacción completa.
+-- Las transacciones son cortas (una fila con sus triggers, o lotes
+-- acotados como sp_archivar_prestamos y ColaEscrituras) y una biblioteca
+-- escribe decenas de veces por minuto entre todos los mostradores, muy
+-- lejos de los miles de commits por segundo que admite una fila de
+-- InnoDB. Si algún día no bastara, la salida sería numerar en el commit
+-- (leyendo el binlog), no repartir el contador.
+CREATE TABLE secuencia_version (
+    id TINYINT PRIMARY KEY,
+    valor BIGINT NOT NULL
+) ENGINE=InnoDB;
+
+INSERT INTO secuencia_version (id, valor) VALUES (1, 0);
+
+DELIMITER $$
+CREATE PROCEDURE sp_siguiente_version(OUT p_version BIGINT)
+BEGIN
+    UPDATE secuencia_version SET valor = valor + 1 WHERE id = 1;
+    SELECT valor INTO p_version FROM secuencia_version WHERE id = 1;
+END$$
+DELIMITER ;
+
+-- ============================================
+-- TRIGGERS: Asignación de versión de fila
+-- ============================================
+
+DELIMITER $$
+CREATE TRIGGER trg_libro_version_insert
+BEFORE INSERT ON libros
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_libro_version_update
+BEFORE UPDATE ON libros
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_usuario_version_insert
+BEFORE INSERT ON usuarios
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_usuario_version_update
+BEFORE UPDATE ON usuarios
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_prestamo_version_insert
+BEFORE INSERT ON prestamos
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_prestamo_version_update
+BEFORE UPDATE ON prestamos
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
 -- ============================================
 -- TRIGGERS: Control automático de stock
 -- ============================================
@@ -87,10 +361,31 @@ BEGIN
     UPDATE libros 
     SET stock = stock - 1 
     WHERE id = NEW.id_libro AND stock > 0;
+
+    INSERT INTO prestamos_vista (id, id_usuario, id_libro, fecha_prestamo, fecha_devolucion_esperada,
+                                 fecha_devolucion_real, estado, observaciones, version,
+                                 nombre_usuario, titulo_libro)
+    SELECT NEW.id, NEW.id_usuario, NEW.id_libro, NEW.fecha_prestamo, NEW.fecha_devolucion_esperada,
+           NEW.fecha_devolucion_real, NEW.estado, NEW.observaciones, NEW.version,
+           CONCAT(u.nombre, ' ', u.apellido), l.titulo
+    FROM usuarios u, libros l
+    WHERE u.id = NEW.id_usuario AND l.id = NEW.id_libro;
+
+    INSERT INTO resumen_usuarios (id_usuario, prestamos_activos, prestamos_retrasados,
+                                  total_prestamos, ultimo_prestamo)
+    VALUES (NEW.id_usuario, NEW.estado != 'DEVUELTO', NEW.estado = 'RETRASADO', 1, NEW.fecha_prestamo)
+    ON DUPLICATE KEY UPDATE
+        prestamos_activos = prestamos_activos + VALUES(prestamos_activos),
+        prestamos_retrasados = prestamos_retrasados + VALUES(prestamos_retrasados),
+        total_prestamos = total_prestamos + 1,
+        ultimo_prestamo = GREATEST(COALESCE(ultimo_prestamo, VALUES(ultimo_prestamo)), VALUES(ultimo_prestamo));
+
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+    VALUES ('PRESTAMO', NEW.id, 'ALTA', NEW.id_usuario, NEW.id_libro, NEW.version);
 END$$
 DELIMITER ;
 
--- Trigger: Incrementar stock al devolver libro
+-- Trigger: Incrementar stock al devolver libro, sincronizar la vista y registrar el cambio
 DELIMITER $$
 CREATE TRIGGER trg_prestamo_devolucion
 AFTER UPDATE ON prestamos
@@ -101,6 +396,241 @@ BEGIN
         SET stock = stock + 1 
         WHERE id = NEW.id_libro;
     END IF;
+
+    UPDATE prestamos_vista v
+    INNER JOIN usuarios u ON u.id = NEW.id_usuario
+    INNER JOIN libros l ON l.id = NEW.id_libro
+    SET v.id_usuario = NEW.id_usuario,
+        v.id_libro = NEW.id_libro,
+        v.fecha_prestamo = NEW.fecha_prestamo,
+        v.fecha_devolucion_esperada = NEW.fecha_devolucion_esperada,
+        v.fecha_devolucion_real = NEW.fecha_devolucion_real,
+        v.estado = NEW.estado,
+        v.observaciones = NEW.observaciones,
+        v.version = NEW.version,
+        v.nombre_usuario = CONCAT(u.nombre, ' ', u.apellido),
+        v.titulo_libro = l.titulo
+    WHERE v.id = NEW.id;
+
+    -- Resumen del usuario: se resta el estado anterior y se suma el nuevo
+    IF OLD.id_usuario != NEW.id_usuario OR OLD.estado != NEW.estado THEN
+        UPDATE resumen_usuarios
+        SET prestamos_activos = prestamos_activos - (OLD.estado != 'DEVUELTO'),
+            prestamos_retrasados = prestamos_retrasados - (OLD.estado = 'RETRASADO'),
+            total_prestamos = total_prestamos - (OLD.id_usuario != NEW.id_usuario)
+        WHERE id_usuario = OLD.id_usuario;
+
+        INSERT INTO resumen_usuarios (id_usuario, prestamos_activos, prestamos_retrasados,
+                                      total_prestamos, ultimo_prestamo)
+        VALUES (NEW.id_usuario, NEW.estado != 'DEVUELTO', NEW.estado = 'RETRASADO',
+                OLD.id_usuario != NEW.id_usuario, NEW.fecha_prestamo)
+        ON DUPLICATE KEY UPDATE
+            prestamos_activos = prestamos_activos + VALUES(prestamos_activos),
+            prestamos_retrasados = prestamos_retrasados + VALUES(prestamos_retrasados),
+            total_prestamos = total_prestamos + VALUES(total_prestamos),
+            ultimo_prestamo = GREATEST(COALESCE(ultimo_prestamo, VALUES(ultimo_prestamo)), VALUES(ultimo_prestamo));
+    END IF;
+
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+    VALUES ('PRESTAMO', NEW.id, 'MODIFICACION', NEW.id_usuario, NEW.id_libro, NEW.version);
+END$$
+DELIMITER ;
+
+-- Trigger: Registrar eliminación de préstamo
+DELIMITER $$
+CREATE TRIGGER trg_prestamo_delete
+AFTER DELETE ON prestamos
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+
+    DELETE FROM prestamos_vista WHERE id = OLD.id;
+
+    -- Un préstamo archivado sigue contando en el resumen del usuario
+    IF COALESCE(@archivando, 0) != 1 THEN
+        UPDATE resumen_usuarios
+        SET prestamos_activos = prestamos_activos - (OLD.estado != 'DEVUELTO'),
+            prestamos_retrasados = prestamos_retrasados - (OLD.estado = 'RETRASADO'),
+            total_prestamos = total_prestamos - 1
+        WHERE id_usuario = OLD.id_usuario;
+    END IF;
+
+    -- Si lo borra sp_archivar_prestamos el préstamo sigue existiendo en
+    -- prestamos_historico: se publica ARCHIVO en lugar de BAJA
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+    VALUES ('PRESTAMO', OLD.id, IF(@archivando = 1, 'ARCHIVO', 'BAJA'), OLD.id_usuario, OLD.id_libro, v);
+END$$
+DELIMITER ;
+
+-- ============================================
+-- TRIGGERS: Registro de cambios de libros y usuarios
+-- ============================================
+-- Los cambios de stock hechos por los triggers de préstamos también
+-- pasan por trg_libro_update, así que otras instancias los ven.
+-- Renombrar un libro o usuario actualiza también prestamos_vista: cada
+-- préstamo afectado toma una versión nueva y publica su MODIFICACION,
+-- para que los mostradores que sincronizan préstamos por versión vean el
+-- nombre nuevo. Se compara en binario: con la intercalación _ci corregir
+-- sólo una tilde o una mayúscula contaría como "sin cambios".
+
+DELIMITER $$
+CREATE TRIGGER trg_libro_insert
+AFTER INSERT ON libros
+FOR EACH ROW
+BEGIN
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_libro, version)
+    VALUES ('LIBRO', NEW.id, 'ALTA', NEW.id, NEW.version);
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_libro_update
+AFTER UPDATE ON libros
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    DECLARE v_prestamo INT;
+    DECLARE v_usuario INT;
+    DECLARE fin INT DEFAULT 0;
+    DECLARE prestamos_libro CURSOR FOR
+        SELECT id, id_usuario FROM prestamos_vista WHERE id_libro = NEW.id;
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET fin = 1;
+
+    IF BINARY OLD.titulo != BINARY NEW.titulo THEN
+        OPEN prestamos_libro;
+        renombrar: LOOP
+            FETCH prestamos_libro INTO v_prestamo, v_usuario;
+            IF fin = 1 THEN
+                LEAVE renombrar;
+            END IF;
+            CALL sp_siguiente_version(v);
+            UPDATE prestamos_vista SET titulo_libro = NEW.titulo, version = v WHERE id = v_prestamo;
+            INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+            VALUES ('PRESTAMO', v_prestamo, 'MODIFICACION', v_usuario, NEW.id, v);
+        END LOOP;
+        CLOSE prestamos_libro;
+    END IF;
+
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_libro, version)
+    VALUES ('LIBRO', NEW.id, 'MODIFICACION', NEW.id, NEW.version);
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_libro_delete
+AFTER DELETE ON libros
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_libro, version)
+    VALUES ('LIBRO', OLD.id, 'BAJA', OLD.id, v);
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_usuario_insert
+AFTER INSERT ON usuarios
+FOR EACH ROW
+BEGIN
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, version)
+    VALUES ('USUARIO', NEW.id, 'ALTA', NEW.id, NEW.version);
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_usuario_update
+AFTER UPDATE ON usuarios
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    DECLARE v_prestamo INT;
+    DECLARE v_libro INT;
+    DECLARE fin INT DEFAULT 0;
+    DECLARE prestamos_usuario CURSOR FOR
+        SELECT id, id_libro FROM prestamos_vista WHERE id_usuario = NEW.id;
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET fin = 1;
+
+    IF BINARY OLD.nombre != BINARY NEW.nombre OR BINARY OLD.apellido != BINARY NEW.apellido THEN
+        OPEN prestamos_usuario;
+        renombrar: LOOP
+            FETCH prestamos_usuario INTO v_prestamo, v_libro;
+            IF fin = 1 THEN
+                LEAVE renombrar;
+            END IF;
+            CALL sp_siguiente_version(v);
+            UPDATE prestamos_vista
+            SET nombre_usuario = CONCAT(NEW.nombre, ' ', NEW.apellido), version = v
+            WHERE id = v_prestamo;
+            INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+            VALUES ('PRESTAMO', v_prestamo, 'MODIFICACION', NEW.id, v_libro, v);
+        END LOOP;
+        CLOSE prestamos_usuario;
+    END IF;
+
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, version)
+    VALUES ('USUARIO', NEW.id, 'MODIFICACION', NEW.id, NEW.version);
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_usuario_delete
+AFTER DELETE ON usuarios
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, version)
+    VALUES ('USUARIO', OLD.id, 'BAJA', OLD.id, v);
+END$$
+DELIMITER ;
+
+-- ============================================
+-- TRIGGERS: Versión y registro de cambios de reservas
+-- ============================================
+
+DELIMITER $$
+CREATE TRIGGER trg_reserva_version_insert
+BEFORE INSERT ON reservas
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_reserva_version_update
+BEFORE UPDATE ON reservas
+FOR EACH ROW
+BEGIN
+    DECLARE v BIGINT;
+    CALL sp_siguiente_version(v);
+    SET NEW.version = v;
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_reserva_insert
+AFTER INSERT ON reservas
+FOR EACH ROW
+BEGIN
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+    VALUES ('RESERVA', NEW.id, 'ALTA', NEW.id_usuario, NEW.id_libro, NEW.version);
+END$$
+DELIMITER ;
+
+DELIMITER $$
+CREATE TRIGGER trg_reserva_update
+AFTER UPDATE ON reservas
+FOR EACH ROW
+BEGIN
+    INSERT INTO cambios (entidad, id_entidad, operacion, id_usuario, id_libro, version)
+    VALUES ('RESERVA', NEW.id, 'MODIFICACION', NEW.id_usuario, NEW.id_libro, NEW.version);
 END$$
 DELIMITER ;
 
@@ -123,6 +653,101 @@ BEGIN
 END$$
 DELIMITER ;
 
+-- ============================================
+-- PROCEDIMIENTO ALMACENADO: Archivar préstamos devueltos
+-- ============================================
+-- Mueve como máximo p_lote préstamos devueltos hace más de p_meses meses
+-- a prestamos_historico. Lotes acotados: cada llamada es una transacción
+-- corta que no bloquea prestamos durante mucho tiempo.
+DELIMITER $$
+CREATE PROCEDURE sp_archivar_prestamos(IN p_meses INT, IN p_lote INT)
+BEGIN
+    DECLARE prestamos_archivados INT DEFAULT 0;
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        SET @archivando = NULL;
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    DROP TEMPORARY TABLE IF EXISTS tmp_archivo;
+    CREATE TEMPORARY TABLE tmp_archivo (id INT PRIMARY KEY);
+
+    START TRANSACTION;
+
+    INSERT INTO tmp_archivo (id)
+    SELECT id FROM prestamos
+    WHERE estado = 'DEVUELTO'
+    AND fecha_devolucion_real < DATE_SUB(CURRENT_DATE, INTERVAL p_meses MONTH)
+    ORDER BY id
+    LIMIT p_lote;
+
+    INSERT INTO prestamos_historico (id, id_usuario, id_libro, fecha_prestamo, fecha_devolucion_esperada,
+                                     fecha_devolucion_real, estado, observaciones, version,
+                                     nombre_usuario, titulo_libro)
+    SELECT v.id, v.id_usuario, v.id_libro, v.fecha_prestamo, v.fecha_devolucion_esperada,
+           v.fecha_devolucion_real, v.estado, v.observaciones, v.version,
+           v.nombre_usuario, v.titulo_libro
+    FROM prestamos_vista v
+    INNER JOIN tmp_archivo t ON t.id = v.id;
+
+    SET @archivando = 1;
+    DELETE p FROM prestamos p
+    INNER JOIN tmp_archivo t ON t.id = p.id;
+
+    SET prestamos_archivados = ROW_COUNT();
+    SET @archivando = NULL;
+    COMMIT;
+
+    DROP TEMPORARY TABLE tmp_archivo;
+    SELECT prestamos_archivados;
+END$$
+DELIMITER ;
+
+-- ============================================
+-- PROCEDIMIENTO ALMACENADO: Crear partición anual del archivo
+-- ============================================
+-- Separa de pmax la partición del año indicado si aún no existe.
+DELIMITER $$
+CREATE PROCEDURE sp_crear_particion_historico(IN p_anio INT)
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.partitions
+                   WHERE table_schema = DATABASE()
+                   AND table_name = 'prestamos_historico'
+                   AND partition_name = CONCAT('p', p_anio)) THEN
+        SET @sql_particion = CONCAT(
+            'ALTER TABLE prestamos_historico REORGANIZE PARTITION pmax INTO (',
+            'PARTITION p', p_anio, ' VALUES LESS THAN (', p_anio + 1, '), ',
+            'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+        PREPARE stmt FROM @sql_particion;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END$$
+DELIMITER ;
+
+-- ============================================
+-- PROCEDIMIENTO ALMACENADO: Reconstruir prestamos_vista
+-- ============================================
+-- Sólo para reparar el modelo de lectura (p. ej. tras cargas masivas
+-- hechas con los triggers desactivados).
+DELIMITER $$
+CREATE PROCEDURE sp_reconstruir_prestamos_vista()
+BEGIN
+    DELETE FROM prestamos_vista;
+
+    INSERT INTO prestamos_vista (id, id_usuario, id_libro, fecha_prestamo, fecha_devolucion_esperada,
+                                 fecha_devolucion_real, estado, observaciones, version,
+                                 nombre_usuario, titulo_libro)
+    SELECT p.id, p.id_usuario, p.id_libro, p.fecha_prestamo, p.fecha_devolucion_esperada,
+           p.fecha_devolucion_real, p.estado, p.observaciones, p.version,
+           CONCAT(u.nombre, ' ', u.apellido), l.titulo
+    FROM prestamos p
+    INNER JOIN usuarios u ON p.id_usuario = u.id
+    INNER JOIN libros l ON p.id_libro = l.id;
+END$$
+DELIMITER ;
+
 -- ============================================
 -- DATOS DE PRUEBA
 -- ============================================
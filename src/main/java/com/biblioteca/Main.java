@@ -1,5 +1,19 @@
 package com.biblioteca;
 
+import com.biblioteca.controlador.AlmacenPrestamos;
+import com.biblioteca.controlador.BuscadorAproximado;
+import com.biblioteca.controlador.ColaEscrituras;
+import com.biblioteca.controlador.EspejoLocal;
+import com.biblioteca.controlador.FacetasCatalogo;
+import com.biblioteca.controlador.IndiceUnicidad;
+import com.biblioteca.controlador.IndiceUsuarios;
+import com.biblioteca.controlador.InstantaneaCatalogo;
+import com.biblioteca.controlador.PronosticoDemanda;
+import com.biblioteca.controlador.RankingLibros;
+import com.biblioteca.controlador.RecomendadorLibros;
+import com.biblioteca.util.ArchivadorPrestamos;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DiccionarioCadenas;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -55,6 +69,42 @@ public class Main extends Application {
             // Mostrar la ventana
             primaryStage.show();
 
+            // Sondear cambios hechos por otras instancias
+            BusCambios.getInstance().iniciar();
+
+            // Mover préstamos devueltos antiguos al histórico
+            ArchivadorPrestamos.getInstance().iniciar();
+
+            // Cargar el almacén compacto de préstamos para estadísticas
+            AlmacenPrestamos.getInstance().iniciar();
+
+            // Matriz de co-préstamos para "los lectores también pidieron"
+            RecomendadorLibros.getInstance().iniciar();
+
+            // Contadores de popularidad para el ranking del panel de control
+            RankingLibros.getInstance().iniciar();
+
+            // Pronóstico de demanda y stock recomendado por libro
+            PronosticoDemanda.getInstance().iniciar();
+
+            // Filtros de ISBN, usernames y emails para validar sin consultar
+            IndiceUnicidad.getInstance().iniciar();
+
+            // Vocabulario de títulos y autores para sugerir búsquedas mal escritas
+            BuscadorAproximado.getInstance().iniciar();
+
+            // Índice de nombres, emails y usernames para buscar usuarios sin acentos
+            IndiceUsuarios.getInstance().iniciar();
+
+            // Mapas de bits por categoría, editorial, década y disponibilidad para filtrar el catálogo
+            FacetasCatalogo.getInstance().iniciar();
+
+            // Modo sucursal (-Dbiblioteca.local=true): espejo local, cola de escrituras sin conexión
+            // y catálogo mapeado desde disco para mostrar la vista de libros al instante
+            EspejoLocal.getInstance().iniciar();
+            ColaEscrituras.getInstance().iniciar();
+            InstantaneaCatalogo.getInstance().iniciar();
+
         } catch (Exception e) {
             System.err.println("Error al iniciar la aplicación: " + e.getMessage());
             e.printStackTrace();
@@ -62,6 +112,27 @@ public class Main extends Application {
         }
     }
 
+    /**
+     * Libera los recursos en segundo plano al cerrar la aplicación
+     */
+    @Override
+    public void stop() {
+        ColaEscrituras.getInstance().detener();
+        EspejoLocal.getInstance().detener();
+        InstantaneaCatalogo.getInstance().detener();
+        FacetasCatalogo.getInstance().detener();
+        IndiceUsuarios.getInstance().detener();
+        BuscadorAproximado.getInstance().detener();
+        IndiceUnicidad.getInstance().detener();
+        PronosticoDemanda.getInstance().detener();
+        RankingLibros.getInstance().detener();
+        RecomendadorLibros.getInstance().detener();
+        AlmacenPrestamos.getInstance().detener();
+        ArchivadorPrestamos.getInstance().detener();
+        BusCambios.getInstance().detener();
+        DiccionarioCadenas.imprimirResumen();
+    }
+
     /**
      * Método de entrada principal de la aplicación
      *
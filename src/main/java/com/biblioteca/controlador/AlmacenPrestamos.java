@@ -0,0 +1,490 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.FechaNegocio;
+import com.biblioteca.util.MapaEnteros;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Almacén compacto de préstamos en memoria para estadísticas
+ *
+ * Guarda todos los préstamos (activos y archivados) en columnas de
+ * arreglos primitivos: IDs como int, fechas como epoch-day int y estado
+ * como byte (ordinal de EstadoPrestamo). Son unos 25 bytes por préstamo
+ * frente a varios cientos de un Prestamo con sus LocalDate y cadenas, y
+ * los recorridos son bucles sobre arreglos contiguos sin objetos ni
+ * punteros que seguir.
+ *
+ * Se carga una vez en segundo plano (PrestamoDAO.recorrerCompacto) y se
+ * mantiene al día con BusCambios: las altas y modificaciones se leen por
+ * versión en lotes, las bajas eliminan la fila y los archivados se
+ * conservan (siguen existiendo en prestamos_historico). Todo el trabajo
+ * contra la base de datos se hace en un hilo propio con conexión dedicada.
+ *
+ * Mientras no termina la carga inicial, estaCargado() devuelve false y
+ * quien consulte debe recurrir al DAO. Si la carga falla se reintenta con
+ * una espera que se duplica en cada intento, hasta ESPERA_MAXIMA_MS.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class AlmacenPrestamos {
+
+    /** Valor de fecha para NULL (préstamo no devuelto) */
+    public static final int SIN_FECHA = -1;
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final long ESPERA_INICIAL_MS = 5_000;
+    private static final long ESPERA_MAXIMA_MS = 300_000;
+    private static final byte DEVUELTO = (byte) Prestamo.EstadoPrestamo.DEVUELTO.ordinal();
+
+    // Instancia única (Singleton)
+    private static AlmacenPrestamos instancia;
+
+    /**
+     * Columnas del almacén; la carga completa construye unas nuevas y las
+     * sustituye de una vez, así las consultas nunca ven una carga a medias
+     */
+    private static final class Columnas {
+        final MapaEnteros posiciones;
+        int[] ids;
+        int[] idUsuario;
+        int[] idLibro;
+        int[] fechaPrestamo;
+        int[] vencimiento;
+        int[] devolucion;
+        byte[] estado;
+        int tamano;
+        int maxIdUsuario;
+        int maxIdLibro;
+
+        Columnas(int capacidad) {
+            posiciones = new MapaEnteros(capacidad);
+            ids = new int[capacidad];
+            idUsuario = new int[capacidad];
+            idLibro = new int[capacidad];
+            fechaPrestamo = new int[capacidad];
+            vencimiento = new int[capacidad];
+            devolucion = new int[capacidad];
+            estado = new byte[capacidad];
+        }
+
+        void guardar(int id, int usuario, int libro, int fecha, int venc, int dev, int est) {
+            int i = posiciones.get(id, -1);
+            if (i < 0) {
+                if (tamano == ids.length) {
+                    crecer();
+                }
+                i = tamano++;
+                ids[i] = id;
+                posiciones.put(id, i);
+            }
+            idUsuario[i] = usuario;
+            idLibro[i] = libro;
+            fechaPrestamo[i] = fecha;
+            vencimiento[i] = venc;
+            devolucion[i] = dev;
+            estado[i] = (byte) est;
+            maxIdUsuario = Math.max(maxIdUsuario, usuario);
+            maxIdLibro = Math.max(maxIdLibro, libro);
+        }
+
+        void eliminar(int id) {
+            int i = posiciones.get(id, -1);
+            if (i < 0) {
+                return;
+            }
+            posiciones.eliminar(id);
+            // La última fila ocupa el hueco: las columnas siguen contiguas
+            int ultima = --tamano;
+            if (i != ultima) {
+                ids[i] = ids[ultima];
+                idUsuario[i] = idUsuario[ultima];
+                idLibro[i] = idLibro[ultima];
+                fechaPrestamo[i] = fechaPrestamo[ultima];
+                vencimiento[i] = vencimiento[ultima];
+                devolucion[i] = devolucion[ultima];
+                estado[i] = estado[ultima];
+                posiciones.put(ids[i], i);
+            }
+        }
+
+        private void crecer() {
+            int capacidad = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacidad);
+            idUsuario = Arrays.copyOf(idUsuario, capacidad);
+            idLibro = Arrays.copyOf(idLibro, capacidad);
+            fechaPrestamo = Arrays.copyOf(fechaPrestamo, capacidad);
+            vencimiento = Arrays.copyOf(vencimiento, capacidad);
+            devolucion = Arrays.copyOf(devolucion, capacidad);
+            estado = Arrays.copyOf(estado, capacidad);
+        }
+    }
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final AtomicBoolean sincronizacionPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+
+    private Columnas columnas = new Columnas(CAPACIDAD_INICIAL);
+    private volatile boolean cargado;
+    private long version = -1;
+    private long esperaReintento = ESPERA_INICIAL_MS;
+    private ScheduledExecutorService ejecutor;
+    private Connection conexion;
+
+    private AlmacenPrestamos() {
+    }
+
+    /**
+     * Obtiene la única instancia de AlmacenPrestamos (Singleton)
+     *
+     * @return Instancia única de AlmacenPrestamos
+     */
+    public static AlmacenPrestamos getInstance() {
+        if (instancia == null) {
+            synchronized (AlmacenPrestamos.class) {
+                if (instancia == null) {
+                    instancia = new AlmacenPrestamos();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Inicia la carga en segundo plano y la suscripción a cambios
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "almacen-prestamos");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::cargar);
+    }
+
+    /**
+     * Detiene la sincronización y libera la conexión dedicada
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+        cerrarConexion();
+    }
+
+    /**
+     * Indica si la carga inicial terminó
+     *
+     * @return true si las consultas reflejan todos los préstamos
+     */
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * Obtiene el número de préstamos del almacén
+     *
+     * @return Préstamos activos y archivados
+     */
+    public int size() {
+        cerrojo.readLock().lock();
+        try {
+            return columnas.tamano;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta los préstamos de cada estado
+     *
+     * @return Cantidades indexadas por EstadoPrestamo.ordinal()
+     */
+    public int[] contarPorEstado() {
+        int[] cuentas = new int[Prestamo.EstadoPrestamo.values().length];
+        cerrojo.readLock().lock();
+        try {
+            byte[] estado = columnas.estado;
+            int n = columnas.tamano;
+            for (int i = 0; i < n; i++) {
+                cuentas[estado[i]]++;
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return cuentas;
+    }
+
+    /**
+     * Reparte los préstamos vencidos y no devueltos por días de retraso
+     * Con límites {7, 30, 90} los tramos son 1-7, 8-30, 31-90 y más de 90.
+     * Se calcula con la fecha de vencimiento, así que no depende de que
+     * ya se haya ejecutado la actualización de retrasados del día.
+     *
+     * @param limites Días máximos de cada tramo, en orden creciente
+     * @return Cantidad por tramo (limites.length + 1 posiciones)
+     */
+    public int[] contarRetrasosPorTramo(int... limites) {
+        int[] cuentas = new int[limites.length + 1];
+        int hoy = (int) FechaNegocio.hoyEpochDay();
+        cerrojo.readLock().lock();
+        try {
+            int[] vencimiento = columnas.vencimiento;
+            byte[] estado = columnas.estado;
+            int n = columnas.tamano;
+            for (int i = 0; i < n; i++) {
+                int dias = hoy - vencimiento[i];
+                if (dias > 0 && estado[i] != DEVUELTO) {
+                    int tramo = 0;
+                    while (tramo < limites.length && dias > limites[tramo]) {
+                        tramo++;
+                    }
+                    cuentas[tramo]++;
+                }
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return cuentas;
+    }
+
+    /**
+     * Cuenta los préstamos hechos en un periodo
+     *
+     * @param desde Fecha de préstamo inicial (inclusiva)
+     * @param hasta Fecha de préstamo final (inclusiva)
+     * @return Cantidad de préstamos del periodo
+     */
+    public int contarEnPeriodo(LocalDate desde, LocalDate hasta) {
+        int inicio = (int) desde.toEpochDay();
+        int fin = (int) hasta.toEpochDay();
+        int cuenta = 0;
+        cerrojo.readLock().lock();
+        try {
+            int[] fechaPrestamo = columnas.fechaPrestamo;
+            int n = columnas.tamano;
+            for (int i = 0; i < n; i++) {
+                int f = fechaPrestamo[i];
+                cuenta += (f >= inicio & f <= fin) ? 1 : 0;
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return cuenta;
+    }
+
+    /**
+     * Cuenta los préstamos de cada libro
+     *
+     * @param soloActivos true para contar sólo los no devueltos
+     * @return Cantidades indexadas por ID de libro
+     */
+    public int[] contarPorLibro(boolean soloActivos) {
+        cerrojo.readLock().lock();
+        try {
+            return contarPor(columnas.idLibro, columnas.maxIdLibro, soloActivos);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta los préstamos de cada usuario
+     *
+     * @param soloActivos true para contar sólo los no devueltos
+     * @return Cantidades indexadas por ID de usuario
+     */
+    public int[] contarPorUsuario(boolean soloActivos) {
+        cerrojo.readLock().lock();
+        try {
+            return contarPor(columnas.idUsuario, columnas.maxIdUsuario, soloActivos);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recarga el almacén completo desde la base de datos
+     * Se ejecuta en el hilo del almacén; las consultas siguen sirviendo
+     * los datos anteriores hasta que termina.
+     */
+    private void cargar() {
+        long inicio = System.currentTimeMillis();
+        try {
+            Connection conn = obtenerConexion();
+            long versionCarga = cambiosDAO.obtenerVersionActual(conn);
+            Columnas nuevas = new Columnas(CAPACIDAD_INICIAL);
+            prestamoDAO.recorrerCompacto(conn, -1, true,
+                    (id, usuario, libro, fecha, venc, dev, est, v) ->
+                            nuevas.guardar(id, usuario, libro, fecha, venc, dev, est));
+
+            cerrojo.writeLock().lock();
+            try {
+                columnas = nuevas;
+                version = versionCarga;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            cargado = true;
+            esperaReintento = ESPERA_INICIAL_MS;
+            System.out.println("✓ Almacén de préstamos cargado: " + nuevas.tamano + " préstamos en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cargar el almacén de préstamos: " + e.getMessage());
+            cerrarConexion();
+            programarReintento();
+        }
+    }
+
+    /**
+     * Vuelve a programar la carga tras un fallo, con espera creciente
+     * Los eventos que lleguen mientras tanto se ignoran: la carga los incluirá.
+     */
+    private void programarReintento() {
+        ScheduledExecutorService destino = ejecutor;
+        if (destino == null) {
+            return;
+        }
+        long espera = esperaReintento;
+        esperaReintento = Math.min(espera * 2, ESPERA_MAXIMA_MS);
+        try {
+            destino.schedule(this::cargar, espera, TimeUnit.MILLISECONDS);
+            System.out.println("  Nuevo intento de carga en " + espera / 1000 + " s");
+        } catch (RejectedExecutionException e) {
+            // El almacén se detuvo
+        }
+    }
+
+    /**
+     * Aplica las altas y modificaciones posteriores a la versión conocida
+     */
+    private void sincronizar() {
+        if (!cargado) {
+            // La carga inicial pendiente ya incluirá el cambio
+            return;
+        }
+        try {
+            Connection conn = obtenerConexion();
+            long versionActual = cambiosDAO.obtenerVersionActual(conn);
+            if (versionActual <= version) {
+                return;
+            }
+            prestamoDAO.recorrerCompacto(conn, version, false,
+                    (id, usuario, libro, fecha, venc, dev, est, v) -> {
+                        cerrojo.writeLock().lock();
+                        try {
+                            columnas.guardar(id, usuario, libro, fecha, venc, dev, est);
+                        } finally {
+                            cerrojo.writeLock().unlock();
+                        }
+                    });
+            version = versionActual;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar el almacén de préstamos: " + e.getMessage());
+            cerrarConexion();
+        }
+    }
+
+    private void eliminar(int id) {
+        cerrojo.writeLock().lock();
+        try {
+            columnas.eliminar(id);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Oyente del bus: encola el trabajo en el hilo del almacén, en orden
+     */
+    private void procesarEvento(EventoCambio evento) {
+        if (evento.getEntidad() != EventoCambio.Entidad.PRESTAMO) {
+            return;
+        }
+        ExecutorService destino = ejecutor;
+        if (destino == null) {
+            return;
+        }
+        switch (evento.getOperacion()) {
+            case ALTA, MODIFICACION -> {
+                // Varios eventos seguidos se resuelven con una sola lectura por versión
+                if (sincronizacionPendiente.compareAndSet(false, true)) {
+                    destino.execute(() -> {
+                        sincronizacionPendiente.set(false);
+                        sincronizar();
+                    });
+                }
+            }
+            case BAJA -> destino.execute(() -> eliminar(evento.getIdEntidad()));
+            case ARCHIVO -> {
+                // Sigue en prestamos_historico: la fila se conserva tal cual
+            }
+        }
+    }
+
+    /**
+     * Histograma por ID; se llama con el cerrojo de lectura tomado
+     */
+    private int[] contarPor(int[] claves, int maxClave, boolean soloActivos) {
+        int[] cuentas = new int[maxClave + 1];
+        byte[] estado = columnas.estado;
+        int n = columnas.tamano;
+        if (soloActivos) {
+            for (int i = 0; i < n; i++) {
+                cuentas[claves[i]] += estado[i] != DEVUELTO ? 1 : 0;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                cuentas[claves[i]]++;
+            }
+        }
+        return cuentas;
+    }
+
+    private Connection obtenerConexion() throws SQLException {
+        if (conexion == null || conexion.isClosed()) {
+            conexion = DatabaseConnection.getInstance().abrirConexionDedicada();
+        }
+        return conexion;
+    }
+
+    private void cerrarConexion() {
+        try {
+            if (conexion != null && !conexion.isClosed()) {
+                conexion.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cerrar la conexión del almacén: " + e.getMessage());
+        }
+        conexion = null;
+    }
+}
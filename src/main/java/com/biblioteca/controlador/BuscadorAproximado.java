@@ -0,0 +1,355 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.ArbolBK;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Sugerencias "¿quisiste decir?" para la búsqueda de libros
+ *
+ * La búsqueda por título o autor usa LIKE, que no encuentra nada con un
+ * error de escritura ("Garcia Marques", "Orwel"). Este buscador guarda en
+ * memoria las palabras de todos los títulos y autores en un árbol BK y,
+ * para cada palabra de la consulta que no está en el vocabulario, busca
+ * las que están a distancia de Levenshtein 1 o, si no hay ninguna y la
+ * palabra tiene al menos 5 letras, a distancia 2. Las frases corregidas
+ * se ordenan por distancia total y, a igual distancia, por lo frecuentes
+ * que son sus palabras en el catálogo (en cuántos libros aparecen).
+ *
+ * Las palabras se comparan sin acentos ni mayúsculas, como la
+ * intercalación de las columnas, pero las sugerencias conservan la forma
+ * con acentos tal como aparece en el catálogo ("garcía márquez"), para
+ * que también coincidan con el filtro de la tabla.
+ *
+ * El vocabulario se carga al arrancar en segundo plano, con una conexión
+ * dedicada, y se mantiene con los cambios que llegan por BusCambios. Se
+ * guardan las palabras de cada libro: al volver a leer un libro sólo se
+ * aplica la diferencia, y al borrarlo se restan las suyas. Una palabra
+ * que ya no está en ningún libro deja de sugerirse (el árbol BK no
+ * borra: la conserva, pero la búsqueda la descarta).
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class BuscadorAproximado {
+
+    private static final int LONGITUD_MINIMA = 3;
+    private static final int LONGITUD_DISTANCIA_2 = 5;
+    private static final int CANDIDATOS_POR_PALABRA = 3;
+    private static final int MAX_PALABRAS_CORREGIDAS = 4;
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{M}\\p{N}]+");
+
+    private static final Comparator<Candidato> ORDEN = Comparator
+            .comparingInt((Candidato c) -> c.distancia)
+            .thenComparing(Comparator.comparingLong((Candidato c) -> c.frecuencia).reversed());
+
+    // Palabra del vocabulario: forma original (en minúsculas) y número de libros en que aparece
+    private static final class Palabra {
+        final String forma;
+        // Sólo la escribe el hilo del ejecutor
+        volatile int frecuencia;
+
+        Palabra(String forma) {
+            this.forma = forma;
+        }
+    }
+
+    private static final class Vocabulario {
+        final ArbolBK arbol = new ArbolBK();
+        final Map<String, Palabra> palabras = new ConcurrentHashMap<>();
+        // Claves de las palabras de cada libro; sólo las usa el hilo del ejecutor
+        final Map<Integer, String[]> porLibro = new HashMap<>();
+
+        void agregar(int idLibro, String titulo, String autor) {
+            // Clave normalizada -> forma original, sin repetir palabras del mismo libro
+            Map<String, String> nuevas = new LinkedHashMap<>();
+            separar(titulo, nuevas);
+            separar(autor, nuevas);
+
+            String[] anteriores = porLibro.put(idLibro, nuevas.keySet().toArray(new String[0]));
+            if (anteriores != null) {
+                for (String clave : anteriores) {
+                    if (nuevas.remove(clave) == null) {
+                        restar(clave);
+                    }
+                }
+            }
+            for (Map.Entry<String, String> nueva : nuevas.entrySet()) {
+                Palabra palabra = palabras.get(nueva.getKey());
+                if (palabra == null) {
+                    palabra = new Palabra(nueva.getValue());
+                    palabras.put(nueva.getKey(), palabra);
+                    arbol.agregar(nueva.getKey());
+                }
+                palabra.frecuencia++;
+            }
+        }
+
+        void quitar(int idLibro) {
+            String[] anteriores = porLibro.remove(idLibro);
+            if (anteriores != null) {
+                for (String clave : anteriores) {
+                    restar(clave);
+                }
+            }
+        }
+
+        private void restar(String clave) {
+            Palabra palabra = palabras.get(clave);
+            if (palabra != null && --palabra.frecuencia <= 0) {
+                palabras.remove(clave);
+            }
+        }
+
+        private static void separar(String texto, Map<String, String> destino) {
+            if (texto == null) {
+                return;
+            }
+            for (String cruda : SEPARADORES.split(texto.toLowerCase(Locale.ROOT))) {
+                if (cruda.length() >= LONGITUD_MINIMA) {
+                    destino.putIfAbsent(IndiceUnicidad.normalizar(cruda), cruda);
+                }
+            }
+        }
+    }
+
+    // Palabra o frase candidata con su distancia a la consulta
+    private static final class Candidato {
+        final String texto;
+        final int distancia;
+        final long frecuencia;
+
+        Candidato(String texto, int distancia, long frecuencia) {
+            this.texto = texto;
+            this.distancia = distancia;
+            this.frecuencia = frecuencia;
+        }
+    }
+
+    // Instancia única (Singleton)
+    private static BuscadorAproximado instancia;
+
+    private final LibroDAO libroDAO = new LibroDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+    private final AtomicBoolean sincronizacionPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+
+    // null hasta la carga: no hay sugerencias
+    private volatile Vocabulario vocabulario;
+
+    // Sólo se usan en el hilo del ejecutor
+    private long version = -1;
+    private ExecutorService ejecutor;
+
+    private BuscadorAproximado() {
+    }
+
+    /**
+     * Obtiene la única instancia de BuscadorAproximado (Singleton)
+     *
+     * @return Instancia única de BuscadorAproximado
+     */
+    public static BuscadorAproximado getInstance() {
+        if (instancia == null) {
+            synchronized (BuscadorAproximado.class) {
+                if (instancia == null) {
+                    instancia = new BuscadorAproximado();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Se suscribe a los cambios y carga el vocabulario en segundo plano
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "buscador-aproximado");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::cargar);
+    }
+
+    /**
+     * Cancela la suscripción y el trabajo pendiente
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Obtiene frases corregidas para una búsqueda sin resultados
+     *
+     * @param texto Texto buscado
+     * @param maximo Número máximo de sugerencias
+     * @return Sugerencias de la más parecida a la menos; vacía si todas las
+     *         palabras existen, si alguna no se parece a ninguna o si el
+     *         vocabulario aún no se ha cargado
+     */
+    public List<String> sugerir(String texto, int maximo) {
+        Vocabulario actual = vocabulario;
+        if (actual == null || texto == null) {
+            return List.of();
+        }
+
+        List<List<Candidato>> opciones = new ArrayList<>();
+        int corregidas = 0;
+        for (String cruda : SEPARADORES.split(texto.toLowerCase(Locale.ROOT).trim())) {
+            if (cruda.isEmpty()) {
+                continue;
+            }
+            String clave = IndiceUnicidad.normalizar(cruda);
+            Palabra exacta = actual.palabras.get(clave);
+            if (exacta != null || clave.length() < LONGITUD_MINIMA || corregidas >= MAX_PALABRAS_CORREGIDAS) {
+                String forma = exacta != null ? exacta.forma : cruda;
+                opciones.add(List.of(new Candidato(forma, 0, exacta != null ? exacta.frecuencia : 0)));
+                continue;
+            }
+
+            // Distancia 2 sólo si no hay nada a distancia 1: recorre bastante más árbol
+            List<Candidato> parecidas = buscarParecidas(actual, clave, 1);
+            if (parecidas.isEmpty() && clave.length() >= LONGITUD_DISTANCIA_2) {
+                parecidas = buscarParecidas(actual, clave, 2);
+            }
+            if (parecidas.isEmpty()) {
+                return List.of();
+            }
+            parecidas.sort(ORDEN);
+            opciones.add(parecidas.subList(0, Math.min(CANDIDATOS_POR_PALABRA, parecidas.size())));
+            corregidas++;
+        }
+        if (corregidas == 0) {
+            return List.of();
+        }
+
+        List<Candidato> frases = new ArrayList<>();
+        combinar(opciones, 0, "", 0, 0, frases);
+        frases.sort(ORDEN);
+
+        List<String> sugerencias = new ArrayList<>();
+        for (int i = 0; i < frases.size() && sugerencias.size() < maximo; i++) {
+            sugerencias.add(frases.get(i).texto);
+        }
+        return sugerencias;
+    }
+
+    /**
+     * Indica si el vocabulario ya está cargado
+     *
+     * @return true si sugerir puede devolver resultados
+     */
+    public boolean estaCargado() {
+        return vocabulario != null;
+    }
+
+    private static List<Candidato> buscarParecidas(Vocabulario vocabulario, String clave, int maxima) {
+        List<Candidato> parecidas = new ArrayList<>();
+        vocabulario.arbol.buscar(clave, maxima, (encontrada, distancia) -> {
+            // Las palabras que ya no están en ningún libro siguen en el árbol
+            Palabra palabra = vocabulario.palabras.get(encontrada);
+            if (palabra != null) {
+                parecidas.add(new Candidato(palabra.forma, distancia, palabra.frecuencia));
+            }
+        });
+        return parecidas;
+    }
+
+    // Producto de las candidatas de cada palabra (como mucho 3^4 frases)
+    private static void combinar(List<List<Candidato>> opciones, int indice, String prefijo,
+                                 int distancia, long frecuencia, List<Candidato> frases) {
+        if (indice == opciones.size()) {
+            frases.add(new Candidato(prefijo, distancia, frecuencia));
+            return;
+        }
+        for (Candidato candidato : opciones.get(indice)) {
+            String texto = indice == 0 ? candidato.texto : prefijo + " " + candidato.texto;
+            combinar(opciones, indice + 1, texto, distancia + candidato.distancia,
+                    frecuencia + candidato.frecuencia, frases);
+        }
+    }
+
+    // La versión se lee antes de recorrer: lo escrito durante el recorrido
+    // lo recoge la sincronización que dispara su evento
+    private void cargar() {
+        long inicio = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long versionActual = cambiosDAO.obtenerVersionActual(conn);
+            Vocabulario nuevo = new Vocabulario();
+            libroDAO.recorrerTextos(conn, -1, nuevo::agregar);
+            vocabulario = nuevo;
+            version = versionActual;
+            System.out.println("✓ Vocabulario de búsqueda cargado: " + nuevo.palabras.size() + " palabras en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cargar el vocabulario de búsqueda: " + e.getMessage());
+        }
+    }
+
+    // Las altas y modificaciones se leen antes de las bajas: un libro
+    // borrado durante el recorrido lo quita la lista de eliminados
+    private void sincronizar() {
+        Vocabulario actual = vocabulario;
+        if (actual == null) {
+            cargar();
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long versionActual = cambiosDAO.obtenerVersionActual(conn);
+            if (versionActual <= version) {
+                return;
+            }
+            if (!cambiosDAO.historialCompleto(conn, version, versionActual)) {
+                cargar();
+                return;
+            }
+            libroDAO.recorrerTextos(conn, version, actual::agregar);
+            cambiosDAO.obtenerEliminados(conn, "LIBRO", version, versionActual).forEach(actual::quitar);
+            version = versionActual;
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar el vocabulario de búsqueda: " + e.getMessage());
+        }
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (evento.getEntidad() != EventoCambio.Entidad.LIBRO) {
+            return;
+        }
+        ExecutorService destino = ejecutor;
+        if (destino != null && sincronizacionPendiente.compareAndSet(false, true)) {
+            destino.execute(() -> {
+                sincronizacionPendiente.set(false);
+                sincronizar();
+            });
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.biblioteca.controlador;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una consulta incremental cambiosDesde(version)
+ *
+ * Contiene las filas creadas o modificadas y los IDs eliminados desde
+ * la versión pedida, junto con la versión hasta la que llega el lote.
+ * Si el historial de bajas ya fue purgado, se marca recargaCompleta y
+ * quien consulta debe recargar la tabla entera.
+ *
+ * @param <T> Tipo de entidad (Libro, Usuario, Prestamo)
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class Cambios<T> {
+
+    private final List<T> modificados;
+    private final List<Integer> eliminados;
+    private final long version;
+    private final boolean recargaCompleta;
+
+    /**
+     * Constructor completo
+     *
+     * @param modificados Filas creadas o modificadas
+     * @param eliminados IDs de filas eliminadas
+     * @param version Versión hasta la que llegan los cambios
+     * @param recargaCompleta true si no se pueden aplicar de forma incremental
+     */
+    public Cambios(List<T> modificados, List<Integer> eliminados, long version, boolean recargaCompleta) {
+        this.modificados = modificados;
+        this.eliminados = eliminados;
+        this.version = version;
+        this.recargaCompleta = recargaCompleta;
+    }
+
+    /**
+     * Crea un resultado sin cambios
+     *
+     * @param version Versión actual
+     * @param <T> Tipo de entidad
+     * @return Resultado vacío
+     */
+    public static <T> Cambios<T> sinCambios(long version) {
+        return new Cambios<>(Collections.emptyList(), Collections.emptyList(), version, false);
+    }
+
+    /**
+     * Crea un resultado que obliga a recargar la tabla completa
+     *
+     * @param version Versión actual
+     * @param <T> Tipo de entidad
+     * @return Resultado que pide recarga completa
+     */
+    public static <T> Cambios<T> recargaCompleta(long version) {
+        return new Cambios<>(Collections.emptyList(), Collections.emptyList(), version, true);
+    }
+
+    public List<T> getModificados() {
+        return modificados;
+    }
+
+    public List<Integer> getEliminados() {
+        return eliminados;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isRecargaCompleta() {
+        return recargaCompleta;
+    }
+
+    /**
+     * Indica si no hay nada que aplicar
+     * @return true si no hay filas modificadas ni eliminadas
+     */
+    public boolean estaVacio() {
+        return !recargaCompleta && modificados.isEmpty() && eliminados.isEmpty();
+    }
+}
@@ -0,0 +1,186 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.DatabaseConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase DAO para consultar versiones de fila y el registro de cambios
+ *
+ * Da soporte a los métodos cambiosDesde(version) de LibroDAO, UsuarioDAO
+ * y PrestamoDAO: versión actual de la base de datos, IDs eliminados en
+ * un rango de versiones y detección de historial purgado.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class CambiosDAO {
+
+    private DatabaseConnection dbConnection;
+
+    /**
+     * Constructor que inicializa la conexión a la base de datos
+     */
+    public CambiosDAO() {
+        this.dbConnection = DatabaseConnection.getInstance();
+    }
+
+    /**
+     * Obtiene la última versión de fila asignada
+     *
+     * @return Versión actual, o -1 si no se pudo consultar
+     */
+    public long obtenerVersionActual() {
+        String sql = "SELECT valor FROM secuencia_version WHERE id = 1";
+
+        try (Connection conn = dbConnection.conectar();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener versión actual: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Obtiene la última versión de fila asignada usando una conexión dada
+     * Para hilos de fondo que trabajan con una conexión dedicada.
+     *
+     * @param conn Conexión del llamador
+     * @return Versión actual
+     * @throws SQLException Si hay error en la consulta
+     */
+    public long obtenerVersionActual(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT valor FROM secuencia_version WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Verifica si el registro de cambios cubre el rango (desde, hasta]
+     * Cada versión asignada deja una fila en cambios; si la más antigua
+     * conservada es posterior a desde + 1, parte del rango fue purgado.
+     *
+     * @param desde Versión ya conocida por quien consulta
+     * @param hasta Versión actual
+     * @return true si se pueden aplicar los cambios de forma incremental
+     */
+    public boolean historialCompleto(long desde, long hasta) {
+        if (desde >= hasta) {
+            return true;
+        }
+        String sql = "SELECT MIN(version) FROM cambios";
+
+        try (Connection conn = dbConnection.conectar();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                long minima = rs.getLong(1);
+                return !rs.wasNull() && minima <= desde + 1;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al verificar historial de cambios: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Verifica con la conexión indicada si el registro de cambios cubre
+     * el rango (desde, hasta]
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param desde Versión ya conocida por quien consulta
+     * @param hasta Versión actual
+     * @return true si se pueden aplicar los cambios de forma incremental
+     * @throws SQLException Si hay error en la consulta
+     */
+    public boolean historialCompleto(Connection conn, long desde, long hasta) throws SQLException {
+        if (desde >= hasta) {
+            return true;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(version) FROM cambios")) {
+            if (rs.next()) {
+                long minima = rs.getLong(1);
+                return !rs.wasNull() && minima <= desde + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene los IDs eliminados de una entidad en un rango de versiones
+     * Incluye los préstamos archivados: ya no están en las tablas activas.
+     *
+     * @param entidad Entidad (LIBRO, USUARIO, PRESTAMO)
+     * @param desde Versión exclusiva inicial
+     * @param hasta Versión inclusiva final
+     * @return Lista de IDs eliminados
+     */
+    public List<Integer> obtenerEliminados(String entidad, long desde, long hasta) {
+        List<Integer> eliminados = new ArrayList<>();
+        String sql = "SELECT id_entidad FROM cambios WHERE entidad = ? AND operacion IN ('BAJA', 'ARCHIVO') " +
+                "AND version > ? AND version <= ?";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, entidad);
+            pstmt.setLong(2, desde);
+            pstmt.setLong(3, hasta);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                eliminados.add(rs.getInt(1));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener eliminados: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return eliminados;
+    }
+
+    /**
+     * Obtiene con la conexión indicada los IDs eliminados de una entidad
+     * en un rango de versiones
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param entidad Entidad (LIBRO, USUARIO, PRESTAMO)
+     * @param desde Versión exclusiva inicial
+     * @param hasta Versión inclusiva final
+     * @return Lista de IDs eliminados
+     * @throws SQLException Si hay error en la consulta
+     */
+    public List<Integer> obtenerEliminados(Connection conn, String entidad, long desde, long hasta)
+            throws SQLException {
+        List<Integer> eliminados = new ArrayList<>();
+        String sql = "SELECT id_entidad FROM cambios WHERE entidad = ? AND operacion IN ('BAJA', 'ARCHIVO') " +
+                "AND version > ? AND version <= ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, entidad);
+            pstmt.setLong(2, desde);
+            pstmt.setLong(3, hasta);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    eliminados.add(rs.getInt(1));
+                }
+            }
+        }
+        return eliminados;
+    }
+}
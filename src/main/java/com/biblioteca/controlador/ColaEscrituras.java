@@ -0,0 +1,488 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.FechaNegocio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola local de préstamos y devoluciones hechos sin conexión
+ *
+ * En modo sucursal (ver EspejoLocal), si PrestamoDAO no puede llegar a
+ * MySQL el préstamo o la devolución se añade a un diario en el directorio
+ * de datos (una línea por operación, forzada a disco antes de responder),
+ * así que sobrevive a un cierre de la aplicación. Un préstamo encolado
+ * recibe un ID local negativo y descuenta el stock del espejo.
+ *
+ * Cada INTERVALO_MS, si la base de datos está disponible, las operaciones
+ * se envían en orden y en lotes de LOTE, cada lote en una transacción. Antes
+ * de insertar un préstamo se bloquea la fila del libro y se comprueba que
+ * quede stock: si otra mesa prestó el último ejemplar mientras tanto, el
+ * préstamo no se inserta y se anota en conflictos.log para revisarlo a mano.
+ * Lo mismo con una devolución de un préstamo ya devuelto o inexistente.
+ * El resto del lote sigue adelante (cada operación tiene su savepoint).
+ *
+ * Cada operación lleva un UUID que se inserta en operaciones_aplicadas
+ * dentro de la misma transacción. Si la mesa se cierra después del commit
+ * y antes de reescribir el diario, el lote se reenvía al arrancar: las
+ * operaciones cuyo UUID ya está en la tabla se saltan en lugar de
+ * duplicar el préstamo o la devolución.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ColaEscrituras {
+
+    private static final String ARCHIVO = "pendientes.log";
+    private static final String ARCHIVO_CONFLICTOS = "conflictos.log";
+    private static final long INTERVALO_MS = Long.getLong("biblioteca.local.intervaloMs", 10_000L);
+    private static final int LOTE = 50;
+
+    private static final String PRESTAMO = "PRESTAMO";
+    private static final String DEVOLUCION = "DEVOLUCION";
+
+    /**
+     * Operación pendiente; una línea del diario separada por tabuladores
+     */
+    private static final class Operacion {
+        final String tipo;
+        final int idPrestamo;
+        final int idUsuario;
+        final int idLibro;
+        final LocalDate fecha;
+        final LocalDate fechaEsperada;
+        final String observaciones;
+        final String uuid;
+
+        Operacion(String tipo, int idPrestamo, int idUsuario, int idLibro,
+                  LocalDate fecha, LocalDate fechaEsperada, String observaciones, String uuid) {
+            this.tipo = tipo;
+            this.idPrestamo = idPrestamo;
+            this.idUsuario = idUsuario;
+            this.idLibro = idLibro;
+            this.fecha = fecha;
+            this.fechaEsperada = fechaEsperada;
+            this.observaciones = observaciones;
+            this.uuid = uuid;
+        }
+
+        Operacion conIdPrestamo(int id) {
+            return new Operacion(tipo, id, idUsuario, idLibro, fecha, fechaEsperada, observaciones, uuid);
+        }
+
+        String aLinea() {
+            if (DEVOLUCION.equals(tipo)) {
+                return tipo + "\t" + idPrestamo + "\t" + fecha + "\t" + uuid;
+            }
+            String obs = observaciones == null ? "" :
+                    Base64.getEncoder().encodeToString(observaciones.getBytes(StandardCharsets.UTF_8));
+            return tipo + "\t" + idPrestamo + "\t" + idUsuario + "\t" + idLibro + "\t" +
+                    fecha + "\t" + fechaEsperada + "\t" + obs + "\t" + uuid;
+        }
+
+        // Las líneas de diarios anteriores no tienen UUID: se deriva de la
+        // propia línea, así que es el mismo en cada lectura
+        static Operacion deLinea(String linea) {
+            String[] campos = linea.split("\t", -1);
+            if (DEVOLUCION.equals(campos[0])) {
+                return new Operacion(DEVOLUCION, Integer.parseInt(campos[1]), 0, 0,
+                        LocalDate.parse(campos[2]), null, null, campos.length > 3 ? campos[3] : uuidDe(linea));
+            }
+            String obs = campos[6].isEmpty() ? null :
+                    new String(Base64.getDecoder().decode(campos[6]), StandardCharsets.UTF_8);
+            return new Operacion(PRESTAMO, Integer.parseInt(campos[1]), Integer.parseInt(campos[2]),
+                    Integer.parseInt(campos[3]), LocalDate.parse(campos[4]), LocalDate.parse(campos[5]), obs,
+                    campos.length > 7 ? campos[7] : uuidDe(linea));
+        }
+
+        private static String uuidDe(String linea) {
+            return UUID.nameUUIDFromBytes(linea.getBytes(StandardCharsets.UTF_8)).toString();
+        }
+    }
+
+    // Instancia única (Singleton)
+    private static ColaEscrituras instancia;
+
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+
+    // Protegidos por this; sólo la sincronización quita operaciones, siempre del principio
+    private final List<Operacion> pendientes = new ArrayList<>();
+    private int siguienteIdLocal = -1;
+    private boolean leido;
+
+    private ScheduledExecutorService planificador;
+
+    private ColaEscrituras() {
+    }
+
+    /**
+     * Obtiene la única instancia de ColaEscrituras (Singleton)
+     *
+     * @return Instancia única de ColaEscrituras
+     */
+    public static ColaEscrituras getInstance() {
+        if (instancia == null) {
+            synchronized (ColaEscrituras.class) {
+                if (instancia == null) {
+                    instancia = new ColaEscrituras();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Indica si un error se debe a que no hay conexión con la base de datos
+     * (SQLState de la clase 08, incluido el cortacircuitos abierto)
+     *
+     * @param e Error de la operación
+     * @return true si tiene sentido reintentarla más tarde
+     */
+    public static boolean esErrorDeConexion(SQLException e) {
+        String estado = e.getSQLState();
+        return estado != null && estado.startsWith("08");
+    }
+
+    /**
+     * Lee el diario y programa la sincronización periódica
+     * No hace nada si el modo sucursal no está activado.
+     */
+    public synchronized void iniciar() {
+        if (!EspejoLocal.estaHabilitado() || planificador != null) {
+            return;
+        }
+        leerDiario();
+        if (!pendientes.isEmpty()) {
+            System.out.println("✓ Operaciones sin sincronizar en la cola local: " + pendientes.size());
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "cola-escrituras");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::sincronizar, INTERVALO_MS, INTERVALO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene la sincronización periódica
+     * Lo pendiente sigue en el diario para el próximo arranque.
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+
+    /**
+     * Encola un préstamo que no se pudo guardar
+     * Le asigna un ID local negativo y descuenta el ejemplar del espejo.
+     *
+     * @param prestamo Préstamo a guardar más tarde
+     * @return true si quedó escrito en el diario
+     */
+    public synchronized boolean encolarPrestamo(Prestamo prestamo) {
+        leerDiario();
+        Operacion operacion = new Operacion(PRESTAMO, siguienteIdLocal, prestamo.getIdUsuario(),
+                prestamo.getIdLibro(), prestamo.getFechaPrestamo(), prestamo.getFechaDevolucionEsperada(),
+                prestamo.getObservaciones(), UUID.randomUUID().toString());
+        if (!agregar(operacion)) {
+            return false;
+        }
+        prestamo.setId(siguienteIdLocal--);
+        EspejoLocal.getInstance().ajustarStock(prestamo.getIdLibro(), -1);
+        System.out.println("✓ Préstamo guardado en la cola local con ID " + prestamo.getId());
+        return true;
+    }
+
+    /**
+     * Encola una devolución que no se pudo guardar
+     *
+     * @param idPrestamo ID del préstamo (negativo si también está en la cola)
+     * @return true si quedó escrita en el diario
+     */
+    public synchronized boolean encolarDevolucion(int idPrestamo) {
+        leerDiario();
+        if (!agregar(new Operacion(DEVOLUCION, idPrestamo, 0, 0, FechaNegocio.hoy(), null, null,
+                UUID.randomUUID().toString()))) {
+            return false;
+        }
+        System.out.println("✓ Devolución del préstamo " + idPrestamo + " guardada en la cola local");
+        return true;
+    }
+
+    /**
+     * Obtiene la cantidad de operaciones pendientes de sincronizar
+     *
+     * @return Operaciones en la cola
+     */
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    private boolean agregar(Operacion operacion) {
+        try {
+            Files.createDirectories(EspejoLocal.getDirectorio());
+            try (FileChannel canal = FileChannel.open(EspejoLocal.getDirectorio().resolve(ARCHIVO),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                canal.write(ByteBuffer.wrap((operacion.aLinea() + "\n").getBytes(StandardCharsets.UTF_8)));
+                canal.force(true);
+            }
+            pendientes.add(operacion);
+            return true;
+        } catch (IOException e) {
+            System.err.println("✗ Error al escribir en la cola local: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void leerDiario() {
+        if (leido) {
+            return;
+        }
+        leido = true;
+        Path archivo = EspejoLocal.getDirectorio().resolve(ARCHIVO);
+        if (!Files.exists(archivo)) {
+            return;
+        }
+        try {
+            for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+                if (linea.isBlank()) {
+                    continue;
+                }
+                Operacion operacion = Operacion.deLinea(linea);
+                pendientes.add(operacion);
+                siguienteIdLocal = Math.min(siguienteIdLocal, operacion.idPrestamo - 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("✗ Error al leer la cola local: " + e.getMessage());
+        }
+    }
+
+    // Se reescribe en un temporal y se renombra: un corte deja el diario anterior intacto
+    private void reescribirDiario() throws IOException {
+        Path directorio = EspejoLocal.getDirectorio();
+        Path temporal = directorio.resolve(ARCHIVO + ".tmp");
+        StringBuilder contenido = new StringBuilder();
+        for (Operacion operacion : pendientes) {
+            contenido.append(operacion.aLinea()).append('\n');
+        }
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            canal.write(ByteBuffer.wrap(contenido.toString().getBytes(StandardCharsets.UTF_8)));
+            canal.force(true);
+        }
+        Files.move(temporal, directorio.resolve(ARCHIVO),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void sincronizar() {
+        while (DatabaseConnection.getInstance().estaDisponible()) {
+            List<Operacion> lote;
+            synchronized (this) {
+                if (pendientes.isEmpty()) {
+                    return;
+                }
+                lote = new ArrayList<>(pendientes.subList(0, Math.min(LOTE, pendientes.size())));
+            }
+            if (!enviarLote(lote)) {
+                return;
+            }
+        }
+    }
+
+    private boolean enviarLote(List<Operacion> lote) {
+        Map<Integer, Integer> idsReales = new HashMap<>();
+        List<String> conflictos = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Operacion operacion : lote) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        String conflicto = aplicar(conn, operacion, idsReales);
+                        if (conflicto != null) {
+                            conn.rollback(savepoint);
+                            conflictos.add(operacion.aLinea() + "\t" + conflicto);
+                        }
+                    } catch (SQLException e) {
+                        if (esErrorDeConexion(e)) {
+                            throw e;
+                        }
+                        conn.rollback(savepoint);
+                        conflictos.add(operacion.aLinea() + "\t" + e.getMessage());
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar la cola local: " + e.getMessage());
+            return false;
+        }
+
+        // Si la aplicación se cierra justo aquí, el lote ya confirmado se reenvía al
+        // arrancar y operaciones_aplicadas salta lo que ya se aplicó
+        synchronized (this) {
+            pendientes.subList(0, lote.size()).clear();
+            for (int i = 0; i < pendientes.size(); i++) {
+                Operacion operacion = pendientes.get(i);
+                Integer idReal = idsReales.get(operacion.idPrestamo);
+                if (idReal != null) {
+                    pendientes.set(i, operacion.conIdPrestamo(idReal));
+                }
+            }
+            try {
+                reescribirDiario();
+            } catch (IOException e) {
+                System.err.println("✗ Error al reescribir la cola local: " + e.getMessage());
+            }
+        }
+        anotarConflictos(conflictos);
+        System.out.println("✓ Cola local sincronizada: " + (lote.size() - conflictos.size()) +
+                " operaciones, " + conflictos.size() + " conflictos");
+        return true;
+    }
+
+    /**
+     * Aplica una operación dentro de la transacción del lote
+     *
+     * @return null si se aplicó (ahora o en un envío anterior); el motivo del conflicto si no
+     */
+    private String aplicar(Connection conn, Operacion operacion, Map<Integer, Integer> idsReales)
+            throws SQLException {
+        if (!registrarAplicacion(conn, operacion.uuid)) {
+            if (PRESTAMO.equals(operacion.tipo)) {
+                Integer idReal = idPrestamoAplicado(conn, operacion.uuid);
+                if (idReal != null) {
+                    idsReales.put(operacion.idPrestamo, idReal);
+                }
+            }
+            System.out.println("  Operación de la cola local ya aplicada, se salta: " + operacion.uuid);
+            return null;
+        }
+
+        if (DEVOLUCION.equals(operacion.tipo)) {
+            int id = operacion.idPrestamo;
+            if (id < 0) {
+                Integer idReal = idsReales.get(id);
+                if (idReal == null) {
+                    return "el préstamo local no llegó a sincronizarse";
+                }
+                id = idReal;
+            }
+            return prestamoDAO.registrarDevolucion(conn, id, operacion.fecha).isAceptada() ? null
+                    : "el préstamo ya estaba devuelto o no existe";
+        }
+
+        // Conflicto de stock: se bloquea el libro y se comprueba que quede algún ejemplar
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT stock FROM libros WHERE id = ? FOR UPDATE")) {
+            pstmt.setInt(1, operacion.idLibro);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return "el libro ya no existe";
+                }
+                if (rs.getInt(1) <= 0) {
+                    return "sin stock: el último ejemplar se prestó desde otra mesa";
+                }
+            }
+        }
+
+        Prestamo prestamo = new Prestamo();
+        prestamo.setIdUsuario(operacion.idUsuario);
+        prestamo.setIdLibro(operacion.idLibro);
+        prestamo.setFechaPrestamo(operacion.fecha);
+        prestamo.setFechaDevolucionEsperada(operacion.fechaEsperada);
+        prestamo.setEstado(Prestamo.EstadoPrestamo.PENDIENTE);
+        prestamo.setObservaciones(operacion.observaciones);
+        if (!prestamoDAO.insertar(conn, prestamo)) {
+            return "no se pudo insertar el préstamo";
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE operaciones_aplicadas SET id_prestamo = ? WHERE uuid = ?")) {
+            pstmt.setInt(1, prestamo.getId());
+            pstmt.setString(2, operacion.uuid);
+            pstmt.executeUpdate();
+        }
+        idsReales.put(operacion.idPrestamo, prestamo.getId());
+        return null;
+    }
+
+    /**
+     * Anota el UUID de una operación en la transacción del lote
+     * Si otro envío de la misma operación está en curso, el INSERT espera
+     * a que termine; un conflicto en la operación deshace también la fila.
+     *
+     * @return false si la operación ya se había aplicado
+     */
+    private static boolean registrarAplicacion(Connection conn, String uuid) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO operaciones_aplicadas (uuid) VALUES (?)")) {
+            pstmt.setString(1, uuid);
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return false;
+        }
+    }
+
+    private static Integer idPrestamoAplicado(Connection conn, String uuid) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT id_prestamo FROM operaciones_aplicadas WHERE uuid = ?")) {
+            pstmt.setString(1, uuid);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    int id = rs.getInt(1);
+                    return rs.wasNull() ? null : id;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void anotarConflictos(List<String> conflictos) {
+        if (conflictos.isEmpty()) {
+            return;
+        }
+        StringBuilder contenido = new StringBuilder();
+        for (String conflicto : conflictos) {
+            System.err.println("✗ Conflicto en la cola local: " + conflicto);
+            contenido.append(LocalDateTime.now()).append('\t').append(conflicto).append('\n');
+        }
+        try {
+            Files.writeString(EspejoLocal.getDirectorio().resolve(ARCHIVO_CONFLICTOS), contenido,
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("✗ Error al anotar conflictos de la cola local: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Reserva;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice en memoria de las colas de reserva por libro
+ *
+ * Guarda, para cada libro consultado, su cola de reservas en espera en
+ * orden de llegada. El tamaño de la cola y el siguiente en la lista se
+ * responden en O(1), sin consultar la base de datos, aunque el libro
+ * tenga miles de reservas; los formularios lo consultan cada vez que se
+ * elige un libro.
+ *
+ * Cada cola se carga la primera vez que se pide y se descarta cuando
+ * BusCambios publica un cambio de una reserva de ese libro (alta,
+ * cancelación o asignación, de esta u otra instancia). Mientras haya
+ * escrituras propias que el bus aún no recogió, se lee de la base de datos
+ * sin usar la caché. Las colas no se modifican después de cargarse, así
+ * que pueden leerse desde cualquier hilo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ColaReservas {
+
+    // Instancia única (Singleton)
+    private static ColaReservas instancia;
+
+    private final Map<Integer, ArrayDeque<Reserva>> colas = new ConcurrentHashMap<>();
+    private final ReservaDAO reservaDAO = new ReservaDAO();
+
+    private ColaReservas() {
+        BusCambios.getInstance().suscribir(this::procesarEvento);
+    }
+
+    /**
+     * Obtiene la única instancia de ColaReservas (Singleton)
+     *
+     * @return Instancia única de ColaReservas
+     */
+    public static ColaReservas getInstance() {
+        if (instancia == null) {
+            synchronized (ColaReservas.class) {
+                if (instancia == null) {
+                    instancia = new ColaReservas();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Obtiene cuántas reservas esperan un libro
+     *
+     * @param idLibro ID del libro
+     * @return Número de reservas en espera
+     */
+    public int tamano(int idLibro) {
+        return cola(idLibro).size();
+    }
+
+    /**
+     * Obtiene la siguiente reserva que se atenderá
+     *
+     * @param idLibro ID del libro
+     * @return Primera reserva en espera, o null si no hay
+     */
+    public Reserva siguiente(int idLibro) {
+        return cola(idLibro).peekFirst();
+    }
+
+    /**
+     * Obtiene la posición de un usuario en la cola de un libro
+     *
+     * @param idLibro ID del libro
+     * @param idUsuario ID del usuario
+     * @return Posición (1 = el siguiente), o 0 si no está en la cola
+     */
+    public int posicion(int idLibro, int idUsuario) {
+        int posicion = 1;
+        for (Reserva reserva : cola(idLibro)) {
+            if (reserva.getIdUsuario() == idUsuario) {
+                return posicion;
+            }
+            posicion++;
+        }
+        return 0;
+    }
+
+    /**
+     * Obtiene la cola completa de un libro
+     *
+     * @param idLibro ID del libro
+     * @return Copia de las reservas en espera, en orden de llegada
+     */
+    public List<Reserva> obtenerCola(int idLibro) {
+        return new ArrayList<>(cola(idLibro));
+    }
+
+    /**
+     * Descarta la cola de un libro; se recargará en la próxima consulta
+     *
+     * @param idLibro ID del libro
+     */
+    public void invalidar(int idLibro) {
+        colas.remove(idLibro);
+    }
+
+    private ArrayDeque<Reserva> cola(int idLibro) {
+        // Con escrituras propias aún sin sondear la cola guardada puede ser
+        // anterior a ellas: se lee de la base de datos sin guardarla
+        if (DatabaseConnection.getInstance().hayEscriturasPendientes()) {
+            return new ArrayDeque<>(reservaDAO.obtenerEnEspera(idLibro));
+        }
+        // Una invalidación que llega durante la carga espera a que termine
+        // y la descarta: nunca queda guardada una cola anterior al cambio
+        return colas.computeIfAbsent(idLibro, id -> new ArrayDeque<>(reservaDAO.obtenerEnEspera(id)));
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (evento.getEntidad() == EventoCambio.Entidad.RESERVA) {
+            invalidar(evento.getIdLibro());
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Libro;
+import com.biblioteca.modelo.Usuario;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Espejo local de libros y usuarios para el modo sucursal
+ *
+ * Con -Dbiblioteca.local=true la mesa guarda una copia de libros y
+ * usuarios en memoria y en un archivo del directorio de datos
+ * (-Dbiblioteca.local.dir, por defecto ~/.biblioteca). Al arrancar se lee
+ * el archivo, así que el formulario de préstamo funciona aunque MySQL no
+ * responda, y después se aplican sólo los cambios posteriores a la versión
+ * guardada. Los eventos de BusCambios disparan la misma sincronización
+ * incremental, con una conexión dedicada y en segundo plano.
+ *
+ * LibroDAO.buscarPorId, LibroDAO.obtenerTodos y UsuarioDAO.obtenerActivos
+ * responden desde aquí cuando el espejo ya aplicó todo lo que la mesa
+ * escribió o vio (la marca de lectura de DatabaseConnection), o cuando la
+ * base de datos no está disponible; si no, van a MySQL. Los eventos de
+ * préstamos y reservas no lo atrasan (ver VersionVista).
+ *
+ * De cada usuario sólo se copia lo que necesita el formulario de préstamo
+ * (nombre, tipo, username y si está activo): ni la contraseña ni el
+ * email, el teléfono o la dirección llegan a memoria ni al archivo, que
+ * queda en el disco de la mesa sin cifrar. Un archivo del formato
+ * anterior, que sí los tenía, se reescribe sin ellos al leerlo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class EspejoLocal {
+
+    private static final boolean HABILITADO = Boolean.getBoolean("biblioteca.local");
+    private static final Path DIRECTORIO = Paths.get(System.getProperty("biblioteca.local.dir",
+            System.getProperty("user.home") + "/.biblioteca"));
+    private static final String ARCHIVO = "espejo.dat";
+    private static final int FORMATO = 2;
+    // Con email, teléfono y dirección de los usuarios
+    private static final int FORMATO_CON_CONTACTO = 1;
+    private static final long INTERVALO_GUARDADO_MS = 60_000;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+
+    // Instancia única (Singleton)
+    private static EspejoLocal instancia;
+
+    private final LibroDAO libroDAO = new LibroDAO();
+    private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+    private final AtomicBoolean sincronizacionPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+
+    // Se reemplazan enteros en una recarga completa; los cambios incrementales se aplican sobre ellos
+    private volatile Map<Integer, Libro> libros = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Usuario> usuarios = new ConcurrentHashMap<>();
+    // -1 hasta tener datos: mientras tanto todo va a la base de datos
+    private volatile long version = -1;
+    private final VersionVista versionVista = new VersionVista(EventoCambio.Entidad.LIBRO, EventoCambio.Entidad.USUARIO);
+
+    // Sólo se usan en el hilo del ejecutor
+    private long ultimoGuardado;
+    private boolean cambiosSinGuardar;
+    private ExecutorService ejecutor;
+
+    private EspejoLocal() {
+    }
+
+    /**
+     * Obtiene la única instancia de EspejoLocal (Singleton)
+     *
+     * @return Instancia única de EspejoLocal
+     */
+    public static EspejoLocal getInstance() {
+        if (instancia == null) {
+            synchronized (EspejoLocal.class) {
+                if (instancia == null) {
+                    instancia = new EspejoLocal();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Indica si el modo sucursal está activado
+     *
+     * @return true si se arrancó con -Dbiblioteca.local=true
+     */
+    public static boolean estaHabilitado() {
+        return HABILITADO;
+    }
+
+    /**
+     * Obtiene el directorio de datos locales
+     *
+     * @return Directorio del espejo, de la cola de escrituras y de la instantánea del catálogo
+     */
+    static Path getDirectorio() {
+        return DIRECTORIO;
+    }
+
+    /**
+     * Lee el archivo local y sincroniza en segundo plano
+     * No hace nada si el modo sucursal no está activado. Debe llamarse
+     * después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (!HABILITADO || ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "espejo-local");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(() -> {
+            leerArchivo();
+            sincronizar();
+        });
+    }
+
+    /**
+     * Cancela la suscripción y guarda el espejo en disco
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            try {
+                ejecutor.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ejecutor = null;
+            if (cambiosSinGuardar) {
+                guardarArchivo();
+            }
+        }
+    }
+
+    /**
+     * Indica si las lecturas de libros y usuarios pueden hacerse aquí
+     *
+     * @return true si el espejo está al día con la marca de lectura, o si la base de datos no responde
+     */
+    public boolean puedeResponder() {
+        return HABILITADO && versionVista.estaAlDia(version);
+    }
+
+    /**
+     * Busca un libro en el espejo
+     *
+     * @param id ID del libro
+     * @return Copia del libro, o null si no está
+     */
+    public Libro buscarLibro(int id) {
+        Libro libro = libros.get(id);
+        return libro != null ? copiar(libro) : null;
+    }
+
+    /**
+     * Obtiene todos los libros del espejo
+     *
+     * @return Copias de los libros ordenadas por título
+     */
+    public List<Libro> obtenerLibros() {
+        List<Libro> resultado = new ArrayList<>(libros.size());
+        for (Libro libro : libros.values()) {
+            resultado.add(copiar(libro));
+        }
+        resultado.sort(Comparator.comparing(Libro::getTitulo, String.CASE_INSENSITIVE_ORDER));
+        return resultado;
+    }
+
+    /**
+     * Obtiene los usuarios activos del espejo
+     *
+     * @return Copias de los usuarios activos (sin contraseña ni datos de contacto)
+     *         ordenadas por nombre y apellido
+     */
+    public List<Usuario> obtenerUsuariosActivos() {
+        List<Usuario> resultado = new ArrayList<>();
+        for (Usuario usuario : usuarios.values()) {
+            if (usuario.isActivo()) {
+                resultado.add(copiar(usuario));
+            }
+        }
+        resultado.sort(Comparator.comparing(Usuario::getNombre, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Usuario::getApellido, String.CASE_INSENSITIVE_ORDER));
+        return resultado;
+    }
+
+    /**
+     * Ajusta el stock de un libro en el espejo
+     * Lo usa la cola de escrituras para que un préstamo hecho sin conexión
+     * se refleje en la mesa antes de sincronizarse.
+     *
+     * @param idLibro ID del libro
+     * @param diferencia Ejemplares a sumar (negativo para restar)
+     */
+    void ajustarStock(int idLibro, int diferencia) {
+        libros.computeIfPresent(idLibro, (id, libro) -> {
+            Libro ajustado = copiar(libro);
+            ajustado.setStock(Math.max(0, libro.getStock() + diferencia));
+            return ajustado;
+        });
+    }
+
+    // Los objetos del espejo no salen de aquí: quien los recibe puede modificarlos
+    private static Libro copiar(Libro libro) {
+        return new Libro(libro.getId(), libro.getTitulo(), libro.getAutor(), libro.getCategoria(),
+                libro.getStock(), libro.getAnioPublicacion(), libro.getIsbn(), libro.getEditorial());
+    }
+
+    // Sin contraseña ni datos de contacto: no se guardan en el espejo
+    private static Usuario copiar(Usuario usuario) {
+        return new Usuario(usuario.getId(), usuario.getNombre(), usuario.getApellido(), usuario.getTipo(),
+                null, null, null, usuario.getFechaRegistro(), usuario.getUsername(), null, usuario.isActivo());
+    }
+
+    private void sincronizar() {
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long actual = cambiosDAO.obtenerVersionActual(conn);
+            long desde = version;
+            if (desde >= 0 && actual <= desde) {
+                return;
+            }
+
+            if (desde < 0 || !cambiosDAO.historialCompleto(conn, desde, actual)) {
+                // Recarga completa en mapas nuevos: los lectores siguen viendo los anteriores
+                Map<Integer, Libro> nuevosLibros = new ConcurrentHashMap<>();
+                Map<Integer, Usuario> nuevosUsuarios = new ConcurrentHashMap<>();
+                libroDAO.recorrerDesde(conn, -1, libro -> nuevosLibros.put(libro.getId(), libro));
+                usuarioDAO.recorrerDesde(conn, -1, usuario -> nuevosUsuarios.put(usuario.getId(), copiar(usuario)));
+                libros = nuevosLibros;
+                usuarios = nuevosUsuarios;
+            } else {
+                Map<Integer, Libro> mapaLibros = libros;
+                Map<Integer, Usuario> mapaUsuarios = usuarios;
+                libroDAO.recorrerDesde(conn, desde, libro -> mapaLibros.put(libro.getId(), libro));
+                usuarioDAO.recorrerDesde(conn, desde, usuario -> mapaUsuarios.put(usuario.getId(), copiar(usuario)));
+                cambiosDAO.obtenerEliminados(conn, "LIBRO", desde, actual).forEach(mapaLibros::remove);
+                cambiosDAO.obtenerEliminados(conn, "USUARIO", desde, actual).forEach(mapaUsuarios::remove);
+            }
+            version = actual;
+            cambiosSinGuardar = true;
+
+            if (System.currentTimeMillis() - ultimoGuardado >= INTERVALO_GUARDADO_MS) {
+                guardarArchivo();
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar el espejo local: " + e.getMessage());
+        }
+    }
+
+    private void leerArchivo() {
+        Path archivo = DIRECTORIO.resolve(ARCHIVO);
+        if (!Files.exists(archivo)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            int formato = in.readInt();
+            if (formato != FORMATO && formato != FORMATO_CON_CONTACTO) {
+                return;
+            }
+            boolean conContacto = formato == FORMATO_CON_CONTACTO;
+            long versionArchivo = in.readLong();
+
+            Map<Integer, Libro> leidosLibros = new ConcurrentHashMap<>();
+            int cantidad = in.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                int id = in.readInt();
+                String titulo = leerCadena(in);
+                String autor = LibroDAO.AUTORES.canonica(leerCadena(in));
+                String categoria = LibroDAO.CATEGORIAS.canonica(leerCadena(in));
+                int stock = in.readInt();
+                int anio = in.readInt();
+                String isbn = leerCadena(in);
+                String editorial = LibroDAO.EDITORIALES.canonica(leerCadena(in));
+                Libro libro = new Libro(id, titulo, autor, categoria, stock, anio, isbn, editorial);
+                leidosLibros.put(libro.getId(), libro);
+            }
+
+            Map<Integer, Usuario> leidosUsuarios = new ConcurrentHashMap<>();
+            cantidad = in.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                int id = in.readInt();
+                String nombre = leerCadena(in);
+                String apellido = leerCadena(in);
+                Usuario.TipoUsuario tipo = Usuario.TipoUsuario.valueOf(in.readUTF());
+                if (conContacto) {
+                    // Email, teléfono y dirección: se descartan
+                    leerCadena(in);
+                    leerCadena(in);
+                    leerCadena(in);
+                }
+                long dia = in.readLong();
+                String username = leerCadena(in);
+                boolean activo = in.readBoolean();
+                leidosUsuarios.put(id, new Usuario(id, nombre, apellido, tipo, null, null, null,
+                        dia == SIN_FECHA ? null : LocalDate.ofEpochDay(dia), username, null, activo));
+            }
+
+            libros = leidosLibros;
+            usuarios = leidosUsuarios;
+            version = versionArchivo;
+            System.out.println("✓ Espejo local leído: " + leidosLibros.size() + " libros, "
+                    + leidosUsuarios.size() + " usuarios (versión " + versionArchivo + ")");
+            if (conContacto) {
+                guardarArchivo();
+            }
+
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("✗ Espejo local ilegible, se recargará: " + e.getMessage());
+        }
+    }
+
+    // Se escribe en un temporal y se renombra: un corte deja el archivo anterior intacto
+    private void guardarArchivo() {
+        long versionGuardada = version;
+        if (versionGuardada < 0) {
+            return;
+        }
+        try {
+            Files.createDirectories(DIRECTORIO);
+            Path temporal = DIRECTORIO.resolve(ARCHIVO + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+                out.writeInt(FORMATO);
+                out.writeLong(versionGuardada);
+
+                List<Libro> copiaLibros = new ArrayList<>(libros.values());
+                out.writeInt(copiaLibros.size());
+                for (Libro libro : copiaLibros) {
+                    out.writeInt(libro.getId());
+                    escribirCadena(out, libro.getTitulo());
+                    escribirCadena(out, libro.getAutor());
+                    escribirCadena(out, libro.getCategoria());
+                    out.writeInt(libro.getStock());
+                    out.writeInt(libro.getAnioPublicacion());
+                    escribirCadena(out, libro.getIsbn());
+                    escribirCadena(out, libro.getEditorial());
+                }
+
+                List<Usuario> copiaUsuarios = new ArrayList<>(usuarios.values());
+                out.writeInt(copiaUsuarios.size());
+                for (Usuario usuario : copiaUsuarios) {
+                    out.writeInt(usuario.getId());
+                    escribirCadena(out, usuario.getNombre());
+                    escribirCadena(out, usuario.getApellido());
+                    out.writeUTF(usuario.getTipo().name());
+                    out.writeLong(usuario.getFechaRegistro() != null ? usuario.getFechaRegistro().toEpochDay() : SIN_FECHA);
+                    escribirCadena(out, usuario.getUsername());
+                    out.writeBoolean(usuario.isActivo());
+                }
+            }
+            Files.move(temporal, DIRECTORIO.resolve(ARCHIVO),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ultimoGuardado = System.currentTimeMillis();
+            cambiosSinGuardar = false;
+
+        } catch (IOException e) {
+            System.err.println("✗ Error al guardar el espejo local: " + e.getMessage());
+        }
+    }
+
+    private static void escribirCadena(DataOutputStream out, String valor) throws IOException {
+        out.writeBoolean(valor != null);
+        if (valor != null) {
+            out.writeUTF(valor);
+        }
+    }
+
+    private static String leerCadena(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (!versionVista.registrar(evento)) {
+            return;
+        }
+        ExecutorService destino = ejecutor;
+        if (destino != null && sincronizacionPendiente.compareAndSet(false, true)) {
+            destino.execute(() -> {
+                sincronizacionPendiente.set(false);
+                sincronizar();
+            });
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.EstadisticasLibro;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché en memoria de la circulación de cada libro
+ *
+ * Guarda, para cada libro consultado, los vencimientos de sus ejemplares
+ * prestados y su total de préstamos (EstadisticasLibro). El detalle de un
+ * libro, "¿cuándo vuelve?" y la comprobación antes de eliminarlo se
+ * responden desde memoria; sólo la primera consulta de cada libro lee la
+ * base de datos, y sólo índices.
+ *
+ * La entrada de un libro se descarta cuando BusCambios publica un alta,
+ * modificación o baja de uno de sus préstamos (de esta u otra instancia),
+ * o la baja del libro. Archivar un préstamo devuelto no cambia nada:
+ * sigue contando en el total. Mientras haya escrituras propias que el bus
+ * aún no recogió, se lee de la base de datos sin usar la caché. Unas
+ * estadísticas que no se pudieron leer no se guardan: la siguiente
+ * consulta vuelve a intentarlo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class EstadisticasLibros {
+
+    // Instancia única (Singleton)
+    private static EstadisticasLibros instancia;
+
+    private final Map<Integer, EstadisticasLibro> estadisticas = new ConcurrentHashMap<>();
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+
+    private EstadisticasLibros() {
+        BusCambios.getInstance().suscribir(this::procesarEvento);
+    }
+
+    /**
+     * Obtiene la única instancia de EstadisticasLibros (Singleton)
+     *
+     * @return Instancia única de EstadisticasLibros
+     */
+    public static EstadisticasLibros getInstance() {
+        if (instancia == null) {
+            synchronized (EstadisticasLibros.class) {
+                if (instancia == null) {
+                    instancia = new EstadisticasLibros();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Obtiene la circulación de un libro
+     *
+     * @param idLibro ID del libro
+     * @return Estadísticas del libro, o null si no se pudieron leer
+     */
+    public EstadisticasLibro obtener(int idLibro) {
+        // Con escrituras propias aún sin sondear la entrada guardada puede
+        // ser anterior a ellas: se lee de la base de datos sin guardarla
+        if (DatabaseConnection.getInstance().hayEscriturasPendientes()) {
+            return prestamoDAO.obtenerEstadisticasLibro(idLibro);
+        }
+        // Una invalidación que llega durante la carga espera a que termine
+        // y la descarta: nunca quedan guardadas estadísticas anteriores al cambio.
+        // computeIfAbsent no guarda un null, así que los errores no se cachean
+        return estadisticas.computeIfAbsent(idLibro, prestamoDAO::obtenerEstadisticasLibro);
+    }
+
+    /**
+     * Descarta las estadísticas de un libro; se recargarán en la próxima consulta
+     *
+     * @param idLibro ID del libro
+     */
+    public void invalidar(int idLibro) {
+        estadisticas.remove(idLibro);
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        switch (evento.getEntidad()) {
+            case PRESTAMO:
+                if (evento.getOperacion() != EventoCambio.Operacion.ARCHIVO) {
+                    invalidar(evento.getIdLibro());
+                }
+                break;
+            case LIBRO:
+                if (evento.getOperacion() == EventoCambio.Operacion.BAJA) {
+                    invalidar(evento.getIdEntidad());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
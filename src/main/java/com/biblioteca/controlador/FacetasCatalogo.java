@@ -0,0 +1,437 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Libro;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.MapaBits;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Navegación por facetas del catálogo: categoría, editorial, década y disponibilidad
+ *
+ * Para cada valor de cada faceta ("Novela", "Planeta", "1990-1999",
+ * "Disponibles") guarda en un MapaBits los IDs de los libros que lo
+ * tienen. Combinar filtros es intersecar esos conjuntos, y el número que
+ * acompaña a cada valor es el tamaño de su intersección con los filtros
+ * elegidos en las demás facetas, así que la vista puede mostrar y
+ * recalcular los contadores a cada cambio sin consultar la base de datos.
+ * Las facetas sólo guardan IDs: las filas las pone la instantánea del
+ * catálogo o una consulta (ver LibroDAO.buscarPorFacetas).
+ *
+ * Los valores se agrupan sin acentos ni mayúsculas, como la intercalación
+ * de las columnas ("Planeta" y "planeta" son la misma editorial); se
+ * muestra la forma del primer libro indexado con ese valor.
+ *
+ * Se carga al arrancar en segundo plano, con una conexión dedicada, y se
+ * mantiene con los cambios de libros que llegan por BusCambios. Sólo se
+ * usa cuando está al día con la marca de lectura (o si la base de datos
+ * no responde); si no, la vista filtra con consultas como antes. Los
+ * eventos de préstamos y usuarios no lo atrasan (ver VersionVista).
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class FacetasCatalogo {
+
+    /**
+     * Facetas por las que se puede filtrar el catálogo
+     */
+    public enum Faceta {
+        CATEGORIA, EDITORIAL, DECADA, DISPONIBILIDAD
+    }
+
+    public static final String SIN_DATO = "Sin dato";
+    public static final String SIN_ANIO = "Sin año";
+    public static final String DISPONIBLES = "Disponibles";
+    public static final String AGOTADOS = "Agotados";
+
+    private static final Comparator<String> ORDEN_VALORES = String.CASE_INSENSITIVE_ORDER
+            .thenComparing(Comparator.naturalOrder());
+
+    private static final class Indice {
+        final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+        // Claves de cada libro al indexarlo, para quitarlo al cambiar o borrarse
+        final Map<Integer, String[]> valoresPorLibro = new HashMap<>();
+        // Por faceta: clave plegada -> IDs, y clave plegada -> forma que se muestra
+        final Map<Faceta, Map<String, MapaBits>> mapas = new EnumMap<>(Faceta.class);
+        final Map<Faceta, Map<String, String>> formas = new EnumMap<>(Faceta.class);
+
+        Indice() {
+            for (Faceta faceta : Faceta.values()) {
+                mapas.put(faceta, new HashMap<>());
+                formas.put(faceta, new HashMap<>());
+            }
+        }
+
+        void agregar(Libro libro) {
+            cerrojo.writeLock().lock();
+            try {
+                quitarValores(libro.getId());
+                String[] valores = new String[Faceta.values().length];
+                for (Faceta faceta : Faceta.values()) {
+                    String forma = valor(faceta, libro);
+                    String clave = clave(forma);
+                    valores[faceta.ordinal()] = clave;
+                    mapas.get(faceta).computeIfAbsent(clave, v -> new MapaBits()).agregar(libro.getId());
+                    formas.get(faceta).putIfAbsent(clave, forma);
+                }
+                valoresPorLibro.put(libro.getId(), valores);
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        void quitar(int id) {
+            cerrojo.writeLock().lock();
+            try {
+                quitarValores(id);
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        private void quitarValores(int id) {
+            String[] anteriores = valoresPorLibro.remove(id);
+            if (anteriores == null) {
+                return;
+            }
+            for (Faceta faceta : Faceta.values()) {
+                Map<String, MapaBits> porValor = mapas.get(faceta);
+                MapaBits ids = porValor.get(anteriores[faceta.ordinal()]);
+                if (ids != null) {
+                    ids.quitar(id);
+                    if (ids.estaVacio()) {
+                        porValor.remove(anteriores[faceta.ordinal()]);
+                        formas.get(faceta).remove(anteriores[faceta.ordinal()]);
+                    }
+                }
+            }
+        }
+
+        // IDs que cumplen la selección salvo la faceta excluida (null = sin restricción)
+        // Llamar con el cerrojo de lectura tomado
+        MapaBits filtrar(Map<Faceta, String> seleccion, Faceta excluida) {
+            List<MapaBits> conjuntos = new ArrayList<>();
+            for (Map.Entry<Faceta, String> filtro : seleccion.entrySet()) {
+                if (filtro.getKey() == excluida || filtro.getValue() == null) {
+                    continue;
+                }
+                MapaBits ids = mapas.get(filtro.getKey()).get(clave(filtro.getValue()));
+                if (ids == null) {
+                    return new MapaBits();
+                }
+                conjuntos.add(ids);
+            }
+            if (conjuntos.isEmpty()) {
+                return null;
+            }
+            // Del más pequeño al más grande: cada intersección sale más barata
+            conjuntos.sort(Comparator.comparingInt(MapaBits::cardinalidad));
+            MapaBits resultado = conjuntos.get(0);
+            for (int i = 1; i < conjuntos.size() && !resultado.estaVacio(); i++) {
+                resultado = resultado.y(conjuntos.get(i));
+            }
+            return resultado;
+        }
+    }
+
+    // Instancia única (Singleton)
+    private static FacetasCatalogo instancia;
+
+    private final LibroDAO libroDAO = new LibroDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+    private final AtomicBoolean sincronizacionPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+    private final List<Runnable> oyentes = new CopyOnWriteArrayList<>();
+
+    // null hasta la carga: la vista filtra en la base de datos
+    private volatile Indice indice;
+    private volatile long version = -1;
+    private final VersionVista versionVista = new VersionVista(EventoCambio.Entidad.LIBRO);
+
+    private ExecutorService ejecutor;
+
+    private FacetasCatalogo() {
+    }
+
+    /**
+     * Obtiene la única instancia de FacetasCatalogo (Singleton)
+     *
+     * @return Instancia única de FacetasCatalogo
+     */
+    public static FacetasCatalogo getInstance() {
+        if (instancia == null) {
+            synchronized (FacetasCatalogo.class) {
+                if (instancia == null) {
+                    instancia = new FacetasCatalogo();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Se suscribe a los cambios y carga las facetas en segundo plano
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "facetas-catalogo");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::sincronizar);
+    }
+
+    /**
+     * Cancela la suscripción y el trabajo pendiente
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Suscribe un oyente que se avisa (en un hilo de fondo) cada vez que
+     * las facetas se cargan o se ponen al día
+     *
+     * @param oyente Oyente a registrar
+     */
+    public void suscribir(Runnable oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Elimina un oyente previamente suscrito
+     *
+     * @param oyente Oyente a eliminar
+     */
+    public void desuscribir(Runnable oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Indica si los filtros y contadores pueden responderse desde las facetas
+     *
+     * @return true si están al día con la marca de lectura, o si la base de datos no responde
+     */
+    public boolean estaAlDia() {
+        return indice != null && versionVista.estaAlDia(version);
+    }
+
+    /**
+     * Obtiene la versión de los datos de las facetas
+     * Sirve como punto de partida para pedir los cambios posteriores.
+     *
+     * @return Versión de la última sincronización (-1 si no se han cargado)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Obtiene el valor de un libro en una faceta
+     *
+     * @param faceta Faceta
+     * @param libro Libro
+     * @return Valor con el que se agrupa (SIN_DATO o SIN_ANIO si no lo tiene)
+     */
+    public static String valor(Faceta faceta, Libro libro) {
+        switch (faceta) {
+            case CATEGORIA:
+                return conDato(libro.getCategoria());
+            case EDITORIAL:
+                return conDato(libro.getEditorial());
+            case DECADA:
+                if (libro.getAnioPublicacion() <= 0) {
+                    return SIN_ANIO;
+                }
+                int inicio = libro.getAnioPublicacion() / 10 * 10;
+                return inicio + "-" + (inicio + 9);
+            default:
+                return libro.getStock() > 0 ? DISPONIBLES : AGOTADOS;
+        }
+    }
+
+    /**
+     * Obtiene la clave con la que se agrupa un valor
+     *
+     * @param valor Valor de una faceta
+     * @return Valor sin acentos ni mayúsculas, como lo compara la intercalación
+     */
+    public static String clave(String valor) {
+        return IndiceUnicidad.normalizar(valor);
+    }
+
+    /**
+     * Indica si un libro cumple una selección de facetas
+     *
+     * @param libro Libro a comprobar
+     * @param seleccion Valor elegido por faceta (las facetas ausentes no filtran)
+     * @return true si tiene todos los valores elegidos (sin distinguir acentos ni mayúsculas)
+     */
+    public static boolean cumple(Libro libro, Map<Faceta, String> seleccion) {
+        for (Map.Entry<Faceta, String> filtro : seleccion.entrySet()) {
+            if (filtro.getValue() != null
+                    && !clave(filtro.getValue()).equals(clave(valor(filtro.getKey(), libro)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cuenta los libros de cada valor de una faceta dentro de la selección
+     * La selección de la propia faceta no se aplica, para que la vista
+     * muestre cuántos libros habría al cambiar a cada uno de sus valores.
+     *
+     * @param faceta Faceta a contar
+     * @param seleccion Valor elegido por faceta
+     * @param dentroDe IDs a los que se limita el conteo (por ejemplo, los
+     *                 resultados de una búsqueda por texto); null para todo el catálogo
+     * @return Valores ordenados alfabéticamente con su número de libros;
+     *         vacío si las facetas aún no se han cargado
+     */
+    public Map<String, Integer> contar(Faceta faceta, Map<Faceta, String> seleccion, MapaBits dentroDe) {
+        Indice actual = indice;
+        Map<String, Integer> conteos = new TreeMap<>(ORDEN_VALORES);
+        if (actual == null) {
+            return conteos;
+        }
+        actual.cerrojo.readLock().lock();
+        try {
+            MapaBits base = actual.filtrar(seleccion, faceta);
+            if (dentroDe != null) {
+                base = base == null ? dentroDe : base.y(dentroDe);
+            }
+            Map<String, String> formas = actual.formas.get(faceta);
+            for (Map.Entry<String, MapaBits> valor : actual.mapas.get(faceta).entrySet()) {
+                int cantidad = base == null ? valor.getValue().cardinalidad()
+                        : base.contarInterseccion(valor.getValue());
+                conteos.put(formas.get(valor.getKey()), cantidad);
+            }
+        } finally {
+            actual.cerrojo.readLock().unlock();
+        }
+        return new LinkedHashMap<>(conteos);
+    }
+
+    /**
+     * Obtiene los IDs de los libros que cumplen una selección de facetas
+     *
+     * @param seleccion Valor elegido por faceta
+     * @return Copia de los IDs; null si la selección no restringe nada o si
+     *         las facetas aún no se han cargado
+     */
+    public MapaBits filtrar(Map<Faceta, String> seleccion) {
+        Indice actual = indice;
+        if (actual == null) {
+            return null;
+        }
+        actual.cerrojo.readLock().lock();
+        try {
+            MapaBits ids = actual.filtrar(seleccion, null);
+            if (ids == null) {
+                return null;
+            }
+            // Con una sola faceta elegida es el conjunto del índice, que cambia con cada sincronización
+            MapaBits copia = new MapaBits();
+            ids.recorrer(copia::agregar);
+            return copia;
+        } finally {
+            actual.cerrojo.readLock().unlock();
+        }
+    }
+
+    private static String conDato(String valor) {
+        return valor == null || valor.isBlank() ? SIN_DATO : valor;
+    }
+
+    // Las altas y modificaciones se leen antes de las bajas: un libro
+    // borrado durante el recorrido lo quita la lista de eliminados
+    private void sincronizar() {
+        long inicio = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long actual = cambiosDAO.obtenerVersionActual(conn);
+            long desde = version;
+            if (desde >= 0 && actual <= desde) {
+                return;
+            }
+
+            if (desde < 0 || indice == null || !cambiosDAO.historialCompleto(conn, desde, actual)) {
+                // Recarga completa en un índice nuevo: los filtros siguen usando el anterior
+                Indice nuevo = new Indice();
+                libroDAO.recorrerDesde(conn, -1, nuevo::agregar);
+                indice = nuevo;
+                long bytes = 0;
+                int valores = 0;
+                for (Map<String, MapaBits> porValor : nuevo.mapas.values()) {
+                    valores += porValor.size();
+                    for (MapaBits ids : porValor.values()) {
+                        bytes += ids.getBytes();
+                    }
+                }
+                System.out.println("✓ Facetas del catálogo cargadas: " + nuevo.valoresPorLibro.size() + " libros, "
+                        + valores + " valores (" + bytes / 1024 + " KB) en "
+                        + (System.currentTimeMillis() - inicio) + " ms");
+            } else {
+                Indice existente = indice;
+                libroDAO.recorrerDesde(conn, desde, existente::agregar);
+                cambiosDAO.obtenerEliminados(conn, "LIBRO", desde, actual).forEach(existente::quitar);
+            }
+            version = actual;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar las facetas del catálogo: " + e.getMessage());
+            return;
+        }
+
+        for (Runnable oyente : oyentes) {
+            try {
+                oyente.run();
+            } catch (RuntimeException e) {
+                System.err.println("✗ Error en oyente de las facetas: " + e.getMessage());
+            }
+        }
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (!versionVista.registrar(evento)) {
+            return;
+        }
+        ExecutorService destino = ejecutor;
+        if (destino != null && sincronizacionPendiente.compareAndSet(false, true)) {
+            destino.execute(() -> {
+                sincronizacionPendiente.set(false);
+                sincronizar();
+            });
+        }
+    }
+}
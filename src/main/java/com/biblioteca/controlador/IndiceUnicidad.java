@@ -0,0 +1,342 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.FiltroBloom;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Filtros de Bloom de los ISBN, usernames y emails existentes
+ *
+ * Los formularios comprueban que el ISBN, el username y el email no estén
+ * repetidos antes de guardar, y una importación masiva lo haría por cada
+ * fila. LibroDAO.existeISBN, UsuarioDAO.existeUsername y existeEmail
+ * consultan primero estos filtros: si el valor seguro que no existe
+ * (el caso normal al dar de alta) responden sin ir a la base de datos, y
+ * sólo los posibles repetidos (~1 % de falsos positivos) pasan a la
+ * consulta exacta.
+ *
+ * Los filtros se cargan al arrancar en segundo plano, con una conexión
+ * dedicada; hasta entonces todas las comprobaciones van a la base de
+ * datos. Las escrituras locales se registran en el acto y las de otras
+ * instancias llegan por BusCambios, leyendo las filas con versión
+ * posterior a la última sincronización. Desde que llega un evento hasta
+ * que su sincronización termina bien, las comprobaciones de esa entidad
+ * van a la base de datos. Un filtro que supera su capacidad se
+ * reconstruye al doble de tamaño.
+ *
+ * Lo que otra mesa guardó después del último sondeo del bus aún no está
+ * en el filtro: es la misma carrera que entre cualquier comprobación y
+ * el INSERT, y la cierran las claves UNIQUE de isbn, username y email.
+ *
+ * Los valores se comparan plegados como la intercalación
+ * utf8mb4_unicode_ci de las columnas (ver normalizar), de modo que dos
+ * valores que MySQL considera iguales dan la misma clave.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class IndiceUnicidad {
+
+    private static final double TASA_FALSOS_POSITIVOS = 0.01;
+    private static final int CAPACIDAD_MINIMA = 1024;
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    // Instancia única (Singleton)
+    private static IndiceUnicidad instancia;
+
+    private final LibroDAO libroDAO = new LibroDAO();
+    private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+    private final AtomicBoolean sincronizacionLibrosPendiente = new AtomicBoolean();
+    private final AtomicBoolean sincronizacionUsuariosPendiente = new AtomicBoolean();
+    // Eventos recibidos que aún no recoge una sincronización terminada
+    private final AtomicInteger eventosLibros = new AtomicInteger();
+    private final AtomicInteger eventosUsuarios = new AtomicInteger();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+
+    // null hasta la carga: todas las comprobaciones van a la base de datos
+    private volatile FiltroBloom isbns;
+    private volatile FiltroBloom usernames;
+    private volatile FiltroBloom emails;
+
+    // Sólo se usan en el hilo del ejecutor
+    private long versionLibros = -1;
+    private long versionUsuarios = -1;
+    private ExecutorService ejecutor;
+
+    private IndiceUnicidad() {
+    }
+
+    /**
+     * Obtiene la única instancia de IndiceUnicidad (Singleton)
+     *
+     * @return Instancia única de IndiceUnicidad
+     */
+    public static IndiceUnicidad getInstance() {
+        if (instancia == null) {
+            synchronized (IndiceUnicidad.class) {
+                if (instancia == null) {
+                    instancia = new IndiceUnicidad();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Se suscribe a los cambios y carga los filtros en segundo plano
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "indice-unicidad");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::cargar);
+    }
+
+    /**
+     * Cancela la suscripción y el trabajo pendiente
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Indica si un ISBN puede estar registrado
+     *
+     * @param isbn ISBN a comprobar
+     * @return false si seguro que no existe; true si hay que consultar la base de datos
+     */
+    public boolean podriaExistirIsbn(String isbn) {
+        return eventosLibros.get() > 0 || podriaContener(isbns, isbn);
+    }
+
+    /**
+     * Indica si un username puede estar registrado
+     *
+     * @param username Username a comprobar
+     * @return false si seguro que no existe; true si hay que consultar la base de datos
+     */
+    public boolean podriaExistirUsername(String username) {
+        return eventosUsuarios.get() > 0 || podriaContener(usernames, username);
+    }
+
+    /**
+     * Indica si un email puede estar registrado
+     *
+     * @param email Email a comprobar
+     * @return false si seguro que no existe; true si hay que consultar la base de datos
+     */
+    public boolean podriaExistirEmail(String email) {
+        return eventosUsuarios.get() > 0 || podriaContener(emails, email);
+    }
+
+    /**
+     * Registra el ISBN de un libro guardado en esta instancia
+     *
+     * @param isbn ISBN guardado (null se ignora)
+     */
+    public void registrarIsbn(String isbn) {
+        agregar(isbns, isbn);
+    }
+
+    /**
+     * Registra el username y el email de un usuario guardado en esta instancia
+     *
+     * @param username Username guardado
+     * @param email Email guardado
+     */
+    public void registrarUsuario(String username, String email) {
+        agregar(usernames, username);
+        agregar(emails, email);
+    }
+
+    /**
+     * Normaliza un valor para compararlo como la intercalación de MySQL
+     * utf8mb4_unicode_ci: descomposición de compatibilidad (ligaduras,
+     * anchos completos, superíndices), sin marcas diacríticas, en
+     * minúsculas, con las letras que la intercalación expande a dos
+     * (ß = ss, æ = ae, œ = oe, þ = th) ya expandidas y sin espacios finales.
+     *
+     * @param valor Valor original
+     * @return Valor plegado
+     */
+    static String normalizar(String valor) {
+        String sinAcentos = MARCAS.matcher(Normalizer.normalize(valor, Normalizer.Form.NFKD)).replaceAll("");
+        String minusculas = sinAcentos.toLowerCase(Locale.ROOT);
+        StringBuilder plegado = null;
+        for (int i = 0; i < minusculas.length(); i++) {
+            char c = minusculas.charAt(i);
+            String expansion = expandir(c);
+            if (expansion != null && plegado == null) {
+                plegado = new StringBuilder(minusculas.length() + 4).append(minusculas, 0, i);
+            }
+            if (plegado != null) {
+                if (expansion != null) {
+                    plegado.append(expansion);
+                } else {
+                    plegado.append(c);
+                }
+            }
+        }
+        return (plegado != null ? plegado.toString() : minusculas).stripTrailing();
+    }
+
+    // Letras sin descomposición Unicode que la intercalación iguala a otras
+    private static String expandir(char c) {
+        switch (c) {
+            case 'ß': return "ss";
+            case 'æ': return "ae";
+            case 'œ': return "oe";
+            case 'þ': return "th";
+            case 'ø': return "o";
+            case 'đ':
+            case 'ð': return "d";
+            case 'ħ': return "h";
+            case 'ł': return "l";
+            case 'ı': return "i";
+            default: return null;
+        }
+    }
+
+    private static boolean podriaContener(FiltroBloom filtro, String valor) {
+        return filtro == null || valor == null || filtro.puedeContener(normalizar(valor));
+    }
+
+    private static void agregar(FiltroBloom filtro, String valor) {
+        if (filtro != null && valor != null) {
+            filtro.agregar(normalizar(valor));
+        }
+    }
+
+    private static FiltroBloom crearFiltro(int elementos) {
+        return new FiltroBloom(Math.max(CAPACIDAD_MINIMA, elementos * 2), TASA_FALSOS_POSITIVOS);
+    }
+
+    private void cargar() {
+        long inicio = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            cargarLibros(conn);
+            cargarUsuarios(conn);
+            System.out.println("✓ Índice de unicidad cargado en " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cargar el índice de unicidad: " + e.getMessage());
+        }
+    }
+
+    // La versión se lee antes de recorrer: lo escrito durante el recorrido
+    // lo recoge la sincronización que dispara su evento
+    private void cargarLibros(Connection conn) throws SQLException {
+        long version = cambiosDAO.obtenerVersionActual(conn);
+        FiltroBloom filtro = crearFiltro(libroDAO.contarLibros(conn));
+        libroDAO.recorrerIsbn(conn, -1, isbn -> filtro.agregar(normalizar(isbn)));
+        isbns = filtro;
+        versionLibros = version;
+    }
+
+    private void cargarUsuarios(Connection conn) throws SQLException {
+        long version = cambiosDAO.obtenerVersionActual(conn);
+        int cantidad = usuarioDAO.contarUsuarios(conn);
+        FiltroBloom filtroUsernames = crearFiltro(cantidad);
+        FiltroBloom filtroEmails = crearFiltro(cantidad);
+        usuarioDAO.recorrerCredenciales(conn, -1, (username, email) -> {
+            filtroUsernames.agregar(normalizar(username));
+            filtroEmails.agregar(normalizar(email));
+        });
+        usernames = filtroUsernames;
+        emails = filtroEmails;
+        versionUsuarios = version;
+    }
+
+    private boolean sincronizarLibros() {
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            FiltroBloom filtro = isbns;
+            if (filtro == null || filtro.estaSaturado()) {
+                cargarLibros(conn);
+                return true;
+            }
+            long version = cambiosDAO.obtenerVersionActual(conn);
+            libroDAO.recorrerIsbn(conn, versionLibros, isbn -> filtro.agregar(normalizar(isbn)));
+            versionLibros = version;
+            return true;
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar los ISBN: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean sincronizarUsuarios() {
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            FiltroBloom filtroUsernames = usernames;
+            FiltroBloom filtroEmails = emails;
+            if (filtroUsernames == null || filtroUsernames.estaSaturado() || filtroEmails.estaSaturado()) {
+                cargarUsuarios(conn);
+                return true;
+            }
+            long version = cambiosDAO.obtenerVersionActual(conn);
+            usuarioDAO.recorrerCredenciales(conn, versionUsuarios, (username, email) -> {
+                filtroUsernames.agregar(normalizar(username));
+                filtroEmails.agregar(normalizar(email));
+            });
+            versionUsuarios = version;
+            return true;
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar usernames y emails: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        // Una baja no quita nada de un filtro de Bloom
+        if (evento.getOperacion() == EventoCambio.Operacion.BAJA) {
+            return;
+        }
+        if (evento.getEntidad() == EventoCambio.Entidad.LIBRO) {
+            programar(sincronizacionLibrosPendiente, eventosLibros, this::sincronizarLibros);
+        } else if (evento.getEntidad() == EventoCambio.Entidad.USUARIO) {
+            programar(sincronizacionUsuariosPendiente, eventosUsuarios, this::sincronizarUsuarios);
+        }
+    }
+
+    // El hilo es único: si la carga está en curso, la sincronización espera a que termine.
+    // Sólo una sincronización terminada descuenta los eventos que vio al empezar; si falla,
+    // las comprobaciones siguen yendo a la base de datos hasta el próximo evento
+    private void programar(AtomicBoolean pendiente, AtomicInteger eventos, BooleanSupplier sincronizacion) {
+        eventos.incrementAndGet();
+        ExecutorService destino = ejecutor;
+        if (destino != null && pendiente.compareAndSet(false, true)) {
+            destino.execute(() -> {
+                pendiente.set(false);
+                int vistos = eventos.get();
+                if (sincronizacion.getAsBoolean()) {
+                    eventos.addAndGet(-vistos);
+                }
+            });
+        }
+    }
+}
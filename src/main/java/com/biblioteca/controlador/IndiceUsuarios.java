@@ -0,0 +1,323 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Usuario;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Índice en memoria para buscar usuarios por nombre, apellido, email o username
+ *
+ * La búsqueda de la vista de usuarios traía todos los usuarios y los
+ * filtraba con toLowerCase().contains(...), que no encuentra "María" al
+ * escribir "Maria". Este índice guarda las palabras de esos cuatro campos
+ * ya plegadas (sin acentos y en minúsculas, como IndiceUnicidad) en un
+ * mapa ordenado: todas las palabras que empiezan por un prefijo forman un
+ * rango contiguo, así que cada búsqueda lee sólo ese rango en vez de
+ * recorrer todos los usuarios.
+ *
+ * Cada palabra de la consulta debe ser el comienzo de alguna palabra del
+ * usuario ("mar lop" encuentra a "María López"). Las filas guardadas son
+ * las de las listas, sin dirección ni contraseña.
+ *
+ * Se carga al arrancar en segundo plano, con una conexión dedicada, y se
+ * mantiene con los cambios de usuarios que llegan por BusCambios. Sólo se
+ * usa cuando está al día con la marca de lectura (o si la base de datos
+ * no responde); si no, la vista busca en la base de datos. Los eventos de
+ * otras entidades no lo atrasan (ver VersionVista).
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class IndiceUsuarios {
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Comparator<Usuario> ORDEN = Comparator
+            .comparing(Usuario::getNombre, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Usuario::getApellido, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(Usuario::getId);
+
+    private static final class Indice {
+        final Map<Integer, Usuario> usuarios = new ConcurrentHashMap<>();
+        // Palabra plegada -> IDs de los usuarios que la contienen
+        final ConcurrentSkipListMap<String, Set<Integer>> palabras = new ConcurrentSkipListMap<>();
+
+        // Sólo lo llama el hilo del ejecutor
+        void agregar(Usuario usuario) {
+            Usuario anterior = usuarios.put(usuario.getId(), usuario);
+            if (anterior != null) {
+                quitarPalabras(anterior);
+            }
+            for (String palabra : palabras(usuario)) {
+                palabras.computeIfAbsent(palabra, p -> ConcurrentHashMap.newKeySet()).add(usuario.getId());
+            }
+        }
+
+        void quitar(int id) {
+            Usuario anterior = usuarios.remove(id);
+            if (anterior != null) {
+                quitarPalabras(anterior);
+            }
+        }
+
+        private void quitarPalabras(Usuario usuario) {
+            for (String palabra : palabras(usuario)) {
+                Set<Integer> ids = palabras.get(palabra);
+                if (ids != null) {
+                    ids.remove(usuario.getId());
+                    if (ids.isEmpty()) {
+                        palabras.remove(palabra, ids);
+                    }
+                }
+            }
+        }
+    }
+
+    // Instancia única (Singleton)
+    private static IndiceUsuarios instancia;
+
+    private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+    private final AtomicBoolean sincronizacionPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+
+    // null hasta la carga: las búsquedas van a la base de datos
+    private volatile Indice indice;
+    private volatile long version = -1;
+    private final VersionVista versionVista = new VersionVista(EventoCambio.Entidad.USUARIO);
+
+    private ExecutorService ejecutor;
+
+    private IndiceUsuarios() {
+    }
+
+    /**
+     * Obtiene la única instancia de IndiceUsuarios (Singleton)
+     *
+     * @return Instancia única de IndiceUsuarios
+     */
+    public static IndiceUsuarios getInstance() {
+        if (instancia == null) {
+            synchronized (IndiceUsuarios.class) {
+                if (instancia == null) {
+                    instancia = new IndiceUsuarios();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Se suscribe a los cambios y carga el índice en segundo plano
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "indice-usuarios");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::sincronizar);
+    }
+
+    /**
+     * Cancela la suscripción y el trabajo pendiente
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Indica si las búsquedas pueden responderse desde el índice
+     *
+     * @return true si está al día con la marca de lectura, o si la base de datos no responde
+     */
+    public boolean estaAlDia() {
+        return indice != null && versionVista.estaAlDia(version);
+    }
+
+    /**
+     * Obtiene la versión de los datos del índice
+     * Sirve como punto de partida para pedir los cambios posteriores.
+     *
+     * @return Versión de la última sincronización (-1 si no se ha cargado)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Busca usuarios cuyas palabras empiezan por las de la consulta
+     *
+     * @param texto Texto buscado (sin importar acentos ni mayúsculas)
+     * @return Usuarios encontrados ordenados por nombre y apellido; vacía si
+     *         el índice no se ha cargado
+     */
+    public List<Usuario> buscar(String texto) {
+        Indice actual = indice;
+        List<Usuario> resultados = new ArrayList<>();
+        if (actual == null) {
+            return resultados;
+        }
+        List<String> consulta = plegar(texto);
+        if (consulta.isEmpty()) {
+            resultados.addAll(actual.usuarios.values());
+            resultados.sort(ORDEN);
+            return resultados;
+        }
+
+        // De la palabra más larga (suele ser la más selectiva) a la más corta:
+        // cada una deja los candidatos que también tienen una palabra en su rango
+        consulta.sort(Comparator.comparingInt(String::length).reversed());
+        Set<Integer> candidatos = null;
+        for (String palabra : consulta) {
+            Set<Integer> enRango = new HashSet<>();
+            for (Set<Integer> ids : actual.palabras.subMap(palabra, true, palabra + Character.MAX_VALUE, false).values()) {
+                if (candidatos == null) {
+                    enRango.addAll(ids);
+                } else {
+                    for (Integer id : ids) {
+                        if (candidatos.contains(id)) {
+                            enRango.add(id);
+                        }
+                    }
+                }
+            }
+            candidatos = enRango;
+            if (candidatos.isEmpty()) {
+                break;
+            }
+        }
+
+        for (Integer id : candidatos) {
+            Usuario usuario = actual.usuarios.get(id);
+            if (usuario != null) {
+                resultados.add(usuario);
+            }
+        }
+        resultados.sort(ORDEN);
+        return resultados;
+    }
+
+    /**
+     * Indica si un usuario coincide con una búsqueda, con el mismo criterio que buscar
+     *
+     * @param usuario Usuario a comprobar
+     * @param texto Texto buscado
+     * @return true si cada palabra de la consulta empieza alguna palabra del usuario
+     */
+    public static boolean coincide(Usuario usuario, String texto) {
+        return coincide(usuario, plegar(texto));
+    }
+
+    private static boolean coincide(Usuario usuario, List<String> consulta) {
+        if (consulta.isEmpty()) {
+            return true;
+        }
+        Set<String> propias = palabras(usuario);
+        for (String buscada : consulta) {
+            boolean encontrada = false;
+            for (String propia : propias) {
+                if (propia.startsWith(buscada)) {
+                    encontrada = true;
+                    break;
+                }
+            }
+            if (!encontrada) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> palabras(Usuario usuario) {
+        Set<String> palabras = new HashSet<>();
+        palabras.addAll(plegar(usuario.getNombre()));
+        palabras.addAll(plegar(usuario.getApellido()));
+        palabras.addAll(plegar(usuario.getEmail()));
+        palabras.addAll(plegar(usuario.getUsername()));
+        return palabras;
+    }
+
+    // Palabras sin acentos y en minúsculas
+    private static List<String> plegar(String texto) {
+        List<String> palabras = new ArrayList<>();
+        if (texto == null) {
+            return palabras;
+        }
+        for (String palabra : SEPARADORES.split(IndiceUnicidad.normalizar(texto))) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+
+    private void sincronizar() {
+        long inicio = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long actual = cambiosDAO.obtenerVersionActual(conn);
+            long desde = version;
+            if (desde >= 0 && actual <= desde) {
+                return;
+            }
+
+            if (desde < 0 || indice == null || !cambiosDAO.historialCompleto(conn, desde, actual)) {
+                // Recarga completa en un índice nuevo: las búsquedas siguen usando el anterior
+                Indice nuevo = new Indice();
+                usuarioDAO.recorrerFilas(conn, -1, nuevo::agregar);
+                indice = nuevo;
+                System.out.println("✓ Índice de usuarios cargado: " + nuevo.usuarios.size() + " usuarios, "
+                        + nuevo.palabras.size() + " palabras en " + (System.currentTimeMillis() - inicio) + " ms");
+            } else {
+                Indice existente = indice;
+                usuarioDAO.recorrerFilas(conn, desde, existente::agregar);
+                cambiosDAO.obtenerEliminados(conn, "USUARIO", desde, actual).forEach(existente::quitar);
+            }
+            version = actual;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar el índice de usuarios: " + e.getMessage());
+        }
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (!versionVista.registrar(evento)) {
+            return;
+        }
+        ExecutorService destino = ejecutor;
+        if (destino != null && sincronizacionPendiente.compareAndSet(false, true)) {
+            destino.execute(() -> {
+                sincronizacionPendiente.set(false);
+                sincronizar();
+            });
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Libro;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.MapaBits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Instantánea del catálogo en un archivo mapeado en memoria
+ *
+ * Guarda los libros ordenados por título en un archivo binario del
+ * directorio de datos (catalogo-&lt;versión&gt;.bin), con las estructuras
+ * derivadas que necesita la vista de libros: la lista de categorías y,
+ * para cada una, las posiciones de sus libros. Al arrancar se mapea el
+ * archivo más reciente y la tabla de libros, el conteo y el combo de
+ * categorías se responden desde él sin consultar MySQL; los registros se
+ * decodifican sólo cuando se piden, así que mapear no cuesta memoria.
+ *
+ * En segundo plano se leen sólo los libros cambiados desde la versión de
+ * la instantánea (y las bajas del registro de cambios), se escribe un
+ * archivo nuevo y se mapea en lugar del anterior; los oyentes suscritos
+ * se enteran para refrescar. Los eventos de libros de BusCambios disparan
+ * la misma actualización, agrupados: cada préstamo cambia el stock de un
+ * libro, así que el archivo se reescribe como mucho una vez cada
+ * INTERVALO_MINIMO_MS y entretanto LibroDAO consulta MySQL.
+ *
+ * LibroDAO usa la instantánea cuando ya incluye todo lo que la mesa
+ * escribió o vio (la marca de lectura de DatabaseConnection) o cuando la
+ * base de datos no está disponible; mientras tanto responde MySQL (los
+ * eventos de préstamos sin cambio de libro no la atrasan: ver
+ * VersionVista). Un
+ * listado fija su fuente al contar (ver fijar): todas sus páginas salen
+ * del mismo archivo o todas de MySQL, que no ordenan igual.
+ *
+ * Sólo funciona en modo sucursal (ver EspejoLocal): fuera de él no se
+ * escribe nada en el directorio de datos.
+ *
+ * Formato (enteros big-endian):
+ * cabecera: MAGICO, FORMATO, versión (long), libros, categorías,
+ * posición de la tabla de categorías, posición de las cadenas;
+ * registros de TAM_REGISTRO bytes (id, stock, año, categoría, y la
+ * posición de título, autor, ISBN y editorial en la zona de cadenas,
+ * -1 si es null); categorías (nombre, primera posición, cantidad) seguidas
+ * de las posiciones de sus libros; cadenas como longitud + UTF-8.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class InstantaneaCatalogo {
+
+    private static final int MAGICO = 0x43415431; // "CAT1"
+    private static final int FORMATO = 1;
+    private static final int TAM_CABECERA = 36;
+    private static final int TAM_REGISTRO = 32;
+    private static final int TAM_CATEGORIA = 12;
+    private static final String PREFIJO = "catalogo-";
+    private static final String EXTENSION = ".bin";
+    private static final long RETARDO_MS = 5_000;
+    private static final long INTERVALO_MINIMO_MS = 60_000;
+
+    // Mismo orden que ORDER BY titulo, id (aproximado: sin la intercalación de MySQL)
+    private static final Comparator<Libro> POR_TITULO = Comparator
+            .comparing(Libro::getTitulo, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+            .thenComparingInt(Libro::getId);
+
+    /**
+     * Archivo mapeado con sus categorías ya leídas
+     */
+    private static final class Mapa {
+        final ByteBuffer datos;
+        final long version;
+        final int libros;
+        final List<String> categorias;
+        final Map<String, int[]> posicionesCategoria;
+        final int inicioCadenas;
+
+        Mapa(ByteBuffer datos, long version, int libros, List<String> categorias,
+             Map<String, int[]> posicionesCategoria, int inicioCadenas) {
+            this.datos = datos;
+            this.version = version;
+            this.libros = libros;
+            this.categorias = categorias;
+            this.posicionesCategoria = posicionesCategoria;
+            this.inicioCadenas = inicioCadenas;
+        }
+
+        int id(int posicion) {
+            return datos.getInt(TAM_CABECERA + posicion * TAM_REGISTRO);
+        }
+
+        Libro libro(int posicion) {
+            int base = TAM_CABECERA + posicion * TAM_REGISTRO;
+            int categoria = datos.getInt(base + 12);
+            return new Libro(
+                    datos.getInt(base),
+                    cadena(datos.getInt(base + 16)),
+                    LibroDAO.AUTORES.canonica(cadena(datos.getInt(base + 20))),
+                    categoria >= 0 ? categorias.get(categoria) : null,
+                    datos.getInt(base + 4),
+                    datos.getInt(base + 8),
+                    cadena(datos.getInt(base + 24)),
+                    LibroDAO.EDITORIALES.canonica(cadena(datos.getInt(base + 28)))
+            );
+        }
+
+        String cadena(int desplazamiento) {
+            if (desplazamiento < 0) {
+                return null;
+            }
+            int posicion = inicioCadenas + desplazamiento;
+            byte[] bytes = new byte[datos.getInt(posicion)];
+            datos.get(posicion + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Instantánea fijada para un listado
+     * Sigue leyendo el mismo archivo aunque entretanto se mapee otro más
+     * reciente: el mapeo anterior sigue siendo válido.
+     */
+    public static final class Fijada {
+        private final Mapa mapa;
+
+        private Fijada(Mapa mapa) {
+            this.mapa = mapa;
+        }
+
+        /**
+         * Obtiene la cantidad de libros de la instantánea fijada
+         *
+         * @return Número de libros
+         */
+        public int contarLibros() {
+            return mapa.libros;
+        }
+
+        /**
+         * Obtiene una página de libros ordenada por título
+         *
+         * @param desde Posición de la primera fila
+         * @param cantidad Filas a devolver como máximo
+         * @param ascendente Dirección del orden
+         * @return Libros de la página
+         */
+        public List<Libro> obtenerPagina(int desde, int cantidad, boolean ascendente) {
+            return pagina(mapa, desde, cantidad, ascendente);
+        }
+
+        /**
+         * Obtiene los libros de un conjunto de IDs, ordenados por título
+         * Recorre los registros en orden y sólo decodifica los que están
+         * en el conjunto.
+         *
+         * @param ids IDs a cargar (los que no estén en la instantánea se omiten)
+         * @return Libros encontrados
+         */
+        public List<Libro> obtenerLibros(MapaBits ids) {
+            List<Libro> libros = new ArrayList<>(ids.cardinalidad());
+            for (int i = 0; i < mapa.libros; i++) {
+                if (ids.contiene(mapa.id(i))) {
+                    libros.add(mapa.libro(i));
+                }
+            }
+            return libros;
+        }
+
+        /**
+         * Obtiene la versión de la instantánea fijada
+         *
+         * @return Versión del catálogo que contiene el archivo
+         */
+        public long getVersion() {
+            return mapa.version;
+        }
+    }
+
+    // Instancia única (Singleton)
+    private static InstantaneaCatalogo instancia;
+
+    private final LibroDAO libroDAO = new LibroDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+    private final List<Runnable> oyentes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean actualizacionPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyenteCambios = this::procesarEvento;
+
+    private volatile Mapa mapa;
+    private volatile long ultimaEscritura;
+    private final VersionVista versionVista = new VersionVista(EventoCambio.Entidad.LIBRO);
+    private ScheduledExecutorService ejecutor;
+
+    private InstantaneaCatalogo() {
+    }
+
+    /**
+     * Obtiene la única instancia de InstantaneaCatalogo (Singleton)
+     *
+     * @return Instancia única de InstantaneaCatalogo
+     */
+    public static InstantaneaCatalogo getInstance() {
+        if (instancia == null) {
+            synchronized (InstantaneaCatalogo.class) {
+                if (instancia == null) {
+                    instancia = new InstantaneaCatalogo();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Mapea la instantánea guardada y la pone al día en segundo plano
+     * No hace nada si el modo sucursal no está activado. Debe llamarse
+     * después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (!EspejoLocal.estaHabilitado() || ejecutor != null) {
+            return;
+        }
+        mapa = mapearMasReciente();
+        if (mapa != null) {
+            System.out.println("✓ Instantánea del catálogo mapeada: " + mapa.libros + " libros (versión "
+                    + mapa.version + ")");
+        }
+        ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "instantanea-catalogo");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyenteCambios);
+        ejecutor.execute(this::actualizar);
+    }
+
+    /**
+     * Cancela la suscripción y el trabajo pendiente
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyenteCambios);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Suscribe un oyente que se avisa (en un hilo de fondo) cada vez que
+     * se mapea una instantánea nueva
+     *
+     * @param oyente Oyente a registrar
+     */
+    public void suscribir(Runnable oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Elimina un oyente previamente suscrito
+     *
+     * @param oyente Oyente a eliminar
+     */
+    public void desuscribir(Runnable oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Indica si las consultas del catálogo pueden responderse desde la instantánea
+     *
+     * @return true si está al día con la marca de lectura, o si la base de datos no responde
+     */
+    public boolean estaAlDia() {
+        return estaAlDia(mapa);
+    }
+
+    /**
+     * Fija la instantánea actual para un listado, si está al día
+     *
+     * @return Instantánea a usar en todas las páginas del listado, o null si
+     *         el listado debe leerse de la base de datos
+     */
+    public Fijada fijar() {
+        Mapa actual = mapa;
+        return estaAlDia(actual) ? new Fijada(actual) : null;
+    }
+
+    private boolean estaAlDia(Mapa actual) {
+        return actual != null && versionVista.estaAlDia(actual.version);
+    }
+
+    /**
+     * Obtiene la cantidad de libros de la instantánea
+     *
+     * @return Número de libros (0 si no hay instantánea)
+     */
+    public int contarLibros() {
+        Mapa actual = mapa;
+        return actual != null ? actual.libros : 0;
+    }
+
+    /**
+     * Obtiene una página de libros ordenada por título
+     *
+     * @param desde Posición de la primera fila
+     * @param cantidad Filas a devolver como máximo
+     * @param ascendente Dirección del orden
+     * @return Libros de la página
+     */
+    public List<Libro> obtenerPagina(int desde, int cantidad, boolean ascendente) {
+        return pagina(mapa, desde, cantidad, ascendente);
+    }
+
+    private static List<Libro> pagina(Mapa actual, int desde, int cantidad, boolean ascendente) {
+        List<Libro> pagina = new ArrayList<>();
+        if (actual == null) {
+            return pagina;
+        }
+        int hasta = Math.min(actual.libros, desde + cantidad);
+        for (int i = Math.max(0, desde); i < hasta; i++) {
+            pagina.add(actual.libro(ascendente ? i : actual.libros - 1 - i));
+        }
+        return pagina;
+    }
+
+    /**
+     * Obtiene las categorías de la instantánea
+     *
+     * @return Categorías en orden alfabético
+     */
+    public List<String> obtenerCategorias() {
+        Mapa actual = mapa;
+        return actual != null ? new ArrayList<>(actual.categorias) : new ArrayList<>();
+    }
+
+    /**
+     * Obtiene los libros de una categoría
+     *
+     * @param categoria Nombre de la categoría
+     * @return Libros de la categoría ordenados por título
+     */
+    public List<Libro> buscarPorCategoria(String categoria) {
+        Mapa actual = mapa;
+        List<Libro> libros = new ArrayList<>();
+        if (actual == null) {
+            return libros;
+        }
+        int[] posiciones = actual.posicionesCategoria.get(categoria);
+        if (posiciones != null) {
+            for (int posicion : posiciones) {
+                libros.add(actual.libro(posicion));
+            }
+        }
+        return libros;
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (!versionVista.registrar(evento)) {
+            return;
+        }
+        ScheduledExecutorService destino = ejecutor;
+        if (destino != null && actualizacionPendiente.compareAndSet(false, true)) {
+            long espera = Math.max(RETARDO_MS, ultimaEscritura + INTERVALO_MINIMO_MS - System.currentTimeMillis());
+            destino.schedule(() -> {
+                actualizacionPendiente.set(false);
+                actualizar();
+            }, espera, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Sólo se ejecuta en el hilo del ejecutor
+    private void actualizar() {
+        Mapa vigente = mapa;
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long actual = cambiosDAO.obtenerVersionActual(conn);
+            if (vigente != null && actual <= vigente.version) {
+                return;
+            }
+
+            Map<Integer, Libro> libros = new HashMap<>();
+            int cambiados;
+            if (vigente == null || !cambiosDAO.historialCompleto(conn, vigente.version, actual)) {
+                libroDAO.recorrerDesde(conn, -1, libro -> libros.put(libro.getId(), libro));
+                cambiados = libros.size();
+            } else {
+                for (int i = 0; i < vigente.libros; i++) {
+                    Libro libro = vigente.libro(i);
+                    libros.put(libro.getId(), libro);
+                }
+                List<Libro> delta = new ArrayList<>();
+                libroDAO.recorrerDesde(conn, vigente.version, delta::add);
+                delta.forEach(libro -> libros.put(libro.getId(), libro));
+                List<Integer> eliminados = cambiosDAO.obtenerEliminados(conn, "LIBRO", vigente.version, actual);
+                eliminados.forEach(libros::remove);
+                cambiados = delta.size() + eliminados.size();
+            }
+
+            Path archivo = escribir(actual, libros.values());
+            ultimaEscritura = System.currentTimeMillis();
+            Mapa nuevo = mapear(archivo);
+            if (nuevo == null) {
+                return;
+            }
+            mapa = nuevo;
+            System.out.println("✓ Instantánea del catálogo actualizada a la versión " + actual
+                    + " (" + cambiados + " libros leídos)");
+            for (Runnable oyente : oyentes) {
+                try {
+                    oyente.run();
+                } catch (RuntimeException e) {
+                    System.err.println("✗ Error en oyente de la instantánea: " + e.getMessage());
+                }
+            }
+            borrarAnteriores(archivo);
+
+        } catch (SQLException | IOException e) {
+            System.err.println("✗ Error al actualizar la instantánea del catálogo: " + e.getMessage());
+        }
+    }
+
+    private static Path escribir(long version, Collection<Libro> coleccion) throws IOException {
+        List<Libro> libros = new ArrayList<>(coleccion);
+        libros.sort(POR_TITULO);
+
+        // Categorías ordenadas y, para cada una, las posiciones de sus libros
+        // (sin distinguir mayúsculas, como DISTINCT con la intercalación de la columna)
+        TreeMap<String, List<Integer>> porCategoria = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < libros.size(); i++) {
+            String categoria = libros.get(i).getCategoria();
+            if (categoria != null) {
+                porCategoria.computeIfAbsent(categoria, c -> new ArrayList<>()).add(i);
+            }
+        }
+        List<String> categorias = new ArrayList<>(porCategoria.keySet());
+        Map<String, Integer> indiceCategoria = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < categorias.size(); i++) {
+            indiceCategoria.put(categorias.get(i), i);
+        }
+
+        // Cadenas: se reserva su zona después de conocer el tamaño de todo lo demás
+        ZonaCadenas cadenas = new ZonaCadenas();
+        int[] registros = new int[libros.size() * 8];
+        for (int i = 0; i < libros.size(); i++) {
+            Libro libro = libros.get(i);
+            int base = i * 8;
+            registros[base] = libro.getId();
+            registros[base + 1] = libro.getStock();
+            registros[base + 2] = libro.getAnioPublicacion();
+            registros[base + 3] = libro.getCategoria() != null ? indiceCategoria.get(libro.getCategoria()) : -1;
+            registros[base + 4] = cadenas.agregar(libro.getTitulo());
+            registros[base + 5] = cadenas.agregar(libro.getAutor());
+            registros[base + 6] = cadenas.agregar(libro.getIsbn());
+            registros[base + 7] = cadenas.agregar(libro.getEditorial());
+        }
+        int[] nombresCategoria = new int[categorias.size()];
+        for (int i = 0; i < categorias.size(); i++) {
+            nombresCategoria[i] = cadenas.agregar(categorias.get(i));
+        }
+
+        int inicioCategorias = TAM_CABECERA + libros.size() * TAM_REGISTRO;
+        int inicioPosiciones = inicioCategorias + categorias.size() * TAM_CATEGORIA;
+        int inicioCadenas = inicioPosiciones + libros.size() * 4;
+        ByteBuffer buffer = ByteBuffer.allocate(inicioCadenas + cadenas.tamano());
+
+        buffer.putInt(MAGICO).putInt(FORMATO).putLong(version).putInt(libros.size())
+                .putInt(categorias.size()).putInt(inicioCategorias).putInt(inicioCadenas).putInt(0);
+        for (int valor : registros) {
+            buffer.putInt(valor);
+        }
+        int posicion = 0;
+        for (int i = 0; i < categorias.size(); i++) {
+            List<Integer> posiciones = porCategoria.get(categorias.get(i));
+            buffer.putInt(nombresCategoria[i]).putInt(posicion).putInt(posiciones.size());
+            posicion += posiciones.size();
+        }
+        for (String categoria : categorias) {
+            for (int posicionLibro : porCategoria.get(categoria)) {
+                buffer.putInt(posicionLibro);
+            }
+        }
+        cadenas.volcar(buffer);
+        buffer.flip();
+
+        Path directorio = EspejoLocal.getDirectorio();
+        Files.createDirectories(directorio);
+        Path archivo = directorio.resolve(PREFIJO + version + EXTENSION);
+        Path temporal = directorio.resolve(PREFIJO + version + EXTENSION + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(true);
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return archivo;
+    }
+
+    /**
+     * Cadenas en UTF-8 con su longitud delante, sin repetir las iguales
+     */
+    private static final class ZonaCadenas {
+        private final Map<String, Integer> posiciones = new HashMap<>();
+        private final List<byte[]> contenido = new ArrayList<>();
+        private int tamano;
+
+        int agregar(String valor) {
+            if (valor == null) {
+                return -1;
+            }
+            return posiciones.computeIfAbsent(valor, v -> {
+                byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                int posicion = tamano;
+                contenido.add(bytes);
+                tamano += 4 + bytes.length;
+                return posicion;
+            });
+        }
+
+        int tamano() {
+            return tamano;
+        }
+
+        void volcar(ByteBuffer buffer) {
+            for (byte[] bytes : contenido) {
+                buffer.putInt(bytes.length).put(bytes);
+            }
+        }
+    }
+
+    private static Mapa mapearMasReciente() {
+        Path directorio = EspejoLocal.getDirectorio();
+        if (!Files.isDirectory(directorio)) {
+            return null;
+        }
+        Path masReciente = null;
+        long versionMasReciente = -1;
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+            for (Path archivo : archivos) {
+                long version = versionDeArchivo(archivo);
+                if (version > versionMasReciente) {
+                    versionMasReciente = version;
+                    masReciente = archivo;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("✗ Error al buscar la instantánea del catálogo: " + e.getMessage());
+            return null;
+        }
+        if (masReciente == null) {
+            return null;
+        }
+        Mapa mapa = mapear(masReciente);
+        if (mapa != null) {
+            borrarAnteriores(masReciente);
+        }
+        return mapa;
+    }
+
+    private static long versionDeArchivo(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        try {
+            return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Mapa mapear(Path archivo) {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (datos.capacity() < TAM_CABECERA || datos.getInt(0) != MAGICO || datos.getInt(4) != FORMATO) {
+                System.err.println("✗ Instantánea del catálogo con formato desconocido: " + archivo);
+                return null;
+            }
+            long version = datos.getLong(8);
+            int libros = datos.getInt(16);
+            int numCategorias = datos.getInt(20);
+            int inicioCategorias = datos.getInt(24);
+            int inicioCadenas = datos.getInt(28);
+            int inicioPosiciones = inicioCategorias + numCategorias * TAM_CATEGORIA;
+
+            Mapa sinCategorias = new Mapa(datos, version, libros, List.of(), Map.of(), inicioCadenas);
+            List<String> categorias = new ArrayList<>(numCategorias);
+            Map<String, int[]> posicionesCategoria = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < numCategorias; i++) {
+                int base = inicioCategorias + i * TAM_CATEGORIA;
+                String nombre = sinCategorias.cadena(datos.getInt(base));
+                int primera = datos.getInt(base + 4);
+                int[] posiciones = new int[datos.getInt(base + 8)];
+                for (int j = 0; j < posiciones.length; j++) {
+                    posiciones[j] = datos.getInt(inicioPosiciones + (primera + j) * 4);
+                }
+                categorias.add(nombre);
+                posicionesCategoria.put(nombre, posiciones);
+            }
+            return new Mapa(datos, version, libros, Collections.unmodifiableList(categorias),
+                    posicionesCategoria, inicioCadenas);
+
+        } catch (IOException | IndexOutOfBoundsException e) {
+            System.err.println("✗ Instantánea del catálogo ilegible: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // En Windows un archivo aún mapeado no se puede borrar: se reintenta en el próximo arranque
+    private static void borrarAnteriores(Path vigente) {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(vigente.getParent(), PREFIJO + "*")) {
+            for (Path archivo : archivos) {
+                if (!archivo.equals(vigente)) {
+                    try {
+                        Files.deleteIfExists(archivo);
+                    } catch (IOException e) {
+                        // Sigue mapeado por la instantánea anterior
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("✗ Error al limpiar instantáneas antiguas: " + e.getMessage());
+        }
+    }
+}
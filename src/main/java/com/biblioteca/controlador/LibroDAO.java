@@ -1,11 +1,18 @@
 package com.biblioteca.controlador;
 
 import com.biblioteca.modelo.Libro;
+import com.biblioteca.util.BusCambios;
 import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.DiccionarioCadenas;
+import com.biblioteca.util.UltimosResultados;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Clase DAO para gestionar operaciones CRUD de Libros
@@ -20,13 +27,35 @@ import java.util.List;
  */
 public class LibroDAO {
 
+    // Columnas por las que se puede ordenar una página (evita inyectar SQL en ORDER BY):
+    // sólo NOT NULL y con índice, para paginar por clave sin ordenar en memoria
+    private static final Set<String> COLUMNAS_ORDEN = Set.of("id", "titulo", "autor", "categoria");
+
+    // Columnas que lee mapearLibro, en este orden (lee por posición): sin
+    // version ni las que se añadan a la tabla más adelante
+    private static final String COLUMNAS = "id, titulo, autor, categoria, stock, anio_publicacion, isbn, editorial";
+
+    // Columnas con pocos valores distintos: una sola instancia de cada valor
+    // para todas las filas (también las del espejo local y la instantánea)
+    static final DiccionarioCadenas CATEGORIAS = new DiccionarioCadenas("libros.categoria");
+    static final DiccionarioCadenas EDITORIALES = new DiccionarioCadenas("libros.editorial");
+    static final DiccionarioCadenas AUTORES = new DiccionarioCadenas("libros.autor");
+
     private DatabaseConnection dbConnection;
+    private BusCambios busCambios;
+    private CambiosDAO cambiosDAO;
+    private UltimosResultados ultimosResultados;
+    // Fuente del listado en curso: la fija contarLibros() al empezarlo
+    private volatile InstantaneaCatalogo.Fijada instantaneaListado;
 
     /**
      * Constructor que inicializa la conexión a la base de datos
      */
     public LibroDAO() {
         this.dbConnection = DatabaseConnection.getInstance();
+        this.busCambios = BusCambios.getInstance();
+        this.cambiosDAO = new CambiosDAO();
+        this.ultimosResultados = UltimosResultados.getInstance();
     }
 
     /**
@@ -59,6 +88,8 @@ public class LibroDAO {
                     libro.setId(rs.getInt(1));
                 }
                 System.out.println("✓ Libro insertado: " + libro.getTitulo());
+                IndiceUnicidad.getInstance().registrarIsbn(libro.getIsbn());
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -95,6 +126,8 @@ public class LibroDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Libro actualizado: " + libro.getTitulo());
+                IndiceUnicidad.getInstance().registrarIsbn(libro.getIsbn());
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -122,6 +155,7 @@ public class LibroDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Libro eliminado con ID: " + id);
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -139,7 +173,11 @@ public class LibroDAO {
      * @return Objeto Libro si se encuentra, null en caso contrario
      */
     public Libro buscarPorId(int id) {
-        String sql = "SELECT * FROM libros WHERE id = ?";
+        EspejoLocal espejo = EspejoLocal.getInstance();
+        if (espejo.puedeResponder()) {
+            return espejo.buscarLibro(id);
+        }
+        String sql = "SELECT " + COLUMNAS + " FROM libros WHERE id = ?";
 
         try (Connection conn = dbConnection.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -158,16 +196,96 @@ public class LibroDAO {
         return null;
     }
 
+    /**
+     * Busca varios libros por ID con una sola consulta
+     *
+     * @param ids IDs de los libros
+     * @return Libros encontrados, en el orden de ids (los que no existen se omiten)
+     */
+    public List<Libro> buscarPorIds(int[] ids) {
+        if (ids.length == 0 || EspejoLocal.getInstance().puedeResponder()) {
+            return buscarEnEspejo(ids);
+        }
+        try (Connection conn = dbConnection.conectarLectura()) {
+            return consultarPorIds(conn, ids);
+        } catch (SQLException e) {
+            System.err.println("✗ Error al buscar libros por ID: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Busca con la conexión indicada varios libros por ID
+     * Pensado para hilos de fondo, con una conexión dedicada.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param ids IDs de los libros
+     * @return Libros encontrados, en el orden de ids (los que no existen se omiten)
+     * @throws SQLException Si hay error en la consulta
+     */
+    public List<Libro> buscarPorIds(Connection conn, int[] ids) throws SQLException {
+        if (ids.length == 0 || EspejoLocal.getInstance().puedeResponder()) {
+            return buscarEnEspejo(ids);
+        }
+        return consultarPorIds(conn, ids);
+    }
+
+    private static List<Libro> buscarEnEspejo(int[] ids) {
+        List<Libro> libros = new ArrayList<>();
+        EspejoLocal espejo = EspejoLocal.getInstance();
+        for (int id : ids) {
+            Libro libro = espejo.buscarLibro(id);
+            if (libro != null) {
+                libros.add(libro);
+            }
+        }
+        return libros;
+    }
+
+    private List<Libro> consultarPorIds(Connection conn, int[] ids) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNAS + " FROM libros WHERE id IN (?");
+        for (int i = 1; i < ids.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(')');
+
+        List<Libro> libros = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.length; i++) {
+                pstmt.setInt(i + 1, ids[i]);
+            }
+            Map<Integer, Libro> porId = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Libro libro = mapearLibro(rs);
+                    porId.put(libro.getId(), libro);
+                }
+            }
+            for (int id : ids) {
+                Libro libro = porId.get(id);
+                if (libro != null) {
+                    libros.add(libro);
+                }
+            }
+        }
+        return libros;
+    }
+
     /**
      * Obtiene todos los libros de la base de datos
      *
      * @return Lista de todos los libros
      */
     public List<Libro> obtenerTodos() {
+        EspejoLocal espejo = EspejoLocal.getInstance();
+        if (espejo.puedeResponder()) {
+            return espejo.obtenerLibros();
+        }
         List<Libro> libros = new ArrayList<>();
-        String sql = "SELECT * FROM libros ORDER BY titulo";
+        String sql = "SELECT " + COLUMNAS + " FROM libros ORDER BY titulo";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -182,6 +300,59 @@ public class LibroDAO {
         return libros;
     }
 
+    /**
+     * Obtiene una página de libros ordenada por la base de datos
+     * Usado por las tablas virtuales, que cargan las filas por bloques
+     * desde su hilo de carga: abre una conexión dedicada, no la compartida.
+     * Con una fila vecina ya cargada la página se pide a partir de ella
+     * (ver PaginaPorClave); sin ella, por posición. Las páginas por título
+     * salen de la instantánea del catálogo sólo si el último contarLibros()
+     * la fijó: un listado no mezcla su orden con el de MySQL.
+     *
+     * @param desde Posición de la primera fila (0 = primera)
+     * @param cantidad Número máximo de filas
+     * @param orden Columna de orden (id, titulo, autor, categoria); otra se ignora
+     * @param ascendente true para orden ascendente
+     * @param ancla Fila vecina de la página, o null
+     * @param haciaDelante true si la página va después del ancla; false si va antes
+     * @return Lista de libros de la página
+     */
+    public List<Libro> obtenerPagina(int desde, int cantidad, String orden, boolean ascendente,
+                                     Libro ancla, boolean haciaDelante) {
+        String columna = COLUMNAS_ORDEN.contains(orden) ? orden : "titulo";
+        InstantaneaCatalogo.Fijada instantanea = instantaneaListado;
+        if (columna.equals("titulo") && instantanea != null) {
+            return instantanea.obtenerPagina(desde, cantidad, ascendente);
+        }
+
+        try (Connection conn = dbConnection.abrirConexionDedicada()) {
+            List<Libro> libros = PaginaPorClave.cargar(conn, COLUMNAS, "libros", columna, ascendente,
+                    desde, cantidad, ancla == null ? null : valorOrden(ancla, columna),
+                    ancla == null ? 0 : ancla.getId(), haciaDelante, this::mapearLibro);
+            ultimosResultados.guardar(clavePagina("libros", desde, cantidad, columna, ascendente), libros);
+            return libros;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener página de libros: " + e.getMessage());
+            return ultimosResultados.obtener(clavePagina("libros", desde, cantidad, columna, ascendente),
+                    new ArrayList<>());
+        }
+    }
+
+    // Valor de la columna de orden en un libro, para paginar a partir de él
+    private static Object valorOrden(Libro libro, String columna) {
+        switch (columna) {
+            case "id":
+                return libro.getId();
+            case "autor":
+                return libro.getAutor();
+            case "categoria":
+                return libro.getCategoria();
+            default:
+                return libro.getTitulo();
+        }
+    }
+
     /**
      * Busca libros por título (búsqueda parcial)
      *
@@ -190,9 +361,9 @@ public class LibroDAO {
      */
     public List<Libro> buscarPorTitulo(String titulo) {
         List<Libro> libros = new ArrayList<>();
-        String sql = "SELECT * FROM libros WHERE titulo LIKE ? ORDER BY titulo";
+        String sql = "SELECT " + COLUMNAS + " FROM libros WHERE titulo LIKE ? ORDER BY titulo";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, "%" + titulo + "%");
@@ -217,9 +388,9 @@ public class LibroDAO {
      */
     public List<Libro> buscarPorAutor(String autor) {
         List<Libro> libros = new ArrayList<>();
-        String sql = "SELECT * FROM libros WHERE autor LIKE ? ORDER BY titulo";
+        String sql = "SELECT " + COLUMNAS + " FROM libros WHERE autor LIKE ? ORDER BY titulo";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, "%" + autor + "%");
@@ -243,10 +414,14 @@ public class LibroDAO {
      * @return Lista de libros de la categoría
      */
     public List<Libro> buscarPorCategoria(String categoria) {
+        InstantaneaCatalogo instantanea = InstantaneaCatalogo.getInstance();
+        if (instantanea.estaAlDia()) {
+            return instantanea.buscarPorCategoria(categoria);
+        }
         List<Libro> libros = new ArrayList<>();
-        String sql = "SELECT * FROM libros WHERE categoria = ? ORDER BY titulo";
+        String sql = "SELECT " + COLUMNAS + " FROM libros WHERE categoria = ? ORDER BY titulo";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, categoria);
@@ -263,6 +438,90 @@ public class LibroDAO {
         return libros;
     }
 
+    /**
+     * Busca los libros que cumplen una selección de facetas
+     * Todas las facetas van en el WHERE: sirve cuando FacetasCatalogo no
+     * está al día.
+     *
+     * @param seleccion Valor elegido por faceta (las facetas ausentes no filtran)
+     * @return Libros ordenados por título
+     */
+    public List<Libro> buscarPorFacetas(Map<FacetasCatalogo.Faceta, String> seleccion) {
+        try (Connection conn = dbConnection.conectarLectura()) {
+            return buscarPorFacetas(conn, seleccion);
+        } catch (SQLException e) {
+            System.err.println("✗ Error al buscar por facetas: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Busca con la conexión indicada los libros que cumplen una selección de facetas
+     * Pensado para hilos de fondo, con una conexión dedicada.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param seleccion Valor elegido por faceta (las facetas ausentes no filtran)
+     * @return Libros ordenados por título
+     * @throws SQLException Si hay error en la consulta
+     */
+    public List<Libro> buscarPorFacetas(Connection conn, Map<FacetasCatalogo.Faceta, String> seleccion)
+            throws SQLException {
+        List<Libro> libros = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNAS + " FROM libros WHERE 1 = 1");
+        List<Object> parametros = new ArrayList<>();
+        for (Map.Entry<FacetasCatalogo.Faceta, String> filtro : seleccion.entrySet()) {
+            String valor = filtro.getValue();
+            if (valor == null) {
+                continue;
+            }
+            switch (filtro.getKey()) {
+                case CATEGORIA:
+                case EDITORIAL:
+                    String columna = filtro.getKey() == FacetasCatalogo.Faceta.CATEGORIA ? "categoria" : "editorial";
+                    if (valor.equals(FacetasCatalogo.SIN_DATO)) {
+                        sql.append(" AND (").append(columna).append(" IS NULL OR TRIM(")
+                                .append(columna).append(") = '')");
+                    } else {
+                        sql.append(" AND ").append(columna).append(" = ?");
+                        parametros.add(valor);
+                    }
+                    break;
+                case DECADA:
+                    if (valor.equals(FacetasCatalogo.SIN_ANIO)) {
+                        sql.append(" AND (anio_publicacion IS NULL OR anio_publicacion <= 0)");
+                    } else {
+                        int inicio;
+                        try {
+                            inicio = Integer.parseInt(valor.substring(0, valor.indexOf('-')));
+                        } catch (RuntimeException e) {
+                            // Valor que no sale de FacetasCatalogo.valor: ningún libro lo tiene
+                            return libros;
+                        }
+                        sql.append(" AND anio_publicacion BETWEEN ? AND ?");
+                        parametros.add(inicio);
+                        parametros.add(inicio + 9);
+                    }
+                    break;
+                default:
+                    sql.append(valor.equals(FacetasCatalogo.DISPONIBLES) ? " AND stock > 0" : " AND stock <= 0");
+            }
+        }
+        sql.append(" ORDER BY titulo, id");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < parametros.size(); i++) {
+                pstmt.setObject(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    libros.add(mapearLibro(rs));
+                }
+            }
+        }
+        return libros;
+    }
+
     /**
      * Obtiene libros con stock bajo (2 o menos ejemplares)
      *
@@ -270,9 +529,9 @@ public class LibroDAO {
      */
     public List<Libro> obtenerLibrosStockBajo() {
         List<Libro> libros = new ArrayList<>();
-        String sql = "SELECT * FROM libros WHERE stock <= 2 ORDER BY stock, titulo";
+        String sql = "SELECT " + COLUMNAS + " FROM libros WHERE stock <= 2 ORDER BY stock, titulo";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -293,20 +552,25 @@ public class LibroDAO {
      * @return Lista de categorías
      */
     public List<String> obtenerCategorias() {
+        InstantaneaCatalogo instantanea = InstantaneaCatalogo.getInstance();
+        if (instantanea.estaAlDia()) {
+            return instantanea.obtenerCategorias();
+        }
         List<String> categorias = new ArrayList<>();
         String sql = "SELECT DISTINCT categoria FROM libros ORDER BY categoria";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
                 categorias.add(rs.getString("categoria"));
             }
+            ultimosResultados.guardar("libros.categorias", categorias);
 
         } catch (SQLException e) {
             System.err.println("✗ Error al obtener categorías: " + e.getMessage());
-            e.printStackTrace();
+            return ultimosResultados.obtener("libros.categorias", categorias);
         }
         return categorias;
     }
@@ -319,6 +583,10 @@ public class LibroDAO {
      * @return true si el ISBN ya existe, false en caso contrario
      */
     public boolean existeISBN(String isbn, int idExcluir) {
+        // Un ISBN que el filtro no conoce no existe: sin consulta
+        if (!IndiceUnicidad.getInstance().podriaExistirIsbn(isbn)) {
+            return false;
+        }
         String sql = "SELECT COUNT(*) FROM libros WHERE isbn = ? AND id != ?";
 
         try (Connection conn = dbConnection.conectar();
@@ -341,44 +609,257 @@ public class LibroDAO {
 
     /**
      * Obtiene la cantidad total de libros
+     * Las tablas virtuales cuentan al empezar cada listado: aquí se fija
+     * de dónde saldrán sus páginas (la instantánea del catálogo o MySQL).
      *
      * @return Número total de libros
      */
     public int contarLibros() {
+        InstantaneaCatalogo.Fijada instantanea = InstantaneaCatalogo.getInstance().fijar();
+        instantaneaListado = instantanea;
+        if (instantanea != null) {
+            return instantanea.contarLibros();
+        }
         String sql = "SELECT COUNT(*) FROM libros";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
-                return rs.getInt(1);
+                int total = rs.getInt(1);
+                ultimosResultados.guardar("libros.contar", total);
+                return total;
             }
 
         } catch (SQLException e) {
             System.err.println("✗ Error al contar libros: " + e.getMessage());
-            e.printStackTrace();
+            return ultimosResultados.obtener("libros.contar", 0);
         }
         return 0;
     }
 
+    /**
+     * Obtiene la versión de fila actual de la base de datos
+     * Debe leerse antes de una carga completa para luego pedir
+     * cambiosDesde(version) sin perder escrituras concurrentes.
+     *
+     * @return Versión actual, o -1 si no se pudo consultar
+     */
+    public long obtenerVersionActual() {
+        return cambiosDAO.obtenerVersionActual();
+    }
+
+    /**
+     * Obtiene con la conexión indicada la versión de fila actual
+     * Pensado para hilos de fondo, con una conexión dedicada.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @return Versión actual
+     * @throws SQLException Si hay error en la consulta
+     */
+    public long obtenerVersionActual(Connection conn) throws SQLException {
+        return cambiosDAO.obtenerVersionActual(conn);
+    }
+
+    /**
+     * Obtiene los cambios de libros posteriores a una versión
+     * Permite actualizar una lista ya cargada sin recargarla entera.
+     *
+     * @param version Última versión conocida por quien consulta
+     * @return Filas creadas o modificadas e IDs eliminados desde esa versión
+     */
+    public Cambios<Libro> cambiosDesde(long version) {
+        long versionActual = cambiosDAO.obtenerVersionActual();
+        if (versionActual < 0 || versionActual <= version) {
+            return Cambios.sinCambios(version);
+        }
+        if (!cambiosDAO.historialCompleto(version, versionActual)) {
+            return Cambios.recargaCompleta(versionActual);
+        }
+
+        List<Libro> modificados = new ArrayList<>();
+        String sql = "SELECT " + COLUMNAS + " " +
+                "FROM libros " +
+                "WHERE version > ? AND version <= ?";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, version);
+            pstmt.setLong(2, versionActual);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                modificados.add(mapearLibro(rs));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener cambios de libros: " + e.getMessage());
+            e.printStackTrace();
+            return Cambios.sinCambios(version);
+        }
+
+        List<Integer> eliminados = cambiosDAO.obtenerEliminados("LIBRO", version, versionActual);
+        return new Cambios<>(modificados, eliminados, versionActual, false);
+    }
+
+    /**
+     * Recorre id, título, categoría y stock de los libros cambiados
+     * desde una versión, sin crear objetos Libro
+     * Usa la conexión que recibe: pensado para hilos de fondo con una
+     * conexión dedicada.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo libros con versión posterior (-1 para todos)
+     * @param visitante Recibe cada libro
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerResumen(Connection conn, long versionDesde, VisitanteLibroResumen visitante)
+            throws SQLException {
+        String sql = "SELECT id, titulo, categoria, stock FROM libros WHERE version > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.visitar(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4));
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuenta los libros con la conexión indicada
+     *
+     * @param conn Conexión dedicada del llamador
+     * @return Número total de libros
+     * @throws SQLException Si hay error en la consulta
+     */
+    public int contarLibros(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM libros")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Recorre el título y el autor de los libros, en streaming
+     * Usa la conexión que recibe: pensado para hilos de fondo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo libros con versión posterior (-1 para todos)
+     * @param visitante Recibe el ID, el título y el autor de cada libro
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerTextos(Connection conn, long versionDesde, VisitanteTextos visitante)
+            throws SQLException {
+        String sql = "SELECT id, titulo, autor FROM libros WHERE version > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.visitar(rs.getInt(1), rs.getString(2), rs.getString(3));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recorre los ISBN de los libros, en streaming
+     * Usa la conexión que recibe: pensado para hilos de fondo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo libros con versión posterior (-1 para todos)
+     * @param visitante Recibe cada ISBN (los libros sin ISBN se omiten)
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerIsbn(Connection conn, long versionDesde, Consumer<String> visitante)
+            throws SQLException {
+        String sql = "SELECT isbn FROM libros WHERE version > ? AND isbn IS NOT NULL";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.accept(rs.getString(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recorre los libros completos, en streaming
+     * Usa la conexión que recibe: pensado para hilos de fondo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo libros con versión posterior (-1 para todos)
+     * @param visitante Recibe cada libro
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerDesde(Connection conn, long versionDesde, Consumer<Libro> visitante)
+            throws SQLException {
+        String sql = "SELECT " + COLUMNAS + " FROM libros WHERE version > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.accept(mapearLibro(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recibe un libro de recorrerTextos
+     */
+    @FunctionalInterface
+    public interface VisitanteTextos {
+        void visitar(int id, String titulo, String autor);
+    }
+
+    /**
+     * Recibe un libro de recorrerResumen
+     */
+    @FunctionalInterface
+    public interface VisitanteLibroResumen {
+        void visitar(int id, String titulo, String categoria, int stock);
+    }
+
+    private static String clavePagina(String tabla, int desde, int cantidad, String columna, boolean ascendente) {
+        return tabla + ".pagina:" + desde + ":" + cantidad + ":" + columna + ":" + ascendente;
+    }
+
     /**
      * Mapea un ResultSet a un objeto Libro
+     * Lee las columnas por posición, en el orden de COLUMNAS: el driver no
+     * tiene que buscar cada nombre en cada fila.
      *
-     * @param rs ResultSet con los datos del libro
+     * @param rs ResultSet con las columnas de COLUMNAS
      * @return Objeto Libro mapeado
      * @throws SQLException Si hay error al leer los datos
      */
     private Libro mapearLibro(ResultSet rs) throws SQLException {
         return new Libro(
-                rs.getInt("id"),
-                rs.getString("titulo"),
-                rs.getString("autor"),
-                rs.getString("categoria"),
-                rs.getInt("stock"),
-                rs.getInt("anio_publicacion"),
-                rs.getString("isbn"),
-                rs.getString("editorial")
+                rs.getInt(1),
+                rs.getString(2),
+                AUTORES.canonica(rs.getString(3)),
+                CATEGORIAS.canonica(rs.getString(4)),
+                rs.getInt(5),
+                rs.getInt(6),
+                rs.getString(7),
+                EDITORIALES.canonica(rs.getString(8))
         );
     }
 }
\ No newline at end of file
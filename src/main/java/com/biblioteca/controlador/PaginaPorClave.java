@@ -0,0 +1,114 @@
+package com.biblioteca.controlador;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Carga una página de un listado ordenado por (columna, id)
+ *
+ * Con OFFSET la base de datos lee y descarta todas las filas anteriores a
+ * la página, así que cada página cuesta más que la anterior. Cuando la
+ * tabla virtual ya tiene la fila vecina del bloque (la última del bloque
+ * anterior o la primera del siguiente), la página se pide a partir de
+ * ella: columna >= valor AND (columna > valor OR id > idAncla), que
+ * recorre el índice de la columna desde ese punto (InnoDB añade id a todo
+ * índice secundario). Sin fila vecina, al saltar con la barra de
+ * desplazamiento, se usa OFFSET.
+ *
+ * Sólo para columnas NOT NULL con índice: los DAO lo garantizan con su
+ * lista de columnas de orden.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+final class PaginaPorClave {
+
+    /**
+     * Convierte la fila actual de un ResultSet en un objeto
+     *
+     * @param <T> Tipo de fila
+     */
+    @FunctionalInterface
+    interface Mapeador<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    private PaginaPorClave() {
+    }
+
+    /**
+     * Carga una página
+     *
+     * @param conn Conexión a usar
+     * @param columnas Columnas del SELECT, en el orden que lee el mapeador
+     * @param tabla Tabla del listado
+     * @param columna Columna de orden (NOT NULL, con índice, ya validada)
+     * @param ascendente true para orden ascendente
+     * @param desde Posición de la primera fila; sólo se usa sin ancla
+     * @param cantidad Número máximo de filas
+     * @param valorAncla Valor de la columna en la fila vecina, o null para usar OFFSET
+     * @param idAncla ID de la fila vecina
+     * @param haciaDelante true si la página va después de la fila vecina; false si va antes
+     * @param mapeador Convierte cada fila
+     * @param <T> Tipo de fila
+     * @return Filas de la página en el orden del listado
+     * @throws SQLException Si hay error en la consulta
+     */
+    static <T> List<T> cargar(Connection conn, String columnas, String tabla, String columna, boolean ascendente,
+                              int desde, int cantidad, Object valorAncla, int idAncla, boolean haciaDelante,
+                              Mapeador<T> mapeador) throws SQLException {
+        boolean conAncla = valorAncla != null;
+        // Hacia atrás se recorre el índice en sentido contrario y luego se invierte la lista
+        boolean creciente = conAncla && !haciaDelante ? !ascendente : ascendente;
+        String direccion = creciente ? "ASC" : "DESC";
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(columnas).append(" FROM ").append(tabla);
+        if (conAncla) {
+            String operador = creciente ? ">" : "<";
+            if (columna.equals("id")) {
+                sql.append(" WHERE id ").append(operador).append(" ?");
+            } else {
+                sql.append(" WHERE ").append(columna).append(' ').append(operador).append("= ? AND (")
+                        .append(columna).append(' ').append(operador).append(" ? OR id ")
+                        .append(operador).append(" ?)");
+            }
+        }
+        sql.append(" ORDER BY ").append(columna).append(' ').append(direccion)
+                .append(", id ").append(direccion).append(" LIMIT ?");
+        if (!conAncla) {
+            sql.append(" OFFSET ?");
+        }
+
+        List<T> filas = new ArrayList<>(cantidad);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int parametro = 1;
+            if (conAncla) {
+                if (!columna.equals("id")) {
+                    pstmt.setObject(parametro++, valorAncla);
+                    pstmt.setObject(parametro++, valorAncla);
+                }
+                pstmt.setInt(parametro++, idAncla);
+            }
+            pstmt.setInt(parametro++, cantidad);
+            if (!conAncla) {
+                pstmt.setInt(parametro, desde);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    filas.add(mapeador.mapear(rs));
+                }
+            }
+        }
+        if (conAncla && !haciaDelante) {
+            Collections.reverse(filas);
+        }
+        return filas;
+    }
+}
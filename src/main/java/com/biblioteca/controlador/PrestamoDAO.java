@@ -1,12 +1,20 @@
 package com.biblioteca.controlador;
 
+import com.biblioteca.modelo.EstadisticasLibro;
 import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.modelo.Reserva;
+import com.biblioteca.modelo.ResultadoEscritura;
+import com.biblioteca.util.BusCambios;
 import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.FechaNegocio;
+import com.biblioteca.util.UltimosResultados;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Clase DAO para gestionar operaciones CRUD de Préstamos
@@ -14,19 +22,59 @@ import java.util.List;
  * Esta clase maneja todas las operaciones relacionadas con préstamos
  * de libros, incluyendo control de fechas y estados.
  *
+ * Las escrituras van a la tabla prestamos; las consultas leen de
+ * prestamos_vista, que los triggers mantienen con el nombre del usuario
+ * y el título del libro ya resueltos. Los préstamos devueltos antiguos se
+ * mueven a prestamos_historico (ArchivadorPrestamos); sólo se consultan
+ * cuando se pide el historial de forma explícita.
+ *
  * @author Biblioteca Inteligente Team
  * @version 1.0
  * @since 2025
  */
 public class PrestamoDAO {
 
+    // Columnas por las que se puede ordenar una página (evita inyectar SQL en ORDER BY):
+    // sólo NOT NULL y con índice en prestamos_vista, para paginar por clave sin ordenar en memoria
+    private static final Set<String> COLUMNAS_ORDEN = Set.of(
+            "id", "nombre_usuario", "titulo_libro", "fecha_prestamo", "fecha_devolucion_esperada");
+
+    // Orden de buscarPorVencimiento: vencimiento más próximo primero, luego ID
+    private static final Comparator<Prestamo> ORDEN_VENCIMIENTO =
+            Comparator.comparing(Prestamo::getFechaDevolucionEsperada).thenComparing(Prestamo::getId);
+
+    // Columnas que muestran las listas: sin observaciones (TEXT), que se
+    // cargan con buscarPorId al abrir el detalle o al modificar el préstamo
+    // (visible en el paquete para BenchmarkMapeo)
+    static final String COLUMNAS_LISTA = "id, id_usuario, id_libro, fecha_prestamo, " +
+            "fecha_devolucion_esperada, fecha_devolucion_real, estado, nombre_usuario, titulo_libro";
+
+    // Columnas completas, comunes de prestamos_vista y prestamos_historico
+    // (para UNION ALL). Empiezan por COLUMNAS_LISTA: los mapeadores leen
+    // por posición y comparten las nueve primeras
+    private static final String COLUMNAS = COLUMNAS_LISTA + ", observaciones";
+
+    // Día en que se ejecutó por última vez la actualización de retrasados
+    private static LocalDate ultimaActualizacionRetrasados;
+
+    // Días de préstamo cuando un ejemplar devuelto se asigna a una reserva
+    private static final int DIAS_PRESTAMO_RESERVA = 14;
+
     private DatabaseConnection dbConnection;
+    private BusCambios busCambios;
+    private CambiosDAO cambiosDAO;
+    private UltimosResultados ultimosResultados;
+    private ReservaDAO reservaDAO;
 
     /**
      * Constructor que inicializa la conexión a la base de datos
      */
     public PrestamoDAO() {
         this.dbConnection = DatabaseConnection.getInstance();
+        this.busCambios = BusCambios.getInstance();
+        this.cambiosDAO = new CambiosDAO();
+        this.ultimosResultados = UltimosResultados.getInstance();
+        this.reservaDAO = new ReservaDAO();
     }
 
     /**
@@ -34,14 +82,37 @@ public class PrestamoDAO {
      * El trigger automáticamente decrementará el stock del libro
      *
      * @param prestamo Objeto Prestamo a insertar
-     * @return true si se insertó correctamente, false en caso contrario
+     * @return Resultado: guardado, en la cola local del modo sucursal o fallido
+     */
+    public ResultadoEscritura insertar(Prestamo prestamo) {
+        try (Connection conn = dbConnection.conectar()) {
+
+            if (insertar(conn, prestamo)) {
+                System.out.println("✓ Préstamo registrado con ID: " + prestamo.getId());
+                busCambios.notificarEscritura();
+                return ResultadoEscritura.guardada();
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al insertar préstamo: " + e.getMessage());
+            // Modo sucursal sin conexión: el préstamo queda en la cola local
+            if (ColaEscrituras.esErrorDeConexion(e) && EspejoLocal.estaHabilitado()) {
+                return ColaEscrituras.getInstance().encolarPrestamo(prestamo)
+                        ? ResultadoEscritura.enCola() : ResultadoEscritura.fallida();
+            }
+            e.printStackTrace();
+        }
+        return ResultadoEscritura.fallida();
+    }
+
+    /**
+     * Inserta un préstamo con la conexión indicada y le asigna el ID generado
      */
-    public boolean insertar(Prestamo prestamo) {
+    boolean insertar(Connection conn, Prestamo prestamo) throws SQLException {
         String sql = "INSERT INTO prestamos (id_usuario, id_libro, fecha_prestamo, " +
                 "fecha_devolucion_esperada, estado, observaciones) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = dbConnection.conectar();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             pstmt.setInt(1, prestamo.getIdUsuario());
             pstmt.setInt(2, prestamo.getIdLibro());
@@ -50,22 +121,16 @@ public class PrestamoDAO {
             pstmt.setString(5, prestamo.getEstado().name());
             pstmt.setString(6, prestamo.getObservaciones());
 
-            int filasAfectadas = pstmt.executeUpdate();
-
-            if (filasAfectadas > 0) {
-                ResultSet rs = pstmt.getGeneratedKeys();
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
                 if (rs.next()) {
                     prestamo.setId(rs.getInt(1));
                 }
-                System.out.println("✓ Préstamo registrado con ID: " + prestamo.getId());
-                return true;
             }
-
-        } catch (SQLException e) {
-            System.err.println("✗ Error al insertar préstamo: " + e.getMessage());
-            e.printStackTrace();
+            return true;
         }
-        return false;
     }
 
     /**
@@ -101,6 +166,7 @@ public class PrestamoDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Préstamo actualizado con ID: " + prestamo.getId());
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -113,33 +179,97 @@ public class PrestamoDAO {
 
     /**
      * Registra la devolución de un libro
-     * El trigger automáticamente incrementará el stock del libro
+     * El trigger automáticamente incrementará el stock del libro.
+     *
+     * Si el libro tiene reservas en espera de usuarios activos, en la
+     * misma transacción se presta el ejemplar devuelto a la primera
+     * reserva de la cola y se marca como asignada. Las filas de préstamo,
+     * reserva y usuario quedan bloqueadas hasta el commit, así que dos
+     * devoluciones simultáneas del mismo libro atienden reservas distintas
+     * y el usuario no se puede desactivar a mitad de la asignación.
+     *
+     * La transacción usa una conexión propia, no la compartida de
+     * conectar(): otro DAO que escriba mientras tanto no entra en ella.
      *
      * @param idPrestamo ID del préstamo a marcar como devuelto
-     * @return true si se actualizó correctamente, false en caso contrario
+     * @return Resultado: guardado (con la reserva asignada, si la hubo), en la
+     *         cola local del modo sucursal o fallido
+     */
+    public ResultadoEscritura registrarDevolucion(int idPrestamo) {
+        try (Connection conn = dbConnection.abrirConexionTransaccion()) {
+            conn.setAutoCommit(false);
+            try {
+                ResultadoEscritura resultado = registrarDevolucion(conn, idPrestamo, FechaNegocio.hoy());
+                if (!resultado.isAceptada()) {
+                    conn.rollback();
+                    return resultado;
+                }
+                conn.commit();
+                busCambios.notificarEscritura();
+                return resultado;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al registrar devolución: " + e.getMessage());
+            // Modo sucursal sin conexión: la devolución queda en la cola local
+            if (ColaEscrituras.esErrorDeConexion(e) && EspejoLocal.estaHabilitado()) {
+                return ColaEscrituras.getInstance().encolarDevolucion(idPrestamo)
+                        ? ResultadoEscritura.enCola() : ResultadoEscritura.fallida();
+            }
+            e.printStackTrace();
+        }
+        return ResultadoEscritura.fallida();
+    }
+
+    /**
+     * Registra una devolución dentro de la transacción del llamador
+     * Bloquea el préstamo, lo marca como devuelto y, si el libro tiene
+     * reservas en espera de usuarios activos, presta el ejemplar a la
+     * primera. Si el préstamo de la reserva no se puede insertar lanza
+     * SQLException para que el llamador deshaga también la devolución.
+     *
+     * @return Resultado con la reserva asignada; fallido si el préstamo no
+     *         existe o ya estaba devuelto
      */
-    public boolean registrarDevolucion(int idPrestamo) {
+    ResultadoEscritura registrarDevolucion(Connection conn, int idPrestamo, LocalDate fecha) throws SQLException {
+        String sqlBloqueo = "SELECT id_libro FROM prestamos WHERE id = ? AND estado != 'DEVUELTO' FOR UPDATE";
         String sql = "UPDATE prestamos SET fecha_devolucion_real = ?, estado = ? WHERE id = ?";
 
-        try (Connection conn = dbConnection.conectar();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        int idLibro;
+        try (PreparedStatement pstmt = conn.prepareStatement(sqlBloqueo)) {
+            pstmt.setInt(1, idPrestamo);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return ResultadoEscritura.fallida();
+                }
+                idLibro = rs.getInt(1);
+            }
+        }
 
-            pstmt.setDate(1, Date.valueOf(LocalDate.now()));
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(fecha));
             pstmt.setString(2, Prestamo.EstadoPrestamo.DEVUELTO.name());
             pstmt.setInt(3, idPrestamo);
+            pstmt.executeUpdate();
+        }
 
-            int filasAfectadas = pstmt.executeUpdate();
-
-            if (filasAfectadas > 0) {
-                System.out.println("✓ Devolución registrada para préstamo ID: " + idPrestamo);
-                return true;
+        Reserva reserva = reservaDAO.siguienteEnEspera(conn, idLibro);
+        System.out.println("✓ Devolución registrada para préstamo ID: " + idPrestamo);
+        if (reserva != null) {
+            Prestamo prestamoReserva = new Prestamo(reserva.getIdUsuario(), idLibro, DIAS_PRESTAMO_RESERVA);
+            prestamoReserva.setObservaciones("Asignado por la reserva #" + reserva.getId());
+            if (!insertar(conn, prestamoReserva)) {
+                throw new SQLException("No se pudo crear el préstamo de la reserva #" + reserva.getId());
             }
-
-        } catch (SQLException e) {
-            System.err.println("✗ Error al registrar devolución: " + e.getMessage());
-            e.printStackTrace();
+            reservaDAO.marcarAsignada(conn, reserva, prestamoReserva.getId());
+            System.out.println("✓ Reserva ID " + reserva.getId() + " asignada con el préstamo ID: "
+                    + prestamoReserva.getId());
         }
-        return false;
+        return ResultadoEscritura.guardada(reserva);
     }
 
     /**
@@ -159,6 +289,7 @@ public class PrestamoDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Préstamo eliminado con ID: " + id);
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -176,11 +307,7 @@ public class PrestamoDAO {
      * @return Objeto Prestamo si se encuentra, null en caso contrario
      */
     public Prestamo buscarPorId(int id) {
-        String sql = "SELECT p.*, CONCAT(u.nombre, ' ', u.apellido) as nombre_usuario, l.titulo as titulo_libro " +
-                "FROM prestamos p " +
-                "INNER JOIN usuarios u ON p.id_usuario = u.id " +
-                "INNER JOIN libros l ON p.id_libro = l.id " +
-                "WHERE p.id = ?";
+        String sql = "SELECT " + COLUMNAS + " FROM prestamos_vista WHERE id = ?";
 
         try (Connection conn = dbConnection.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -206,18 +333,14 @@ public class PrestamoDAO {
      */
     public List<Prestamo> obtenerTodos() {
         List<Prestamo> prestamos = new ArrayList<>();
-        String sql = "SELECT p.*, CONCAT(u.nombre, ' ', u.apellido) as nombre_usuario, l.titulo as titulo_libro " +
-                "FROM prestamos p " +
-                "INNER JOIN usuarios u ON p.id_usuario = u.id " +
-                "INNER JOIN libros l ON p.id_libro = l.id " +
-                "ORDER BY p.fecha_prestamo DESC";
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM prestamos_vista ORDER BY fecha_prestamo DESC, id DESC";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                prestamos.add(mapearPrestamo(rs));
+                prestamos.add(mapearFila(rs));
             }
 
         } catch (SQLException e) {
@@ -227,26 +350,251 @@ public class PrestamoDAO {
         return prestamos;
     }
 
+    /**
+     * Obtiene una página de prestamos ordenada por la base de datos
+     * Usado por las tablas virtuales, que cargan las filas por bloques
+     * desde su hilo de carga: abre una conexión dedicada, no la compartida.
+     * Con una fila vecina ya cargada la página se pide a partir de ella
+     * (ver PaginaPorClave); sin ella, por posición.
+     *
+     * @param desde Posición de la primera fila (0 = primera)
+     * @param cantidad Número máximo de filas
+     * @param orden Columna de orden (id, nombre_usuario, titulo_libro, fecha_prestamo, fecha_devolucion_esperada); otra se ignora
+     * @param ascendente true para orden ascendente
+     * @param ancla Fila vecina de la página, o null
+     * @param haciaDelante true si la página va después del ancla; false si va antes
+     * @return Lista de prestamos de la página
+     */
+    public List<Prestamo> obtenerPagina(int desde, int cantidad, String orden, boolean ascendente,
+                                     Prestamo ancla, boolean haciaDelante) {
+        String columna = COLUMNAS_ORDEN.contains(orden) ? orden : "fecha_prestamo";
+
+        try (Connection conn = dbConnection.abrirConexionDedicada()) {
+            List<Prestamo> prestamos = PaginaPorClave.cargar(conn, COLUMNAS_LISTA, "prestamos_vista", columna, ascendente,
+                    desde, cantidad, ancla == null ? null : valorOrden(ancla, columna),
+                    ancla == null ? 0 : ancla.getId(), haciaDelante, PrestamoDAO::mapearFila);
+            ultimosResultados.guardar(clavePagina("prestamos", desde, cantidad, columna, ascendente), prestamos);
+            return prestamos;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener página de prestamos: " + e.getMessage());
+            return ultimosResultados.obtener(clavePagina("prestamos", desde, cantidad, columna, ascendente),
+                    new ArrayList<>());
+        }
+    }
+
+    // Valor de la columna de orden en un préstamo, para paginar a partir de él
+    private static Object valorOrden(Prestamo prestamo, String columna) {
+        switch (columna) {
+            case "id":
+                return prestamo.getId();
+            case "nombre_usuario":
+                return prestamo.getNombreUsuario();
+            case "titulo_libro":
+                return prestamo.getTituloLibro();
+            case "fecha_devolucion_esperada":
+                return Date.valueOf(prestamo.getFechaDevolucionEsperada());
+            default:
+                return Date.valueOf(prestamo.getFechaPrestamo());
+        }
+    }
+
+    /**
+     * Obtiene la cantidad total de prestamos
+     *
+     * @return Número total de prestamos
+     */
+    public int contarPrestamos() {
+        String sql = "SELECT COUNT(*) FROM prestamos_vista";
+
+        try (Connection conn = dbConnection.conectarLectura();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                int total = rs.getInt(1);
+                ultimosResultados.guardar("prestamos.contar", total);
+                return total;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al contar prestamos: " + e.getMessage());
+            return ultimosResultados.obtener("prestamos.contar", 0);
+        }
+        return 0;
+    }
+
+    /**
+     * Busca una página de préstamos con filtros combinables
+     *
+     * Paginación por clave (keyset) sobre (estado, fecha_prestamo, id): las
+     * filas salen agrupadas por estado y, dentro de cada estado, de la más
+     * reciente a la más antigua. Para cada estado se consulta un rango del
+     * índice idx_estado_fecha a partir del cursor, sin OFFSET, de modo que
+     * pedir la página 1000 cuesta lo mismo que pedir la primera.
+     *
+     * @param estados Estados a incluir (null o vacío = todos)
+     * @param idUsuario Usuario del préstamo (null = cualquiera)
+     * @param idLibro Libro del préstamo (null = cualquiera)
+     * @param desde Fecha de préstamo mínima (null = sin límite)
+     * @param hasta Fecha de préstamo máxima (null = sin límite)
+     * @param cursor Última fila de la página anterior (null = primera página)
+     * @param limite Número máximo de filas
+     * @return Lista de préstamos de la página; si trae menos de limite, no hay más
+     */
+    public List<Prestamo> buscar(Set<Prestamo.EstadoPrestamo> estados, Integer idUsuario, Integer idLibro,
+                                 LocalDate desde, LocalDate hasta, Prestamo cursor, int limite) {
+        List<Prestamo> prestamos = new ArrayList<>();
+
+        try (Connection conn = dbConnection.conectarLectura()) {
+            // Los estados se recorren en el orden del ENUM de la tabla
+            for (Prestamo.EstadoPrestamo estado : Prestamo.EstadoPrestamo.values()) {
+                if (prestamos.size() >= limite) {
+                    break;
+                }
+                if (estados != null && !estados.isEmpty() && !estados.contains(estado)) {
+                    continue;
+                }
+                if (cursor != null && estado.ordinal() < cursor.getEstado().ordinal()) {
+                    continue;
+                }
+                boolean continuarDesdeCursor = cursor != null && estado == cursor.getEstado();
+
+                StringBuilder sql = new StringBuilder("SELECT " + COLUMNAS_LISTA + " FROM prestamos_vista WHERE estado = ?");
+                if (idUsuario != null) {
+                    sql.append(" AND id_usuario = ?");
+                }
+                if (idLibro != null) {
+                    sql.append(" AND id_libro = ?");
+                }
+                if (desde != null) {
+                    sql.append(" AND fecha_prestamo >= ?");
+                }
+                if (hasta != null) {
+                    sql.append(" AND fecha_prestamo <= ?");
+                }
+                if (continuarDesdeCursor) {
+                    sql.append(" AND (fecha_prestamo < ? OR (fecha_prestamo = ? AND id < ?))");
+                }
+                sql.append(" ORDER BY fecha_prestamo DESC, id DESC LIMIT ?");
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    int i = 1;
+                    pstmt.setString(i++, estado.name());
+                    if (idUsuario != null) {
+                        pstmt.setInt(i++, idUsuario);
+                    }
+                    if (idLibro != null) {
+                        pstmt.setInt(i++, idLibro);
+                    }
+                    if (desde != null) {
+                        pstmt.setDate(i++, Date.valueOf(desde));
+                    }
+                    if (hasta != null) {
+                        pstmt.setDate(i++, Date.valueOf(hasta));
+                    }
+                    if (continuarDesdeCursor) {
+                        pstmt.setDate(i++, Date.valueOf(cursor.getFechaPrestamo()));
+                        pstmt.setDate(i++, Date.valueOf(cursor.getFechaPrestamo()));
+                        pstmt.setInt(i++, cursor.getId());
+                    }
+                    pstmt.setInt(i, limite - prestamos.size());
+
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        prestamos.add(mapearFila(rs));
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al buscar préstamos: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return prestamos;
+    }
+
+    /**
+     * Busca una página de préstamos sin devolver por fecha de vencimiento
+     *
+     * Paginación por clave (keyset) sobre (fecha_devolucion_esperada, id),
+     * del vencimiento más próximo al más lejano. Cada estado sin devolver se
+     * consulta como un rango del índice idx_estado_vencimiento a partir del
+     * cursor, con LIMIT; las tres listas ya ordenadas se mezclan y se
+     * queda la página con las primeras filas.
+     *
+     * @param soloRetrasados true para los retrasados y los pendientes o renovados ya vencidos
+     * @param cursor Última fila de la página anterior (null = primera página)
+     * @param limite Número máximo de filas
+     * @return Lista de préstamos de la página; si trae menos de limite, no hay más
+     */
+    public List<Prestamo> buscarPorVencimiento(boolean soloRetrasados, Prestamo cursor, int limite) {
+        List<Prestamo> prestamos = new ArrayList<>();
+        Date hoy = Date.valueOf(FechaNegocio.hoy());
+
+        try (Connection conn = dbConnection.conectarLectura()) {
+            for (Prestamo.EstadoPrestamo estado : Prestamo.EstadoPrestamo.values()) {
+                if (estado == Prestamo.EstadoPrestamo.DEVUELTO) {
+                    continue;
+                }
+                // El UPDATE diario aún puede no haber marcado los vencidos de hoy
+                boolean soloVencidos = soloRetrasados && estado != Prestamo.EstadoPrestamo.RETRASADO;
+
+                StringBuilder sql = new StringBuilder("SELECT " + COLUMNAS_LISTA + " FROM prestamos_vista WHERE estado = ?");
+                if (soloVencidos) {
+                    sql.append(" AND fecha_devolucion_esperada < ?");
+                }
+                if (cursor != null) {
+                    sql.append(" AND (fecha_devolucion_esperada > ? OR (fecha_devolucion_esperada = ? AND id > ?))");
+                }
+                sql.append(" ORDER BY fecha_devolucion_esperada ASC, id ASC LIMIT ?");
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    int i = 1;
+                    pstmt.setString(i++, estado.name());
+                    if (soloVencidos) {
+                        pstmt.setDate(i++, hoy);
+                    }
+                    if (cursor != null) {
+                        pstmt.setDate(i++, Date.valueOf(cursor.getFechaDevolucionEsperada()));
+                        pstmt.setDate(i++, Date.valueOf(cursor.getFechaDevolucionEsperada()));
+                        pstmt.setInt(i++, cursor.getId());
+                    }
+                    pstmt.setInt(i, limite);
+
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        prestamos.add(mapearFila(rs));
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al buscar préstamos por vencimiento: " + e.getMessage());
+            e.printStackTrace();
+        }
+        prestamos.sort(ORDEN_VENCIMIENTO);
+        return prestamos.size() > limite ? new ArrayList<>(prestamos.subList(0, limite)) : prestamos;
+    }
+
     /**
      * Obtiene préstamos activos (pendientes, retrasados o renovados)
+     * Lista completa para los reportes; la tabla usa buscarPorVencimiento.
      *
      * @return Lista de préstamos activos
      */
     public List<Prestamo> obtenerPrestamosActivos() {
         List<Prestamo> prestamos = new ArrayList<>();
-        String sql = "SELECT p.*, CONCAT(u.nombre, ' ', u.apellido) as nombre_usuario, l.titulo as titulo_libro " +
-                "FROM prestamos p " +
-                "INNER JOIN usuarios u ON p.id_usuario = u.id " +
-                "INNER JOIN libros l ON p.id_libro = l.id " +
-                "WHERE p.estado IN ('PENDIENTE', 'RETRASADO', 'RENOVADO') " +
-                "ORDER BY p.fecha_devolucion_esperada ASC";
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM prestamos_vista " +
+                "WHERE estado IN ('PENDIENTE', 'RETRASADO', 'RENOVADO') " +
+                "ORDER BY fecha_devolucion_esperada ASC, id ASC";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                prestamos.add(mapearPrestamo(rs));
+                prestamos.add(mapearFila(rs));
             }
 
         } catch (SQLException e) {
@@ -258,25 +606,23 @@ public class PrestamoDAO {
 
     /**
      * Obtiene préstamos retrasados
+     * Lista completa para los reportes; la tabla usa buscarPorVencimiento.
      *
      * @return Lista de préstamos retrasados
      */
     public List<Prestamo> obtenerPrestamosRetrasados() {
         List<Prestamo> prestamos = new ArrayList<>();
-        String sql = "SELECT p.*, CONCAT(u.nombre, ' ', u.apellido) as nombre_usuario, l.titulo as titulo_libro " +
-                "FROM prestamos p " +
-                "INNER JOIN usuarios u ON p.id_usuario = u.id " +
-                "INNER JOIN libros l ON p.id_libro = l.id " +
-                "WHERE p.estado = 'RETRASADO' OR " +
-                "(p.estado IN ('PENDIENTE', 'RENOVADO') AND p.fecha_devolucion_esperada < CURRENT_DATE) " +
-                "ORDER BY p.fecha_devolucion_esperada ASC";
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM prestamos_vista " +
+                "WHERE estado = 'RETRASADO' OR " +
+                "(estado IN ('PENDIENTE', 'RENOVADO') AND fecha_devolucion_esperada < CURRENT_DATE) " +
+                "ORDER BY fecha_devolucion_esperada ASC, id ASC";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                prestamos.add(mapearPrestamo(rs));
+                prestamos.add(mapearFila(rs));
             }
 
         } catch (SQLException e) {
@@ -288,23 +634,39 @@ public class PrestamoDAO {
 
     /**
      * Obtiene préstamos de un usuario específico
+     * No incluye los préstamos archivados.
      *
      * @param idUsuario ID del usuario
      * @return Lista de préstamos del usuario
      */
     public List<Prestamo> obtenerPorUsuario(int idUsuario) {
-        List<Prestamo> prestamos = new ArrayList<>();
-        String sql = "SELECT p.*, CONCAT(u.nombre, ' ', u.apellido) as nombre_usuario, l.titulo as titulo_libro " +
-                "FROM prestamos p " +
-                "INNER JOIN usuarios u ON p.id_usuario = u.id " +
-                "INNER JOIN libros l ON p.id_libro = l.id " +
-                "WHERE p.id_usuario = ? " +
-                "ORDER BY p.fecha_prestamo DESC";
+        return obtenerPorUsuario(idUsuario, false);
+    }
 
-        try (Connection conn = dbConnection.conectar();
+    /**
+     * Obtiene préstamos de un usuario específico
+     *
+     * @param idUsuario ID del usuario
+     * @param incluirHistorico true para incluir también los préstamos archivados
+     * @return Lista de préstamos del usuario
+     */
+    public List<Prestamo> obtenerPorUsuario(int idUsuario, boolean incluirHistorico) {
+        List<Prestamo> prestamos = new ArrayList<>();
+        String sql = incluirHistorico ?
+                "SELECT " + COLUMNAS + " FROM prestamos_vista WHERE id_usuario = ? " +
+                "UNION ALL " +
+                "SELECT " + COLUMNAS + " FROM prestamos_historico WHERE id_usuario = ? " +
+                "ORDER BY fecha_prestamo DESC" :
+                "SELECT " + COLUMNAS + " FROM prestamos_vista WHERE id_usuario = ? " +
+                "ORDER BY fecha_prestamo DESC";
+
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, idUsuario);
+            if (incluirHistorico) {
+                pstmt.setInt(2, idUsuario);
+            }
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -320,23 +682,39 @@ public class PrestamoDAO {
 
     /**
      * Obtiene préstamos de un libro específico
+     * No incluye los préstamos archivados.
      *
      * @param idLibro ID del libro
      * @return Lista de préstamos del libro
      */
     public List<Prestamo> obtenerPorLibro(int idLibro) {
-        List<Prestamo> prestamos = new ArrayList<>();
-        String sql = "SELECT p.*, CONCAT(u.nombre, ' ', u.apellido) as nombre_usuario, l.titulo as titulo_libro " +
-                "FROM prestamos p " +
-                "INNER JOIN usuarios u ON p.id_usuario = u.id " +
-                "INNER JOIN libros l ON p.id_libro = l.id " +
-                "WHERE p.id_libro = ? " +
-                "ORDER BY p.fecha_prestamo DESC";
+        return obtenerPorLibro(idLibro, false);
+    }
 
-        try (Connection conn = dbConnection.conectar();
+    /**
+     * Obtiene préstamos de un libro específico
+     *
+     * @param idLibro ID del libro
+     * @param incluirHistorico true para incluir también los préstamos archivados
+     * @return Lista de préstamos del libro
+     */
+    public List<Prestamo> obtenerPorLibro(int idLibro, boolean incluirHistorico) {
+        List<Prestamo> prestamos = new ArrayList<>();
+        String sql = incluirHistorico ?
+                "SELECT " + COLUMNAS + " FROM prestamos_vista WHERE id_libro = ? " +
+                "UNION ALL " +
+                "SELECT " + COLUMNAS + " FROM prestamos_historico WHERE id_libro = ? " +
+                "ORDER BY fecha_prestamo DESC" :
+                "SELECT " + COLUMNAS + " FROM prestamos_vista WHERE id_libro = ? " +
+                "ORDER BY fecha_prestamo DESC";
+
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, idLibro);
+            if (incluirHistorico) {
+                pstmt.setInt(2, idLibro);
+            }
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -350,6 +728,92 @@ public class PrestamoDAO {
         return prestamos;
     }
 
+    /**
+     * Obtiene la circulación de un libro: vencimientos de los ejemplares
+     * prestados y total de préstamos, incluidos los archivados
+     * Sólo lee índices (idx_libro_estado e idx_libro_fecha), sin traer
+     * filas completas ni nombres.
+     *
+     * @param idLibro ID del libro
+     * @return Estadísticas del libro, o null si no se pudieron leer
+     */
+    public EstadisticasLibro obtenerEstadisticasLibro(int idLibro) {
+        String sqlActivos = "SELECT fecha_devolucion_esperada FROM prestamos_vista " +
+                "WHERE id_libro = ? AND estado IN ('PENDIENTE', 'RETRASADO', 'RENOVADO') " +
+                "ORDER BY fecha_devolucion_esperada";
+        String sqlTotal = "SELECT (SELECT COUNT(*) FROM prestamos_vista WHERE id_libro = ?) + " +
+                "(SELECT COUNT(*) FROM prestamos_historico WHERE id_libro = ?)";
+        List<LocalDate> vencimientos = new ArrayList<>();
+        int total = 0;
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmtActivos = conn.prepareStatement(sqlActivos);
+             PreparedStatement pstmtTotal = conn.prepareStatement(sqlTotal)) {
+
+            pstmtActivos.setInt(1, idLibro);
+            try (ResultSet rs = pstmtActivos.executeQuery()) {
+                while (rs.next()) {
+                    vencimientos.add(rs.getDate(1).toLocalDate());
+                }
+            }
+
+            pstmtTotal.setInt(1, idLibro);
+            pstmtTotal.setInt(2, idLibro);
+            try (ResultSet rs = pstmtTotal.executeQuery()) {
+                if (rs.next()) {
+                    total = rs.getInt(1);
+                }
+            }
+
+            return new EstadisticasLibro(idLibro, vencimientos, total);
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener estadísticas del libro: " + e.getMessage());
+            e.printStackTrace();
+        }
+        // Un error no es "sin préstamos": el llamador decide qué hacer
+        return null;
+    }
+
+    /**
+     * Obtiene el historial de préstamos entre dos fechas de préstamo,
+     * incluidos los archivados
+     * El filtro por fecha_prestamo limita la lectura del archivo a las
+     * particiones de los años del rango.
+     *
+     * @param desde Fecha de préstamo inicial (inclusiva)
+     * @param hasta Fecha de préstamo final (inclusiva)
+     * @return Lista de préstamos del periodo
+     */
+    public List<Prestamo> obtenerHistorial(LocalDate desde, LocalDate hasta) {
+        List<Prestamo> prestamos = new ArrayList<>();
+        String sql = "SELECT " + COLUMNAS + " FROM prestamos_vista " +
+                "WHERE fecha_prestamo BETWEEN ? AND ? " +
+                "UNION ALL " +
+                "SELECT " + COLUMNAS + " FROM prestamos_historico " +
+                "WHERE fecha_prestamo BETWEEN ? AND ? " +
+                "ORDER BY fecha_prestamo DESC";
+
+        try (Connection conn = dbConnection.conectarLectura();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setDate(1, Date.valueOf(desde));
+            pstmt.setDate(2, Date.valueOf(hasta));
+            pstmt.setDate(3, Date.valueOf(desde));
+            pstmt.setDate(4, Date.valueOf(hasta));
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                prestamos.add(mapearPrestamo(rs));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener historial de préstamos: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return prestamos;
+    }
+
     /**
      * Actualiza estados de préstamos retrasados
      * Ejecuta el procedimiento almacenado sp_actualizar_prestamos_retrasados
@@ -366,6 +830,9 @@ public class PrestamoDAO {
             if (rs.next()) {
                 int actualizados = rs.getInt("prestamos_actualizados");
                 System.out.println("✓ Préstamos retrasados actualizados: " + actualizados);
+                if (actualizados > 0) {
+                    busCambios.notificarEscritura();
+                }
                 return actualizados;
             }
 
@@ -376,15 +843,35 @@ public class PrestamoDAO {
         return 0;
     }
 
+    /**
+     * Actualiza los préstamos retrasados sólo una vez al día
+     * Los préstamos pasan a RETRASADO al cambiar de día, así que basta con
+     * ejecutar la actualización la primera vez que se consulta en cada día;
+     * las pantallas ya no la lanzan en cada carga.
+     *
+     * @return Número de préstamos actualizados (0 si ya se ejecutó hoy)
+     */
+    public int actualizarPrestamosRetrasadosSiCorresponde() {
+        LocalDate hoy = FechaNegocio.hoy();
+        synchronized (PrestamoDAO.class) {
+            if (hoy.equals(ultimaActualizacionRetrasados)) {
+                return 0;
+            }
+            ultimaActualizacionRetrasados = hoy;
+        }
+        return actualizarPrestamosRetrasados();
+    }
+
     /**
      * Verifica si un usuario tiene préstamos pendientes
+     * Lee el contador de resumen_usuarios (clave primaria) que mantienen
+     * los triggers, en lugar de contar filas de prestamos.
      *
      * @param idUsuario ID del usuario
      * @return true si tiene préstamos pendientes, false en caso contrario
      */
     public boolean tienePrestamosActivos(int idUsuario) {
-        String sql = "SELECT COUNT(*) FROM prestamos WHERE id_usuario = ? " +
-                "AND estado IN ('PENDIENTE', 'RETRASADO', 'RENOVADO')";
+        String sql = "SELECT prestamos_activos FROM resumen_usuarios WHERE id_usuario = ?";
 
         try (Connection conn = dbConnection.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -412,47 +899,308 @@ public class PrestamoDAO {
     public int contarPorEstado(Prestamo.EstadoPrestamo estado) {
         String sql = "SELECT COUNT(*) FROM prestamos WHERE estado = ?";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, estado.name());
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                return rs.getInt(1);
+                int total = rs.getInt(1);
+                ultimosResultados.guardar("prestamos.contar:" + estado, total);
+                return total;
             }
 
         } catch (SQLException e) {
             System.err.println("✗ Error al contar préstamos: " + e.getMessage());
-            e.printStackTrace();
+            return ultimosResultados.obtener("prestamos.contar:" + estado, 0);
         }
         return 0;
     }
 
+    /**
+     * Obtiene la versión de fila actual de la base de datos
+     * Debe leerse antes de una carga completa para luego pedir
+     * cambiosDesde(version) sin perder escrituras concurrentes.
+     *
+     * @return Versión actual, o -1 si no se pudo consultar
+     */
+    public long obtenerVersionActual() {
+        return cambiosDAO.obtenerVersionActual();
+    }
+
+    /**
+     * Obtiene los cambios de préstamos posteriores a una versión
+     * Permite actualizar una lista ya cargada sin recargarla entera.
+     *
+     * @param version Última versión conocida por quien consulta
+     * @return Filas creadas o modificadas e IDs eliminados desde esa versión
+     */
+    public Cambios<Prestamo> cambiosDesde(long version) {
+        long versionActual = cambiosDAO.obtenerVersionActual();
+        if (versionActual < 0 || versionActual <= version) {
+            return Cambios.sinCambios(version);
+        }
+        if (!cambiosDAO.historialCompleto(version, versionActual)) {
+            return Cambios.recargaCompleta(versionActual);
+        }
+
+        List<Prestamo> modificados = new ArrayList<>();
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM prestamos_vista WHERE version > ? AND version <= ?";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, version);
+            pstmt.setLong(2, versionActual);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                modificados.add(mapearFila(rs));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener cambios de préstamos: " + e.getMessage());
+            e.printStackTrace();
+            return Cambios.sinCambios(version);
+        }
+
+        List<Integer> eliminados = cambiosDAO.obtenerEliminados("PRESTAMO", version, versionActual);
+        return new Cambios<>(modificados, eliminados, versionActual, false);
+    }
+
+    /**
+     * Recorre los préstamos en formato compacto, sin crear objetos por fila
+     * Las fechas llegan como epoch-day (días desde 1970-01-01, -1 si es
+     * NULL) y el estado como ordinal de EstadoPrestamo, calculados por la
+     * base de datos. El resultado se lee en streaming (fetch size
+     * Integer.MIN_VALUE), así que recorrer millones de filas no las
+     * acumula en memoria.
+     *
+     * Usa la conexión que recibe: pensado para hilos de fondo con una
+     * conexión dedicada, no para la conexión compartida.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo filas con versión posterior (-1 para todas)
+     * @param incluirHistorico true para recorrer también prestamos_historico
+     * @param visitante Recibe cada fila
+     * @return Número de filas recorridas
+     * @throws SQLException Si hay error en la consulta
+     */
+    public int recorrerCompacto(Connection conn, long versionDesde, boolean incluirHistorico,
+                                VisitantePrestamoCompacto visitante) throws SQLException {
+        String columnas = "id, id_usuario, id_libro, " +
+                "TO_DAYS(fecha_prestamo) - 719528, " +
+                "TO_DAYS(fecha_devolucion_esperada) - 719528, " +
+                "COALESCE(TO_DAYS(fecha_devolucion_real) - 719528, -1), " +
+                "estado + 0 - 1, version";
+        String sql = "SELECT " + columnas + " FROM prestamos WHERE version > ?";
+        if (incluirHistorico) {
+            sql += " UNION ALL SELECT " + columnas + " FROM prestamos_historico WHERE version > ?";
+        }
+
+        int filas = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            if (incluirHistorico) {
+                pstmt.setLong(2, versionDesde);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.visitar(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                            rs.getInt(4), rs.getInt(5), rs.getInt(6),
+                            rs.getInt(7), rs.getLong(8));
+                    filas++;
+                }
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Cuenta los préstamos de cada libro y día desde una fecha
+     * Una sola consulta agregada sobre el índice de fecha_prestamo de
+     * prestamos_vista; usa la conexión que recibe.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param desde Fecha de préstamo inicial (inclusiva)
+     * @param visitante Recibe (idLibro, epoch-day, cantidad)
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void contarPorLibroYDia(Connection conn, LocalDate desde, VisitanteConteoDia visitante)
+            throws SQLException {
+        String sql = "SELECT id_libro, TO_DAYS(fecha_prestamo) - 719528, COUNT(*) " +
+                "FROM prestamos_vista WHERE fecha_prestamo >= ? GROUP BY id_libro, fecha_prestamo";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(desde));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.visitar(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuenta por libro y día los préstamos indicados
+     * Cada préstamo cuenta en el día de su fecha_prestamo, no en el día en
+     * que se consulta. Los préstamos de libros ya eliminados se omiten.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param idsPrestamo IDs de los préstamos (al menos uno)
+     * @param visitante Recibe (idLibro, epoch-day, cantidad)
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void contarPorLibroYDia(Connection conn, int[] idsPrestamo, VisitanteConteoDia visitante)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT p.id_libro, TO_DAYS(p.fecha_prestamo) - 719528, COUNT(*) " +
+                "FROM prestamos p JOIN libros l ON l.id = p.id_libro WHERE p.id IN (?");
+        for (int i = 1; i < idsPrestamo.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(") GROUP BY p.id_libro, p.fecha_prestamo");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < idsPrestamo.length; i++) {
+                pstmt.setInt(i + 1, idsPrestamo[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.visitar(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuenta los préstamos de cada libro por semanas, incluido el archivo
+     * La semana 0 empieza en la fecha desde; las filas llegan ordenadas por
+     * libro y semana y se leen en streaming, así que el historial de un
+     * catálogo grande no se acumula en memoria. Usa la conexión que recibe.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param desde Primer día de la semana 0 (inclusivo)
+     * @param hasta Fin del periodo (exclusivo)
+     * @param visitante Recibe (idLibro, semana, cantidad)
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void contarPorLibroYSemana(Connection conn, LocalDate desde, LocalDate hasta,
+                                      VisitanteConteoDia visitante) throws SQLException {
+        String filtro = " WHERE fecha_prestamo >= ? AND fecha_prestamo < ?";
+        String sql = "SELECT id_libro, (TO_DAYS(fecha_prestamo) - TO_DAYS(?)) DIV 7 AS semana, COUNT(*) " +
+                "FROM (SELECT id_libro, fecha_prestamo FROM prestamos_vista" + filtro +
+                " UNION ALL SELECT id_libro, fecha_prestamo FROM prestamos_historico" + filtro + ") p " +
+                "GROUP BY id_libro, semana ORDER BY id_libro, semana";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setDate(1, Date.valueOf(desde));
+            pstmt.setDate(2, Date.valueOf(desde));
+            pstmt.setDate(3, Date.valueOf(hasta));
+            pstmt.setDate(4, Date.valueOf(desde));
+            pstmt.setDate(5, Date.valueOf(hasta));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.visitar(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene la duración media de los préstamos devueltos desde una fecha
+     * Incluye los préstamos archivados. Usa la conexión que recibe.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param desde Fecha de préstamo inicial (inclusiva)
+     * @return Días medios entre préstamo y devolución, o 0 si no hay devoluciones
+     * @throws SQLException Si hay error en la consulta
+     */
+    public double obtenerDuracionMedia(Connection conn, LocalDate desde) throws SQLException {
+        String filtro = " WHERE fecha_prestamo >= ? AND fecha_devolucion_real IS NOT NULL";
+        String sql = "SELECT AVG(DATEDIFF(fecha_devolucion_real, fecha_prestamo)) " +
+                "FROM (SELECT fecha_prestamo, fecha_devolucion_real FROM prestamos_vista" + filtro +
+                " UNION ALL SELECT fecha_prestamo, fecha_devolucion_real FROM prestamos_historico" + filtro + ") p";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(desde));
+            pstmt.setDate(2, Date.valueOf(desde));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Recibe un conteo de contarPorLibroYDia o contarPorLibroYSemana
+     */
+    @FunctionalInterface
+    public interface VisitanteConteoDia {
+        void visitar(int idLibro, int dia, int cantidad);
+    }
+
+    /**
+     * Recibe una fila de recorrerCompacto
+     */
+    @FunctionalInterface
+    public interface VisitantePrestamoCompacto {
+        void visitar(int id, int idUsuario, int idLibro, int fechaPrestamo, int vencimiento,
+                     int devolucion, int estado, long version);
+    }
+
+    private static String clavePagina(String tabla, int desde, int cantidad, String columna, boolean ascendente) {
+        return tabla + ".pagina:" + desde + ":" + cantidad + ":" + columna + ":" + ascendente;
+    }
+
     /**
      * Mapea un ResultSet a un objeto Prestamo
      *
-     * @param rs ResultSet con los datos del préstamo
+     * @param rs ResultSet con las columnas de COLUMNAS
      * @return Objeto Prestamo mapeado
      * @throws SQLException Si hay error al leer los datos
      */
     private Prestamo mapearPrestamo(ResultSet rs) throws SQLException {
+        Prestamo prestamo = mapearFila(rs);
+        prestamo.setObservaciones(rs.getString(10));
+        return prestamo;
+    }
+
+    /**
+     * Mapea una fila de COLUMNAS_LISTA a un Prestamo de lista
+     * Las observaciones quedan en null: no debe pasarse a actualizar.
+     *
+     * Lee las columnas por posición, en el orden de COLUMNAS_LISTA: el
+     * driver no tiene que buscar cada nombre en cada fila. Visible en el
+     * paquete para que BenchmarkMapeo mida este mismo mapeo.
+     *
+     * @param rs ResultSet con las columnas de lista (o con COLUMNAS)
+     * @return Prestamo sin observaciones
+     * @throws SQLException Si hay error al leer los datos
+     */
+    static Prestamo mapearFila(ResultSet rs) throws SQLException {
+        Date devolucionReal = rs.getDate(6);
         Prestamo prestamo = new Prestamo(
-                rs.getInt("id"),
-                rs.getInt("id_usuario"),
-                rs.getInt("id_libro"),
-                rs.getDate("fecha_prestamo").toLocalDate(),
-                rs.getDate("fecha_devolucion_esperada").toLocalDate(),
-                rs.getDate("fecha_devolucion_real") != null ?
-                        rs.getDate("fecha_devolucion_real").toLocalDate() : null,
-                Prestamo.EstadoPrestamo.valueOf(rs.getString("estado")),
-                rs.getString("observaciones")
+                rs.getInt(1),
+                rs.getInt(2),
+                rs.getInt(3),
+                rs.getDate(4).toLocalDate(),
+                rs.getDate(5).toLocalDate(),
+                devolucionReal != null ? devolucionReal.toLocalDate() : null,
+                Prestamo.EstadoPrestamo.valueOf(rs.getString(7)),
+                null
         );
 
-        // Agregar datos de usuario y libro para visualización
-        prestamo.setNombreUsuario(rs.getString("nombre_usuario"));
-        prestamo.setTituloLibro(rs.getString("titulo_libro"));
-
+        // Datos de usuario y libro para visualización (materializados en prestamos_vista)
+        prestamo.setNombreUsuario(rs.getString(8));
+        prestamo.setTituloLibro(rs.getString(9));
         return prestamo;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,338 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.FechaNegocio;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pronóstico de demanda y stock recomendado por libro
+ *
+ * Periódicamente lee el historial de préstamos (incluido el archivo)
+ * agregado por libro y semana, en streaming y en arreglos de enteros sin
+ * objetos por fila, y pronostica la demanda de cada libro:
+ *
+ * 1. Estacionalidad: un índice por semana del año calculado sobre el
+ *    total del catálogo (los libros sueltos tienen demasiados ceros para
+ *    estimar la suya). La serie de cada libro se desestacionaliza con él.
+ * 2. Tendencia: suavizado exponencial doble de Holt con tendencia
+ *    amortiguada, para que un par de semanas buenas no proyecte una
+ *    subida indefinida.
+ * 3. Stock: por la ley de Little, los ejemplares prestados a la vez son la
+ *    demanda semanal por la duración media del préstamo; se añade un
+ *    margen de Z desviaciones (demanda de Poisson) para cubrir picos.
+ *
+ * Los libros se reparten en tramos entre los hilos de ForkJoinPool y el
+ * resultado se escribe por lotes en stock_recomendado (StockRecomendadoDAO).
+ *
+ * Configuración (propiedades del sistema):
+ * -Dbiblioteca.pronostico.semanas=104      semanas de historial
+ * -Dbiblioteca.pronostico.horizonte=8      semanas a pronosticar
+ * -Dbiblioteca.pronostico.intervaloHoras=24 horas entre cálculos
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class PronosticoDemanda {
+
+    private static final int SEMANAS = Math.max(8, Integer.getInteger("biblioteca.pronostico.semanas", 104));
+    private static final int HORIZONTE = Math.max(1, Integer.getInteger("biblioteca.pronostico.horizonte", 8));
+    private static final long INTERVALO_HORAS = Long.getLong("biblioteca.pronostico.intervaloHoras", 24L);
+
+    // Parámetros del modelo de Holt: nivel, tendencia y amortiguación
+    private static final double ALFA = 0.3;
+    private static final double BETA = 0.1;
+    private static final double FI = 0.9;
+
+    // Margen de seguridad: ~95 % de las semanas sin quedarse sin ejemplares
+    private static final double Z = 1.65;
+    // Por debajo de esta carga (préstamos simultáneos) no se recomienda nada
+    private static final double CARGA_MINIMA = 0.01;
+
+    private static final int SEMANAS_ANIO = 52;
+    private static final double DURACION_POR_DEFECTO = 14;
+    private static final int LIBROS_POR_TAREA = 2048;
+
+    // Instancia única (Singleton)
+    private static PronosticoDemanda instancia;
+
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+    private final StockRecomendadoDAO stockRecomendadoDAO = new StockRecomendadoDAO();
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * Historial agregado: las semanas con préstamos de cada libro, en
+     * formato CSR (las entradas del libro i van de inicio[i] a inicio[i + 1])
+     */
+    private static final class Historial {
+        int[] idsLibro = new int[1024];
+        int[] inicio = new int[1025];
+        int[] semanas = new int[8192];
+        int[] cantidades = new int[8192];
+        int libros;
+        int entradas;
+
+        void agregar(int idLibro, int semana, int cantidad) {
+            if (libros == 0 || idsLibro[libros - 1] != idLibro) {
+                if (libros == idsLibro.length) {
+                    idsLibro = Arrays.copyOf(idsLibro, libros * 2);
+                    inicio = Arrays.copyOf(inicio, libros * 2 + 1);
+                }
+                idsLibro[libros++] = idLibro;
+            }
+            if (entradas == semanas.length) {
+                semanas = Arrays.copyOf(semanas, entradas * 2);
+                cantidades = Arrays.copyOf(cantidades, entradas * 2);
+            }
+            semanas[entradas] = semana;
+            cantidades[entradas++] = cantidad;
+            inicio[libros] = entradas;
+        }
+    }
+
+    /**
+     * Pronostica un tramo de libros; divide el tramo hasta LIBROS_POR_TAREA
+     */
+    private static final class TareaPronostico extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Historial historial;
+        private final double[] estacionalidad;
+        private final double duracionSemanas;
+        private final double[] demanda;
+        private final int[] recomendados;
+        private final int desde;
+        private final int hasta;
+
+        TareaPronostico(Historial historial, double[] estacionalidad, double duracionSemanas,
+                        double[] demanda, int[] recomendados, int desde, int hasta) {
+            this.historial = historial;
+            this.estacionalidad = estacionalidad;
+            this.duracionSemanas = duracionSemanas;
+            this.demanda = demanda;
+            this.recomendados = recomendados;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > LIBROS_POR_TAREA) {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(
+                        new TareaPronostico(historial, estacionalidad, duracionSemanas,
+                                demanda, recomendados, desde, medio),
+                        new TareaPronostico(historial, estacionalidad, duracionSemanas,
+                                demanda, recomendados, medio, hasta));
+                return;
+            }
+
+            double[] serie = new double[SEMANAS];
+            for (int i = desde; i < hasta; i++) {
+                Arrays.fill(serie, 0);
+                for (int e = historial.inicio[i]; e < historial.inicio[i + 1]; e++) {
+                    serie[historial.semanas[e]] = historial.cantidades[e];
+                }
+                demanda[i] = pronosticar(serie, estacionalidad);
+                recomendados[i] = ejemplaresNecesarios(demanda[i], duracionSemanas);
+            }
+        }
+    }
+
+    private PronosticoDemanda() {
+    }
+
+    /**
+     * Obtiene la única instancia de PronosticoDemanda (Singleton)
+     *
+     * @return Instancia única de PronosticoDemanda
+     */
+    public static PronosticoDemanda getInstance() {
+        if (instancia == null) {
+            synchronized (PronosticoDemanda.class) {
+                if (instancia == null) {
+                    instancia = new PronosticoDemanda();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Inicia el cálculo periódico
+     * La primera ejecución se retrasa cinco minutos para no cargar el arranque.
+     */
+    public synchronized void iniciar() {
+        if (planificador != null) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pronostico-demanda");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::calcular, 5, INTERVALO_HORAS * 60, TimeUnit.MINUTES);
+        System.out.println("✓ Pronóstico de demanda iniciado (" + SEMANAS + " semanas de historial)");
+    }
+
+    /**
+     * Detiene el cálculo periódico
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+
+    /**
+     * Calcula el pronóstico de todos los libros y lo guarda en stock_recomendado
+     *
+     * @return Número de libros con pronóstico
+     */
+    public int calcular() {
+        long inicioMs = System.currentTimeMillis();
+        LocalDateTime fechaCalculo = LocalDateTime.now();
+        // Semanas completas que terminan ayer: la semana en curso iría a medias
+        LocalDate hasta = FechaNegocio.hoy();
+        LocalDate desde = hasta.minusWeeks(SEMANAS);
+
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            Historial historial = new Historial();
+            prestamoDAO.contarPorLibroYSemana(conn, desde, hasta, historial::agregar);
+
+            double duracion = prestamoDAO.obtenerDuracionMedia(conn, desde);
+            double duracionSemanas = (duracion > 0 ? duracion : DURACION_POR_DEFECTO) / 7.0;
+            double[] estacionalidad = calcularEstacionalidad(historial);
+
+            double[] demanda = new double[historial.libros];
+            int[] recomendados = new int[historial.libros];
+            ForkJoinPool.commonPool().invoke(new TareaPronostico(historial, estacionalidad,
+                    duracionSemanas, demanda, recomendados, 0, historial.libros));
+
+            // Se guardan sólo los libros con demanda apreciable; el resto
+            // pierde su fila al borrar las de cálculos anteriores
+            int[] ids = new int[historial.libros];
+            int cantidad = 0;
+            for (int i = 0; i < historial.libros; i++) {
+                if (recomendados[i] > 0) {
+                    ids[cantidad] = historial.idsLibro[i];
+                    demanda[cantidad] = demanda[i];
+                    recomendados[cantidad] = recomendados[i];
+                    cantidad++;
+                }
+            }
+            stockRecomendadoDAO.guardar(conn, ids, demanda, recomendados, cantidad, fechaCalculo);
+
+            System.out.println("✓ Pronóstico de demanda: " + cantidad + " libros con stock recomendado ("
+                    + historial.libros + " con historial, " + (System.currentTimeMillis() - inicioMs) + " ms)");
+            return cantidad;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al calcular el pronóstico de demanda: " + e.getMessage());
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // Una excepción que saliera de aquí cancelaría en silencio las ejecuciones siguientes
+            System.err.println("✗ Error inesperado al calcular el pronóstico de demanda: " + e);
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Índice estacional por semana del año sobre el total del catálogo
+     * Posición p de la serie → índice (p - SEMANAS) mod 52, de modo que la
+     * semana siguiente al historial cae en el índice 0. Con menos de dos
+     * años de historial no hay estacionalidad que estimar: todo 1.
+     */
+    private static double[] calcularEstacionalidad(Historial historial) {
+        double[] indice = new double[SEMANAS_ANIO];
+        Arrays.fill(indice, 1.0);
+        if (SEMANAS < 2 * SEMANAS_ANIO) {
+            return indice;
+        }
+
+        // Sólo años completos, contando desde el final del historial
+        int primera = SEMANAS % SEMANAS_ANIO;
+        double[] total = new double[SEMANAS];
+        for (int e = 0; e < historial.entradas; e++) {
+            total[historial.semanas[e]] += historial.cantidades[e];
+        }
+
+        double[] suma = new double[SEMANAS_ANIO];
+        double sumaTotal = 0;
+        for (int p = primera; p < SEMANAS; p++) {
+            suma[Math.floorMod(p - SEMANAS, SEMANAS_ANIO)] += total[p];
+            sumaTotal += total[p];
+        }
+        if (sumaTotal == 0) {
+            return indice;
+        }
+
+        // Media móvil de tres semanas para no seguir el ruido de una sola
+        double media = sumaTotal / SEMANAS_ANIO;
+        for (int s = 0; s < SEMANAS_ANIO; s++) {
+            double suavizada = (suma[Math.floorMod(s - 1, SEMANAS_ANIO)] + suma[s]
+                    + suma[(s + 1) % SEMANAS_ANIO]) / 3.0;
+            indice[s] = Math.min(4.0, Math.max(0.25, suavizada / media));
+        }
+        return indice;
+    }
+
+    /**
+     * Pronostica la demanda semanal media de los próximos HORIZONTE semanas
+     * con Holt amortiguado sobre la serie desestacionalizada
+     */
+    private static double pronosticar(double[] serie, double[] estacionalidad) {
+        // Nivel inicial: media de las primeras semanas, sin tendencia
+        int semanasIniciales = Math.min(4, serie.length);
+        double nivel = 0;
+        for (int p = 0; p < semanasIniciales; p++) {
+            nivel += serie[p] / estacionalidad[Math.floorMod(p - SEMANAS, SEMANAS_ANIO)];
+        }
+        nivel /= semanasIniciales;
+        double tendencia = 0;
+
+        for (int p = semanasIniciales; p < serie.length; p++) {
+            double valor = serie[p] / estacionalidad[Math.floorMod(p - SEMANAS, SEMANAS_ANIO)];
+            double nivelAnterior = nivel;
+            nivel = ALFA * valor + (1 - ALFA) * (nivel + FI * tendencia);
+            tendencia = BETA * (nivel - nivelAnterior) + (1 - BETA) * FI * tendencia;
+        }
+
+        double suma = 0;
+        double amortiguacion = 0;
+        double fiH = 1;
+        for (int h = 1; h <= HORIZONTE; h++) {
+            fiH *= FI;
+            amortiguacion += fiH;
+            double previsto = (nivel + amortiguacion * tendencia) * estacionalidad[(h - 1) % SEMANAS_ANIO];
+            suma += Math.max(0, previsto);
+        }
+        return suma / HORIZONTE;
+    }
+
+    /**
+     * Ejemplares para atender una demanda: préstamos simultáneos esperados
+     * (ley de Little) más Z desviaciones de Poisson
+     */
+    private static int ejemplaresNecesarios(double demandaSemanal, double duracionSemanas) {
+        double carga = demandaSemanal * duracionSemanas;
+        if (carga < CARGA_MINIMA) {
+            return 0;
+        }
+        return (int) Math.ceil(carga + Z * Math.sqrt(carga));
+    }
+}
@@ -0,0 +1,462 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.FechaNegocio;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Ranking de popularidad y demanda de libros en ventanas deslizantes
+ *
+ * Cada libro tiene un contador por día de los últimos DIAS_VENTANA días
+ * en un anillo de AtomicLongArray: cada casilla guarda el día al que
+ * pertenece y la cantidad, y se actualiza con compareAndSet, así que
+ * registrar un préstamo no toma cerrojos y los préstamos de libros
+ * distintos no compiten entre sí. Una casilla de un día ya fuera de la
+ * ventana se reutiliza al llegar el primer préstamo de su nuevo día.
+ *
+ * Se carga al arrancar con una consulta agregada de los últimos días y
+ * después se alimenta de los préstamos nuevos publicados por BusCambios.
+ * Cada préstamo nuevo cuenta en el día de su fecha_prestamo (una mesa
+ * puede registrar un préstamo con fecha anterior), que se lee de la base
+ * de datos por lotes en el hilo del ranking; los de libros eliminados se
+ * descartan. Si la carga falla se reintenta con espera creciente.
+ *
+ * las consultas (los más prestados por categoría y ventana, demanda
+ * frente a stock) recorren sólo los contadores en memoria y eligen los K
+ * mejores con un montículo de tamaño K, sin consultar prestamos.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class RankingLibros {
+
+    /** Días que abarca el ranking (la ventana más larga admitida) */
+    public static final int DIAS_VENTANA = 32;
+
+    // Espera antes de reintentar una carga fallida; se duplica en cada fallo
+    private static final long ESPERA_INICIAL_MS = 5_000;
+    private static final long ESPERA_MAXIMA_MS = 300_000;
+
+    // Instancia única (Singleton)
+    private static RankingLibros instancia;
+
+    /**
+     * Contadores de un libro
+     * Casilla del anillo: (día &lt;&lt; 32) | cantidad, índice = día % DIAS_VENTANA.
+     */
+    private static final class ContadorLibro {
+        final int idLibro;
+        final AtomicLongArray dias = new AtomicLongArray(DIAS_VENTANA);
+        volatile String titulo;
+        volatile String categoria;
+        volatile int stock;
+
+        ContadorLibro(int idLibro) {
+            this.idLibro = idLibro;
+        }
+
+        void sumar(int dia, int cantidad) {
+            int casilla = Math.floorMod(dia, DIAS_VENTANA);
+            long actual;
+            long nuevo;
+            do {
+                actual = dias.get(casilla);
+                int diaCasilla = (int) (actual >>> 32);
+                if (diaCasilla == dia) {
+                    nuevo = actual + cantidad;
+                } else if (diaCasilla < dia) {
+                    nuevo = ((long) dia << 32) | cantidad;
+                } else {
+                    // La casilla ya es de un día posterior: el dato cayó fuera de la ventana
+                    return;
+                }
+            } while (!dias.compareAndSet(casilla, actual, nuevo));
+        }
+
+        int contar(int hoy, int ventana) {
+            int total = 0;
+            for (int i = 0; i < DIAS_VENTANA; i++) {
+                long casilla = dias.get(i);
+                int dia = (int) (casilla >>> 32);
+                if (dia > hoy - ventana && dia <= hoy) {
+                    total += (int) casilla;
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Posición de un libro en un ranking
+     */
+    public static final class Entrada {
+        private final int idLibro;
+        private final String titulo;
+        private final String categoria;
+        private final int stock;
+        private final int prestamos;
+
+        Entrada(ContadorLibro contador, int prestamos) {
+            this.idLibro = contador.idLibro;
+            this.titulo = contador.titulo;
+            this.categoria = contador.categoria;
+            this.stock = contador.stock;
+            this.prestamos = prestamos;
+        }
+
+        public int getIdLibro() {
+            return idLibro;
+        }
+
+        public String getTitulo() {
+            return titulo;
+        }
+
+        public String getCategoria() {
+            return categoria;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        /**
+         * Obtiene los préstamos del libro en la ventana consultada
+         * @return Número de préstamos
+         */
+        public int getPrestamos() {
+            return prestamos;
+        }
+
+        /**
+         * Obtiene la demanda relativa al stock disponible
+         * @return Préstamos de la ventana por cada ejemplar disponible (+1)
+         */
+        public double getDemanda() {
+            return prestamos / (double) (stock + 1);
+        }
+    }
+
+    private final Map<Integer, ContadorLibro> contadores = new ConcurrentHashMap<>();
+    private final AtomicBoolean sincronizacionPendiente = new AtomicBoolean();
+    private final AtomicBoolean registroPendiente = new AtomicBoolean();
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+    private final LibroDAO libroDAO = new LibroDAO();
+    private final CambiosDAO cambiosDAO = new CambiosDAO();
+
+    // Préstamos nuevos recibidos durante la carga: {idPrestamo, versión}
+    private List<long[]> pendientes;
+    // Préstamos nuevos cuya fecha aún no se leyó
+    private final List<Integer> prestamosNuevos = new ArrayList<>();
+    private long versionLibros = -1;
+    private volatile boolean cargado;
+    private long esperaReintento = ESPERA_INICIAL_MS;
+    private ScheduledExecutorService ejecutor;
+
+    private RankingLibros() {
+    }
+
+    /**
+     * Obtiene la única instancia de RankingLibros (Singleton)
+     *
+     * @return Instancia única de RankingLibros
+     */
+    public static RankingLibros getInstance() {
+        if (instancia == null) {
+            synchronized (RankingLibros.class) {
+                if (instancia == null) {
+                    instancia = new RankingLibros();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Se suscribe a los cambios y carga los contadores en segundo plano
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "ranking-libros");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        pendientes = new ArrayList<>();
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::cargar);
+    }
+
+    /**
+     * Cancela la suscripción y el trabajo pendiente
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Indica si la carga inicial terminó
+     *
+     * @return true si los rankings reflejan todos los préstamos de la ventana
+     */
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * Obtiene los libros más prestados en los últimos días
+     *
+     * @param categoria Categoría a considerar (null para todas)
+     * @param dias Tamaño de la ventana en días (hasta DIAS_VENTANA)
+     * @param k Número de libros a devolver
+     * @return Hasta k libros, de más a menos prestado
+     */
+    public List<Entrada> masPrestados(String categoria, int dias, int k) {
+        return mejores(categoria, dias, k, Entrada::getPrestamos);
+    }
+
+    /**
+     * Obtiene los libros con más demanda en relación a su stock
+     * Sustituye al umbral fijo de stock bajo: un libro con stock 3 y
+     * veinte préstamos en la semana aparece antes que uno con stock 0
+     * que nadie pide.
+     *
+     * @param categoria Categoría a considerar (null para todas)
+     * @param dias Tamaño de la ventana en días (hasta DIAS_VENTANA)
+     * @param k Número de libros a devolver
+     * @return Hasta k libros, de mayor a menor demanda por ejemplar
+     */
+    public List<Entrada> demandaSobreStock(String categoria, int dias, int k) {
+        return mejores(categoria, dias, k, Entrada::getDemanda);
+    }
+
+    /**
+     * Registra un préstamo en el contador de su libro
+     * Se ignora si el libro no está en el ranking (por ejemplo, si se eliminó).
+     *
+     * @param idLibro ID del libro
+     * @param dia Día del préstamo (epoch-day)
+     */
+    public void registrarPrestamo(int idLibro, int dia) {
+        sumar(idLibro, dia, 1);
+    }
+
+    private void sumar(int idLibro, int dia, int cantidad) {
+        ContadorLibro contador = contadores.get(idLibro);
+        if (contador != null && contador.titulo != null) {
+            contador.sumar(dia, cantidad);
+        }
+    }
+
+    private List<Entrada> mejores(String categoria, int dias, int k, ToDoubleFunction<Entrada> criterio) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        int ventana = Math.min(Math.max(dias, 1), DIAS_VENTANA);
+        int hoy = (int) FechaNegocio.hoyEpochDay();
+        Comparator<Entrada> orden = Comparator.comparingDouble(criterio)
+                .thenComparing(Entrada::getIdLibro, Comparator.reverseOrder());
+
+        // La cima del montículo es el peor de los k elegidos hasta ahora
+        PriorityQueue<Entrada> monticulo = new PriorityQueue<>(k + 1, orden);
+        for (ContadorLibro contador : contadores.values()) {
+            if (categoria != null && !categoria.equals(contador.categoria)) {
+                continue;
+            }
+            int prestamos = contador.contar(hoy, ventana);
+            if (prestamos == 0) {
+                continue;
+            }
+            monticulo.offer(new Entrada(contador, prestamos));
+            if (monticulo.size() > k) {
+                monticulo.poll();
+            }
+        }
+
+        List<Entrada> resultado = new ArrayList<>(monticulo.size());
+        while (!monticulo.isEmpty()) {
+            resultado.add(monticulo.poll());
+        }
+        Collections.reverse(resultado);
+        return resultado;
+    }
+
+    private ContadorLibro contador(int idLibro) {
+        return contadores.computeIfAbsent(idLibro, ContadorLibro::new);
+    }
+
+    /**
+     * Carga los datos de los libros y los conteos de la ventana
+     * Los préstamos recibidos mientras tanto se conservan si la carga falla,
+     * y la carga se vuelve a programar.
+     */
+    private void cargar() {
+        long inicio = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            // Un intento anterior pudo quedarse a medias
+            contadores.clear();
+            long versionCarga = cambiosDAO.obtenerVersionActual(conn);
+            actualizarLibros(conn, -1);
+
+            LocalDate desde = FechaNegocio.hoy().minusDays(DIAS_VENTANA - 1);
+            prestamoDAO.contarPorLibroYDia(conn, desde, this::sumar);
+
+            // Los préstamos posteriores a la versión leída no estaban en la consulta
+            synchronized (this) {
+                for (long[] prestamo : pendientes) {
+                    if (prestamo[1] > versionCarga) {
+                        prestamosNuevos.add((int) prestamo[0]);
+                    }
+                }
+                pendientes = null;
+                versionLibros = versionCarga;
+            }
+            cargado = true;
+            esperaReintento = ESPERA_INICIAL_MS;
+            System.out.println("✓ Ranking de libros cargado: " + contadores.size() + " libros en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cargar el ranking de libros: " + e.getMessage());
+            programarReintento(this::cargar);
+            return;
+        }
+        registrarNuevos();
+    }
+
+    /**
+     * Suma los préstamos nuevos en el día de su fecha de préstamo
+     * Si la consulta falla, los préstamos se conservan y se reintenta.
+     */
+    private void registrarNuevos() {
+        int[] ids;
+        synchronized (this) {
+            if (prestamosNuevos.isEmpty()) {
+                return;
+            }
+            ids = prestamosNuevos.stream().mapToInt(Integer::intValue).toArray();
+            prestamosNuevos.clear();
+        }
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            prestamoDAO.contarPorLibroYDia(conn, ids, this::sumar);
+            esperaReintento = ESPERA_INICIAL_MS;
+        } catch (SQLException e) {
+            System.err.println("✗ Error al registrar préstamos en el ranking: " + e.getMessage());
+            synchronized (this) {
+                for (int id : ids) {
+                    prestamosNuevos.add(id);
+                }
+            }
+            programarReintento(this::registrarNuevos);
+        }
+    }
+
+    /**
+     * Vuelve a programar una tarea tras un fallo, con espera creciente
+     */
+    private void programarReintento(Runnable tarea) {
+        ScheduledExecutorService destino = ejecutor;
+        if (destino == null) {
+            return;
+        }
+        long espera = esperaReintento;
+        esperaReintento = Math.min(espera * 2, ESPERA_MAXIMA_MS);
+        try {
+            destino.schedule(tarea, espera, TimeUnit.MILLISECONDS);
+            System.out.println("  Nuevo intento del ranking de libros en " + espera / 1000 + " s");
+        } catch (RejectedExecutionException e) {
+            // El ranking se detuvo
+        }
+    }
+
+    /**
+     * Relee título, categoría y stock de los libros modificados
+     */
+    private void sincronizarLibros() {
+        if (!cargado) {
+            // La carga pendiente ya leerá todos los libros
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            long versionActual = cambiosDAO.obtenerVersionActual(conn);
+            actualizarLibros(conn, versionLibros);
+            versionLibros = versionActual;
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sincronizar el ranking de libros: " + e.getMessage());
+        }
+    }
+
+    private void actualizarLibros(Connection conn, long desde) throws SQLException {
+        libroDAO.recorrerResumen(conn, desde, (id, titulo, categoria, stock) -> {
+            ContadorLibro contador = contador(id);
+            contador.titulo = titulo;
+            contador.categoria = categoria;
+            contador.stock = stock;
+        });
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (evento.getEntidad() == EventoCambio.Entidad.PRESTAMO
+                && evento.getOperacion() == EventoCambio.Operacion.ALTA) {
+            synchronized (this) {
+                if (pendientes != null) {
+                    pendientes.add(new long[]{evento.getIdEntidad(), evento.getVersion()});
+                    return;
+                }
+                prestamosNuevos.add(evento.getIdEntidad());
+            }
+            // Detrás de una sincronización de libros ya encolada, que da de alta los libros nuevos
+            ScheduledExecutorService destino = ejecutor;
+            if (destino != null && registroPendiente.compareAndSet(false, true)) {
+                destino.execute(() -> {
+                    registroPendiente.set(false);
+                    registrarNuevos();
+                });
+            }
+
+        } else if (evento.getEntidad() == EventoCambio.Entidad.LIBRO) {
+            if (evento.getOperacion() == EventoCambio.Operacion.BAJA) {
+                contadores.remove(evento.getIdEntidad());
+                return;
+            }
+            // El hilo es único: si la carga está en curso, la sincronización espera a que termine
+            ScheduledExecutorService destino = ejecutor;
+            if (destino != null && sincronizacionPendiente.compareAndSet(false, true)) {
+                destino.execute(() -> {
+                    sincronizacionPendiente.set(false);
+                    sincronizarLibros();
+                });
+            }
+        }
+    }
+}
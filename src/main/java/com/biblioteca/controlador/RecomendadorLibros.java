@@ -0,0 +1,519 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.MapaBits;
+import com.biblioteca.util.MapaEnteros;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Recomendador "los lectores también pidieron" basado en co-préstamos
+ *
+ * Dos libros están relacionados cuando los mismos usuarios han pedido
+ * ambos. Para cada libro se guarda una fila dispersa (MapaEnteros) con
+ * cuántos usuarios lo comparten con cada otro libro; la puntuación de un
+ * par es esa cantidad dividida por la raíz del producto de lectores de
+ * ambos libros, para que los libros muy populares no aparezcan en todas
+ * las recomendaciones.
+ *
+ * La matriz se reconstruye en paralelo (ForkJoinPool, por tramos de
+ * usuarios) a partir de todo el historial, y cada préstamo nuevo la
+ * actualiza en el acto a través de BusCambios (locales y de otras
+ * instancias). Un libro eliminado sale de la matriz y de las
+ * recomendaciones de los demás. Las N mejores recomendaciones de cada
+ * libro se guardan hasta que su fila cambia, así que una consulta repetida
+ * sólo copia un arreglo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class RecomendadorLibros {
+
+    private static final int MAX_RECOMENDACIONES = 20;
+    private static final int USUARIOS_POR_TAREA = 2048;
+
+    // Instancia única (Singleton)
+    private static RecomendadorLibros instancia;
+
+    /**
+     * Estado del recomendador; una reconstrucción crea uno nuevo y lo
+     * sustituye entero. Se accede sincronizando sobre la instancia.
+     */
+    private static final class Modelo {
+        int[][] librosUsuario = new int[0][];
+        int[] numLibrosUsuario = new int[0];
+        MapaEnteros[] coocurrencias = new MapaEnteros[0];
+        int[] lectores = new int[0];
+        int[][] mejores = new int[0][];
+
+        /**
+         * Registra que un usuario pidió un libro
+         * No hace nada si ya lo había pedido: repetir un préstamo no
+         * refuerza la relación.
+         */
+        void registrar(int usuario, int libro) {
+            asegurarUsuario(usuario);
+            asegurarLibro(libro);
+
+            int[] libros = librosUsuario[usuario];
+            int n = numLibrosUsuario[usuario];
+            for (int i = 0; i < n; i++) {
+                if (libros[i] == libro) {
+                    return;
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                int otro = libros[i];
+                fila(libro).sumar(otro, 1);
+                fila(otro).sumar(libro, 1);
+                mejores[otro] = null;
+            }
+            mejores[libro] = null;
+            lectores[libro]++;
+
+            if (libros == null) {
+                libros = new int[4];
+            } else if (n == libros.length) {
+                libros = Arrays.copyOf(libros, n * 2);
+            }
+            libros[n] = libro;
+            librosUsuario[usuario] = libros;
+            numLibrosUsuario[usuario] = n + 1;
+        }
+
+        /**
+         * Quita un libro eliminado: su fila, su columna en las filas de los
+         * demás y su entrada en los libros de cada usuario, para que un
+         * préstamo posterior no lo vuelva a relacionar
+         */
+        void eliminarLibro(int libro) {
+            if (libro >= coocurrencias.length) {
+                return;
+            }
+            MapaEnteros fila = coocurrencias[libro];
+            if (fila != null) {
+                fila.recorrer((otro, comunes) -> {
+                    if (coocurrencias[otro] != null) {
+                        coocurrencias[otro].eliminar(libro);
+                    }
+                    mejores[otro] = null;
+                });
+            }
+            coocurrencias[libro] = null;
+            lectores[libro] = 0;
+            mejores[libro] = null;
+
+            for (int usuario = 0; usuario < librosUsuario.length; usuario++) {
+                int[] libros = librosUsuario[usuario];
+                int n = numLibrosUsuario[usuario];
+                for (int i = 0; i < n; i++) {
+                    if (libros[i] == libro) {
+                        libros[i] = libros[n - 1];
+                        numLibrosUsuario[usuario] = n - 1;
+                        break;
+                    }
+                }
+            }
+        }
+
+        MapaEnteros fila(int libro) {
+            MapaEnteros fila = coocurrencias[libro];
+            if (fila == null) {
+                fila = new MapaEnteros();
+                coocurrencias[libro] = fila;
+            }
+            return fila;
+        }
+
+        void asegurarUsuario(int usuario) {
+            if (usuario >= librosUsuario.length) {
+                int capacidad = Math.max(usuario + 1, librosUsuario.length * 2);
+                librosUsuario = Arrays.copyOf(librosUsuario, capacidad);
+                numLibrosUsuario = Arrays.copyOf(numLibrosUsuario, capacidad);
+            }
+        }
+
+        void asegurarLibro(int libro) {
+            if (libro >= coocurrencias.length) {
+                int capacidad = Math.max(libro + 1, coocurrencias.length * 2);
+                coocurrencias = Arrays.copyOf(coocurrencias, capacidad);
+                lectores = Arrays.copyOf(lectores, capacidad);
+                mejores = Arrays.copyOf(mejores, capacidad);
+            }
+        }
+
+        /**
+         * Calcula las mejores recomendaciones de un libro con un montículo
+         * de tamaño MAX_RECOMENDACIONES
+         */
+        int[] calcularMejores(int libro) {
+            MapaEnteros fila = coocurrencias[libro];
+            if (fila == null || fila.isEmpty()) {
+                return new int[0];
+            }
+            double lectoresLibro = lectores[libro];
+            // Cada candidato es {puntuación, id}; la cima es el peor de los elegidos
+            PriorityQueue<double[]> monticulo = new PriorityQueue<>(MAX_RECOMENDACIONES + 1,
+                    (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+            fila.recorrer((otro, comunes) -> {
+                double puntuacion = comunes / Math.sqrt(lectoresLibro * lectores[otro]);
+                monticulo.offer(new double[]{puntuacion, otro});
+                if (monticulo.size() > MAX_RECOMENDACIONES) {
+                    monticulo.poll();
+                }
+            });
+
+            int[] resultado = new int[monticulo.size()];
+            for (int i = resultado.length - 1; i >= 0; i--) {
+                resultado[i] = (int) monticulo.poll()[1];
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Filas de co-préstamos de un tramo de usuarios: sólo las de los libros
+     * que aparecen en el tramo, no un arreglo por cada libro del catálogo
+     */
+    private static final class FilasParciales {
+        final MapaEnteros posiciones = new MapaEnteros();
+        int[] libros = new int[16];
+        MapaEnteros[] filas = new MapaEnteros[16];
+        int tamano;
+
+        MapaEnteros fila(int libro) {
+            int i = posiciones.get(libro, -1);
+            if (i < 0) {
+                i = agregar(libro, new MapaEnteros());
+            }
+            return filas[i];
+        }
+
+        int agregar(int libro, MapaEnteros fila) {
+            if (tamano == libros.length) {
+                libros = Arrays.copyOf(libros, tamano * 2);
+                filas = Arrays.copyOf(filas, tamano * 2);
+            }
+            libros[tamano] = libro;
+            filas[tamano] = fila;
+            posiciones.put(libro, tamano);
+            return tamano++;
+        }
+
+        /**
+         * Suma las filas de otro tramo; las que no existen aquí se adoptan
+         */
+        void sumar(FilasParciales otro) {
+            for (int k = 0; k < otro.tamano; k++) {
+                int i = posiciones.get(otro.libros[k], -1);
+                if (i < 0) {
+                    agregar(otro.libros[k], otro.filas[k]);
+                } else {
+                    otro.filas[k].recorrer(filas[i]::sumar);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuenta los co-préstamos de un tramo de usuarios; los tramos se
+     * dividen hasta USUARIOS_POR_TAREA y las filas parciales se suman
+     */
+    private static final class TareaCoocurrencias extends RecursiveTask<FilasParciales> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] inicioUsuario;
+        private final int[] libros;
+        private final int desde;
+        private final int hasta;
+
+        TareaCoocurrencias(int[] inicioUsuario, int[] libros, int desde, int hasta) {
+            this.inicioUsuario = inicioUsuario;
+            this.libros = libros;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected FilasParciales compute() {
+            if (hasta - desde > USUARIOS_POR_TAREA) {
+                int medio = (desde + hasta) >>> 1;
+                TareaCoocurrencias izquierda = new TareaCoocurrencias(inicioUsuario, libros, desde, medio);
+                TareaCoocurrencias derecha = new TareaCoocurrencias(inicioUsuario, libros, medio, hasta);
+                izquierda.fork();
+                FilasParciales resultado = derecha.compute();
+                FilasParciales otro = izquierda.join();
+                // Se recorre el tramo con menos filas
+                if (otro.tamano > resultado.tamano) {
+                    otro.sumar(resultado);
+                    return otro;
+                }
+                resultado.sumar(otro);
+                return resultado;
+            }
+
+            FilasParciales filas = new FilasParciales();
+            for (int usuario = desde; usuario < hasta; usuario++) {
+                int inicio = inicioUsuario[usuario];
+                int fin = inicioUsuario[usuario + 1];
+                for (int i = inicio; i < fin; i++) {
+                    MapaEnteros fila = filas.fila(libros[i]);
+                    for (int j = inicio; j < fin; j++) {
+                        if (j != i) {
+                            fila.sumar(libros[j], 1);
+                        }
+                    }
+                }
+            }
+            return filas;
+        }
+    }
+
+    private final Consumer<EventoCambio> oyente = this::procesarEvento;
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+    private final LibroDAO libroDAO = new LibroDAO();
+
+    private Modelo modelo = new Modelo();
+    // Préstamos y libros eliminados recibidos durante una reconstrucción; se aplican al terminar
+    private List<int[]> pendientes;
+    private List<Integer> bajasPendientes;
+    private ExecutorService ejecutor;
+
+    private RecomendadorLibros() {
+    }
+
+    /**
+     * Obtiene la única instancia de RecomendadorLibros (Singleton)
+     *
+     * @return Instancia única de RecomendadorLibros
+     */
+    public static RecomendadorLibros getInstance() {
+        if (instancia == null) {
+            synchronized (RecomendadorLibros.class) {
+                if (instancia == null) {
+                    instancia = new RecomendadorLibros();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Se suscribe a los préstamos nuevos y lanza la primera reconstrucción
+     * Debe llamarse después de iniciar BusCambios.
+     */
+    public synchronized void iniciar() {
+        if (ejecutor != null) {
+            return;
+        }
+        ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "recomendador-libros");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        BusCambios.getInstance().suscribir(oyente);
+        ejecutor.execute(this::reconstruir);
+    }
+
+    /**
+     * Cancela la suscripción y las reconstrucciones pendientes
+     */
+    public synchronized void detener() {
+        BusCambios.getInstance().desuscribir(oyente);
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+            ejecutor = null;
+        }
+    }
+
+    /**
+     * Obtiene los libros que más piden los lectores de un libro
+     *
+     * @param idLibro ID del libro
+     * @param cantidad Número máximo de recomendaciones (hasta 20)
+     * @return IDs de libros recomendados, de mayor a menor afinidad
+     */
+    public synchronized int[] recomendar(int idLibro, int cantidad) {
+        if (idLibro <= 0 || idLibro >= modelo.coocurrencias.length) {
+            return new int[0];
+        }
+        int[] mejores = modelo.mejores[idLibro];
+        if (mejores == null) {
+            mejores = modelo.calcularMejores(idLibro);
+            modelo.mejores[idLibro] = mejores;
+        }
+        return Arrays.copyOf(mejores, Math.min(cantidad, mejores.length));
+    }
+
+    /**
+     * Registra un préstamo en la matriz de co-préstamos
+     *
+     * @param idUsuario ID del usuario
+     * @param idLibro ID del libro
+     */
+    public synchronized void registrarPrestamo(int idUsuario, int idLibro) {
+        if (idUsuario <= 0 || idLibro <= 0) {
+            return;
+        }
+        if (pendientes != null) {
+            pendientes.add(new int[]{idUsuario, idLibro});
+        }
+        modelo.registrar(idUsuario, idLibro);
+    }
+
+    /**
+     * Quita un libro eliminado de la matriz y de las recomendaciones
+     *
+     * @param idLibro ID del libro eliminado
+     */
+    public synchronized void eliminarLibro(int idLibro) {
+        if (idLibro <= 0) {
+            return;
+        }
+        if (bajasPendientes != null) {
+            bajasPendientes.add(idLibro);
+        }
+        modelo.eliminarLibro(idLibro);
+    }
+
+    /**
+     * Recalcula la matriz completa desde el historial de préstamos
+     * Se ejecuta en el hilo del recomendador; mientras tanto se sigue
+     * respondiendo con la matriz anterior.
+     */
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        synchronized (this) {
+            pendientes = new ArrayList<>();
+            bajasPendientes = new ArrayList<>();
+        }
+
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            // Los préstamos archivados de libros ya eliminados no cuentan
+            MapaBits existentes = new MapaBits();
+            libroDAO.recorrerResumen(conn, -1, (id, titulo, categoria, stock) -> existentes.agregar(id));
+
+            int[][] pares = {new int[1024], new int[1024]};
+            int[] total = {0};
+            prestamoDAO.recorrerCompacto(conn, -1, true, (id, usuario, libro, fecha, venc, dev, est, v) -> {
+                if (!existentes.contiene(libro)) {
+                    return;
+                }
+                if (total[0] == pares[0].length) {
+                    pares[0] = Arrays.copyOf(pares[0], total[0] * 2);
+                    pares[1] = Arrays.copyOf(pares[1], total[0] * 2);
+                }
+                pares[0][total[0]] = usuario;
+                pares[1][total[0]] = libro;
+                total[0]++;
+            });
+
+            Modelo nuevo = construir(pares[0], pares[1], total[0]);
+
+            synchronized (this) {
+                for (int[] prestamo : pendientes) {
+                    nuevo.registrar(prestamo[0], prestamo[1]);
+                }
+                for (int idLibro : bajasPendientes) {
+                    nuevo.eliminarLibro(idLibro);
+                }
+                modelo = nuevo;
+                pendientes = null;
+                bajasPendientes = null;
+            }
+            System.out.println("✓ Recomendador reconstruido: " + total[0] + " préstamos en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+
+        } catch (SQLException e) {
+            synchronized (this) {
+                pendientes = null;
+                bajasPendientes = null;
+            }
+            System.err.println("✗ Error al reconstruir el recomendador: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Construye un modelo a partir de pares (usuario, libro)
+     * Agrupa los libros distintos de cada usuario y cuenta los co-préstamos
+     * en paralelo.
+     */
+    private Modelo construir(int[] usuarios, int[] libros, int total) {
+        int maxUsuario = 0;
+        int maxLibro = 0;
+        for (int i = 0; i < total; i++) {
+            maxUsuario = Math.max(maxUsuario, usuarios[i]);
+            maxLibro = Math.max(maxLibro, libros[i]);
+        }
+
+        // Agrupar por usuario (ordenación por conteo)
+        int[] inicioUsuario = new int[maxUsuario + 2];
+        for (int i = 0; i < total; i++) {
+            inicioUsuario[usuarios[i] + 1]++;
+        }
+        for (int u = 0; u <= maxUsuario; u++) {
+            inicioUsuario[u + 1] += inicioUsuario[u];
+        }
+        int[] agrupados = new int[total];
+        int[] siguiente = Arrays.copyOf(inicioUsuario, maxUsuario + 1);
+        for (int i = 0; i < total; i++) {
+            agrupados[siguiente[usuarios[i]]++] = libros[i];
+        }
+
+        // Quitar libros repetidos de cada usuario, compactando en el sitio
+        Modelo modeloNuevo = new Modelo();
+        modeloNuevo.asegurarUsuario(maxUsuario);
+        modeloNuevo.asegurarLibro(maxLibro);
+        int escritos = 0;
+        for (int u = 0; u <= maxUsuario; u++) {
+            int inicio = inicioUsuario[u];
+            int fin = inicioUsuario[u + 1];
+            inicioUsuario[u] = escritos;
+            Arrays.sort(agrupados, inicio, fin);
+            int desde = escritos;
+            for (int i = inicio; i < fin; i++) {
+                if (i == inicio || agrupados[i] != agrupados[i - 1]) {
+                    agrupados[escritos++] = agrupados[i];
+                    modeloNuevo.lectores[agrupados[i]]++;
+                }
+            }
+            if (escritos > desde) {
+                modeloNuevo.librosUsuario[u] = Arrays.copyOfRange(agrupados, desde, escritos);
+                modeloNuevo.numLibrosUsuario[u] = escritos - desde;
+            }
+        }
+        inicioUsuario[maxUsuario + 1] = escritos;
+
+        FilasParciales filas = ForkJoinPool.commonPool().invoke(
+                new TareaCoocurrencias(inicioUsuario, agrupados, 0, maxUsuario + 1));
+        for (int k = 0; k < filas.tamano; k++) {
+            modeloNuevo.coocurrencias[filas.libros[k]] = filas.filas[k];
+        }
+        return modeloNuevo;
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        if (evento.getEntidad() == EventoCambio.Entidad.PRESTAMO
+                && evento.getOperacion() == EventoCambio.Operacion.ALTA) {
+            registrarPrestamo(evento.getIdUsuario(), evento.getIdLibro());
+        } else if (evento.getEntidad() == EventoCambio.Entidad.LIBRO
+                && evento.getOperacion() == EventoCambio.Operacion.BAJA) {
+            eliminarLibro(evento.getIdEntidad());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Reserva;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase DAO para gestionar las reservas de libros sin stock
+ *
+ * Las reservas EN_ESPERA de cada libro forman una cola por orden de id.
+ * La asignación al devolver un ejemplar la hace PrestamoDAO dentro de su
+ * transacción, con siguienteEnEspera y marcarAsignada sobre la misma
+ * conexión.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ReservaDAO {
+
+    private DatabaseConnection dbConnection;
+    private BusCambios busCambios;
+
+    /**
+     * Constructor que inicializa la conexión a la base de datos
+     */
+    public ReservaDAO() {
+        this.dbConnection = DatabaseConnection.getInstance();
+        this.busCambios = BusCambios.getInstance();
+    }
+
+    /**
+     * Pone a un usuario en la cola de un libro
+     *
+     * @param reserva Reserva a insertar
+     * @return true si se insertó correctamente, false en caso contrario
+     */
+    public boolean insertar(Reserva reserva) {
+        String sql = "INSERT INTO reservas (id_usuario, id_libro, estado) VALUES (?, ?, ?)";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            pstmt.setInt(1, reserva.getIdUsuario());
+            pstmt.setInt(2, reserva.getIdLibro());
+            pstmt.setString(3, Reserva.EstadoReserva.EN_ESPERA.name());
+
+            int filasAfectadas = pstmt.executeUpdate();
+
+            if (filasAfectadas > 0) {
+                ResultSet rs = pstmt.getGeneratedKeys();
+                if (rs.next()) {
+                    reserva.setId(rs.getInt(1));
+                }
+                System.out.println("✓ Reserva registrada con ID: " + reserva.getId());
+                busCambios.notificarEscritura();
+                return true;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al insertar reserva: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Cancela una reserva que sigue en espera
+     *
+     * @param id ID de la reserva
+     * @return true si se canceló, false si no existía o ya estaba asignada
+     */
+    public boolean cancelar(int id) {
+        String sql = "UPDATE reservas SET estado = 'CANCELADA' WHERE id = ? AND estado = 'EN_ESPERA'";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, id);
+            int filasAfectadas = pstmt.executeUpdate();
+
+            if (filasAfectadas > 0) {
+                System.out.println("✓ Reserva cancelada con ID: " + id);
+                busCambios.notificarEscritura();
+                return true;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cancelar reserva: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene la cola de espera de un libro, en orden de llegada
+     *
+     * @param idLibro ID del libro
+     * @return Reservas en espera, la primera es la siguiente en ser atendida
+     */
+    public List<Reserva> obtenerEnEspera(int idLibro) {
+        List<Reserva> reservas = new ArrayList<>();
+        String sql = "SELECT r.*, CONCAT(u.nombre, ' ', u.apellido) AS nombre_usuario " +
+                "FROM reservas r INNER JOIN usuarios u ON u.id = r.id_usuario " +
+                "WHERE r.id_libro = ? AND r.estado = 'EN_ESPERA' ORDER BY r.id";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idLibro);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                Reserva reserva = mapearReserva(rs);
+                reserva.setNombreUsuario(rs.getString("nombre_usuario"));
+                reservas.add(reserva);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener reservas en espera: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return reservas;
+    }
+
+    /**
+     * Verifica si un usuario ya está en la cola de un libro
+     *
+     * @param idUsuario ID del usuario
+     * @param idLibro ID del libro
+     * @return true si tiene una reserva en espera, false en caso contrario
+     */
+    public boolean tieneReservaEnEspera(int idUsuario, int idLibro) {
+        String sql = "SELECT COUNT(*) FROM reservas WHERE id_usuario = ? AND id_libro = ? " +
+                "AND estado = 'EN_ESPERA'";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idUsuario);
+            pstmt.setInt(2, idLibro);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt(1) > 0;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al verificar reserva: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene y bloquea la primera reserva en espera de un libro
+     * Debe llamarse dentro de una transacción: el bloqueo (FOR UPDATE)
+     * impide que dos devoluciones simultáneas asignen la misma reserva.
+     * Usa el índice (id_libro, estado, id): el coste no depende del
+     * largo de la cola. Se saltan las reservas de usuarios desactivados;
+     * la fila del usuario queda bloqueada también, así que no se puede
+     * desactivar mientras se le asigna el ejemplar.
+     *
+     * @param conn Conexión con la transacción en curso
+     * @param idLibro ID del libro
+     * @return Primera reserva en espera, o null si la cola está vacía
+     * @throws SQLException Si hay error en la consulta
+     */
+    public Reserva siguienteEnEspera(Connection conn, int idLibro) throws SQLException {
+        String sql = "SELECT r.* FROM reservas r JOIN usuarios u ON u.id = r.id_usuario " +
+                "WHERE r.id_libro = ? AND r.estado = 'EN_ESPERA' AND u.activo " +
+                "ORDER BY r.id LIMIT 1 FOR UPDATE";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idLibro);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapearReserva(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Marca una reserva como asignada al préstamo indicado
+     * Debe llamarse dentro de la misma transacción que siguienteEnEspera.
+     *
+     * @param conn Conexión con la transacción en curso
+     * @param reserva Reserva a asignar
+     * @param idPrestamo Préstamo creado para el usuario de la reserva
+     * @throws SQLException Si hay error en la actualización
+     */
+    public void marcarAsignada(Connection conn, Reserva reserva, int idPrestamo) throws SQLException {
+        String sql = "UPDATE reservas SET estado = 'ASIGNADA', id_prestamo = ?, fecha_asignacion = NOW() " +
+                "WHERE id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idPrestamo);
+            pstmt.setInt(2, reserva.getId());
+            pstmt.executeUpdate();
+        }
+        reserva.setEstado(Reserva.EstadoReserva.ASIGNADA);
+        reserva.setIdPrestamo(idPrestamo);
+    }
+
+    /**
+     * Mapea un ResultSet a un objeto Reserva
+     *
+     * @param rs ResultSet con los datos de la reserva
+     * @return Objeto Reserva mapeado
+     * @throws SQLException Si hay error al leer los datos
+     */
+    private Reserva mapearReserva(ResultSet rs) throws SQLException {
+        int idPrestamo = rs.getInt("id_prestamo");
+        boolean sinPrestamo = rs.wasNull();
+        Timestamp fechaAsignacion = rs.getTimestamp("fecha_asignacion");
+        return new Reserva(
+                rs.getInt("id"),
+                rs.getInt("id_usuario"),
+                rs.getInt("id_libro"),
+                rs.getTimestamp("fecha_reserva").toLocalDateTime(),
+                Reserva.EstadoReserva.valueOf(rs.getString("estado")),
+                sinPrestamo ? null : idPrestamo,
+                fechaAsignacion != null ? fechaAsignacion.toLocalDateTime() : null
+        );
+    }
+}
@@ -0,0 +1,72 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.ResumenUsuario;
+import com.biblioteca.util.DatabaseConnection;
+
+import java.sql.*;
+
+/**
+ * Clase DAO para leer el resumen de préstamos por usuario
+ *
+ * La tabla resumen_usuarios la escriben sólo los triggers de prestamos;
+ * este DAO sólo la lee, siempre por clave primaria.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ResumenUsuarioDAO {
+
+    private DatabaseConnection dbConnection;
+
+    /**
+     * Constructor que inicializa la conexión a la base de datos
+     */
+    public ResumenUsuarioDAO() {
+        this.dbConnection = DatabaseConnection.getInstance();
+    }
+
+    /**
+     * Obtiene el resumen de préstamos de un usuario
+     *
+     * @param idUsuario ID del usuario
+     * @return Resumen del usuario (con contadores a cero si no tiene préstamos),
+     *         o null si no se pudo leer
+     */
+    public ResumenUsuario obtener(int idUsuario) {
+        String sql = "SELECT * FROM resumen_usuarios WHERE id_usuario = ?";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idUsuario);
+            ResultSet rs = pstmt.executeQuery();
+
+            return rs.next() ? mapearResumen(rs) : ResumenUsuario.vacio(idUsuario);
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener resumen del usuario: " + e.getMessage());
+            e.printStackTrace();
+        }
+        // Un error no es "sin préstamos": el llamador decide qué hacer
+        return null;
+    }
+
+    /**
+     * Mapea un ResultSet a un objeto ResumenUsuario
+     *
+     * @param rs ResultSet con los datos del resumen
+     * @return Objeto ResumenUsuario mapeado
+     * @throws SQLException Si hay error al leer los datos
+     */
+    private ResumenUsuario mapearResumen(ResultSet rs) throws SQLException {
+        Date ultimoPrestamo = rs.getDate("ultimo_prestamo");
+        return new ResumenUsuario(
+                rs.getInt("id_usuario"),
+                rs.getInt("prestamos_activos"),
+                rs.getInt("prestamos_retrasados"),
+                rs.getInt("total_prestamos"),
+                ultimoPrestamo != null ? ultimoPrestamo.toLocalDate() : null
+        );
+    }
+}
@@ -0,0 +1,112 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.ResumenUsuario;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché en memoria del resumen de préstamos por usuario
+ *
+ * Al abrir, desactivar o eliminar un usuario se consulta si tiene
+ * préstamos activos o retrasados. El resumen de cada usuario se lee de
+ * resumen_usuarios (búsqueda por clave primaria, que los triggers
+ * mantienen al día) la primera vez que se pide, y las consultas
+ * siguientes se responden en O(1) desde memoria.
+ *
+ * La entrada de un usuario se descarta cuando BusCambios publica un
+ * cambio en uno de sus préstamos (de esta u otra instancia) o su baja.
+ * Mientras haya escrituras propias que el bus aún no recogió, se lee de
+ * la base de datos sin usar la caché. Un resumen que no se pudo leer no
+ * se guarda: la siguiente consulta vuelve a intentarlo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ResumenUsuarios {
+
+    // Instancia única (Singleton)
+    private static ResumenUsuarios instancia;
+
+    private final Map<Integer, ResumenUsuario> resumenes = new ConcurrentHashMap<>();
+    private final ResumenUsuarioDAO resumenUsuarioDAO = new ResumenUsuarioDAO();
+
+    private ResumenUsuarios() {
+        BusCambios.getInstance().suscribir(this::procesarEvento);
+    }
+
+    /**
+     * Obtiene la única instancia de ResumenUsuarios (Singleton)
+     *
+     * @return Instancia única de ResumenUsuarios
+     */
+    public static ResumenUsuarios getInstance() {
+        if (instancia == null) {
+            synchronized (ResumenUsuarios.class) {
+                if (instancia == null) {
+                    instancia = new ResumenUsuarios();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Obtiene el resumen de préstamos de un usuario
+     *
+     * @param idUsuario ID del usuario
+     * @return Resumen del usuario, o null si no se pudo leer
+     */
+    public ResumenUsuario obtener(int idUsuario) {
+        // Con escrituras propias aún sin sondear la entrada guardada puede
+        // ser anterior a ellas: se lee de la base de datos sin guardarla
+        if (DatabaseConnection.getInstance().hayEscriturasPendientes()) {
+            return resumenUsuarioDAO.obtener(idUsuario);
+        }
+        // Una invalidación que llega durante la carga espera a que termine
+        // y la descarta: nunca queda guardado un resumen anterior al cambio.
+        // computeIfAbsent no guarda un null, así que los errores no se cachean
+        return resumenes.computeIfAbsent(idUsuario, resumenUsuarioDAO::obtener);
+    }
+
+    /**
+     * Verifica si un usuario tiene préstamos sin devolver
+     * Si el resumen no se pudo leer responde true: ante la duda, se
+     * bloquea la operación que lo consulta.
+     *
+     * @param idUsuario ID del usuario
+     * @return true si tiene préstamos activos o no se sabe, false en caso contrario
+     */
+    public boolean tienePrestamosActivos(int idUsuario) {
+        ResumenUsuario resumen = obtener(idUsuario);
+        return resumen == null || resumen.tienePrestamosActivos();
+    }
+
+    /**
+     * Descarta el resumen de un usuario; se recargará en la próxima consulta
+     *
+     * @param idUsuario ID del usuario
+     */
+    public void invalidar(int idUsuario) {
+        resumenes.remove(idUsuario);
+    }
+
+    private void procesarEvento(EventoCambio evento) {
+        switch (evento.getEntidad()) {
+            case PRESTAMO:
+                invalidar(evento.getIdUsuario());
+                break;
+            case USUARIO:
+                if (evento.getOperacion() == EventoCambio.Operacion.BAJA) {
+                    invalidar(evento.getIdEntidad());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.StockRecomendado;
+import com.biblioteca.util.DatabaseConnection;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase DAO para el pronóstico de demanda guardado en stock_recomendado
+ *
+ * PronosticoDemanda escribe los resultados de cada cálculo con guardar,
+ * sobre su conexión dedicada; los reportes leen la reposición sugerida
+ * junto al stock actual de cada libro.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class StockRecomendadoDAO {
+
+    // Filas por lote de escritura (cada lote es una transacción)
+    private static final int LOTE = 1000;
+
+    private DatabaseConnection dbConnection;
+
+    /**
+     * Constructor que inicializa la conexión a la base de datos
+     */
+    public StockRecomendadoDAO() {
+        this.dbConnection = DatabaseConnection.getInstance();
+    }
+
+    /**
+     * Guarda el resultado de un cálculo y descarta el de los libros que ya
+     * no tienen pronóstico
+     * Las filas se escriben por lotes de LOTE, cada uno en su transacción,
+     * para no bloquear la tabla durante todo el cálculo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param idsLibro IDs de los libros
+     * @param demandaSemanal Demanda semanal prevista de cada libro
+     * @param recomendados Ejemplares recomendados de cada libro
+     * @param cantidad Número de posiciones válidas de los arreglos
+     * @param fechaCalculo Fecha del cálculo; las filas anteriores se eliminan
+     * @return Número de filas escritas
+     * @throws SQLException Si hay error en la escritura
+     */
+    public int guardar(Connection conn, int[] idsLibro, double[] demandaSemanal, int[] recomendados,
+                       int cantidad, LocalDateTime fechaCalculo) throws SQLException {
+        String sql = "INSERT INTO stock_recomendado " +
+                "(id_libro, demanda_semanal, ejemplares_recomendados, fecha_calculo) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE demanda_semanal = VALUES(demanda_semanal), " +
+                "ejemplares_recomendados = VALUES(ejemplares_recomendados), " +
+                "fecha_calculo = VALUES(fecha_calculo)";
+        Timestamp fecha = Timestamp.valueOf(fechaCalculo);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int enLote = 0;
+            for (int i = 0; i < cantidad; i++) {
+                pstmt.setInt(1, idsLibro[i]);
+                pstmt.setDouble(2, demandaSemanal[i]);
+                pstmt.setInt(3, recomendados[i]);
+                pstmt.setTimestamp(4, fecha);
+                pstmt.addBatch();
+                if (++enLote == LOTE) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                    enLote = 0;
+                }
+            }
+            if (enLote > 0) {
+                pstmt.executeBatch();
+            }
+
+            try (PreparedStatement borrar = conn.prepareStatement(
+                    "DELETE FROM stock_recomendado WHERE fecha_calculo < ?")) {
+                borrar.setTimestamp(1, fecha);
+                borrar.executeUpdate();
+            }
+            conn.commit();
+
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return cantidad;
+    }
+
+    /**
+     * Obtiene los libros que conviene reponer
+     * Incluye los de stock bajo (los mismos que LibroDAO.obtenerLibrosStockBajo)
+     * y los que tienen menos ejemplares que los recomendados, primero los
+     * que más ejemplares necesitan.
+     *
+     * @return Lista de libros con su pronóstico
+     */
+    public List<StockRecomendado> obtenerReposicion() {
+        List<StockRecomendado> resultado = new ArrayList<>();
+        String sql = "SELECT l.id, l.titulo, l.categoria, l.stock, " +
+                "COALESCE(a.en_prestamo, 0) AS en_prestamo, " +
+                "sr.demanda_semanal, sr.ejemplares_recomendados, sr.fecha_calculo " +
+                "FROM libros l " +
+                "LEFT JOIN stock_recomendado sr ON sr.id_libro = l.id " +
+                "LEFT JOIN (SELECT id_libro, COUNT(*) AS en_prestamo FROM prestamos " +
+                "           WHERE estado <> 'DEVUELTO' GROUP BY id_libro) a ON a.id_libro = l.id " +
+                "WHERE l.stock <= 2 " +
+                "   OR l.stock + COALESCE(a.en_prestamo, 0) < sr.ejemplares_recomendados " +
+                "ORDER BY COALESCE(sr.ejemplares_recomendados - l.stock - COALESCE(a.en_prestamo, 0), 0) DESC, " +
+                "l.stock, l.titulo";
+
+        try (Connection conn = dbConnection.conectarLectura();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                double demanda = rs.getDouble("demanda_semanal");
+                boolean sinPronostico = rs.wasNull();
+                Timestamp fechaCalculo = rs.getTimestamp("fecha_calculo");
+                resultado.add(new StockRecomendado(
+                        rs.getInt("id"),
+                        rs.getString("titulo"),
+                        rs.getString("categoria"),
+                        rs.getInt("stock"),
+                        rs.getInt("en_prestamo"),
+                        sinPronostico ? null : demanda,
+                        sinPronostico ? null : rs.getInt("ejemplares_recomendados"),
+                        fechaCalculo != null ? fechaCalculo.toLocalDateTime() : null
+                ));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener la reposición de stock: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return resultado;
+    }
+}
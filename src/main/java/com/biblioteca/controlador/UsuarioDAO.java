@@ -1,12 +1,17 @@
 package com.biblioteca.controlador;
 
 import com.biblioteca.modelo.Usuario;
+import com.biblioteca.util.BusCambios;
 import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.UltimosResultados;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Clase DAO para gestionar operaciones CRUD de Usuarios
@@ -20,13 +25,32 @@ import java.util.List;
  */
 public class UsuarioDAO {
 
+    // Columnas por las que se puede ordenar una página (evita inyectar SQL en ORDER BY):
+    // sólo NOT NULL y con índice, para paginar por clave sin ordenar en memoria
+    private static final Set<String> COLUMNAS_ORDEN = Set.of("id", "nombre", "email", "username");
+
+    // Columnas que muestran las listas: sin dirección ni contraseña, que sólo
+    // hacen falta al abrir el formulario (buscarPorId trae la fila completa)
+    private static final String COLUMNAS_LISTA = "id, nombre, apellido, tipo, email, telefono, " +
+            "fecha_registro, username, activo";
+
+    // Columnas completas: empiezan por COLUMNAS_LISTA porque los mapeadores
+    // leen por posición y comparten las nueve primeras
+    private static final String COLUMNAS = COLUMNAS_LISTA + ", direccion, password";
+
     private DatabaseConnection dbConnection;
+    private BusCambios busCambios;
+    private CambiosDAO cambiosDAO;
+    private UltimosResultados ultimosResultados;
 
     /**
      * Constructor que inicializa la conexión a la base de datos
      */
     public UsuarioDAO() {
         this.dbConnection = DatabaseConnection.getInstance();
+        this.busCambios = BusCambios.getInstance();
+        this.cambiosDAO = new CambiosDAO();
+        this.ultimosResultados = UltimosResultados.getInstance();
     }
 
     /**
@@ -61,6 +85,8 @@ public class UsuarioDAO {
                     usuario.setId(rs.getInt(1));
                 }
                 System.out.println("✓ Usuario insertado: " + usuario.getUsername());
+                IndiceUnicidad.getInstance().registrarUsuario(usuario.getUsername(), usuario.getEmail());
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -99,6 +125,8 @@ public class UsuarioDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Usuario actualizado: " + usuario.getUsername());
+                IndiceUnicidad.getInstance().registrarUsuario(usuario.getUsername(), usuario.getEmail());
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -126,6 +154,7 @@ public class UsuarioDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Usuario eliminado con ID: " + id);
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -143,7 +172,7 @@ public class UsuarioDAO {
      * @return Objeto Usuario si se encuentra, null en caso contrario
      */
     public Usuario buscarPorId(int id) {
-        String sql = "SELECT * FROM usuarios WHERE id = ?";
+        String sql = "SELECT " + COLUMNAS + " FROM usuarios WHERE id = ?";
 
         try (Connection conn = dbConnection.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -164,19 +193,21 @@ public class UsuarioDAO {
 
     /**
      * Obtiene todos los usuarios de la base de datos
+     * Filas de lista, sin dirección ni contraseña: para editar un usuario
+     * hay que cargarlo con buscarPorId.
      *
      * @return Lista de todos los usuarios
      */
     public List<Usuario> obtenerTodos() {
         List<Usuario> usuarios = new ArrayList<>();
-        String sql = "SELECT * FROM usuarios ORDER BY nombre, apellido";
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM usuarios ORDER BY nombre, apellido";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                usuarios.add(mapearUsuario(rs));
+                usuarios.add(mapearFila(rs));
             }
 
         } catch (SQLException e) {
@@ -186,6 +217,109 @@ public class UsuarioDAO {
         return usuarios;
     }
 
+    /**
+     * Obtiene los usuarios activos, para elegirlos en un formulario
+     * Llegan sin dirección ni contraseña (desde el espejo local del modo
+     * sucursal, tampoco con email ni teléfono), así que no deben usarse
+     * para actualizar.
+     *
+     * @return Lista de usuarios activos ordenada por nombre
+     */
+    public List<Usuario> obtenerActivos() {
+        EspejoLocal espejo = EspejoLocal.getInstance();
+        if (espejo.puedeResponder()) {
+            return espejo.obtenerUsuariosActivos();
+        }
+        List<Usuario> usuarios = new ArrayList<>();
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM usuarios WHERE activo = TRUE ORDER BY nombre, apellido";
+
+        try (Connection conn = dbConnection.conectarLectura();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                usuarios.add(mapearFila(rs));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener usuarios activos: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return usuarios;
+    }
+
+    /**
+     * Obtiene una página de usuarios ordenada por la base de datos
+     * Usado por las tablas virtuales, que cargan las filas por bloques
+     * desde su hilo de carga: abre una conexión dedicada, no la compartida.
+     * Con una fila vecina ya cargada la página se pide a partir de ella
+     * (ver PaginaPorClave); sin ella, por posición.
+     *
+     * @param desde Posición de la primera fila (0 = primera)
+     * @param cantidad Número máximo de filas
+     * @param orden Columna de orden (id, nombre, email, username); otra se ignora
+     * @param ascendente true para orden ascendente
+     * @param ancla Fila vecina de la página, o null
+     * @param haciaDelante true si la página va después del ancla; false si va antes
+     * @return Lista de usuarios de la página
+     */
+    public List<Usuario> obtenerPagina(int desde, int cantidad, String orden, boolean ascendente,
+                                     Usuario ancla, boolean haciaDelante) {
+        String columna = COLUMNAS_ORDEN.contains(orden) ? orden : "nombre";
+
+        try (Connection conn = dbConnection.abrirConexionDedicada()) {
+            List<Usuario> usuarios = PaginaPorClave.cargar(conn, COLUMNAS_LISTA, "usuarios", columna, ascendente,
+                    desde, cantidad, ancla == null ? null : valorOrden(ancla, columna),
+                    ancla == null ? 0 : ancla.getId(), haciaDelante, this::mapearFila);
+            ultimosResultados.guardar(clavePagina("usuarios", desde, cantidad, columna, ascendente), usuarios);
+            return usuarios;
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener página de usuarios: " + e.getMessage());
+            return ultimosResultados.obtener(clavePagina("usuarios", desde, cantidad, columna, ascendente),
+                    new ArrayList<>());
+        }
+    }
+
+    // Valor de la columna de orden en un usuario, para paginar a partir de él
+    private static Object valorOrden(Usuario usuario, String columna) {
+        switch (columna) {
+            case "id":
+                return usuario.getId();
+            case "email":
+                return usuario.getEmail();
+            case "username":
+                return usuario.getUsername();
+            default:
+                return usuario.getNombre();
+        }
+    }
+
+    /**
+     * Obtiene la cantidad total de usuarios
+     *
+     * @return Número total de usuarios
+     */
+    public int contarUsuarios() {
+        String sql = "SELECT COUNT(*) FROM usuarios";
+
+        try (Connection conn = dbConnection.conectarLectura();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            if (rs.next()) {
+                int total = rs.getInt(1);
+                ultimosResultados.guardar("usuarios.contar", total);
+                return total;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al contar usuarios: " + e.getMessage());
+            return ultimosResultados.obtener("usuarios.contar", 0);
+        }
+        return 0;
+    }
+
     /**
      * Autentica un usuario por username y password
      *
@@ -194,7 +328,7 @@ public class UsuarioDAO {
      * @return Usuario autenticado o null si las credenciales son inválidas
      */
     public Usuario autenticar(String username, String password) {
-        String sql = "SELECT * FROM usuarios WHERE username = ? AND password = ? AND activo = TRUE";
+        String sql = "SELECT " + COLUMNAS + " FROM usuarios WHERE username = ? AND password = ? AND activo = TRUE";
 
         try (Connection conn = dbConnection.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -225,9 +359,9 @@ public class UsuarioDAO {
      */
     public List<Usuario> buscarPorNombre(String texto) {
         List<Usuario> usuarios = new ArrayList<>();
-        String sql = "SELECT * FROM usuarios WHERE nombre LIKE ? OR apellido LIKE ? ORDER BY nombre, apellido";
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM usuarios WHERE nombre LIKE ? OR apellido LIKE ? ORDER BY nombre, apellido";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             String patron = "%" + texto + "%";
@@ -236,7 +370,7 @@ public class UsuarioDAO {
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                usuarios.add(mapearUsuario(rs));
+                usuarios.add(mapearFila(rs));
             }
 
         } catch (SQLException e) {
@@ -254,16 +388,16 @@ public class UsuarioDAO {
      */
     public List<Usuario> obtenerPorTipo(Usuario.TipoUsuario tipo) {
         List<Usuario> usuarios = new ArrayList<>();
-        String sql = "SELECT * FROM usuarios WHERE tipo = ? ORDER BY nombre, apellido";
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM usuarios WHERE tipo = ? ORDER BY nombre, apellido";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, tipo.name());
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                usuarios.add(mapearUsuario(rs));
+                usuarios.add(mapearFila(rs));
             }
 
         } catch (SQLException e) {
@@ -281,6 +415,10 @@ public class UsuarioDAO {
      * @return true si el username ya existe, false en caso contrario
      */
     public boolean existeUsername(String username, int idExcluir) {
+        // Un username que el filtro no conoce no existe: sin consulta
+        if (!IndiceUnicidad.getInstance().podriaExistirUsername(username)) {
+            return false;
+        }
         String sql = "SELECT COUNT(*) FROM usuarios WHERE username = ? AND id != ?";
 
         try (Connection conn = dbConnection.conectar();
@@ -309,6 +447,10 @@ public class UsuarioDAO {
      * @return true si el email ya existe, false en caso contrario
      */
     public boolean existeEmail(String email, int idExcluir) {
+        // Un email que el filtro no conoce no existe: sin consulta
+        if (!IndiceUnicidad.getInstance().podriaExistirEmail(email)) {
+            return false;
+        }
         String sql = "SELECT COUNT(*) FROM usuarios WHERE email = ? AND id != ?";
 
         try (Connection conn = dbConnection.conectar();
@@ -349,6 +491,7 @@ public class UsuarioDAO {
 
             if (filasAfectadas > 0) {
                 System.out.println("✓ Estado de usuario actualizado");
+                busCambios.notificarEscritura();
                 return true;
             }
 
@@ -367,41 +510,210 @@ public class UsuarioDAO {
     public int contarUsuariosActivos() {
         String sql = "SELECT COUNT(*) FROM usuarios WHERE activo = TRUE";
 
-        try (Connection conn = dbConnection.conectar();
+        try (Connection conn = dbConnection.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
-                return rs.getInt(1);
+                int total = rs.getInt(1);
+                ultimosResultados.guardar("usuarios.contarActivos", total);
+                return total;
             }
 
         } catch (SQLException e) {
             System.err.println("✗ Error al contar usuarios: " + e.getMessage());
-            e.printStackTrace();
+            return ultimosResultados.obtener("usuarios.contarActivos", 0);
         }
         return 0;
     }
 
+    /**
+     * Cuenta los usuarios con la conexión indicada
+     *
+     * @param conn Conexión dedicada del llamador
+     * @return Número total de usuarios
+     * @throws SQLException Si hay error en la consulta
+     */
+    public int contarUsuarios(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM usuarios")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Recorre el username y el email de los usuarios, en streaming
+     * Usa la conexión que recibe: pensado para hilos de fondo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo usuarios con versión posterior (-1 para todos)
+     * @param visitante Recibe (username, email) de cada usuario
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerCredenciales(Connection conn, long versionDesde,
+                                     BiConsumer<String, String> visitante) throws SQLException {
+        String sql = "SELECT username, email FROM usuarios WHERE version > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.accept(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene la versión de fila actual de la base de datos
+     * Debe leerse antes de una carga completa para luego pedir
+     * cambiosDesde(version) sin perder escrituras concurrentes.
+     *
+     * @return Versión actual, o -1 si no se pudo consultar
+     */
+    public long obtenerVersionActual() {
+        return cambiosDAO.obtenerVersionActual();
+    }
+
+    /**
+     * Obtiene los cambios de usuarios posteriores a una versión
+     * Permite actualizar una lista ya cargada sin recargarla entera.
+     *
+     * @param version Última versión conocida por quien consulta
+     * @return Filas creadas o modificadas e IDs eliminados desde esa versión
+     */
+    public Cambios<Usuario> cambiosDesde(long version) {
+        long versionActual = cambiosDAO.obtenerVersionActual();
+        if (versionActual < 0 || versionActual <= version) {
+            return Cambios.sinCambios(version);
+        }
+        if (!cambiosDAO.historialCompleto(version, versionActual)) {
+            return Cambios.recargaCompleta(versionActual);
+        }
+
+        List<Usuario> modificados = new ArrayList<>();
+        String sql = "SELECT " + COLUMNAS_LISTA + " " +
+                "FROM usuarios " +
+                "WHERE version > ? AND version <= ?";
+
+        try (Connection conn = dbConnection.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, version);
+            pstmt.setLong(2, versionActual);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                modificados.add(mapearFila(rs));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al obtener cambios de usuarios: " + e.getMessage());
+            e.printStackTrace();
+            return Cambios.sinCambios(version);
+        }
+
+        List<Integer> eliminados = cambiosDAO.obtenerEliminados("USUARIO", version, versionActual);
+        return new Cambios<>(modificados, eliminados, versionActual, false);
+    }
+
+    /**
+     * Recorre los usuarios completos, en streaming
+     * Usa la conexión que recibe: pensado para hilos de fondo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo usuarios con versión posterior (-1 para todos)
+     * @param visitante Recibe cada usuario
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerDesde(Connection conn, long versionDesde, Consumer<Usuario> visitante)
+            throws SQLException {
+        String sql = "SELECT " + COLUMNAS + " FROM usuarios WHERE version > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.accept(mapearUsuario(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recorre los usuarios como filas de lista (sin dirección ni contraseña), en streaming
+     * Usa la conexión que recibe: pensado para hilos de fondo.
+     *
+     * @param conn Conexión dedicada del llamador
+     * @param versionDesde Sólo usuarios con versión posterior (-1 para todos)
+     * @param visitante Recibe cada usuario
+     * @throws SQLException Si hay error en la consulta
+     */
+    public void recorrerFilas(Connection conn, long versionDesde, Consumer<Usuario> visitante)
+            throws SQLException {
+        String sql = "SELECT " + COLUMNAS_LISTA + " FROM usuarios WHERE version > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            pstmt.setLong(1, versionDesde);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitante.accept(mapearFila(rs));
+                }
+            }
+        }
+    }
+
+    private static String clavePagina(String tabla, int desde, int cantidad, String columna, boolean ascendente) {
+        return tabla + ".pagina:" + desde + ":" + cantidad + ":" + columna + ":" + ascendente;
+    }
+
     /**
      * Mapea un ResultSet a un objeto Usuario
      *
-     * @param rs ResultSet con los datos del usuario
+     * @param rs ResultSet con las columnas de COLUMNAS
      * @return Objeto Usuario mapeado
      * @throws SQLException Si hay error al leer los datos
      */
     private Usuario mapearUsuario(ResultSet rs) throws SQLException {
+        Usuario usuario = mapearFila(rs);
+        usuario.setDireccion(rs.getString(10));
+        usuario.setPassword(rs.getString(11));
+        return usuario;
+    }
+
+    /**
+     * Mapea una fila de COLUMNAS_LISTA a un Usuario de lista
+     * La dirección y la contraseña quedan en null: no debe pasarse a actualizar.
+     *
+     * Lee las columnas por posición, en el orden de COLUMNAS_LISTA: el
+     * driver no tiene que buscar cada nombre en cada fila.
+     *
+     * @param rs ResultSet con las columnas de lista (o con COLUMNAS)
+     * @return Usuario sin dirección ni contraseña
+     * @throws SQLException Si hay error al leer los datos
+     */
+    private Usuario mapearFila(ResultSet rs) throws SQLException {
         return new Usuario(
-                rs.getInt("id"),
-                rs.getString("nombre"),
-                rs.getString("apellido"),
-                Usuario.TipoUsuario.valueOf(rs.getString("tipo")),
-                rs.getString("email"),
-                rs.getString("telefono"),
-                rs.getString("direccion"),
-                rs.getDate("fecha_registro").toLocalDate(),
-                rs.getString("username"),
-                rs.getString("password"),
-                rs.getBoolean("activo")
+                rs.getInt(1),
+                rs.getString(2),
+                rs.getString(3),
+                Usuario.TipoUsuario.valueOf(rs.getString(4)),
+                rs.getString(5),
+                rs.getString(6),
+                null,
+                rs.getDate(7).toLocalDate(),
+                rs.getString(8),
+                null,
+                rs.getBoolean(9)
         );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Decide si una copia en memoria está al día con la marca de lectura
+ *
+ * La marca de lectura de DatabaseConnection sube con cada evento del bus,
+ * de cualquier entidad: un índice de usuarios que comparara sólo la
+ * versión que sincronizó quedaría atrasado con cada préstamo, aunque
+ * ningún usuario hubiera cambiado. Esta clase anota la versión más alta
+ * vista en el bus y la de los eventos de las entidades que sigue la copia;
+ * mientras la copia ya aplicó todos los suyos, está al día hasta la
+ * versión vista, no sólo hasta la sincronizada.
+ *
+ * registrar() sólo se llama desde el hilo de BusCambios.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+final class VersionVista {
+
+    private final Set<EventoCambio.Entidad> entidades;
+
+    // Se escribe primero la propia y luego la vista; estaAlDia las lee al revés
+    private volatile long ultimaPropia = -1;
+    private volatile long vista = -1;
+
+    /**
+     * Crea el seguimiento para las entidades que copia el llamador
+     *
+     * @param primera Entidad seguida
+     * @param resto Otras entidades seguidas
+     */
+    VersionVista(EventoCambio.Entidad primera, EventoCambio.Entidad... resto) {
+        this.entidades = EnumSet.of(primera, resto);
+    }
+
+    /**
+     * Anota un evento del bus
+     *
+     * @param evento Evento recibido
+     * @return true si es de una entidad seguida: la copia debe sincronizarse
+     */
+    boolean registrar(EventoCambio evento) {
+        boolean propia = entidades.contains(evento.getEntidad());
+        if (propia && evento.getVersion() > ultimaPropia) {
+            ultimaPropia = evento.getVersion();
+        }
+        if (evento.getVersion() > vista) {
+            vista = evento.getVersion();
+        }
+        return propia;
+    }
+
+    /**
+     * Indica si una copia sincronizada hasta una versión puede responder
+     *
+     * @param aplicada Versión que la copia ya aplicó (-1 si no está cargada)
+     * @return true si está al día con la marca de lectura, o si la base de datos no responde
+     */
+    boolean estaAlDia(long aplicada) {
+        long vistaActual = vista;
+        long propia = ultimaPropia;
+        if (aplicada < 0) {
+            return false;
+        }
+        long alDia = aplicada >= propia ? Math.max(aplicada, vistaActual) : aplicada;
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        return alDia >= db.getMarcaLectura() || !db.estaDisponible();
+    }
+}
@@ -0,0 +1,134 @@
+package com.biblioteca.modelo;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Clase que representa la circulación de un libro
+ *
+ * Ejemplares prestados en este momento con su fecha de devolución
+ * esperada (la línea de tiempo de disponibilidad) y el total de
+ * préstamos del libro, incluidos los archivados. Los objetos son
+ * inmutables: un cambio en los préstamos del libro produce uno nuevo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public final class EstadisticasLibro {
+
+    // Atributos privados
+    private final int idLibro;
+    private final List<LocalDate> vencimientos;
+    private final int totalPrestamos;
+
+    /**
+     * Constructor completo con todos los atributos
+     *
+     * @param idLibro ID del libro
+     * @param vencimientos Fechas de devolución esperada de los préstamos activos, en orden ascendente
+     * @param totalPrestamos Préstamos del libro, incluidos los archivados
+     */
+    public EstadisticasLibro(int idLibro, List<LocalDate> vencimientos, int totalPrestamos) {
+        this.idLibro = idLibro;
+        this.vencimientos = Collections.unmodifiableList(vencimientos);
+        this.totalPrestamos = totalPrestamos;
+    }
+
+    // ==================== GETTERS ====================
+
+    /**
+     * Obtiene el ID del libro
+     * @return ID del libro
+     */
+    public int getIdLibro() {
+        return idLibro;
+    }
+
+    /**
+     * Obtiene las fechas de devolución esperada de los ejemplares prestados
+     * @return Fechas en orden ascendente (la primera es la próxima devolución)
+     */
+    public List<LocalDate> getVencimientos() {
+        return vencimientos;
+    }
+
+    /**
+     * Obtiene el total de préstamos del libro, incluidos los archivados
+     * @return Total de préstamos
+     */
+    public int getTotalPrestamos() {
+        return totalPrestamos;
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Obtiene los ejemplares prestados en este momento
+     * @return Préstamos activos del libro
+     */
+    public int getEjemplaresPrestados() {
+        return vencimientos.size();
+    }
+
+    /**
+     * Obtiene la fecha en que se espera que vuelva el primer ejemplar
+     * @return Fecha de la próxima devolución (null si no hay ejemplares prestados)
+     */
+    public LocalDate getProximaDevolucion() {
+        return vencimientos.isEmpty() ? null : vencimientos.get(0);
+    }
+
+    /**
+     * Cuenta los ejemplares que debieron devolverse antes de una fecha
+     * @param hoy Fecha de referencia
+     * @return Ejemplares prestados con la devolución vencida
+     */
+    public int contarVencidos(LocalDate hoy) {
+        int vencidos = 0;
+        while (vencidos < vencimientos.size() && vencimientos.get(vencidos).isBefore(hoy)) {
+            vencidos++;
+        }
+        return vencidos;
+    }
+
+    /**
+     * Genera una representación en String del objeto EstadisticasLibro
+     * @return String con la información de la circulación
+     */
+    @Override
+    public String toString() {
+        return "EstadisticasLibro{" +
+                "idLibro=" + idLibro +
+                ", ejemplaresPrestados=" + vencimientos.size() +
+                ", proximaDevolucion=" + getProximaDevolucion() +
+                ", totalPrestamos=" + totalPrestamos +
+                '}';
+    }
+
+    /**
+     * Compara estas estadísticas con otro objeto
+     * @param o Objeto a comparar
+     * @return true si tienen los mismos valores, false en caso contrario
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EstadisticasLibro that = (EstadisticasLibro) o;
+        return idLibro == that.idLibro &&
+                totalPrestamos == that.totalPrestamos &&
+                vencimientos.equals(that.vencimientos);
+    }
+
+    /**
+     * Genera el código hash de las estadísticas
+     * @return Código hash basado en todos los atributos
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(idLibro, vencimientos, totalPrestamos);
+    }
+}
@@ -1,7 +1,8 @@
 package com.biblioteca.modelo;
 
+import com.biblioteca.util.FechaNegocio;
+
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 /**
@@ -26,6 +27,11 @@ public class Prestamo {
     private EstadoPrestamo estado;
     private String observaciones;
 
+    // Fecha de devolución esperada como epoch-day, para calcular retrasos
+    // con una resta (se mantiene junto con fechaDevolucionEsperada)
+    private static final long SIN_VENCIMIENTO = Long.MIN_VALUE;
+    private long vencimientoEpochDay = SIN_VENCIMIENTO;
+
     // Atributos adicionales para visualización (no se guardan en BD)
     private String nombreUsuario;
     private String tituloLibro;
@@ -59,7 +65,7 @@ public class Prestamo {
      * Constructor vacío
      */
     public Prestamo() {
-        this.fechaPrestamo = LocalDate.now();
+        this.fechaPrestamo = FechaNegocio.hoy();
         this.estado = EstadoPrestamo.PENDIENTE;
     }
 
@@ -82,7 +88,7 @@ public class Prestamo {
         this.idUsuario = idUsuario;
         this.idLibro = idLibro;
         this.fechaPrestamo = fechaPrestamo;
-        this.fechaDevolucionEsperada = fechaDevolucionEsperada;
+        setFechaDevolucionEsperada(fechaDevolucionEsperada);
         this.fechaDevolucionReal = fechaDevolucionReal;
         this.estado = estado;
         this.observaciones = observaciones;
@@ -98,8 +104,8 @@ public class Prestamo {
     public Prestamo(int idUsuario, int idLibro, int diasPrestamo) {
         this.idUsuario = idUsuario;
         this.idLibro = idLibro;
-        this.fechaPrestamo = LocalDate.now();
-        this.fechaDevolucionEsperada = LocalDate.now().plusDays(diasPrestamo);
+        this.fechaPrestamo = FechaNegocio.hoy();
+        setFechaDevolucionEsperada(fechaPrestamo.plusDays(diasPrestamo));
         this.estado = EstadoPrestamo.PENDIENTE;
     }
 
@@ -225,6 +231,8 @@ public class Prestamo {
      */
     public void setFechaDevolucionEsperada(LocalDate fechaDevolucionEsperada) {
         this.fechaDevolucionEsperada = fechaDevolucionEsperada;
+        this.vencimientoEpochDay = fechaDevolucionEsperada != null ?
+                fechaDevolucionEsperada.toEpochDay() : SIN_VENCIMIENTO;
     }
 
     /**
@@ -274,10 +282,10 @@ public class Prestamo {
      * @return true si está retrasado, false en caso contrario
      */
     public boolean estaRetrasado() {
-        if (estado == EstadoPrestamo.DEVUELTO) {
+        if (estado == EstadoPrestamo.DEVUELTO || vencimientoEpochDay == SIN_VENCIMIENTO) {
             return false;
         }
-        return LocalDate.now().isAfter(fechaDevolucionEsperada);
+        return FechaNegocio.hoyEpochDay() > vencimientoEpochDay;
     }
 
     /**
@@ -288,7 +296,7 @@ public class Prestamo {
         if (!estaRetrasado()) {
             return 0;
         }
-        return ChronoUnit.DAYS.between(fechaDevolucionEsperada, LocalDate.now());
+        return FechaNegocio.hoyEpochDay() - vencimientoEpochDay;
     }
 
     /**
@@ -296,10 +304,10 @@ public class Prestamo {
      * @return Número de días restantes (negativo si está retrasado)
      */
     public long getDiasRestantes() {
-        if (estado == EstadoPrestamo.DEVUELTO) {
+        if (estado == EstadoPrestamo.DEVUELTO || vencimientoEpochDay == SIN_VENCIMIENTO) {
             return 0;
         }
-        return ChronoUnit.DAYS.between(LocalDate.now(), fechaDevolucionEsperada);
+        return vencimientoEpochDay - FechaNegocio.hoyEpochDay();
     }
 
     /**
@@ -307,7 +315,7 @@ public class Prestamo {
      * Actualiza el estado y la fecha de devolución real
      */
     public void registrarDevolucion() {
-        this.fechaDevolucionReal = LocalDate.now();
+        this.fechaDevolucionReal = FechaNegocio.hoy();
         this.estado = EstadoPrestamo.DEVUELTO;
     }
 
@@ -316,7 +324,7 @@ public class Prestamo {
      * @param diasAdicionales Número de días adicionales
      */
     public void renovarPrestamo(int diasAdicionales) {
-        this.fechaDevolucionEsperada = this.fechaDevolucionEsperada.plusDays(diasAdicionales);
+        setFechaDevolucionEsperada(this.fechaDevolucionEsperada.plusDays(diasAdicionales));
         this.estado = EstadoPrestamo.RENOVADO;
     }
 
@@ -0,0 +1,240 @@
+package com.biblioteca.modelo;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Clase que representa una reserva de un libro sin stock
+ *
+ * Un usuario se pone en la cola de un libro agotado; cuando se devuelve
+ * un ejemplar, la primera reserva en espera recibe el préstamo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class Reserva {
+
+    // Atributos privados
+    private int id;
+    private int idUsuario;
+    private int idLibro;
+    private LocalDateTime fechaReserva;
+    private EstadoReserva estado;
+    private Integer idPrestamo;
+    private LocalDateTime fechaAsignacion;
+
+    // Atributos adicionales para visualización (no se guardan en BD)
+    private String nombreUsuario;
+
+    /**
+     * Enumeración que define los estados posibles de una reserva
+     */
+    public enum EstadoReserva {
+        EN_ESPERA("En espera"),
+        ASIGNADA("Asignada"),
+        CANCELADA("Cancelada");
+
+        private final String descripcion;
+
+        EstadoReserva(String descripcion) {
+            this.descripcion = descripcion;
+        }
+
+        public String getDescripcion() {
+            return descripcion;
+        }
+
+        @Override
+        public String toString() {
+            return descripcion;
+        }
+    }
+
+    /**
+     * Constructor vacío
+     */
+    public Reserva() {
+        this.estado = EstadoReserva.EN_ESPERA;
+    }
+
+    /**
+     * Constructor completo con todos los atributos
+     *
+     * @param id Identificador único de la reserva
+     * @param idUsuario ID del usuario que reserva
+     * @param idLibro ID del libro reservado
+     * @param fechaReserva Fecha y hora de la reserva
+     * @param estado Estado actual de la reserva
+     * @param idPrestamo Préstamo creado al asignarla (null si no se ha asignado)
+     * @param fechaAsignacion Fecha y hora de asignación (null si no se ha asignado)
+     */
+    public Reserva(int id, int idUsuario, int idLibro, LocalDateTime fechaReserva,
+                   EstadoReserva estado, Integer idPrestamo, LocalDateTime fechaAsignacion) {
+        this.id = id;
+        this.idUsuario = idUsuario;
+        this.idLibro = idLibro;
+        this.fechaReserva = fechaReserva;
+        this.estado = estado;
+        this.idPrestamo = idPrestamo;
+        this.fechaAsignacion = fechaAsignacion;
+    }
+
+    /**
+     * Constructor para crear una nueva reserva
+     *
+     * @param idUsuario ID del usuario
+     * @param idLibro ID del libro
+     */
+    public Reserva(int idUsuario, int idLibro) {
+        this.idUsuario = idUsuario;
+        this.idLibro = idLibro;
+        this.estado = EstadoReserva.EN_ESPERA;
+    }
+
+    // ==================== GETTERS ====================
+
+    /**
+     * Obtiene el ID de la reserva
+     * @return ID de la reserva
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el ID del usuario
+     * @return ID del usuario
+     */
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    /**
+     * Obtiene el ID del libro
+     * @return ID del libro
+     */
+    public int getIdLibro() {
+        return idLibro;
+    }
+
+    /**
+     * Obtiene la fecha y hora de la reserva
+     * @return Fecha de reserva
+     */
+    public LocalDateTime getFechaReserva() {
+        return fechaReserva;
+    }
+
+    /**
+     * Obtiene el estado de la reserva
+     * @return Estado de la reserva
+     */
+    public EstadoReserva getEstado() {
+        return estado;
+    }
+
+    /**
+     * Obtiene el préstamo creado al asignar la reserva
+     * @return ID del préstamo (null si no se ha asignado)
+     */
+    public Integer getIdPrestamo() {
+        return idPrestamo;
+    }
+
+    /**
+     * Obtiene la fecha y hora de asignación
+     * @return Fecha de asignación (null si no se ha asignado)
+     */
+    public LocalDateTime getFechaAsignacion() {
+        return fechaAsignacion;
+    }
+
+    /**
+     * Obtiene el nombre del usuario (para visualización)
+     * @return Nombre del usuario
+     */
+    public String getNombreUsuario() {
+        return nombreUsuario;
+    }
+
+    // ==================== SETTERS ====================
+
+    /**
+     * Establece el ID de la reserva
+     * @param id ID de la reserva
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Establece el estado de la reserva
+     * @param estado Estado de la reserva
+     */
+    public void setEstado(EstadoReserva estado) {
+        this.estado = estado;
+    }
+
+    /**
+     * Establece el préstamo creado al asignar la reserva
+     * @param idPrestamo ID del préstamo
+     */
+    public void setIdPrestamo(Integer idPrestamo) {
+        this.idPrestamo = idPrestamo;
+    }
+
+    /**
+     * Establece la fecha y hora de asignación
+     * @param fechaAsignacion Fecha de asignación
+     */
+    public void setFechaAsignacion(LocalDateTime fechaAsignacion) {
+        this.fechaAsignacion = fechaAsignacion;
+    }
+
+    /**
+     * Establece el nombre del usuario (para visualización)
+     * @param nombreUsuario Nombre del usuario
+     */
+    public void setNombreUsuario(String nombreUsuario) {
+        this.nombreUsuario = nombreUsuario;
+    }
+
+    /**
+     * Genera una representación en String del objeto Reserva
+     * @return String con la información de la reserva
+     */
+    @Override
+    public String toString() {
+        return "Reserva{" +
+                "id=" + id +
+                ", idUsuario=" + idUsuario +
+                ", idLibro=" + idLibro +
+                ", fechaReserva=" + fechaReserva +
+                ", estado=" + estado +
+                ", idPrestamo=" + idPrestamo +
+                '}';
+    }
+
+    /**
+     * Compara esta reserva con otro objeto
+     * @param o Objeto a comparar
+     * @return true si son iguales, false en caso contrario
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Reserva reserva = (Reserva) o;
+        return id == reserva.id;
+    }
+
+    /**
+     * Genera el código hash de la reserva
+     * @return Código hash basado en id
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
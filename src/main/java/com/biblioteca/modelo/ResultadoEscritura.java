@@ -0,0 +1,95 @@
+package com.biblioteca.modelo;
+
+/**
+ * Clase que representa el resultado de registrar un préstamo o una devolución
+ *
+ * Indica si la operación se guardó en la base de datos, si quedó en la
+ * cola local del modo sucursal (se enviará al volver la conexión) o si
+ * falló y, en una devolución, la reserva a la que se prestó el ejemplar
+ * devuelto. Los objetos son inmutables: cada llamada al DAO devuelve el
+ * suyo, así que dos ventanas con el mismo DAO no se pisan el resultado.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public final class ResultadoEscritura {
+
+    private static final ResultadoEscritura GUARDADA = new ResultadoEscritura(true, false, null);
+    private static final ResultadoEscritura EN_COLA = new ResultadoEscritura(true, true, null);
+    private static final ResultadoEscritura FALLIDA = new ResultadoEscritura(false, false, null);
+
+    // Atributos privados
+    private final boolean aceptada;
+    private final boolean enCola;
+    private final Reserva reservaAsignada;
+
+    private ResultadoEscritura(boolean aceptada, boolean enCola, Reserva reservaAsignada) {
+        this.aceptada = aceptada;
+        this.enCola = enCola;
+        this.reservaAsignada = reservaAsignada;
+    }
+
+    /**
+     * Operación guardada en la base de datos
+     *
+     * @return Resultado sin reserva asignada
+     */
+    public static ResultadoEscritura guardada() {
+        return GUARDADA;
+    }
+
+    /**
+     * Devolución guardada cuyo ejemplar se prestó a una reserva
+     *
+     * @param reserva Reserva asignada, o null si el libro no tenía reservas
+     * @return Resultado con la reserva asignada
+     */
+    public static ResultadoEscritura guardada(Reserva reserva) {
+        return reserva == null ? GUARDADA : new ResultadoEscritura(true, false, reserva);
+    }
+
+    /**
+     * Operación guardada en la cola local del modo sucursal
+     *
+     * @return Resultado en cola
+     */
+    public static ResultadoEscritura enCola() {
+        return EN_COLA;
+    }
+
+    /**
+     * Operación no guardada
+     *
+     * @return Resultado fallido
+     */
+    public static ResultadoEscritura fallida() {
+        return FALLIDA;
+    }
+
+    // ==================== GETTERS ====================
+
+    /**
+     * Indica si la operación se guardó (en la base de datos o en la cola local)
+     * @return false si falló
+     */
+    public boolean isAceptada() {
+        return aceptada;
+    }
+
+    /**
+     * Indica si la operación quedó en la cola local del modo sucursal
+     * @return true si se enviará cuando vuelva la conexión
+     */
+    public boolean isEnCola() {
+        return enCola;
+    }
+
+    /**
+     * Obtiene la reserva a la que se prestó el ejemplar devuelto
+     * @return Reserva asignada, o null si no hubo ninguna
+     */
+    public Reserva getReservaAsignada() {
+        return reservaAsignada;
+    }
+}
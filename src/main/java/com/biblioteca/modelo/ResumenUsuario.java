@@ -0,0 +1,154 @@
+package com.biblioteca.modelo;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Clase que representa el resumen de préstamos de un usuario
+ *
+ * Contadores mantenidos por los triggers de prestamos en la tabla
+ * resumen_usuarios. Los objetos son inmutables: un cambio en los
+ * préstamos del usuario produce un resumen nuevo.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public final class ResumenUsuario {
+
+    // Atributos privados
+    private final int idUsuario;
+    private final int prestamosActivos;
+    private final int prestamosRetrasados;
+    private final int totalPrestamos;
+    private final LocalDate ultimoPrestamo;
+
+    /**
+     * Constructor completo con todos los atributos
+     *
+     * @param idUsuario ID del usuario
+     * @param prestamosActivos Préstamos sin devolver (pendientes, retrasados o renovados)
+     * @param prestamosRetrasados Préstamos retrasados
+     * @param totalPrestamos Préstamos realizados, incluidos los archivados
+     * @param ultimoPrestamo Fecha del último préstamo (null si nunca pidió uno)
+     */
+    public ResumenUsuario(int idUsuario, int prestamosActivos, int prestamosRetrasados,
+                          int totalPrestamos, LocalDate ultimoPrestamo) {
+        this.idUsuario = idUsuario;
+        this.prestamosActivos = prestamosActivos;
+        this.prestamosRetrasados = prestamosRetrasados;
+        this.totalPrestamos = totalPrestamos;
+        this.ultimoPrestamo = ultimoPrestamo;
+    }
+
+    /**
+     * Crea el resumen de un usuario que no tiene préstamos
+     *
+     * @param idUsuario ID del usuario
+     * @return Resumen con todos los contadores a cero
+     */
+    public static ResumenUsuario vacio(int idUsuario) {
+        return new ResumenUsuario(idUsuario, 0, 0, 0, null);
+    }
+
+    // ==================== GETTERS ====================
+
+    /**
+     * Obtiene el ID del usuario
+     * @return ID del usuario
+     */
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    /**
+     * Obtiene los préstamos sin devolver
+     * @return Préstamos activos
+     */
+    public int getPrestamosActivos() {
+        return prestamosActivos;
+    }
+
+    /**
+     * Obtiene los préstamos retrasados
+     * @return Préstamos retrasados
+     */
+    public int getPrestamosRetrasados() {
+        return prestamosRetrasados;
+    }
+
+    /**
+     * Obtiene los préstamos realizados, incluidos los archivados
+     * @return Total de préstamos
+     */
+    public int getTotalPrestamos() {
+        return totalPrestamos;
+    }
+
+    /**
+     * Obtiene la fecha del último préstamo
+     * @return Fecha del último préstamo (null si nunca pidió uno)
+     */
+    public LocalDate getUltimoPrestamo() {
+        return ultimoPrestamo;
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Verifica si el usuario tiene préstamos sin devolver
+     * @return true si tiene préstamos activos, false en caso contrario
+     */
+    public boolean tienePrestamosActivos() {
+        return prestamosActivos > 0;
+    }
+
+    /**
+     * Verifica si el usuario tiene préstamos retrasados
+     * @return true si tiene préstamos retrasados, false en caso contrario
+     */
+    public boolean tienePrestamosRetrasados() {
+        return prestamosRetrasados > 0;
+    }
+
+    /**
+     * Genera una representación en String del objeto ResumenUsuario
+     * @return String con la información del resumen
+     */
+    @Override
+    public String toString() {
+        return "ResumenUsuario{" +
+                "idUsuario=" + idUsuario +
+                ", prestamosActivos=" + prestamosActivos +
+                ", prestamosRetrasados=" + prestamosRetrasados +
+                ", totalPrestamos=" + totalPrestamos +
+                ", ultimoPrestamo=" + ultimoPrestamo +
+                '}';
+    }
+
+    /**
+     * Compara este resumen con otro objeto
+     * @param o Objeto a comparar
+     * @return true si tienen los mismos valores, false en caso contrario
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResumenUsuario that = (ResumenUsuario) o;
+        return idUsuario == that.idUsuario &&
+                prestamosActivos == that.prestamosActivos &&
+                prestamosRetrasados == that.prestamosRetrasados &&
+                totalPrestamos == that.totalPrestamos &&
+                Objects.equals(ultimoPrestamo, that.ultimoPrestamo);
+    }
+
+    /**
+     * Genera el código hash del resumen
+     * @return Código hash basado en todos los atributos
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(idUsuario, prestamosActivos, prestamosRetrasados, totalPrestamos, ultimoPrestamo);
+    }
+}
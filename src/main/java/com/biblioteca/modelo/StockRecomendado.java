@@ -0,0 +1,179 @@
+package com.biblioteca.modelo;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Clase que representa la situación de stock de un libro frente a su
+ * demanda prevista
+ *
+ * Reúne el stock actual, los ejemplares prestados y el pronóstico
+ * calculado por PronosticoDemanda (null si el libro no tuvo préstamos en
+ * el periodo analizado).
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class StockRecomendado {
+
+    // Atributos privados
+    private int idLibro;
+    private String titulo;
+    private String categoria;
+    private int stock;
+    private int enPrestamo;
+    private Double demandaSemanal;
+    private Integer ejemplaresRecomendados;
+    private LocalDateTime fechaCalculo;
+
+    /**
+     * Constructor completo con todos los atributos
+     *
+     * @param idLibro ID del libro
+     * @param titulo Título del libro
+     * @param categoria Categoría del libro
+     * @param stock Ejemplares disponibles
+     * @param enPrestamo Ejemplares prestados en este momento
+     * @param demandaSemanal Préstamos por semana previstos (null si no hay pronóstico)
+     * @param ejemplaresRecomendados Ejemplares necesarios (null si no hay pronóstico)
+     * @param fechaCalculo Fecha del pronóstico (null si no hay pronóstico)
+     */
+    public StockRecomendado(int idLibro, String titulo, String categoria, int stock, int enPrestamo,
+                            Double demandaSemanal, Integer ejemplaresRecomendados,
+                            LocalDateTime fechaCalculo) {
+        this.idLibro = idLibro;
+        this.titulo = titulo;
+        this.categoria = categoria;
+        this.stock = stock;
+        this.enPrestamo = enPrestamo;
+        this.demandaSemanal = demandaSemanal;
+        this.ejemplaresRecomendados = ejemplaresRecomendados;
+        this.fechaCalculo = fechaCalculo;
+    }
+
+    // ==================== GETTERS ====================
+
+    /**
+     * Obtiene el ID del libro
+     * @return ID del libro
+     */
+    public int getIdLibro() {
+        return idLibro;
+    }
+
+    /**
+     * Obtiene el título del libro
+     * @return Título del libro
+     */
+    public String getTitulo() {
+        return titulo;
+    }
+
+    /**
+     * Obtiene la categoría del libro
+     * @return Categoría del libro
+     */
+    public String getCategoria() {
+        return categoria;
+    }
+
+    /**
+     * Obtiene los ejemplares disponibles
+     * @return Stock actual
+     */
+    public int getStock() {
+        return stock;
+    }
+
+    /**
+     * Obtiene los ejemplares prestados en este momento
+     * @return Préstamos activos del libro
+     */
+    public int getEnPrestamo() {
+        return enPrestamo;
+    }
+
+    /**
+     * Obtiene la demanda semanal prevista
+     * @return Préstamos por semana (null si no hay pronóstico)
+     */
+    public Double getDemandaSemanal() {
+        return demandaSemanal;
+    }
+
+    /**
+     * Obtiene los ejemplares recomendados
+     * @return Ejemplares necesarios (null si no hay pronóstico)
+     */
+    public Integer getEjemplaresRecomendados() {
+        return ejemplaresRecomendados;
+    }
+
+    /**
+     * Obtiene la fecha del pronóstico
+     * @return Fecha de cálculo (null si no hay pronóstico)
+     */
+    public LocalDateTime getFechaCalculo() {
+        return fechaCalculo;
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Obtiene los ejemplares que tiene la biblioteca (disponibles + prestados)
+     * @return Total de ejemplares
+     */
+    public int getEjemplares() {
+        return stock + enPrestamo;
+    }
+
+    /**
+     * Obtiene cuántos ejemplares faltan para llegar a la recomendación
+     * @return Ejemplares a adquirir (0 si no faltan o no hay pronóstico)
+     */
+    public int getFaltantes() {
+        if (ejemplaresRecomendados == null) {
+            return 0;
+        }
+        return Math.max(0, ejemplaresRecomendados - getEjemplares());
+    }
+
+    /**
+     * Genera una representación en String del objeto StockRecomendado
+     * @return String con la información del pronóstico
+     */
+    @Override
+    public String toString() {
+        return "StockRecomendado{" +
+                "idLibro=" + idLibro +
+                ", titulo='" + titulo + '\'' +
+                ", stock=" + stock +
+                ", enPrestamo=" + enPrestamo +
+                ", demandaSemanal=" + demandaSemanal +
+                ", ejemplaresRecomendados=" + ejemplaresRecomendados +
+                '}';
+    }
+
+    /**
+     * Compara este pronóstico con otro objeto
+     * @param o Objeto a comparar
+     * @return true si son del mismo libro, false en caso contrario
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StockRecomendado that = (StockRecomendado) o;
+        return idLibro == that.idLibro;
+    }
+
+    /**
+     * Genera el código hash del pronóstico
+     * @return Código hash basado en idLibro
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(idLibro);
+    }
+}
@@ -0,0 +1,176 @@
+package com.biblioteca.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Árbol BK de palabras con distancia de Levenshtein
+ *
+ * Cada nodo guarda una palabra y cuelga sus hijos según la distancia a
+ * ella. Para buscar las palabras a distancia k o menos de una consulta
+ * basta con bajar por los hijos cuya distancia al nodo esté entre d - k y
+ * d + k (desigualdad triangular), así que con k = 1 ó 2 se visita una
+ * pequeña parte del árbol en vez de comparar con todo el vocabulario.
+ *
+ * No admite borrar palabras. Agregar y buscar están sincronizados: se
+ * puede agregar desde un hilo de fondo mientras otro busca.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ArbolBK {
+
+    private static final class Nodo {
+        final String palabra;
+        // Índice = distancia a la palabra del nodo
+        Nodo[] hijos;
+
+        Nodo(String palabra) {
+            this.palabra = palabra;
+        }
+    }
+
+    private Nodo raiz;
+    private int palabras;
+
+    /**
+     * Agrega una palabra al árbol (si ya está, no hace nada)
+     *
+     * @param palabra Palabra a agregar
+     * @return true si la palabra es nueva
+     */
+    public synchronized boolean agregar(String palabra) {
+        if (raiz == null) {
+            raiz = new Nodo(palabra);
+            palabras++;
+            return true;
+        }
+        Nodo actual = raiz;
+        while (true) {
+            int distancia = distancia(palabra, actual.palabra, Integer.MAX_VALUE);
+            if (distancia == 0) {
+                return false;
+            }
+            if (actual.hijos == null) {
+                actual.hijos = new Nodo[distancia + 1];
+            } else if (actual.hijos.length <= distancia) {
+                actual.hijos = Arrays.copyOf(actual.hijos, distancia + 1);
+            }
+            Nodo hijo = actual.hijos[distancia];
+            if (hijo == null) {
+                actual.hijos[distancia] = new Nodo(palabra);
+                palabras++;
+                return true;
+            }
+            actual = hijo;
+        }
+    }
+
+    /**
+     * Recorre las palabras a distancia máxima o menos de la consulta
+     *
+     * @param consulta Palabra buscada
+     * @param maxima Distancia de Levenshtein máxima
+     * @param visitante Recibe cada palabra con su distancia
+     */
+    public synchronized void buscar(String consulta, int maxima, ObjIntConsumer<String> visitante) {
+        if (raiz == null) {
+            return;
+        }
+        Deque<Nodo> pendientes = new ArrayDeque<>();
+        pendientes.push(raiz);
+        int[] anterior = new int[8];
+        int[] fila = new int[8];
+        while (!pendientes.isEmpty()) {
+            Nodo nodo = pendientes.pop();
+            // Más allá del último hijo + máxima la distancia exacta no cambia nada
+            int tope = (nodo.hijos != null ? nodo.hijos.length - 1 : 0) + maxima;
+            if (anterior.length <= nodo.palabra.length()) {
+                anterior = new int[nodo.palabra.length() * 2];
+                fila = new int[nodo.palabra.length() * 2];
+            }
+            int distancia = distancia(consulta, nodo.palabra, tope, anterior, fila);
+            if (distancia <= maxima) {
+                visitante.accept(nodo.palabra, distancia);
+            }
+            if (nodo.hijos != null) {
+                int hasta = Math.min(distancia + maxima, nodo.hijos.length - 1);
+                for (int d = Math.max(1, distancia - maxima); d <= hasta; d++) {
+                    if (nodo.hijos[d] != null) {
+                        pendientes.push(nodo.hijos[d]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene las palabras a distancia máxima o menos de la consulta
+     *
+     * @param consulta Palabra buscada
+     * @param maxima Distancia de Levenshtein máxima
+     * @return Palabras encontradas (sin orden)
+     */
+    public List<String> buscar(String consulta, int maxima) {
+        List<String> encontradas = new ArrayList<>();
+        buscar(consulta, maxima, (palabra, distancia) -> encontradas.add(palabra));
+        return encontradas;
+    }
+
+    /**
+     * Obtiene la cantidad de palabras del árbol
+     *
+     * @return Palabras distintas agregadas
+     */
+    public synchronized int getPalabras() {
+        return palabras;
+    }
+
+    /**
+     * Calcula la distancia de Levenshtein entre dos palabras
+     * Deja de calcular en cuanto toda una fila supera el tope: en ese
+     * caso devuelve tope + 1.
+     *
+     * @param a Primera palabra
+     * @param b Segunda palabra
+     * @param tope Distancia a partir de la cual no interesa el valor exacto
+     * @return Distancia (o tope + 1 si la supera)
+     */
+    public static int distancia(String a, String b, int tope) {
+        return distancia(a, b, tope, new int[b.length() + 1], new int[b.length() + 1]);
+    }
+
+    // Con las filas del cálculo ya reservadas (al menos b.length() + 1 cada una)
+    private static int distancia(String a, String b, int tope, int[] anterior, int[] fila) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > tope) {
+            return tope + 1;
+        }
+        for (int j = 0; j <= m; j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            fila[0] = i;
+            int minimo = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int sustitucion = anterior[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                fila[j] = Math.min(sustitucion, Math.min(anterior[j], fila[j - 1]) + 1);
+                minimo = Math.min(minimo, fila[j]);
+            }
+            if (minimo > tope) {
+                return tope + 1;
+            }
+            int[] intercambio = anterior;
+            anterior = fila;
+            fila = intercambio;
+        }
+        return anterior[m];
+    }
+}
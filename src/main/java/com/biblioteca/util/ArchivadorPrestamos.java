@@ -0,0 +1,145 @@
+package com.biblioteca.util;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivador de préstamos devueltos en segundo plano
+ *
+ * Periódicamente mueve a prestamos_historico los préstamos devueltos hace
+ * más de N meses (sp_archivar_prestamos), en lotes acotados con una pausa
+ * entre lote y lote para no competir con los mostradores. Así prestamos y
+ * prestamos_vista sólo contienen préstamos recientes y los listados, los
+ * índices por estado y la actualización de retrasados no crecen con los años.
+ *
+ * Configuración (propiedades del sistema):
+ * -Dbiblioteca.archivo.meses=12        antigüedad mínima de la devolución
+ * -Dbiblioteca.archivo.intervaloMin=60 minutos entre ejecuciones
+ * -Dbiblioteca.archivo.lote=500        préstamos por lote
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ArchivadorPrestamos {
+
+    private static final int MESES_ANTIGUEDAD = Integer.getInteger("biblioteca.archivo.meses", 12);
+    private static final long INTERVALO_MIN = Long.getLong("biblioteca.archivo.intervaloMin", 60L);
+    private static final int LOTE = Integer.getInteger("biblioteca.archivo.lote", 500);
+    private static final long PAUSA_ENTRE_LOTES_MS = 200;
+
+    // Instancia única (Singleton)
+    private static ArchivadorPrestamos instancia;
+
+    private ScheduledExecutorService planificador;
+
+    private ArchivadorPrestamos() {
+    }
+
+    /**
+     * Obtiene la única instancia de ArchivadorPrestamos (Singleton)
+     *
+     * @return Instancia única de ArchivadorPrestamos
+     */
+    public static ArchivadorPrestamos getInstance() {
+        if (instancia == null) {
+            synchronized (ArchivadorPrestamos.class) {
+                if (instancia == null) {
+                    instancia = new ArchivadorPrestamos();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Inicia el archivado periódico
+     * La primera ejecución se retrasa un minuto para no cargar el arranque.
+     */
+    public synchronized void iniciar() {
+        if (planificador != null) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "archivador-prestamos");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::archivar, 1, INTERVALO_MIN, TimeUnit.MINUTES);
+        System.out.println("✓ Archivador de préstamos iniciado (devueltos hace más de "
+                + MESES_ANTIGUEDAD + " meses)");
+    }
+
+    /**
+     * Detiene el archivado periódico
+     * Un lote en curso termina su transacción; no se inician más.
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+
+    /**
+     * Archiva todos los préstamos que cumplen la antigüedad, lote a lote
+     *
+     * @return Número total de préstamos archivados
+     */
+    public int archivar() {
+        int total = 0;
+
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+            crearParticionSiguiente(conn);
+
+            int archivados;
+            do {
+                archivados = archivarLote(conn);
+                total += archivados;
+                if (archivados == LOTE) {
+                    Thread.sleep(PAUSA_ENTRE_LOTES_MS);
+                }
+            } while (archivados == LOTE && !Thread.currentThread().isInterrupted());
+
+            if (total > 0) {
+                System.out.println("✓ Préstamos archivados: " + total);
+                BusCambios.getInstance().notificarEscritura();
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al archivar préstamos: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return total;
+    }
+
+    private int archivarLote(Connection conn) throws SQLException {
+        try (CallableStatement cstmt = conn.prepareCall("{CALL sp_archivar_prestamos(?, ?)}")) {
+            cstmt.setInt(1, MESES_ANTIGUEDAD);
+            cstmt.setInt(2, LOTE);
+            try (ResultSet rs = cstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("prestamos_archivados") : 0;
+            }
+        }
+    }
+
+    /**
+     * Garantiza que exista la partición del año próximo, para que los
+     * préstamos nuevos no se acumulen en la partición pmax
+     */
+    private void crearParticionSiguiente(Connection conn) throws SQLException {
+        try (CallableStatement cstmt = conn.prepareCall("{CALL sp_crear_particion_historico(?)}")) {
+            cstmt.setInt(1, LocalDate.now().getYear() + 1);
+            cstmt.execute();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.biblioteca.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Bus de invalidación de cachés entre instancias de la aplicación
+ *
+ * Varias instancias (mostradores) trabajan contra la misma biblioteca_db.
+ * Los triggers registran cada alta, modificación o baja en la tabla
+ * cambios; este bus la sondea periódicamente y entrega los eventos nuevos
+ * a los oyentes suscritos, de modo que todas las cachés se mantienen
+ * coherentes con un retraso máximo igual al intervalo de sondeo.
+ *
+ * Tras una escritura local los DAO llaman a notificarEscritura(), que
+ * adelanta el siguiente sondeo en el hilo del bus: los cambios propios se
+ * ven sin esperar al siguiente ciclo y sin sondear en el hilo de la
+ * interfaz. Hasta que ese sondeo termina, DatabaseConnection cuenta la
+ * escritura como pendiente y las lecturas van a la principal.
+ *
+ * Los id de cambios son AUTO_INCREMENT: se asignan al insertar, no al
+ * confirmar, así que una transacción puede confirmar un id menor que otro
+ * ya leído. Los id que faltan entre dos filas leídas se guardan como
+ * huecos y se vuelven a consultar en cada sondeo durante un tiempo; los
+ * que no aparecen en ese plazo son de transacciones deshechas.
+ *
+ * Los oyentes se ejecutan en el hilo del bus; si tocan la interfaz deben
+ * usar Platform.runLater.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class BusCambios {
+
+    // Configuración del sondeo (modificable con -Dbiblioteca.bus.intervaloMs=...)
+    private static final long INTERVALO_SONDEO_MS = Long.getLong("biblioteca.bus.intervaloMs", 2000L);
+    private static final int LOTE_MAXIMO = 500;
+    private static final int RETENCION_HORAS = 24;
+    private static final long INTERVALO_PURGA_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long ESPERA_HUECO_MS = Long.getLong("biblioteca.bus.esperaHuecoMs", 120_000L);
+    private static final int HUECOS_MAXIMOS = 10_000;
+
+    // Instancia única (Singleton)
+    private static BusCambios instancia;
+
+    private final List<Consumer<EventoCambio>> oyentes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean sondeoPendiente = new AtomicBoolean();
+    private volatile ScheduledExecutorService planificador;
+    private Connection conexion;
+    private long ultimaSecuencia = -1;
+    private long ultimaPurga;
+
+    // Id sin leer por debajo de ultimaSecuencia -> momento en que se detectó el hueco
+    private final TreeMap<Long, Long> huecos = new TreeMap<>();
+
+    private BusCambios() {
+    }
+
+    /**
+     * Obtiene la única instancia de BusCambios (Singleton)
+     *
+     * @return Instancia única de BusCambios
+     */
+    public static BusCambios getInstance() {
+        if (instancia == null) {
+            synchronized (BusCambios.class) {
+                if (instancia == null) {
+                    instancia = new BusCambios();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Inicia el sondeo periódico de la tabla cambios
+     * Los cambios anteriores al arranque se ignoran.
+     */
+    public synchronized void iniciar() {
+        if (planificador != null) {
+            return;
+        }
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "bus-cambios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(this::sondear, 0, INTERVALO_SONDEO_MS, TimeUnit.MILLISECONDS);
+        System.out.println("✓ Bus de cambios iniciado (intervalo " + INTERVALO_SONDEO_MS + " ms)");
+    }
+
+    /**
+     * Detiene el sondeo y libera la conexión dedicada
+     */
+    public synchronized void detener() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+        cerrarConexion();
+    }
+
+    /**
+     * Suscribe un oyente a todos los eventos de cambio
+     *
+     * @param oyente Oyente a registrar
+     */
+    public void suscribir(Consumer<EventoCambio> oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Elimina un oyente previamente suscrito
+     *
+     * @param oyente Oyente a eliminar
+     */
+    public void desuscribir(Consumer<EventoCambio> oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Avisa al bus de que esta instancia acaba de escribir
+     * Registra la escritura como pendiente (las lecturas siguientes no irán
+     * a una réplica ni a cachés que aún no la tengan) y adelanta el sondeo
+     * en el hilo del bus, que avanza la marca de lectura y avisa a los
+     * oyentes locales. No bloquea al llamador.
+     */
+    public void notificarEscritura() {
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        ScheduledExecutorService destino = planificador;
+        if (destino == null) {
+            // Sin sondeo no se conoce la versión escrita: lecturas a la principal
+            db.avanzarMarcaLectura(Long.MAX_VALUE);
+            return;
+        }
+        db.registrarEscritura();
+        if (sondeoPendiente.compareAndSet(false, true)) {
+            try {
+                destino.execute(() -> {
+                    sondeoPendiente.set(false);
+                    sondear();
+                });
+            } catch (RejectedExecutionException e) {
+                // Bus detenido mientras tanto
+                sondeoPendiente.set(false);
+                db.avanzarMarcaLectura(Long.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Lee los cambios pendientes y los entrega a los oyentes
+     */
+    public synchronized void sondear() {
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        // Las escrituras avisadas antes de consultar quedan recogidas por este sondeo
+        long escrituras = db.getEscriturasAvisadas();
+        try {
+            Connection conn = obtenerConexion();
+
+            if (ultimaSecuencia < 0) {
+                ultimaSecuencia = leerUltimaSecuencia(conn);
+            }
+
+            for (EventoCambio evento : revisarHuecos(conn)) {
+                db.avanzarMarcaLectura(evento.getVersion());
+                despachar(evento);
+            }
+
+            List<EventoCambio> eventos = new ArrayList<>();
+            int filas;
+            do {
+                eventos.clear();
+                filas = leerCambios(conn, eventos);
+                for (EventoCambio evento : eventos) {
+                    db.avanzarMarcaLectura(evento.getVersion());
+                    despachar(evento);
+                }
+            } while (filas == LOTE_MAXIMO);
+
+            db.confirmarEscrituras(escrituras);
+            purgarSiCorresponde(conn);
+
+        } catch (SQLException e) {
+            System.err.println("✗ Error al sondear cambios: " + e.getMessage());
+            cerrarConexion();
+        }
+    }
+
+    /**
+     * Obtiene la secuencia del último cambio registrado
+     *
+     * @return Secuencia del último cambio procesado
+     */
+    public long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    /**
+     * Lee el siguiente lote de cambios posteriores a ultimaSecuencia
+     * Los id que faltan en el lote se guardan como huecos. ultimaSecuencia
+     * y los huecos sólo se actualizan si se leyó el lote completo.
+     *
+     * @param conn Conexión del bus
+     * @param eventos Recibe los eventos leídos (sin las filas de entidades desconocidas)
+     * @return Filas leídas, incluidas las saltadas
+     * @throws SQLException Si hay error en la consulta
+     */
+    private int leerCambios(Connection conn, List<EventoCambio> eventos) throws SQLException {
+        String sql = "SELECT id, entidad, id_entidad, operacion, id_usuario, id_libro, version " +
+                "FROM cambios WHERE id > ? ORDER BY id LIMIT " + LOTE_MAXIMO;
+
+        List<Long> nuevosHuecos = new ArrayList<>();
+        long anterior = ultimaSecuencia;
+        int filas = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, ultimaSecuencia);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    filas++;
+                    long id = rs.getLong("id");
+                    if (id - anterior - 1 <= HUECOS_MAXIMOS) {
+                        for (long hueco = anterior + 1; hueco < id; hueco++) {
+                            nuevosHuecos.add(hueco);
+                        }
+                    }
+                    anterior = id;
+                    // Entidad desconocida para esta versión: se salta la fila, no el lote
+                    EventoCambio evento = mapearEvento(rs);
+                    if (evento != null) {
+                        eventos.add(evento);
+                    }
+                }
+            }
+        }
+
+        ultimaSecuencia = anterior;
+        long ahora = System.currentTimeMillis();
+        for (Long hueco : nuevosHuecos) {
+            huecos.put(hueco, ahora);
+        }
+        while (huecos.size() > HUECOS_MAXIMOS) {
+            huecos.pollFirstEntry();
+        }
+        return filas;
+    }
+
+    /**
+     * Vuelve a consultar los id que faltaban en lotes anteriores
+     * Los que ya aparecen se entregan y dejan de vigilarse; los que siguen
+     * sin aparecer pasado ESPERA_HUECO_MS se dan por deshechos.
+     *
+     * @param conn Conexión del bus
+     * @return Eventos confirmados desde el sondeo anterior, en orden de id
+     * @throws SQLException Si hay error en la consulta
+     */
+    private List<EventoCambio> revisarHuecos(Connection conn) throws SQLException {
+        List<EventoCambio> eventos = new ArrayList<>();
+        long limite = System.currentTimeMillis() - ESPERA_HUECO_MS;
+        huecos.values().removeIf(detectado -> detectado < limite);
+        if (huecos.isEmpty()) {
+            return eventos;
+        }
+
+        List<Long> ids = new ArrayList<>(huecos.keySet());
+        for (int desde = 0; desde < ids.size(); desde += LOTE_MAXIMO) {
+            List<Long> bloque = ids.subList(desde, Math.min(ids.size(), desde + LOTE_MAXIMO));
+            StringBuilder sql = new StringBuilder("SELECT id, entidad, id_entidad, operacion, id_usuario, " +
+                    "id_libro, version FROM cambios WHERE id IN (");
+            for (int i = 0; i < bloque.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(") ORDER BY id");
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < bloque.size(); i++) {
+                    pstmt.setLong(i + 1, bloque.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        huecos.remove(rs.getLong("id"));
+                        EventoCambio evento = mapearEvento(rs);
+                        if (evento != null) {
+                            eventos.add(evento);
+                        }
+                    }
+                }
+            }
+        }
+        return eventos;
+    }
+
+    private long leerUltimaSecuencia(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM cambios")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void purgarSiCorresponde(Connection conn) throws SQLException {
+        long ahora = System.currentTimeMillis();
+        if (ahora - ultimaPurga < INTERVALO_PURGA_MS) {
+            return;
+        }
+        ultimaPurga = ahora;
+
+        // Siempre las versiones más antiguas primero: lo que queda es un tramo
+        // continuo y MIN(version) sigue diciendo desde dónde hay historial
+        String sql = "DELETE FROM cambios WHERE fecha < NOW(3) - INTERVAL ? HOUR ORDER BY version LIMIT 10000";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, RETENCION_HORAS);
+            int purgados = pstmt.executeUpdate();
+            if (purgados > 0) {
+                System.out.println("✓ Cambios antiguos purgados: " + purgados);
+            }
+        }
+    }
+
+    private void despachar(EventoCambio evento) {
+        for (Consumer<EventoCambio> oyente : oyentes) {
+            try {
+                oyente.accept(evento);
+            } catch (RuntimeException e) {
+                System.err.println("✗ Error en oyente de cambios: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private EventoCambio mapearEvento(ResultSet rs) throws SQLException {
+        try {
+            return new EventoCambio(
+                    rs.getLong("id"),
+                    EventoCambio.Entidad.valueOf(rs.getString("entidad")),
+                    rs.getInt("id_entidad"),
+                    EventoCambio.Operacion.valueOf(rs.getString("operacion")),
+                    rs.getInt("id_usuario"),
+                    rs.getInt("id_libro"),
+                    rs.getLong("version")
+            );
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Connection obtenerConexion() throws SQLException {
+        if (conexion == null || conexion.isClosed()) {
+            conexion = DatabaseConnection.getInstance().abrirConexionDedicada();
+        }
+        return conexion;
+    }
+
+    private void cerrarConexion() {
+        try {
+            if (conexion != null && !conexion.isClosed()) {
+                conexion.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Error al cerrar la conexión del bus: " + e.getMessage());
+        }
+        conexion = null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.biblioteca.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cortacircuitos para un recurso remoto
+ *
+ * Cuenta los fallos seguidos: al llegar al umbral se abre y, mientras
+ * está abierto, quien pregunta permite() recibe false y falla en el acto
+ * en lugar de esperar otro timeout. Un éxito pone la cuenta a cero; quien
+ * lo usa decide cuándo volver a cerrarlo (por ejemplo, tras un sondeo en
+ * segundo plano que vuelve a conectar).
+ *
+ * Es seguro usarlo desde varios hilos.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class Cortacircuitos {
+
+    private final int umbralFallos;
+    private final AtomicInteger fallosSeguidos = new AtomicInteger();
+    private volatile boolean abierto;
+
+    /**
+     * Constructor
+     *
+     * @param umbralFallos Fallos seguidos que abren el circuito
+     */
+    public Cortacircuitos(int umbralFallos) {
+        this.umbralFallos = Math.max(1, umbralFallos);
+    }
+
+    /**
+     * Indica si se puede intentar usar el recurso
+     *
+     * @return false si el circuito está abierto
+     */
+    public boolean permite() {
+        return !abierto;
+    }
+
+    /**
+     * Indica si el circuito está abierto
+     *
+     * @return true si las llamadas fallan en el acto
+     */
+    public boolean estaAbierto() {
+        return abierto;
+    }
+
+    /**
+     * Registra un uso correcto del recurso
+     */
+    public void registrarExito() {
+        fallosSeguidos.set(0);
+    }
+
+    /**
+     * Registra un fallo del recurso
+     *
+     * @return true si este fallo abrió el circuito
+     */
+    public synchronized boolean registrarFallo() {
+        if (fallosSeguidos.incrementAndGet() >= umbralFallos && !abierto) {
+            abierto = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cierra el circuito tras comprobar que el recurso responde
+     */
+    public synchronized void cerrar() {
+        fallosSeguidos.set(0);
+        abierto = false;
+    }
+}
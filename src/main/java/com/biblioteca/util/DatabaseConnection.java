@@ -2,7 +2,15 @@ package com.biblioteca.util;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Clase singleton para gestionar la conexión a la base de datos MySQL
@@ -11,6 +19,29 @@ import java.sql.SQLException;
  * instancia de conexión a la base de datos en toda la aplicación.
  * Maneja la conexión, desconexión y gestión de errores.
  *
+ * Réplicas de lectura: con -Dbiblioteca.db.replicas=url1,url2 los
+ * listados e informes piden conectarLectura(), que reparte entre las
+ * réplicas por turnos; las escrituras y las comprobaciones previas a
+ * escribir siguen en la principal (-Dbiblioteca.db.url). Para que una
+ * mesa vea en el acto lo que acaba de guardar se lleva una marca: la
+ * versión más alta escrita o vista por esta instancia (la avanza
+ * BusCambios). Una réplica sólo se usa si su secuencia_version replicada
+ * ya llegó a la marca; si va atrasada, o no responde, la lectura va a la
+ * principal. Sin réplicas configuradas todo va a la principal, como antes.
+ * Entre una escritura propia y el sondeo que la recoge la marca aún no
+ * refleja lo escrito: mientras tanto la escritura cuenta como pendiente y
+ * la marca se considera infinita (todo a la principal, ninguna caché al día).
+ *
+ * Timeouts y cortacircuitos: las conexiones de la interfaz (conectar y
+ * conectarLectura) tienen timeout de conexión, de lectura del socket y de
+ * ejecución de SELECT, configurables con -Dbiblioteca.db.timeoutConexionMs,
+ * timeoutLecturaMs y timeoutConsultaMs. Tras -Dbiblioteca.db.fallosMaximos
+ * fallos de conexión seguidos se abre el cortacircuitos: conectar() falla
+ * en el acto (los DAO devuelven los últimos resultados guardados en
+ * UltimosResultados) y un hilo en segundo plano reintenta hasta que la
+ * base de datos vuelve a responder. Las conexiones dedicadas de las tareas
+ * de fondo sólo tienen timeout de conexión: sus recorridos pueden ser largos.
+ *
  * @author Biblioteca Inteligente Team
  * @version 1.0
  * @since 2025
@@ -18,15 +49,43 @@ import java.sql.SQLException;
 public class DatabaseConnection {
 
     // Configuración de la base de datos
-    private static final String URL = "jdbc:mysql://localhost:3306/biblioteca_db";
+    private static final String URL = System.getProperty("biblioteca.db.url",
+            "jdbc:mysql://localhost:3306/biblioteca_db?rewriteBatchedStatements=true"); // Lotes (addBatch) como INSERT multi-fila
+    private static final String[] URLS_REPLICAS = leerReplicas(); // Vacío: sin réplicas
     private static final String USUARIO = "root";
     private static final String PASSWORD = ""; // Contraseña de MySQL (vacía por defecto en XAMPP)
     private static final String DRIVER = "com.mysql.cj.jdbc.Driver";
+    private static final long PAUSA_REPLICA_CAIDA_MS = 30_000;
+
+    // Timeouts (ms); la lectura del socket debe superar a la consulta
+    private static final int TIMEOUT_CONEXION_MS = Integer.getInteger("biblioteca.db.timeoutConexionMs", 5_000);
+    private static final int TIMEOUT_LECTURA_MS = Integer.getInteger("biblioteca.db.timeoutLecturaMs", 20_000);
+    private static final int TIMEOUT_CONSULTA_MS = Integer.getInteger("biblioteca.db.timeoutConsultaMs", 10_000);
+    private static final int FALLOS_MAXIMOS = Integer.getInteger("biblioteca.db.fallosMaximos", 3);
+    private static final long INTERVALO_SONDEO_MS = 5_000;
 
     // Instancia única (Singleton)
     private static DatabaseConnection instancia;
     private Connection conexion;
 
+    // Réplicas de lectura; el estado se lee y escribe con el cerrojo de la
+    // instancia, pero las conexiones y consultas se hacen fuera de él
+    private final Connection[] conexionesReplica = new Connection[URLS_REPLICAS.length];
+    private final long[] versionReplica = new long[URLS_REPLICAS.length];
+    private final long[] replicaCaidaHasta = new long[URLS_REPLICAS.length];
+    private final boolean[] replicaConectando = new boolean[URLS_REPLICAS.length];
+    private int siguienteReplica;
+
+    // Versión más alta escrita o vista por esta instancia
+    private final AtomicLong marcaLectura = new AtomicLong(-1);
+
+    // Escrituras propias avisadas a BusCambios y las que ya recogió un sondeo
+    private final AtomicLong escriturasAvisadas = new AtomicLong();
+    private final AtomicLong escriturasVistas = new AtomicLong();
+
+    private final Cortacircuitos cortacircuitos = new Cortacircuitos(FALLOS_MAXIMOS);
+    private ScheduledExecutorService sondeoRecuperacion;
+
     /**
      * Constructor privado para implementar el patrón Singleton
      * Inicializa el driver de MySQL
@@ -65,18 +124,201 @@ public class DatabaseConnection {
      * @throws SQLException Si hay error al conectar
      */
     public Connection conectar() throws SQLException {
+        if (!cortacircuitos.permite()) {
+            throw new SQLException("Base de datos no disponible; reintentando en segundo plano", "08001");
+        }
         try {
             if (conexion == null || conexion.isClosed()) {
-                conexion = DriverManager.getConnection(URL, USUARIO, PASSWORD);
+                conexion = DriverManager.getConnection(URL, propiedades(true));
                 System.out.println("✓ Conexión establecida con la base de datos");
             }
+            cortacircuitos.registrarExito();
             return conexion;
         } catch (SQLException e) {
-            System.err.println("✗ Error al conectar con la base de datos: " + e.getMessage());
+            registrarFalloConexion(e);
             throw e;
         }
     }
 
+    /**
+     * Abre una conexión nueva a la principal para una transacción interactiva
+     * A diferencia de conectar(), no es la conexión compartida: desactivar
+     * su autocommit no mete en la transacción lo que otros DAO escriban
+     * mientras tanto. Respeta el cortacircuitos y los tiempos de espera de
+     * conectar(). El llamador es responsable de cerrarla.
+     *
+     * @return Nueva conexión a la base de datos principal
+     * @throws SQLException Si hay error al conectar
+     */
+    public Connection abrirConexionTransaccion() throws SQLException {
+        if (!cortacircuitos.permite()) {
+            throw new SQLException("Base de datos no disponible; reintentando en segundo plano", "08001");
+        }
+        try {
+            Connection conn = DriverManager.getConnection(URL, propiedades(true));
+            cortacircuitos.registrarExito();
+            return conn;
+        } catch (SQLException e) {
+            registrarFalloConexion(e);
+            throw e;
+        }
+    }
+
+    private void registrarFalloConexion(SQLException e) {
+        System.err.println("✗ Error al conectar con la base de datos: " + e.getMessage());
+        if (cortacircuitos.registrarFallo()) {
+            System.err.println("✗ Cortacircuitos abierto tras " + FALLOS_MAXIMOS + " fallos seguidos");
+            iniciarSondeoRecuperacion();
+        }
+    }
+
+    /**
+     * Indica si la base de datos principal se considera disponible
+     *
+     * @return false si el cortacircuitos está abierto y conectar() falla en el acto
+     */
+    public boolean estaDisponible() {
+        return !cortacircuitos.estaAbierto();
+    }
+
+    /**
+     * Obtiene una conexión para consultas de sólo lectura
+     * Devuelve una réplica al día con lo que esta instancia ya escribió o
+     * vio; si no hay ninguna, la conexión compartida de la principal. Como
+     * la de conectar(), el DAO la cierra al terminar.
+     *
+     * Conectar con una réplica caída puede tardar el timeout de conexión:
+     * se hace sin el cerrojo, así que las demás lecturas no esperan. Mientras
+     * un hilo conecta con una réplica, los demás la saltan.
+     *
+     * @return Conexión a una réplica o a la principal
+     * @throws SQLException Si hay error al conectar con la principal
+     */
+    public Connection conectarLectura() throws SQLException {
+        long marca = getMarcaLectura();
+        if (marca == Long.MAX_VALUE) {
+            return conectar();
+        }
+        for (int intento = 0; intento < URLS_REPLICAS.length; intento++) {
+            int i;
+            Connection conn;
+            long version;
+            synchronized (this) {
+                i = siguienteReplica;
+                siguienteReplica = (i + 1) % URLS_REPLICAS.length;
+                if (replicaConectando[i] || System.currentTimeMillis() < replicaCaidaHasta[i]) {
+                    continue;
+                }
+                replicaConectando[i] = true;
+                conn = conexionesReplica[i];
+                version = versionReplica[i];
+            }
+            try {
+                conn = conexionReplica(i, conn);
+                // La versión aplicada sólo crece: se consulta cuando la marca la supera
+                if (version < marca) {
+                    version = leerVersion(conn);
+                }
+                synchronized (this) {
+                    conexionesReplica[i] = conn;
+                    versionReplica[i] = Math.max(versionReplica[i], version);
+                    replicaConectando[i] = false;
+                }
+                if (version >= marca) {
+                    return conn;
+                }
+            } catch (SQLException e) {
+                synchronized (this) {
+                    replicaCaidaHasta[i] = System.currentTimeMillis() + PAUSA_REPLICA_CAIDA_MS;
+                    replicaConectando[i] = false;
+                }
+                System.err.println("✗ Réplica no disponible (" + URLS_REPLICAS[i] + "): " + e.getMessage());
+            }
+        }
+        return conectar();
+    }
+
+    /**
+     * Avanza la marca de lectura de esta instancia
+     * Las lecturas posteriores sólo van a réplicas que ya aplicaron esa
+     * versión. La marca nunca retrocede.
+     *
+     * @param version Versión escrita o vista
+     */
+    public void avanzarMarcaLectura(long version) {
+        marcaLectura.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * Obtiene la marca de lectura de esta instancia
+     *
+     * @return Versión más alta escrita o vista (-1 si aún no hay ninguna), o
+     *         Long.MAX_VALUE si hay escrituras propias que el sondeo aún no recogió
+     */
+    public long getMarcaLectura() {
+        return hayEscriturasPendientes() ? Long.MAX_VALUE : marcaLectura.get();
+    }
+
+    /**
+     * Registra una escritura propia ya confirmada que BusCambios aún no ha leído
+     *
+     * @return Número de escrituras avisadas hasta ésta
+     */
+    public long registrarEscritura() {
+        return escriturasAvisadas.incrementAndGet();
+    }
+
+    /**
+     * Obtiene el número de escrituras propias avisadas
+     * El sondeo lo lee antes de consultar cambios: al terminar, todas ésas
+     * están ya en la marca.
+     *
+     * @return Escrituras avisadas desde el arranque
+     */
+    public long getEscriturasAvisadas() {
+        return escriturasAvisadas.get();
+    }
+
+    /**
+     * Da por vistas las escrituras avisadas hasta la indicada
+     *
+     * @param hasta Valor de getEscriturasAvisadas() leído antes del sondeo
+     */
+    public void confirmarEscrituras(long hasta) {
+        escriturasVistas.accumulateAndGet(hasta, Math::max);
+    }
+
+    /**
+     * Indica si hay escrituras propias que BusCambios aún no ha recogido
+     *
+     * @return true si la marca de lectura todavía no las refleja
+     */
+    public boolean hayEscriturasPendientes() {
+        return escriturasAvisadas.get() > escriturasVistas.get();
+    }
+
+    /**
+     * Indica si hay réplicas de lectura configuradas
+     *
+     * @return true si conectarLectura() puede devolver una réplica
+     */
+    public boolean hayReplicas() {
+        return URLS_REPLICAS.length > 0;
+    }
+
+    /**
+     * Abre una conexión nueva, independiente de la conexión compartida
+     * Pensada para tareas en segundo plano (por ejemplo el sondeo de
+     * BusCambios), que no deben cerrar la conexión que usan los DAO.
+     * El llamador es responsable de cerrarla.
+     *
+     * @return Nueva conexión a la base de datos
+     * @throws SQLException Si hay error al conectar
+     */
+    public Connection abrirConexionDedicada() throws SQLException {
+        return DriverManager.getConnection(URL, propiedades(false));
+    }
+
     /**
      * Cierra la conexión a la base de datos
      */
@@ -90,6 +332,88 @@ public class DatabaseConnection {
             System.err.println("✗ Error al cerrar la conexión: " + e.getMessage());
             e.printStackTrace();
         }
+        synchronized (this) {
+            for (Connection replica : conexionesReplica) {
+                try {
+                    if (replica != null && !replica.isClosed()) {
+                        replica.close();
+                    }
+                } catch (SQLException e) {
+                    System.err.println("✗ Error al cerrar la conexión a la réplica: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Reutiliza la conexión guardada de la réplica o abre otra (sin el cerrojo)
+    private Connection conexionReplica(int i, Connection actual) throws SQLException {
+        if (actual != null && !actual.isClosed()) {
+            return actual;
+        }
+        Connection conn = DriverManager.getConnection(URLS_REPLICAS[i], propiedades(true));
+        conn.setReadOnly(true);
+        return conn;
+    }
+
+    // Un hilo reintenta hasta que la principal responde y entonces cierra el circuito
+    private synchronized void iniciarSondeoRecuperacion() {
+        if (sondeoRecuperacion != null) {
+            return;
+        }
+        sondeoRecuperacion = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sondeo-base-datos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        sondeoRecuperacion.scheduleWithFixedDelay(this::sondearRecuperacion,
+                INTERVALO_SONDEO_MS, INTERVALO_SONDEO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void sondearRecuperacion() {
+        try (Connection conn = DriverManager.getConnection(URL, propiedades(true))) {
+            if (!conn.isValid(TIMEOUT_CONEXION_MS / 1000 + 1)) {
+                return;
+            }
+        } catch (SQLException e) {
+            return;
+        }
+        cortacircuitos.cerrar();
+        synchronized (this) {
+            sondeoRecuperacion.shutdown();
+            sondeoRecuperacion = null;
+        }
+        System.out.println("✓ Base de datos disponible de nuevo; cortacircuitos cerrado");
+    }
+
+    private static Properties propiedades(boolean interactiva) {
+        Properties propiedades = new Properties();
+        propiedades.setProperty("user", USUARIO);
+        propiedades.setProperty("password", PASSWORD);
+        propiedades.setProperty("connectTimeout", String.valueOf(TIMEOUT_CONEXION_MS));
+        if (interactiva) {
+            propiedades.setProperty("socketTimeout", String.valueOf(TIMEOUT_LECTURA_MS));
+            // max_execution_time corta en el servidor los SELECT que se alargan
+            propiedades.setProperty("sessionVariables", "max_execution_time=" + TIMEOUT_CONSULTA_MS);
+        }
+        return propiedades;
+    }
+
+    private static long leerVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT valor FROM secuencia_version WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private static String[] leerReplicas() {
+        String valor = System.getProperty("biblioteca.db.replicas", "").trim();
+        if (valor.isEmpty()) {
+            return new String[0];
+        }
+        return Arrays.stream(valor.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toArray(String[]::new);
     }
 
     /**
@@ -129,6 +453,9 @@ public class DatabaseConnection {
                 System.out.println("  - Base de datos: " + conn.getCatalog());
                 System.out.println("  - Usuario: " + USUARIO);
                 System.out.println("  - URL: " + URL);
+                if (hayReplicas()) {
+                    System.out.println("  - Réplicas de lectura: " + String.join(", ", URLS_REPLICAS));
+                }
             }
             return valida;
         } catch (SQLException e) {
@@ -0,0 +1,177 @@
+package com.biblioteca.util;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Diccionario de cadenas canónicas para columnas con pocos valores distintos
+ *
+ * Cada fila leída de la base de datos trae su propia copia de la
+ * categoría, la editorial o el autor, aunque la categoría sólo tenga
+ * unas decenas de valores en todo el catálogo. Los mapeadores de los DAO
+ * pasan esas columnas por canonica(): la primera copia de cada valor se
+ * queda en el diccionario y las siguientes filas reciben esa misma
+ * instancia, de modo que cada valor distinto ocupa memoria una sola vez
+ * y las copias de cada fila se descartan enseguida.
+ *
+ * El diccionario guarda los valores con referencias débiles: un valor que
+ * ya no está en ninguna fila viva lo recoge el recolector y su entrada
+ * desaparece, así que el diccionario no crece más que los datos cargados.
+ * Sólo conviene para columnas de poca variedad: con valores casi únicos
+ * por fila (nombres, títulos) cada entrada cuesta más de lo que ahorra.
+ *
+ * El resumen estima el ahorro retenido: por cada valor que sigue vivo,
+ * las copias sustituidas por su instancia canónica, menos lo que ocupan
+ * las entradas del diccionario. Los valores recogidos dejan de contar,
+ * pero las filas descartadas de un valor aún vivo no se pueden seguir:
+ * es una cota superior, no una medida del heap.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class DiccionarioCadenas {
+
+    // Cabecera de un String (12 + hash + coder + referencia) y de su byte[] (12 + longitud)
+    private static final int CABECERA_STRING = 24;
+    private static final int CABECERA_ARREGLO = 16;
+    // Entrada de WeakHashMap (48) más la referencia débil con su contador (40)
+    private static final int TAMANO_ENTRADA = 88;
+
+    private static final List<DiccionarioCadenas> creados = new CopyOnWriteArrayList<>();
+
+    /**
+     * Referencia débil al valor canónico con las copias que ha sustituido
+     */
+    private static final class Entrada extends WeakReference<String> {
+        private long copias;
+
+        private Entrada(String valor) {
+            super(valor);
+        }
+    }
+
+    private final String nombre;
+    // Acceso sincronizado sobre el propio mapa (WeakHashMap no es concurrente)
+    private final Map<String, Entrada> valores = new WeakHashMap<>();
+
+    /**
+     * Crea un diccionario y lo registra para el resumen
+     *
+     * @param nombre Columna a la que corresponde (por ejemplo "libros.categoria")
+     */
+    public DiccionarioCadenas(String nombre) {
+        this.nombre = nombre;
+        creados.add(this);
+    }
+
+    /**
+     * Obtiene la instancia canónica de un valor
+     *
+     * @param valor Cadena leída (puede ser null)
+     * @return La instancia ya guardada si existe; si no, el propio valor
+     */
+    public String canonica(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        synchronized (valores) {
+            Entrada entrada = valores.get(valor);
+            String existente = entrada != null ? entrada.get() : null;
+            if (existente == null) {
+                valores.put(valor, new Entrada(valor));
+                return valor;
+            }
+            if (existente != valor) {
+                entrada.copias++;
+            }
+            return existente;
+        }
+    }
+
+    /**
+     * Obtiene la cantidad de valores distintos que siguen vivos
+     *
+     * @return Valores en el diccionario
+     */
+    public int getDistintos() {
+        synchronized (valores) {
+            return valores.size();
+        }
+    }
+
+    /**
+     * Obtiene las copias sustituidas por valores que siguen vivos
+     *
+     * @return Copias evitadas de los valores actuales
+     */
+    public long getCopiasEvitadas() {
+        synchronized (valores) {
+            long copias = 0;
+            for (Entrada entrada : valores.values()) {
+                copias += entrada.copias;
+            }
+            return copias;
+        }
+    }
+
+    /**
+     * Estima los bytes retenidos que se ahorran con los valores actuales
+     * Descuenta lo que ocupan las entradas del diccionario; puede ser
+     * negativo si la columna tiene más variedad de la prevista.
+     *
+     * @return Cota superior del ahorro retenido, en bytes
+     */
+    public long getBytesAhorrados() {
+        synchronized (valores) {
+            long bytes = 0;
+            for (Entrada entrada : valores.values()) {
+                String valor = entrada.get();
+                if (valor != null) {
+                    bytes += entrada.copias * tamano(valor) - TAMANO_ENTRADA;
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Muestra en consola los valores y el ahorro retenido de cada diccionario
+     */
+    public static void imprimirResumen() {
+        long total = 0;
+        for (DiccionarioCadenas diccionario : creados) {
+            long bytes = diccionario.getBytesAhorrados();
+            total += bytes;
+            System.out.println("  " + diccionario.nombre + ": " + diccionario.getDistintos() + " valores vivos, "
+                    + diccionario.getCopiasEvitadas() + " copias evitadas (" + formatear(bytes) + ")");
+        }
+        System.out.println("✓ Diccionarios de cadenas: hasta " + formatear(total) + " retenidos ahorrados");
+    }
+
+    // Tamaño en el heap de un String con su arreglo, alineado a 8 bytes
+    static long tamano(String valor) {
+        boolean latin1 = true;
+        for (int i = 0; i < valor.length() && latin1; i++) {
+            latin1 = valor.charAt(i) <= 0xFF;
+        }
+        long contenido = (long) valor.length() * (latin1 ? 1 : 2);
+        return CABECERA_STRING + ((CABECERA_ARREGLO + contenido + 7) & ~7L);
+    }
+
+    private static String formatear(long bytes) {
+        if (bytes < 0) {
+            return "-" + formatear(-bytes);
+        }
+        if (bytes < 1024) {
+            return bytes + " bytes";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,120 @@
+package com.biblioteca.util;
+
+/**
+ * Evento de cambio de una entidad publicado por BusCambios
+ *
+ * Cada evento corresponde a una fila de la tabla cambios, escrita por
+ * los triggers de la base de datos. Sólo transporta identificadores:
+ * quien lo recibe decide si invalida, recarga o ignora.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class EventoCambio {
+
+    /**
+     * Entidades que publican cambios
+     */
+    public enum Entidad {
+        LIBRO,
+        USUARIO,
+        PRESTAMO,
+        RESERVA
+    }
+
+    /**
+     * Tipo de operación realizada sobre la entidad
+     */
+    public enum Operacion {
+        ALTA,
+        MODIFICACION,
+        BAJA,
+        /** Préstamo movido a prestamos_historico: deja las tablas activas pero no se borra */
+        ARCHIVO
+    }
+
+    private final long secuencia;
+    private final Entidad entidad;
+    private final int idEntidad;
+    private final Operacion operacion;
+    private final int idUsuario;
+    private final int idLibro;
+    private final long version;
+
+    /**
+     * Constructor completo
+     *
+     * @param secuencia Posición del cambio en la tabla cambios
+     * @param entidad Entidad modificada
+     * @param idEntidad ID de la fila modificada
+     * @param operacion Operación realizada
+     * @param idUsuario Usuario relacionado (0 si no aplica)
+     * @param idLibro Libro relacionado (0 si no aplica)
+     * @param version Versión de fila asignada por el cambio
+     */
+    public EventoCambio(long secuencia, Entidad entidad, int idEntidad, Operacion operacion,
+                        int idUsuario, int idLibro, long version) {
+        this.secuencia = secuencia;
+        this.entidad = entidad;
+        this.idEntidad = idEntidad;
+        this.operacion = operacion;
+        this.idUsuario = idUsuario;
+        this.idLibro = idLibro;
+        this.version = version;
+    }
+
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public Entidad getEntidad() {
+        return entidad;
+    }
+
+    public int getIdEntidad() {
+        return idEntidad;
+    }
+
+    public Operacion getOperacion() {
+        return operacion;
+    }
+
+    /**
+     * Obtiene el usuario relacionado con el cambio
+     * En préstamos es el usuario del préstamo
+     * @return ID del usuario o 0 si no aplica
+     */
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    /**
+     * Obtiene el libro relacionado con el cambio
+     * En préstamos es el libro prestado
+     * @return ID del libro o 0 si no aplica
+     */
+    public int getIdLibro() {
+        return idLibro;
+    }
+
+    /**
+     * Obtiene la versión de fila asignada por el cambio
+     * Sirve para pedir a los DAO los cambios posteriores (cambiosDesde)
+     * @return Versión del cambio
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "EventoCambio{" +
+                "secuencia=" + secuencia +
+                ", entidad=" + entidad +
+                ", idEntidad=" + idEntidad +
+                ", operacion=" + operacion +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,87 @@
+package com.biblioteca.util;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Fecha de negocio compartida por toda la aplicación
+ *
+ * Los cálculos de retraso y días restantes se hacen por cada fila en cada
+ * repintado de tabla y en cada reporte. En lugar de llamar a
+ * LocalDate.now() (reloj del sistema, zona horaria y un objeto nuevo por
+ * llamada), la fecha de hoy se calcula una vez y se reutiliza hasta la
+ * medianoche: consultar hoyEpochDay() cuesta una lectura de
+ * System.currentTimeMillis() y una comparación.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public final class FechaNegocio {
+
+    // Instantánea del día actual: se recalcula al pasar la medianoche
+    private static final class Dia {
+        final LocalDate fecha;
+        final long epochDay;
+        final long finMillis;
+
+        Dia(LocalDate fecha, long finMillis) {
+            this.fecha = fecha;
+            this.epochDay = fecha.toEpochDay();
+            this.finMillis = finMillis;
+        }
+    }
+
+    private static volatile Clock reloj = Clock.systemDefaultZone();
+    private static volatile Dia dia = calcularDia();
+
+    private FechaNegocio() {
+    }
+
+    /**
+     * Obtiene el día de hoy como número de días desde 1970-01-01
+     *
+     * @return Epoch-day de hoy
+     */
+    public static long hoyEpochDay() {
+        return diaActual().epochDay;
+    }
+
+    /**
+     * Obtiene la fecha de hoy
+     * Devuelve siempre la misma instancia durante el día.
+     *
+     * @return Fecha de hoy
+     */
+    public static LocalDate hoy() {
+        return diaActual().fecha;
+    }
+
+    /**
+     * Cambia el reloj usado para calcular el día (pruebas y benchmarks)
+     *
+     * @param nuevoReloj Reloj a usar
+     */
+    public static void establecerReloj(Clock nuevoReloj) {
+        reloj = nuevoReloj;
+        dia = calcularDia();
+    }
+
+    private static Dia diaActual() {
+        Dia actual = dia;
+        if (reloj.millis() >= actual.finMillis) {
+            actual = calcularDia();
+            dia = actual;
+        }
+        return actual;
+    }
+
+    private static Dia calcularDia() {
+        Clock r = reloj;
+        ZoneId zona = r.getZone();
+        LocalDate fecha = LocalDate.now(r);
+        long finMillis = fecha.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli();
+        return new Dia(fecha, finMillis);
+    }
+}
@@ -0,0 +1,135 @@
+package com.biblioteca.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de cadenas
+ *
+ * Conjunto aproximado en un arreglo de bits: "no está" es una respuesta
+ * segura; "puede estar" se equivoca con la probabilidad de falsos
+ * positivos elegida al crearlo, mientras no se supere la capacidad. Con
+ * un 1 % de falsos positivos ocupa unos 10 bits por elemento, sin guardar
+ * las cadenas.
+ *
+ * No admite borrar elementos: quitar un valor del conjunto real sólo
+ * deja un falso positivo más. Los bits se fijan con compareAndSet, así
+ * que agregar y consultar pueden hacerse desde varios hilos.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+    private final int capacidad;
+    private final AtomicInteger elementos = new AtomicInteger();
+
+    /**
+     * Crea un filtro dimensionado para la cantidad de elementos indicada
+     *
+     * @param capacidad Elementos previstos
+     * @param tasaFalsosPositivos Probabilidad de falso positivo con esa cantidad (0 &lt; p &lt; 1)
+     */
+    public FiltroBloom(int capacidad, double tasaFalsosPositivos) {
+        this.capacidad = Math.max(1, capacidad);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-this.capacidad * Math.log(tasaFalsosPositivos) / (ln2 * ln2));
+        int palabras = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(palabras);
+        this.numBits = (long) palabras * 64;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / this.capacidad * ln2));
+    }
+
+    /**
+     * Agrega una cadena al filtro
+     *
+     * @param valor Cadena a agregar
+     */
+    public void agregar(String valor) {
+        long hash = hash(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        boolean nuevo = false;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = posicion(h1, h2, i);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            long actual;
+            do {
+                actual = bits.get(palabra);
+                if ((actual & mascara) != 0) {
+                    break;
+                }
+                nuevo = true;
+            } while (!bits.compareAndSet(palabra, actual, actual | mascara));
+        }
+        // Un valor que no fijó ningún bit nuevo ya estaba (o es un falso positivo)
+        if (nuevo) {
+            elementos.incrementAndGet();
+        }
+    }
+
+    /**
+     * Consulta si una cadena puede estar en el filtro
+     *
+     * @param valor Cadena a consultar
+     * @return false si seguro que no se agregó; true si puede haberse agregado
+     */
+    public boolean puedeContener(String valor) {
+        long hash = hash(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = posicion(h1, h2, i);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Obtiene la cantidad de elementos para la que se dimensionó el filtro
+     *
+     * @return Capacidad del filtro
+     */
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    /**
+     * Indica si el filtro tiene más elementos que su capacidad
+     * A partir de ahí la tasa de falsos positivos crece: conviene
+     * reconstruirlo con una capacidad mayor.
+     *
+     * @return true si se superó la capacidad
+     */
+    public boolean estaSaturado() {
+        return elementos.get() > capacidad;
+    }
+
+    // Doble hash (Kirsch-Mitzenmacher): k posiciones a partir de dos hashes
+    private long posicion(int h1, int h2, int i) {
+        long combinado = (h1 & 0xFFFFFFFFL) + (long) i * (h2 & 0xFFFFFFFFL);
+        return combinado % numBits;
+    }
+
+    // FNV-1a de 64 bits con la mezcla final de MurmurHash3
+    private static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < valor.length(); i++) {
+            h ^= valor.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e2b4fL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,399 @@
+package com.biblioteca.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto comprimido de enteros no negativos (IDs), al estilo Roaring
+ *
+ * Los valores se agrupan en bloques de 65536 según sus 16 bits altos. Cada
+ * bloque guarda los 16 bits bajos de sus valores de una de dos formas:
+ * con pocos valores (hasta 4096), un arreglo ordenado de char (2 bytes
+ * por valor); con más, un mapa de 65536 bits (8 KB fijos). Así un valor
+ * de faceta con pocos libros ocupa poco y uno con muchos no ocupa más de
+ * un bit por ID.
+ *
+ * La intersección se resuelve bloque a bloque con el método adecuado a
+ * cada par (mezcla de arreglos, consulta de bits o AND de palabras de 64
+ * bits), y contarInterseccion() da el tamaño sin construir el resultado.
+ *
+ * No es seguro para hilos: quien lo comparta debe sincronizar el acceso.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class MapaBits {
+
+    // A partir de aquí un mapa de bits (8 KB) ocupa menos que el arreglo
+    private static final int MAX_ARREGLO = 4096;
+    private static final int PALABRAS = 1024;
+
+    // Un bloque: arreglo ordenado (bits == null) o mapa de bits
+    private static final class Bloque {
+        char[] valores;
+        long[] bits;
+        int cardinalidad;
+
+        Bloque(int capacidad) {
+            valores = new char[capacidad];
+        }
+
+        boolean contiene(char bajo) {
+            if (bits != null) {
+                return (bits[bajo >>> 6] & (1L << bajo)) != 0;
+            }
+            return Arrays.binarySearch(valores, 0, cardinalidad, bajo) >= 0;
+        }
+
+        boolean agregar(char bajo) {
+            if (bits != null) {
+                long anterior = bits[bajo >>> 6];
+                bits[bajo >>> 6] = anterior | (1L << bajo);
+                if (anterior == bits[bajo >>> 6]) {
+                    return false;
+                }
+                cardinalidad++;
+                return true;
+            }
+            int posicion = Arrays.binarySearch(valores, 0, cardinalidad, bajo);
+            if (posicion >= 0) {
+                return false;
+            }
+            if (cardinalidad == MAX_ARREGLO) {
+                aMapa();
+                return agregar(bajo);
+            }
+            posicion = -posicion - 1;
+            if (cardinalidad == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(MAX_ARREGLO, valores.length * 2));
+            }
+            System.arraycopy(valores, posicion, valores, posicion + 1, cardinalidad - posicion);
+            valores[posicion] = bajo;
+            cardinalidad++;
+            return true;
+        }
+
+        boolean quitar(char bajo) {
+            if (bits != null) {
+                long anterior = bits[bajo >>> 6];
+                bits[bajo >>> 6] = anterior & ~(1L << bajo);
+                if (anterior == bits[bajo >>> 6]) {
+                    return false;
+                }
+                cardinalidad--;
+                if (cardinalidad <= MAX_ARREGLO / 2) {
+                    aArreglo();
+                }
+                return true;
+            }
+            int posicion = Arrays.binarySearch(valores, 0, cardinalidad, bajo);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(valores, posicion + 1, valores, posicion, cardinalidad - posicion - 1);
+            cardinalidad--;
+            return true;
+        }
+
+        private void aMapa() {
+            bits = new long[PALABRAS];
+            for (int i = 0; i < cardinalidad; i++) {
+                bits[valores[i] >>> 6] |= 1L << valores[i];
+            }
+            valores = null;
+        }
+
+        // Con la mitad del umbral, para no alternar de forma al agregar y quitar el mismo valor
+        private void aArreglo() {
+            valores = new char[Math.max(4, cardinalidad)];
+            int n = 0;
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = bits[i];
+                while (palabra != 0) {
+                    valores[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+            bits = null;
+        }
+
+        void recorrer(int alto, IntConsumer visitante) {
+            if (bits == null) {
+                for (int i = 0; i < cardinalidad; i++) {
+                    visitante.accept(alto | valores[i]);
+                }
+                return;
+            }
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = bits[i];
+                while (palabra != 0) {
+                    visitante.accept(alto | ((i << 6) + Long.numberOfTrailingZeros(palabra)));
+                    palabra &= palabra - 1;
+                }
+            }
+        }
+    }
+
+    // Claves (16 bits altos) ordenadas y sus bloques, en paralelo
+    private char[] claves = new char[4];
+    private Bloque[] bloques = new Bloque[4];
+    private int cantidadBloques;
+    private int cardinalidad;
+
+    /**
+     * Agrega un valor
+     *
+     * @param valor Valor no negativo (un ID)
+     * @return true si no estaba
+     */
+    public boolean agregar(int valor) {
+        char alto = (char) (valor >>> 16);
+        int posicion = buscarBloque(alto);
+        Bloque bloque;
+        if (posicion >= 0) {
+            bloque = bloques[posicion];
+        } else {
+            posicion = -posicion - 1;
+            if (cantidadBloques == claves.length) {
+                claves = Arrays.copyOf(claves, claves.length * 2);
+                bloques = Arrays.copyOf(bloques, bloques.length * 2);
+            }
+            System.arraycopy(claves, posicion, claves, posicion + 1, cantidadBloques - posicion);
+            System.arraycopy(bloques, posicion, bloques, posicion + 1, cantidadBloques - posicion);
+            bloque = new Bloque(4);
+            claves[posicion] = alto;
+            bloques[posicion] = bloque;
+            cantidadBloques++;
+        }
+        if (bloque.agregar((char) valor)) {
+            cardinalidad++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Quita un valor
+     *
+     * @param valor Valor a quitar
+     * @return true si estaba
+     */
+    public boolean quitar(int valor) {
+        int posicion = buscarBloque((char) (valor >>> 16));
+        if (posicion < 0 || !bloques[posicion].quitar((char) valor)) {
+            return false;
+        }
+        cardinalidad--;
+        if (bloques[posicion].cardinalidad == 0) {
+            System.arraycopy(claves, posicion + 1, claves, posicion, cantidadBloques - posicion - 1);
+            System.arraycopy(bloques, posicion + 1, bloques, posicion, cantidadBloques - posicion - 1);
+            cantidadBloques--;
+            bloques[cantidadBloques] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Indica si el conjunto tiene un valor
+     *
+     * @param valor Valor a comprobar
+     * @return true si está
+     */
+    public boolean contiene(int valor) {
+        int posicion = buscarBloque((char) (valor >>> 16));
+        return posicion >= 0 && bloques[posicion].contiene((char) valor);
+    }
+
+    /**
+     * Obtiene la cantidad de valores
+     *
+     * @return Valores del conjunto
+     */
+    public int cardinalidad() {
+        return cardinalidad;
+    }
+
+    /**
+     * Indica si el conjunto está vacío
+     *
+     * @return true si no tiene valores
+     */
+    public boolean estaVacio() {
+        return cardinalidad == 0;
+    }
+
+    /**
+     * Calcula la intersección con otro conjunto
+     *
+     * @param otro Otro conjunto
+     * @return Conjunto nuevo con los valores que están en ambos
+     */
+    public MapaBits y(MapaBits otro) {
+        MapaBits resultado = new MapaBits();
+        int i = 0;
+        int j = 0;
+        while (i < cantidadBloques && j < otro.cantidadBloques) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                Bloque bloque = interseccion(bloques[i], otro.bloques[j]);
+                if (bloque.cardinalidad > 0) {
+                    resultado.anexar(claves[i], bloque);
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cuenta los valores comunes con otro conjunto sin construir la intersección
+     *
+     * @param otro Otro conjunto
+     * @return Cantidad de valores que están en ambos
+     */
+    public int contarInterseccion(MapaBits otro) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < cantidadBloques && j < otro.cantidadBloques) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                total += contarInterseccion(bloques[i], otro.bloques[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Recorre los valores en orden creciente
+     *
+     * @param visitante Recibe cada valor
+     */
+    public void recorrer(IntConsumer visitante) {
+        for (int i = 0; i < cantidadBloques; i++) {
+            bloques[i].recorrer(claves[i] << 16, visitante);
+        }
+    }
+
+    /**
+     * Estima la memoria que ocupan los bloques
+     *
+     * @return Bytes de los arreglos y mapas de bits (sin cabeceras)
+     */
+    public long getBytes() {
+        long bytes = (long) claves.length * (Character.BYTES + 4);
+        for (int i = 0; i < cantidadBloques; i++) {
+            bytes += bloques[i].bits != null ? PALABRAS * Long.BYTES : bloques[i].valores.length * Character.BYTES;
+        }
+        return bytes;
+    }
+
+    private int buscarBloque(char alto) {
+        return Arrays.binarySearch(claves, 0, cantidadBloques, alto);
+    }
+
+    // Agrega un bloque con clave mayor que todas las actuales
+    private void anexar(char alto, Bloque bloque) {
+        if (cantidadBloques == claves.length) {
+            claves = Arrays.copyOf(claves, claves.length * 2);
+            bloques = Arrays.copyOf(bloques, bloques.length * 2);
+        }
+        claves[cantidadBloques] = alto;
+        bloques[cantidadBloques] = bloque;
+        cantidadBloques++;
+        cardinalidad += bloque.cardinalidad;
+    }
+
+    private static Bloque interseccion(Bloque a, Bloque b) {
+        if (a.bits != null && b.bits != null) {
+            Bloque resultado = new Bloque(0);
+            resultado.valores = null;
+            resultado.bits = new long[PALABRAS];
+            for (int k = 0; k < PALABRAS; k++) {
+                resultado.bits[k] = a.bits[k] & b.bits[k];
+                resultado.cardinalidad += Long.bitCount(resultado.bits[k]);
+            }
+            if (resultado.cardinalidad <= MAX_ARREGLO) {
+                resultado.aArreglo();
+            }
+            return resultado;
+        }
+        if (a.bits != null) {
+            Bloque intercambio = a;
+            a = b;
+            b = intercambio;
+        }
+        // a es un arreglo: el resultado no puede tener más valores que él
+        Bloque resultado = new Bloque(Math.max(4, a.cardinalidad));
+        if (b.bits != null) {
+            for (int k = 0; k < a.cardinalidad; k++) {
+                if (b.contiene(a.valores[k])) {
+                    resultado.valores[resultado.cardinalidad++] = a.valores[k];
+                }
+            }
+            return resultado;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.cardinalidad && j < b.cardinalidad) {
+            if (a.valores[i] < b.valores[j]) {
+                i++;
+            } else if (a.valores[i] > b.valores[j]) {
+                j++;
+            } else {
+                resultado.valores[resultado.cardinalidad++] = a.valores[i];
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    private static int contarInterseccion(Bloque a, Bloque b) {
+        if (a.bits != null && b.bits != null) {
+            int total = 0;
+            for (int k = 0; k < PALABRAS; k++) {
+                total += Long.bitCount(a.bits[k] & b.bits[k]);
+            }
+            return total;
+        }
+        if (a.bits != null) {
+            Bloque intercambio = a;
+            a = b;
+            b = intercambio;
+        }
+        int total = 0;
+        if (b.bits != null) {
+            for (int k = 0; k < a.cardinalidad; k++) {
+                if (b.contiene(a.valores[k])) {
+                    total++;
+                }
+            }
+            return total;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.cardinalidad && j < b.cardinalidad) {
+            if (a.valores[i] < b.valores[j]) {
+                i++;
+            } else if (a.valores[i] > b.valores[j]) {
+                j++;
+            } else {
+                total++;
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+}
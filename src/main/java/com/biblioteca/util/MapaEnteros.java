@@ -0,0 +1,214 @@
+package com.biblioteca.util;
+
+import java.util.Arrays;
+
+/**
+ * Mapa int → int sin objetos (direccionamiento abierto, sondeo lineal)
+ *
+ * Sustituye a HashMap&lt;Integer, Integer&gt; en estructuras en memoria con
+ * millones de entradas: dos arreglos primitivos, sin Integer ni nodos por
+ * entrada. La clave Integer.MIN_VALUE está reservada como marca de hueco.
+ *
+ * No es seguro para hilos; quien lo use debe sincronizar.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class MapaEnteros {
+
+    private static final int VACIO = Integer.MIN_VALUE;
+    private static final float CARGA_MAXIMA = 0.6f;
+
+    private int[] claves;
+    private int[] valores;
+    private int tamano;
+    private int mascara;
+    private int umbral;
+
+    /**
+     * Crea un mapa con capacidad inicial para la cantidad indicada
+     *
+     * @param capacidadEsperada Número de entradas previsto
+     */
+    public MapaEnteros(int capacidadEsperada) {
+        int capacidad = Integer.highestOneBit(Math.max(4, (int) (capacidadEsperada / CARGA_MAXIMA)) - 1) << 1;
+        inicializar(capacidad);
+    }
+
+    /**
+     * Crea un mapa vacío
+     */
+    public MapaEnteros() {
+        this(16);
+    }
+
+    /**
+     * Obtiene el valor de una clave
+     *
+     * @param clave Clave
+     * @param defecto Valor a devolver si la clave no está
+     * @return Valor asociado o defecto
+     */
+    public int get(int clave, int defecto) {
+        int i = buscar(clave);
+        return i >= 0 ? valores[i] : defecto;
+    }
+
+    /**
+     * Indica si el mapa contiene la clave
+     *
+     * @param clave Clave
+     * @return true si está
+     */
+    public boolean contiene(int clave) {
+        return buscar(clave) >= 0;
+    }
+
+    /**
+     * Asocia un valor a una clave
+     *
+     * @param clave Clave (distinta de Integer.MIN_VALUE)
+     * @param valor Valor
+     */
+    public void put(int clave, int valor) {
+        int i = posicion(clave);
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        if (++tamano > umbral) {
+            redimensionar();
+        }
+    }
+
+    /**
+     * Suma una cantidad al valor de una clave (0 si no estaba)
+     *
+     * @param clave Clave
+     * @param cantidad Cantidad a sumar
+     * @return Nuevo valor
+     */
+    public int sumar(int clave, int cantidad) {
+        int i = posicion(clave);
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                valores[i] += cantidad;
+                return valores[i];
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = cantidad;
+        if (++tamano > umbral) {
+            redimensionar();
+        }
+        return cantidad;
+    }
+
+    /**
+     * Elimina una clave
+     *
+     * @param clave Clave a eliminar
+     * @return true si estaba
+     */
+    public boolean eliminar(int clave) {
+        int i = buscar(clave);
+        if (i < 0) {
+            return false;
+        }
+        // Borrado con desplazamiento hacia atrás: no deja marcas de borrado
+        int hueco = i;
+        int j = (i + 1) & mascara;
+        while (claves[j] != VACIO) {
+            int ideal = posicion(claves[j]);
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+            j = (j + 1) & mascara;
+        }
+        claves[hueco] = VACIO;
+        tamano--;
+        return true;
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    public boolean isEmpty() {
+        return tamano == 0;
+    }
+
+    /**
+     * Vacía el mapa conservando la capacidad
+     */
+    public void limpiar() {
+        Arrays.fill(claves, VACIO);
+        tamano = 0;
+    }
+
+    /**
+     * Recorre todas las entradas (en orden no definido)
+     *
+     * @param accion Acción a ejecutar por cada par clave/valor
+     */
+    public void recorrer(AccionEntrada accion) {
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != VACIO) {
+                accion.aceptar(claves[i], valores[i]);
+            }
+        }
+    }
+
+    /**
+     * Acción sobre una entrada del mapa
+     */
+    @FunctionalInterface
+    public interface AccionEntrada {
+        void aceptar(int clave, int valor);
+    }
+
+    private int buscar(int clave) {
+        int i = posicion(clave);
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                return i;
+            }
+            i = (i + 1) & mascara;
+        }
+        return -1;
+    }
+
+    private int posicion(int clave) {
+        int h = clave * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    private void inicializar(int capacidad) {
+        claves = new int[capacidad];
+        valores = new int[capacidad];
+        Arrays.fill(claves, VACIO);
+        mascara = capacidad - 1;
+        umbral = (int) (capacidad * CARGA_MAXIMA);
+        tamano = 0;
+    }
+
+    private void redimensionar() {
+        int[] clavesAnteriores = claves;
+        int[] valoresAnteriores = valores;
+        inicializar(claves.length * 2);
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != VACIO) {
+                put(clavesAnteriores[i], valoresAnteriores[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.biblioteca.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Últimos resultados correctos de las consultas de la interfaz
+ *
+ * Los DAO guardan aquí los conteos, las categorías y las páginas que
+ * leen bien, y los devuelven cuando la consulta falla (timeout, base de
+ * datos caída o cortacircuitos abierto): el panel y las tablas siguen
+ * mostrando los últimos datos conocidos en vez de ceros o tablas vacías.
+ *
+ * Guarda como máximo MAX_ENTRADAS resultados; los menos usados se
+ * descartan. No guarda listados completos, sólo páginas.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class UltimosResultados {
+
+    static final int MAX_ENTRADAS = 256;
+
+    // Instancia única (Singleton)
+    private static UltimosResultados instancia;
+
+    private final Map<String, Object> resultados = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_ENTRADAS;
+        }
+    };
+
+    private UltimosResultados() {
+    }
+
+    /**
+     * Obtiene la única instancia de UltimosResultados (Singleton)
+     *
+     * @return Instancia única de UltimosResultados
+     */
+    public static UltimosResultados getInstance() {
+        if (instancia == null) {
+            synchronized (UltimosResultados.class) {
+                if (instancia == null) {
+                    instancia = new UltimosResultados();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * Guarda el resultado correcto de una consulta
+     *
+     * @param clave Consulta y parámetros (por ejemplo "libros.pagina:0:200:titulo:true")
+     * @param valor Resultado; no debe modificarse después
+     */
+    public synchronized void guardar(String clave, Object valor) {
+        resultados.put(clave, valor);
+    }
+
+    /**
+     * Obtiene el último resultado correcto de una consulta
+     *
+     * @param <T> Tipo del resultado
+     * @param clave Consulta y parámetros
+     * @param porDefecto Valor si la consulta nunca funcionó
+     * @return Último resultado guardado, o porDefecto
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T obtener(String clave, T porDefecto) {
+        Object valor = resultados.get(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        System.err.println("  (se muestran los últimos datos obtenidos: " + clave + ")");
+        return (T) valor;
+    }
+}
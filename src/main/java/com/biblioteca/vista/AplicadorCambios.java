@@ -0,0 +1,68 @@
+package com.biblioteca.vista;
+
+import com.biblioteca.controlador.Cambios;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Aplica un lote de Cambios sobre la ObservableList de una tabla
+ *
+ * Sustituye las filas modificadas en su posición, quita las eliminadas
+ * (o las que ya no cumplen el filtro de la vista) e inserta las nuevas
+ * en su lugar según el orden de la tabla, sin recargar la lista entera.
+ *
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+final class AplicadorCambios {
+
+    private AplicadorCambios() {
+    }
+
+    /**
+     * Aplica los cambios a la lista
+     *
+     * @param lista Lista mostrada en la tabla
+     * @param cambios Cambios obtenidos con cambiosDesde
+     * @param id Función que obtiene el ID de una fila
+     * @param filtro Filtro activo en la vista
+     * @param orden Orden de la tabla (para colocar filas nuevas)
+     * @param <T> Tipo de fila
+     */
+    static <T> void aplicar(ObservableList<T> lista, Cambios<T> cambios, ToIntFunction<T> id,
+                            Predicate<T> filtro, Comparator<T> orden) {
+        Map<Integer, Integer> posiciones = new HashMap<>();
+        for (int i = 0; i < lista.size(); i++) {
+            posiciones.put(id.applyAsInt(lista.get(i)), i);
+        }
+
+        Set<Integer> quitar = new HashSet<>(cambios.getEliminados());
+        List<T> nuevos = new ArrayList<>();
+
+        for (T fila : cambios.getModificados()) {
+            Integer posicion = posiciones.get(id.applyAsInt(fila));
+            if (posicion != null) {
+                if (filtro.test(fila)) {
+                    lista.set(posicion, fila);
+                } else {
+                    quitar.add(id.applyAsInt(fila));
+                }
+            } else if (filtro.test(fila)) {
+                nuevos.add(fila);
+            }
+        }
+
+        if (!quitar.isEmpty()) {
+            lista.removeIf(fila -> quitar.contains(id.applyAsInt(fila)));
+        }
+
+        for (T fila : nuevos) {
+            int indice = Collections.binarySearch(lista, fila, orden);
+            lista.add(indice < 0 ? -indice - 1 : indice, fila);
+        }
+    }
+}
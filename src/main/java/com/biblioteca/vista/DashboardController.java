@@ -1,13 +1,16 @@
 package com.biblioteca.vista;
 
+import com.biblioteca.controlador.AlmacenPrestamos;
 import com.biblioteca.controlador.LibroDAO;
 import com.biblioteca.controlador.PrestamoDAO;
+import com.biblioteca.controlador.RankingLibros;
 import com.biblioteca.controlador.UsuarioDAO;
 import com.biblioteca.modelo.Prestamo;
 import com.biblioteca.modelo.Usuario;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -20,6 +23,8 @@ import javafx.util.Duration;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Controlador principal del Dashboard
@@ -54,6 +59,17 @@ public class DashboardController {
     @FXML private Label lblPrestamosActivos;
     @FXML private Label lblPrestamosRetrasados;
 
+    // Ranking de popularidad y demanda
+    @FXML private ComboBox<String> cbVentanaRanking;
+    @FXML private ComboBox<String> cbCategoriaRanking;
+    @FXML private ListView<String> lvMasPrestados;
+    @FXML private ListView<String> lvDemanda;
+
+    private static final int TAM_RANKING = 10;
+    private static final String VENTANA_SEMANA = "Últimos 7 días";
+    private static final String VENTANA_MES = "Últimos 30 días";
+    private static final String TODAS_CATEGORIAS = "Todas las categorías";
+
     // DAOs
     private LibroDAO libroDAO;
     private UsuarioDAO usuarioDAO;
@@ -74,6 +90,9 @@ public class DashboardController {
         // Iniciar reloj
         iniciarReloj();
 
+        // Filtros del ranking
+        configurarRanking();
+
         // Cargar estadísticas iniciales
         cargarEstadisticas();
     }
@@ -129,17 +148,28 @@ public class DashboardController {
             int totalUsuarios = usuarioDAO.contarUsuariosActivos();
             lblTotalUsuarios.setText(String.valueOf(totalUsuarios));
 
-            // Préstamos activos
-            int prestamosActivos = prestamoDAO.contarPorEstado(Prestamo.EstadoPrestamo.PENDIENTE) +
-                    prestamoDAO.contarPorEstado(Prestamo.EstadoPrestamo.RENOVADO);
+            // Préstamos activos y retrasados: del almacén en memoria si ya está cargado
+            int prestamosActivos;
+            int prestamosRetrasados;
+            AlmacenPrestamos almacen = AlmacenPrestamos.getInstance();
+            if (almacen.estaCargado()) {
+                int[] porEstado = almacen.contarPorEstado();
+                prestamosActivos = porEstado[Prestamo.EstadoPrestamo.PENDIENTE.ordinal()] +
+                        porEstado[Prestamo.EstadoPrestamo.RENOVADO.ordinal()];
+                prestamosRetrasados = porEstado[Prestamo.EstadoPrestamo.RETRASADO.ordinal()];
+            } else {
+                prestamosActivos = prestamoDAO.contarPorEstado(Prestamo.EstadoPrestamo.PENDIENTE) +
+                        prestamoDAO.contarPorEstado(Prestamo.EstadoPrestamo.RENOVADO);
+                prestamosRetrasados = prestamoDAO.contarPorEstado(Prestamo.EstadoPrestamo.RETRASADO);
+            }
             lblPrestamosActivos.setText(String.valueOf(prestamosActivos));
-
-            // Préstamos retrasados
-            int prestamosRetrasados = prestamoDAO.contarPorEstado(Prestamo.EstadoPrestamo.RETRASADO);
             lblPrestamosRetrasados.setText(String.valueOf(prestamosRetrasados));
 
             // Actualizar estados de préstamos
-            prestamoDAO.actualizarPrestamosRetrasados();
+            prestamoDAO.actualizarPrestamosRetrasadosSiCorresponde();
+
+            // Ranking en memoria (no consulta prestamos)
+            cargarRanking();
 
             System.out.println("✓ Estadísticas cargadas correctamente");
 
@@ -150,6 +180,56 @@ public class DashboardController {
         }
     }
 
+    /**
+     * Configura los filtros de ventana y categoría del ranking
+     */
+    private void configurarRanking() {
+        cbVentanaRanking.setItems(FXCollections.observableArrayList(VENTANA_SEMANA, VENTANA_MES));
+        cbVentanaRanking.setValue(VENTANA_SEMANA);
+
+        List<String> categorias = new ArrayList<>();
+        categorias.add(TODAS_CATEGORIAS);
+        categorias.addAll(libroDAO.obtenerCategorias());
+        cbCategoriaRanking.setItems(FXCollections.observableArrayList(categorias));
+        cbCategoriaRanking.setValue(TODAS_CATEGORIAS);
+
+        cbVentanaRanking.setOnAction(e -> cargarRanking());
+        cbCategoriaRanking.setOnAction(e -> cargarRanking());
+    }
+
+    /**
+     * Muestra los libros más prestados y los de más demanda por ejemplar
+     */
+    private void cargarRanking() {
+        RankingLibros ranking = RankingLibros.getInstance();
+        if (!ranking.estaCargado()) {
+            lvMasPrestados.setItems(FXCollections.observableArrayList("Calculando ranking..."));
+            lvDemanda.setItems(FXCollections.observableArrayList("Calculando ranking..."));
+            return;
+        }
+
+        int dias = VENTANA_MES.equals(cbVentanaRanking.getValue()) ? 30 : 7;
+        String categoria = TODAS_CATEGORIAS.equals(cbCategoriaRanking.getValue()) ?
+                null : cbCategoriaRanking.getValue();
+
+        List<String> masPrestados = new ArrayList<>();
+        int posicion = 1;
+        for (RankingLibros.Entrada entrada : ranking.masPrestados(categoria, dias, TAM_RANKING)) {
+            masPrestados.add(posicion++ + ". " + entrada.getTitulo() + " — " +
+                    entrada.getPrestamos() + " préstamo(s)");
+        }
+
+        List<String> demanda = new ArrayList<>();
+        posicion = 1;
+        for (RankingLibros.Entrada entrada : ranking.demandaSobreStock(categoria, dias, TAM_RANKING)) {
+            demanda.add(posicion++ + ". " + entrada.getTitulo() + " — " +
+                    entrada.getPrestamos() + " préstamo(s), stock " + entrada.getStock());
+        }
+
+        lvMasPrestados.setItems(FXCollections.observableArrayList(masPrestados));
+        lvDemanda.setItems(FXCollections.observableArrayList(demanda));
+    }
+
     /**
      * Muestra la vista del Dashboard
      */
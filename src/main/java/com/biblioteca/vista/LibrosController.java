@@ -1,8 +1,22 @@
 package com.biblioteca.vista;
 
+import com.biblioteca.controlador.BuscadorAproximado;
+import com.biblioteca.controlador.Cambios;
+import com.biblioteca.controlador.EstadisticasLibros;
+import com.biblioteca.controlador.FacetasCatalogo;
+import com.biblioteca.controlador.FacetasCatalogo.Faceta;
+import com.biblioteca.controlador.InstantaneaCatalogo;
 import com.biblioteca.controlador.LibroDAO;
+import com.biblioteca.controlador.RecomendadorLibros;
+import com.biblioteca.modelo.EstadisticasLibro;
 import com.biblioteca.modelo.Libro;
 import com.biblioteca.modelo.Usuario;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.DatabaseConnection;
+import com.biblioteca.util.EventoCambio;
+import com.biblioteca.util.FechaNegocio;
+import com.biblioteca.util.MapaBits;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -13,8 +27,16 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Controlador para la gestión de libros
@@ -31,6 +53,9 @@ public class LibrosController {
     // Elementos de la interfaz
     @FXML private TextField txtBuscar;
     @FXML private ComboBox<String> cbCategoria;
+    @FXML private ComboBox<String> cbEditorial;
+    @FXML private ComboBox<String> cbDecada;
+    @FXML private ComboBox<String> cbDisponibilidad;
     @FXML private TableView<Libro> tablaLibros;
     @FXML private TableColumn<Libro, Integer> colId;
     @FXML private TableColumn<Libro, String> colTitulo;
@@ -51,6 +76,27 @@ public class LibrosController {
     private ObservableList<Libro> listaLibros;
     private Usuario usuarioActual;
 
+    // Tabla virtual (sin filtros): filas por bloques, ordenadas por la base de datos
+    private ListaPaginada<Libro> paginaLibros;
+    private final Map<TableColumn<Libro, ?>, String> columnasOrden = new HashMap<>();
+
+    // Sincronización incremental con la base de datos
+    private long versionLibros;
+    private String textoFiltro = "";
+    private Map<Faceta, String> seleccionFiltro = new EnumMap<>(Faceta.class);
+    private final AtomicBoolean cambiosPendientes = new AtomicBoolean(false);
+    private final Consumer<EventoCambio> oyenteCambios = this::alRecibirCambio;
+    private final Runnable oyenteInstantanea = this::alActualizarInstantanea;
+
+    // Navegación por facetas: combos de cada faceta e IDs de la última búsqueda por texto
+    private final FacetasCatalogo facetas = FacetasCatalogo.getInstance();
+    private final Map<Faceta, ComboBox<String>> combosFacetas = new EnumMap<>(Faceta.class);
+    private MapaBits idsBusqueda;
+    private boolean cargandoFacetas;
+    // Cuenta las cargas de la tabla: un filtro de fondo que termina tarde no pisa una carga posterior
+    private int cargaTabla;
+    private final Runnable oyenteFacetas = this::alActualizarFacetas;
+
     /**
      * Inicializa el controlador
      */
@@ -58,12 +104,15 @@ public class LibrosController {
     public void initialize() {
         libroDAO = new LibroDAO();
         listaLibros = FXCollections.observableArrayList();
+        paginaLibros = new ListaPaginada<>(libroDAO::contarLibros, libroDAO::obtenerPagina,
+                Libro::new, "titulo", true);
 
         // Configurar columnas de la tabla
         configurarTabla();
 
-        // Cargar categorías
+        // Cargar categorías y el resto de facetas
         cargarCategorias();
+        configurarFacetas();
 
         // Cargar todos los libros
         cargarLibros();
@@ -80,10 +129,22 @@ public class LibrosController {
 
         // Listener para búsqueda en tiempo real
         txtBuscar.textProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal.isEmpty() && cbCategoria.getValue() == null) {
+            if (newVal.isEmpty() && seleccionFacetas().isEmpty()) {
                 cargarLibros();
             }
         });
+
+        // Cambios de otros mostradores: suscribirse mientras la vista esté visible
+        BusCambios.getInstance().suscribir(oyenteCambios);
+        InstantaneaCatalogo.getInstance().suscribir(oyenteInstantanea);
+        facetas.suscribir(oyenteFacetas);
+        tablaLibros.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (newScene == null) {
+                BusCambios.getInstance().desuscribir(oyenteCambios);
+                InstantaneaCatalogo.getInstance().desuscribir(oyenteInstantanea);
+                facetas.desuscribir(oyenteFacetas);
+            }
+        });
     }
 
     /**
@@ -129,7 +190,15 @@ public class LibrosController {
             }
         });
 
-        tablaLibros.setItems(listaLibros);
+        // Con la tabla virtual, el orden por columna lo resuelve la base de datos;
+        // las columnas sin índice sólo se ordenan con resultados en memoria
+        columnasOrden.put(colId, "id");
+        columnasOrden.put(colTitulo, "titulo");
+        columnasOrden.put(colAutor, "autor");
+        columnasOrden.put(colCategoria, "categoria");
+        tablaLibros.setSortPolicy(this::ordenarTabla);
+
+        tablaLibros.setItems(paginaLibros);
     }
 
     /**
@@ -140,19 +209,143 @@ public class LibrosController {
         ObservableList<String> items = FXCollections.observableArrayList();
         items.add("Todas");
         items.addAll(categorias);
-        cbCategoria.setItems(items);
+        cargandoFacetas = true;
+        try {
+            String seleccion = cbCategoria.getValue();
+            cbCategoria.setItems(items);
+            cbCategoria.setValue(seleccion);
+        } finally {
+            cargandoFacetas = false;
+        }
+    }
+
+    /**
+     * Configura los combos de facetas
+     * Elegir un valor filtra la tabla al momento, y al desplegar un combo
+     * cada valor muestra cuántos libros quedarían con él.
+     */
+    private void configurarFacetas() {
+        combosFacetas.put(Faceta.CATEGORIA, cbCategoria);
+        combosFacetas.put(Faceta.EDITORIAL, cbEditorial);
+        combosFacetas.put(Faceta.DECADA, cbDecada);
+        combosFacetas.put(Faceta.DISPONIBILIDAD, cbDisponibilidad);
+
+        cbDisponibilidad.setItems(FXCollections.observableArrayList(
+                "Todos", FacetasCatalogo.DISPONIBLES, FacetasCatalogo.AGOTADOS));
+        cargarValoresFacetas();
+
+        for (Map.Entry<Faceta, ComboBox<String>> entrada : combosFacetas.entrySet()) {
+            Faceta faceta = entrada.getKey();
+            ComboBox<String> combo = entrada.getValue();
+            combo.setOnShowing(e -> actualizarConteos(faceta, combo));
+            combo.valueProperty().addListener((obs, oldVal, newVal) -> {
+                if (!cargandoFacetas) {
+                    alCambiarFaceta();
+                }
+            });
+        }
+    }
+
+    /**
+     * Carga los valores de editorial y década desde las facetas
+     * (vacíos hasta que terminan de cargarse)
+     */
+    private void cargarValoresFacetas() {
+        cargandoFacetas = true;
+        try {
+            for (Faceta faceta : new Faceta[] {Faceta.EDITORIAL, Faceta.DECADA}) {
+                ComboBox<String> combo = combosFacetas.get(faceta);
+                String seleccion = combo.getValue();
+                ObservableList<String> items = FXCollections.observableArrayList();
+                items.add("Todas");
+                items.addAll(facetas.contar(faceta, Map.of(), null).keySet());
+                combo.setItems(items);
+                combo.setValue(seleccion);
+            }
+        } finally {
+            cargandoFacetas = false;
+        }
+    }
+
+    /**
+     * Recalcula los contadores de un combo antes de desplegarlo
+     * Cuentan los libros de cada valor con lo elegido en las demás facetas
+     * y, tras una búsqueda por texto, sólo entre sus resultados.
+     *
+     * @param faceta Faceta del combo
+     * @param combo Combo que se va a desplegar
+     */
+    private void actualizarConteos(Faceta faceta, ComboBox<String> combo) {
+        Map<String, Integer> conteos = facetas.estaAlDia()
+                ? facetas.contar(faceta, seleccionFacetas(), textoFiltro.isEmpty() ? null : idsBusqueda)
+                : Map.of();
+        // Una fábrica nueva obliga a recrear las celdas con los contadores nuevos
+        combo.setCellFactory(lista -> new ListCell<String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setText(null);
+                    setStyle("");
+                    return;
+                }
+                Integer cantidad = conteos.get(item);
+                setText(cantidad != null ? item + " (" + cantidad + ")" : item);
+                setStyle(cantidad != null && cantidad == 0 ? "-fx-text-fill: #9e9e9e;" : "");
+            }
+        });
+    }
+
+    /**
+     * Obtiene los valores elegidos en los combos de facetas
+     *
+     * @return Valor por faceta, sin las facetas en "Todas"
+     */
+    private Map<Faceta, String> seleccionFacetas() {
+        Map<Faceta, String> seleccion = new EnumMap<>(Faceta.class);
+        for (Map.Entry<Faceta, ComboBox<String>> entrada : combosFacetas.entrySet()) {
+            String valor = entrada.getValue().getValue();
+            if (valor != null && !valor.equals("Todas") && !valor.equals("Todos")) {
+                seleccion.put(entrada.getKey(), valor);
+            }
+        }
+        return seleccion;
+    }
+
+    /**
+     * Aplica a la tabla el valor recién elegido en una faceta
+     */
+    private void alCambiarFaceta() {
+        if (txtBuscar.getText().trim().isEmpty() && seleccionFacetas().isEmpty()) {
+            cargarLibros();
+        } else {
+            handleBuscar();
+        }
+    }
+
+    /**
+     * Recibe el aviso de que las facetas se cargaron o se pusieron al día
+     * (en un hilo de fondo): pueden haber aparecido editoriales o décadas.
+     */
+    private void alActualizarFacetas() {
+        Platform.runLater(this::cargarValoresFacetas);
     }
 
     /**
      * Carga todos los libros en la tabla
      */
     private void cargarLibros() {
+        cargaTabla++;
         try {
-            List<Libro> libros = libroDAO.obtenerTodos();
-            listaLibros.clear();
-            listaLibros.addAll(libros);
+            textoFiltro = "";
+            seleccionFiltro = new EnumMap<>(Faceta.class);
+            idsBusqueda = null;
+            versionLibros = libroDAO.obtenerVersionActual();
+            tablaLibros.setItems(paginaLibros);
+            tablaLibros.sort();
+            paginaLibros.refrescar();
             actualizarTotal();
-            System.out.println("✓ Libros cargados: " + libros.size());
+            System.out.println("✓ Libros cargados: " + paginaLibros.size());
         } catch (Exception e) {
             System.err.println("✗ Error al cargar libros: " + e.getMessage());
             e.printStackTrace();
@@ -160,11 +353,106 @@ public class LibrosController {
         }
     }
 
+    /**
+     * Aplica a la tabla los libros creados, modificados o eliminados
+     * desde la última carga, sin recargar el catálogo completo
+     */
+    private void aplicarCambios() {
+        if (tablaLibros.getItems() == paginaLibros) {
+            versionLibros = libroDAO.obtenerVersionActual();
+            paginaLibros.invalidar();
+            actualizarTotal();
+            return;
+        }
+        Cambios<Libro> cambios = libroDAO.cambiosDesde(versionLibros);
+        if (cambios.isRecargaCompleta()) {
+            cargarLibros();
+            return;
+        }
+        if (!cambios.estaVacio()) {
+            AplicadorCambios.aplicar(listaLibros, cambios, Libro::getId, this::cumpleFiltro,
+                    Comparator.comparing(Libro::getTitulo, String.CASE_INSENSITIVE_ORDER));
+            actualizarTotal();
+        }
+        versionLibros = cambios.getVersion();
+    }
+
+    /**
+     * Recibe eventos del bus de cambios (en el hilo del bus)
+     * Agrupa ráfagas de eventos en una sola actualización de la tabla.
+     *
+     * @param evento Evento de cambio
+     */
+    private void alRecibirCambio(EventoCambio evento) {
+        if (evento.getEntidad() == EventoCambio.Entidad.LIBRO && cambiosPendientes.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                cambiosPendientes.set(false);
+                aplicarCambios();
+            });
+        }
+    }
+
+    /**
+     * Recibe el aviso de que la instantánea del catálogo se puso al día
+     * (en un hilo de fondo): la tabla y las categorías pudieron mostrarse
+     * desde una instantánea anterior.
+     */
+    private void alActualizarInstantanea() {
+        Platform.runLater(() -> {
+            cargarCategorias();
+            aplicarCambios();
+        });
+    }
+
+    /**
+     * Verifica si un libro cumple el filtro de la última búsqueda
+     *
+     * @param libro Libro a verificar
+     * @return true si debe mostrarse en la tabla
+     */
+    private boolean cumpleFiltro(Libro libro) {
+        if (!textoFiltro.isEmpty()) {
+            String texto = textoFiltro.toLowerCase();
+            if (!libro.getTitulo().toLowerCase().contains(texto) &&
+                    !libro.getAutor().toLowerCase().contains(texto)) {
+                return false;
+            }
+        }
+        return FacetasCatalogo.cumple(libro, seleccionFiltro);
+    }
+
+    /**
+     * Política de orden de la tabla
+     * Con la tabla virtual ordena la base de datos; con resultados de
+     * búsqueda o filtros se ordena la lista en memoria como hasta ahora.
+     * Una columna sin orden en la base de datos rechaza el orden y la
+     * tabla vuelve al anterior.
+     *
+     * @param tabla Tabla a ordenar
+     * @return true si se pudo ordenar
+     */
+    private Boolean ordenarTabla(TableView<Libro> tabla) {
+        if (tabla.getItems() != paginaLibros) {
+            return TableView.DEFAULT_SORT_POLICY.call(tabla);
+        }
+        if (tabla.getSortOrder().isEmpty()) {
+            paginaLibros.ordenar("titulo", true);
+            return true;
+        }
+        TableColumn<Libro, ?> columna = tabla.getSortOrder().get(0);
+        String orden = columnasOrden.get(columna);
+        if (orden == null) {
+            return false;
+        }
+        paginaLibros.ordenar(orden, columna.getSortType() == TableColumn.SortType.ASCENDING);
+        return true;
+    }
+
     /**
      * Actualiza el label con el total de libros
      */
     private void actualizarTotal() {
-        lblTotal.setText("Total: " + listaLibros.size() + " libros");
+        lblTotal.setText("Total: " + tablaLibros.getItems().size() + " libros");
     }
 
     /**
@@ -173,34 +461,56 @@ public class LibrosController {
     @FXML
     private void handleBuscar() {
         String textoBusqueda = txtBuscar.getText().trim();
-        String categoria = cbCategoria.getValue();
+        Map<Faceta, String> seleccion = seleccionFacetas();
+        cargaTabla++;
 
         try {
             List<Libro> resultados;
+            textoFiltro = textoBusqueda;
+            seleccionFiltro = seleccion;
+            idsBusqueda = null;
+            if (textoBusqueda.isEmpty() && !seleccion.isEmpty()) {
+                // Sólo facetas: se resuelve en otro hilo y la tabla se llena al terminar
+                filtrarPorFacetas(seleccion);
+                return;
+            }
+            versionLibros = libroDAO.obtenerVersionActual();
+
+            String sugerenciaUsada = null;
 
             if (!textoBusqueda.isEmpty()) {
-                // Buscar por título o autor
-                List<Libro> porTitulo = libroDAO.buscarPorTitulo(textoBusqueda);
-                List<Libro> porAutor = libroDAO.buscarPorAutor(textoBusqueda);
-
-                // Combinar resultados sin duplicados
-                resultados = porTitulo;
-                for (Libro libro : porAutor) {
-                    if (!resultados.contains(libro)) {
-                        resultados.add(libro);
+                resultados = buscarPorTituloOAutor(textoBusqueda);
+
+                // Sin resultados: probar las correcciones más parecidas del vocabulario
+                if (resultados.isEmpty()) {
+                    for (String sugerencia : BuscadorAproximado.getInstance().sugerir(textoBusqueda, 3)) {
+                        List<Libro> corregidos = buscarPorTituloOAutor(sugerencia);
+                        if (!corregidos.isEmpty()) {
+                            resultados = corregidos;
+                            textoFiltro = sugerencia;
+                            sugerenciaUsada = sugerencia;
+                            break;
+                        }
                     }
                 }
-            } else if (categoria != null && !categoria.equals("Todas")) {
-                // Buscar por categoría
-                resultados = libroDAO.buscarPorCategoria(categoria);
+
+                // Los contadores de las facetas se limitan a lo encontrado por texto
+                idsBusqueda = new MapaBits();
+                for (Libro libro : resultados) {
+                    idsBusqueda.agregar(libro.getId());
+                }
+                resultados.removeIf(libro -> !FacetasCatalogo.cumple(libro, seleccion));
             } else {
                 // Mostrar todos
                 resultados = libroDAO.obtenerTodos();
             }
 
-            listaLibros.clear();
-            listaLibros.addAll(resultados);
+            tablaLibros.setItems(listaLibros);
+            listaLibros.setAll(resultados);
             actualizarTotal();
+            if (sugerenciaUsada != null) {
+                lblTotal.setText(lblTotal.getText() + " para «" + sugerenciaUsada + "» (¿quisiste decir?)");
+            }
 
             System.out.println("✓ Búsqueda completada: " + resultados.size() + " resultados");
 
@@ -211,13 +521,87 @@ public class LibrosController {
         }
     }
 
+    /**
+     * Llena la tabla con los libros de una selección de facetas, en otro hilo
+     * Con las facetas y la instantánea del catálogo al día, las facetas dan
+     * los IDs y la instantánea las filas; si no, una consulta con todas las
+     * facetas en el WHERE.
+     *
+     * @param seleccion Valor elegido por faceta
+     */
+    private void filtrarPorFacetas(Map<Faceta, String> seleccion) {
+        int carga = cargaTabla;
+        lblTotal.setText("Filtrando...");
+        Thread hilo = new Thread(() -> {
+            List<Libro> resultados = null;
+            long version = -1;
+            InstantaneaCatalogo.Fijada instantanea = InstantaneaCatalogo.getInstance().fijar();
+            if (instantanea != null && facetas.estaAlDia()) {
+                MapaBits ids = facetas.filtrar(seleccion);
+                if (ids != null) {
+                    resultados = instantanea.obtenerLibros(ids);
+                    version = instantanea.getVersion();
+                }
+            }
+            if (resultados == null) {
+                // Conexión propia: la compartida la usan (y cierran) los DAO en el hilo de la interfaz
+                try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+                    // La versión se lee antes de consultar: lo escrito entretanto lo recoge aplicarCambios
+                    version = libroDAO.obtenerVersionActual(conn);
+                    resultados = libroDAO.buscarPorFacetas(conn, seleccion);
+                } catch (SQLException e) {
+                    System.err.println("✗ Error al filtrar por facetas: " + e.getMessage());
+                    resultados = List.of();
+                }
+            }
+
+            List<Libro> filas = resultados;
+            long versionFilas = version;
+            Platform.runLater(() -> {
+                if (carga != cargaTabla) {
+                    return;
+                }
+                versionLibros = versionFilas;
+                tablaLibros.setItems(listaLibros);
+                listaLibros.setAll(filas);
+                actualizarTotal();
+                System.out.println("✓ Filtro por facetas: " + filas.size() + " resultados");
+            });
+        }, "filtro-facetas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Busca libros por título o autor, sin duplicados
+     *
+     * @param texto Texto a buscar
+     * @return Libros que coinciden por título y después por autor
+     */
+    private List<Libro> buscarPorTituloOAutor(String texto) {
+        List<Libro> resultados = libroDAO.buscarPorTitulo(texto);
+        for (Libro libro : libroDAO.buscarPorAutor(texto)) {
+            if (!resultados.contains(libro)) {
+                resultados.add(libro);
+            }
+        }
+        return resultados;
+    }
+
     /**
      * Limpia los filtros y recarga todos los libros
      */
     @FXML
     private void handleLimpiar() {
         txtBuscar.clear();
-        cbCategoria.setValue(null);
+        cargandoFacetas = true;
+        try {
+            for (ComboBox<String> combo : combosFacetas.values()) {
+                combo.setValue(null);
+            }
+        } finally {
+            cargandoFacetas = false;
+        }
         cargarLibros();
     }
 
@@ -241,8 +625,8 @@ public class LibrosController {
 
             stage.showAndWait();
 
-            // Recargar libros después de cerrar el formulario
-            cargarLibros();
+            // Aplicar solo los cambios después de cerrar el formulario
+            aplicarCambios();
             cargarCategorias();
 
         } catch (Exception e) {
@@ -280,8 +664,8 @@ public class LibrosController {
 
             stage.showAndWait();
 
-            // Recargar libros
-            cargarLibros();
+            // Aplicar solo los cambios
+            aplicarCambios();
             cargarCategorias();
 
         } catch (Exception e) {
@@ -303,6 +687,20 @@ public class LibrosController {
             return;
         }
 
+        // No se puede eliminar un libro con ejemplares prestados
+        EstadisticasLibro estadisticas = EstadisticasLibros.getInstance().obtener(libroSeleccionado.getId());
+        if (estadisticas == null) {
+            mostrarAlerta("Error", "No se pudo comprobar si \"" + libroSeleccionado.getTitulo() +
+                    "\" tiene ejemplares prestados.\nInténtalo de nuevo más tarde.", Alert.AlertType.ERROR);
+            return;
+        }
+        if (estadisticas.getEjemplaresPrestados() > 0) {
+            mostrarAlerta("Advertencia", "\"" + libroSeleccionado.getTitulo() + "\" tiene " +
+                    estadisticas.getEjemplaresPrestados() + " ejemplar(es) prestado(s).\n" +
+                    "Próxima devolución: " + estadisticas.getProximaDevolucion(), Alert.AlertType.WARNING);
+            return;
+        }
+
         // Confirmación
         Alert confirmacion = new Alert(Alert.AlertType.CONFIRMATION);
         confirmacion.setTitle("Confirmar Eliminación");
@@ -317,7 +715,7 @@ public class LibrosController {
 
                 if (eliminado) {
                     mostrarAlerta("Éxito", "Libro eliminado correctamente", Alert.AlertType.INFORMATION);
-                    cargarLibros();
+                    aplicarCambios();
                 } else {
                     mostrarAlerta("Error", "No se pudo eliminar el libro", Alert.AlertType.ERROR);
                 }
@@ -363,13 +761,70 @@ public class LibrosController {
                 libroSeleccionado.estaDisponible() ? "Disponible" : "No disponible"
         );
 
+        // Circulación y disponibilidad
+        EstadisticasLibro estadisticas = EstadisticasLibros.getInstance().obtener(libroSeleccionado.getId());
+        StringBuilder circulacion = new StringBuilder(detalles);
+        if (estadisticas == null) {
+            circulacion.append("\n\nCirculación: no disponible");
+        } else {
+            circulacion.append("\n\nEjemplares prestados: ").append(estadisticas.getEjemplaresPrestados())
+                    .append("\nPréstamos totales: ").append(estadisticas.getTotalPrestamos());
+        }
+        if (estadisticas != null && estadisticas.getEjemplaresPrestados() > 0) {
+            circulacion.append("\nPróxima devolución: ").append(estadisticas.getProximaDevolucion());
+            int vencidos = estadisticas.contarVencidos(FechaNegocio.hoy());
+            if (vencidos > 0) {
+                circulacion.append(" (").append(vencidos).append(" con la devolución vencida)");
+            }
+        }
+        detalles = circulacion.toString();
+
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Detalles del Libro");
         alert.setHeaderText(libroSeleccionado.getTitulo());
         alert.setContentText(detalles);
+
+        // Recomendaciones por co-préstamos: los títulos se leen en otro hilo
+        // con una sola consulta y se agregan al diálogo ya abierto
+        int[] recomendados = RecomendadorLibros.getInstance().recomendar(libroSeleccionado.getId(), 5);
+        if (recomendados.length > 0) {
+            String base = detalles;
+            alert.setContentText(base + "\n\nLos lectores también pidieron: cargando...");
+            Thread hilo = new Thread(() -> {
+                // Conexión propia: la compartida la usan (y cierran) los DAO en el hilo de la interfaz
+                List<Libro> libros;
+                try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada()) {
+                    libros = libroDAO.buscarPorIds(conn, recomendados);
+                } catch (SQLException e) {
+                    System.err.println("✗ Error al cargar las recomendaciones: " + e.getMessage());
+                    libros = List.of();
+                }
+                List<Libro> encontrados = libros;
+                Platform.runLater(() -> {
+                    alert.setContentText(agregarRecomendaciones(base, encontrados));
+                    if (alert.isShowing()) {
+                        alert.getDialogPane().getScene().getWindow().sizeToScene();
+                    }
+                });
+            }, "detalles-libro");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
         alert.showAndWait();
     }
 
+    private static String agregarRecomendaciones(String detalles, List<Libro> recomendados) {
+        if (recomendados.isEmpty()) {
+            return detalles;
+        }
+        StringBuilder sb = new StringBuilder(detalles).append("\n\nLos lectores también pidieron:");
+        for (Libro recomendado : recomendados) {
+            sb.append("\n• ").append(recomendado.getTitulo())
+                    .append(" (").append(recomendado.getAutor()).append(")");
+        }
+        return sb.toString();
+    }
+
     /**
      * Muestra una alerta
      *
@@ -0,0 +1,279 @@
+package com.biblioteca.vista;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * ObservableList virtual para tablas grandes
+ *
+ * No guarda todas las filas: sólo conoce el total y pide al DAO bloques
+ * de TAM_BLOQUE filas a medida que la TableView los dibuja. Conserva como
+ * máximo MAX_BLOQUES bloques (los menos usados se descartan), así que la
+ * memoria no depende del tamaño de la tabla. El orden lo resuelve la base
+ * de datos (ordenar), no la lista.
+ *
+ * Al desplazarse, el bloque vecino ya cargado sirve de ancla: el DAO pide
+ * las filas siguientes a su última fila (o las anteriores a su primera)
+ * por clave, sin OFFSET. Sólo un salto a un bloque sin vecinos cargados
+ * se pide por posición.
+ *
+ * Los bloques se cargan en segundo plano, en un hilo común a todas las
+ * listas (el DAO abre allí una conexión dedicada): mientras llega, cada
+ * fila del bloque es una fila vacía, y al llegar se avisa a la tabla de
+ * que esas filas cambiaron. Desplazarse nunca espera a la base de datos.
+ *
+ * Si entre el conteo y la carga de un bloque se eliminaron filas, el
+ * bloque llega incompleto: se muestra una fila vacía y se programa un
+ * refresco.
+ *
+ * Debe usarse sólo desde el hilo de JavaFX; el cargador se llama desde
+ * el hilo de carga.
+ *
+ * @param <T> Tipo de fila
+ * @author Biblioteca Inteligente Team
+ * @version 1.0
+ * @since 2025
+ */
+public class ListaPaginada<T> extends ObservableListBase<T> {
+
+    static final int TAM_BLOQUE = 200;
+    static final int MAX_BLOQUES = 10;
+
+    // Un solo hilo para todas las tablas: las cargas no compiten entre sí
+    private static final ExecutorService CARGA_BLOQUES = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "carga-bloques");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Carga una página ordenada desde la base de datos
+     * Con ancla, la página son las cantidad filas siguientes a ella
+     * (haciaDelante) o las anteriores; sin ancla, las que empiezan en desde.
+     *
+     * @param <T> Tipo de fila
+     */
+    @FunctionalInterface
+    public interface CargadorPagina<T> {
+        List<T> cargar(int desde, int cantidad, String orden, boolean ascendente, T ancla, boolean haciaDelante);
+    }
+
+    private final IntSupplier contador;
+    private final CargadorPagina<T> cargador;
+    private final Supplier<T> filaVacia;
+    // Bloques pedidos al hilo de carga que aún no llegaron
+    private final Set<Integer> pendientes = new HashSet<>();
+    private final Map<Integer, List<T>> bloques = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > MAX_BLOQUES;
+        }
+    };
+
+    private String orden;
+    private boolean ascendente;
+    private int tamano;
+    private boolean refrescoPendiente;
+    // Sube al descartar los bloques: un bloque pedido antes llega tarde y se ignora
+    private int generacion;
+
+    /**
+     * Constructor
+     *
+     * @param contador Devuelve el total de filas
+     * @param cargador Carga una página ordenada
+     * @param filaVacia Fila a mostrar mientras llega un bloque o si llega incompleto
+     * @param orden Columna de orden inicial
+     * @param ascendente Dirección del orden inicial
+     */
+    public ListaPaginada(IntSupplier contador, CargadorPagina<T> cargador, Supplier<T> filaVacia,
+                         String orden, boolean ascendente) {
+        this.contador = contador;
+        this.cargador = cargador;
+        this.filaVacia = filaVacia;
+        this.orden = orden;
+        this.ascendente = ascendente;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= tamano) {
+            throw new IndexOutOfBoundsException("Índice " + index + " fuera de rango (" + tamano + ")");
+        }
+        int numeroBloque = index / TAM_BLOQUE;
+        List<T> bloque = bloques.get(numeroBloque);
+        if (bloque == null) {
+            pedirBloque(numeroBloque, true);
+            return filaVacia.get();
+        }
+
+        int posicion = index % TAM_BLOQUE;
+        if (posicion >= bloque.size()) {
+            programarRefresco();
+            return filaVacia.get();
+        }
+        return bloque.get(posicion);
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    /**
+     * Vuelve a contar las filas y descarta los bloques cargados
+     * La tabla vuelve al principio y pierde la selección.
+     */
+    public void refrescar() {
+        reiniciar(Math.max(contador.getAsInt(), 0));
+    }
+
+    /**
+     * Vuelve a pedir los bloques cargados tras un cambio en los datos
+     * Si el total no cambió, la tabla sigue mostrando los bloques
+     * anteriores hasta que llegan los nuevos y conserva el desplazamiento;
+     * si cambió, equivale a refrescar().
+     */
+    public void invalidar() {
+        int total = Math.max(contador.getAsInt(), 0);
+        if (total != tamano) {
+            reiniciar(total);
+            return;
+        }
+
+        generacion++;
+        pendientes.clear();
+        // Por posición: las filas de los bloques anteriores pueden haber cambiado
+        for (int numeroBloque : new ArrayList<>(bloques.keySet())) {
+            pedirBloque(numeroBloque, false);
+        }
+    }
+
+    /**
+     * Cambia el orden de la lista; la base de datos ordena
+     * No hace nada si el orden pedido es el actual. El total no cambia al
+     * ordenar, así que no se vuelve a contar.
+     *
+     * @param orden Columna de orden (validada por el DAO)
+     * @param ascendente Dirección del orden
+     */
+    public void ordenar(String orden, boolean ascendente) {
+        if (orden.equals(this.orden) && ascendente == this.ascendente) {
+            return;
+        }
+        this.orden = orden;
+        this.ascendente = ascendente;
+        reiniciar(tamano);
+    }
+
+    // Descarta los bloques y avisa a la tabla de que todas las filas cambiaron
+    private void reiniciar(int total) {
+        int anterior = tamano;
+        bloques.clear();
+        pendientes.clear();
+        generacion++;
+        tamano = total;
+
+        beginChange();
+        if (anterior > 0) {
+            nextRemove(0, Collections.<T>nCopies(anterior, null));
+        }
+        if (tamano > 0) {
+            nextAdd(0, tamano);
+        }
+        endChange();
+    }
+
+    /**
+     * Pide un bloque al hilo de carga, si no está ya pedido
+     * Con anclas, el bloque se pide a partir de un bloque vecino completo
+     * si lo hay; si no, por posición. El orden, las anclas y la generación
+     * se leen aquí, en el hilo de JavaFX.
+     */
+    private void pedirBloque(int numeroBloque, boolean conAnclas) {
+        if (!pendientes.add(numeroBloque)) {
+            return;
+        }
+        int desde = numeroBloque * TAM_BLOQUE;
+        String ordenPedido = orden;
+        boolean ascendentePedido = ascendente;
+        int generacionPedida = generacion;
+
+        T ancla = null;
+        boolean haciaDelante = true;
+        List<T> previo = conAnclas ? bloques.get(numeroBloque - 1) : null;
+        List<T> siguiente = conAnclas ? bloques.get(numeroBloque + 1) : null;
+        if (previo != null && previo.size() == TAM_BLOQUE) {
+            ancla = previo.get(TAM_BLOQUE - 1);
+        } else if (siguiente != null && !siguiente.isEmpty()) {
+            ancla = siguiente.get(0);
+            haciaDelante = false;
+        }
+        T anclaPedida = ancla;
+        boolean haciaDelantePedido = haciaDelante;
+
+        CARGA_BLOQUES.execute(() -> {
+            List<T> bloque;
+            try {
+                bloque = cargador.cargar(desde, TAM_BLOQUE, ordenPedido, ascendentePedido,
+                        anclaPedida, haciaDelantePedido);
+            } catch (RuntimeException e) {
+                System.err.println("✗ Error al cargar bloque " + numeroBloque + ": " + e.getMessage());
+                bloque = null;
+            }
+            List<T> recibido = bloque;
+            Platform.runLater(() -> recibirBloque(numeroBloque, generacionPedida, recibido,
+                    anclaPedida != null && !haciaDelantePedido));
+        });
+    }
+
+    // Guarda un bloque recibido y avisa a la tabla de que sus filas cambiaron;
+    // sin bloque (la carga falló) se volverá a pedir cuando se dibuje
+    private void recibirBloque(int numeroBloque, int generacionPedida, List<T> bloque, boolean haciaAtras) {
+        if (generacionPedida != generacion) {
+            return;
+        }
+        pendientes.remove(numeroBloque);
+        if (bloque == null) {
+            return;
+        }
+        bloques.put(numeroBloque, bloque);
+        if (haciaAtras && bloque.size() < TAM_BLOQUE) {
+            // Se eliminaron filas anteriores: las posiciones ya no coinciden
+            programarRefresco();
+        }
+
+        int desde = numeroBloque * TAM_BLOQUE;
+        int hasta = Math.min(desde + TAM_BLOQUE, tamano);
+        if (desde >= hasta) {
+            return;
+        }
+        beginChange();
+        for (int i = desde; i < hasta; i++) {
+            nextUpdate(i);
+        }
+        endChange();
+    }
+
+    private void programarRefresco() {
+        if (!refrescoPendiente) {
+            refrescoPendiente = true;
+            Platform.runLater(() -> {
+                refrescoPendiente = false;
+                refrescar();
+            });
+        }
+    }
+}
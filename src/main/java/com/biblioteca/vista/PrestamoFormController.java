@@ -1,10 +1,14 @@
 package com.biblioteca.vista;
 
+import com.biblioteca.controlador.ColaReservas;
 import com.biblioteca.controlador.LibroDAO;
 import com.biblioteca.controlador.PrestamoDAO;
+import com.biblioteca.controlador.ReservaDAO;
 import com.biblioteca.controlador.UsuarioDAO;
 import com.biblioteca.modelo.Libro;
 import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.modelo.Reserva;
+import com.biblioteca.modelo.ResultadoEscritura;
 import com.biblioteca.modelo.Usuario;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
@@ -17,6 +21,9 @@ import java.util.List;
 /**
  * Controlador para el formulario de préstamo
  *
+ * Si el libro elegido no tiene stock, el formulario ofrece poner al
+ * usuario en la cola de reservas del libro.
+ *
  * @author Biblioteca Inteligente Team
  * @version 1.0
  * @since 2025
@@ -35,11 +42,15 @@ public class PrestamoFormController {
     private PrestamoDAO prestamoDAO;
     private LibroDAO libroDAO;
     private UsuarioDAO usuarioDAO;
+    private ReservaDAO reservaDAO;
+    private ColaReservas colaReservas;
 
     @FXML
     public void initialize() {
         libroDAO = new LibroDAO();
         usuarioDAO = new UsuarioDAO();
+        reservaDAO = new ReservaDAO();
+        colaReservas = ColaReservas.getInstance();
 
         // Configurar spinner de días
         SpinnerValueFactory<Integer> valueFactory =
@@ -58,6 +69,8 @@ public class PrestamoFormController {
             if (newVal != null) {
                 lblStock.setText("Disponibles: " + newVal.getStock());
                 if (newVal.getStock() == 0) {
+                    lblStock.setText("Sin stock · " + colaReservas.tamano(newVal.getId()) +
+                            " reserva(s) en espera");
                     lblStock.setStyle("-fx-text-fill: #f44336; -fx-font-weight: bold;");
                 } else if (newVal.getStock() <= 2) {
                     lblStock.setStyle("-fx-text-fill: #FF9800; -fx-font-weight: bold;");
@@ -79,11 +92,8 @@ public class PrestamoFormController {
 
     private void cargarUsuarios() {
         try {
-            List<Usuario> usuarios = usuarioDAO.obtenerTodos();
-            // Filtrar solo usuarios activos
-            List<Usuario> activos = usuarios.stream()
-                    .filter(Usuario::isActivo)
-                    .toList();
+            // Solo usuarios activos (desde el espejo local en modo sucursal)
+            List<Usuario> activos = usuarioDAO.obtenerActivos();
 
             cbUsuario.setItems(FXCollections.observableArrayList(activos));
 
@@ -119,13 +129,10 @@ public class PrestamoFormController {
 
     private void cargarLibros() {
         try {
+            // Se muestran también los libros sin stock para poder reservarlos
             List<Libro> libros = libroDAO.obtenerTodos();
-            // Filtrar solo libros con stock
-            List<Libro> disponibles = libros.stream()
-                    .filter(Libro::estaDisponible)
-                    .toList();
 
-            cbLibro.setItems(FXCollections.observableArrayList(disponibles));
+            cbLibro.setItems(FXCollections.observableArrayList(libros));
 
             // Personalizar cómo se muestra cada libro
             cbLibro.setCellFactory(param -> new ListCell<Libro>() {
@@ -135,7 +142,8 @@ public class PrestamoFormController {
                     if (empty || item == null) {
                         setText(null);
                     } else {
-                        setText(item.getTitulo() + " - " + item.getAutor() + " (Stock: " + item.getStock() + ")");
+                        setText(item.getTitulo() + " - " + item.getAutor() +
+                                (item.estaDisponible() ? " (Stock: " + item.getStock() + ")" : " (Sin stock, reservable)"));
                     }
                 }
             });
@@ -174,9 +182,9 @@ public class PrestamoFormController {
             Usuario usuario = cbUsuario.getValue();
             Libro libro = cbLibro.getValue();
 
-            // Verificar stock nuevamente
+            // Sin stock: ofrecer la reserva
             if (!libro.estaDisponible()) {
-                mostrarMensaje("El libro no tiene stock disponible", false);
+                reservar(usuario, libro);
                 return;
             }
 
@@ -189,9 +197,12 @@ public class PrestamoFormController {
             nuevoPrestamo.setFechaPrestamo(dpFechaPrestamo.getValue());
             nuevoPrestamo.setObservaciones(txtObservaciones.getText());
 
-            boolean guardado = prestamoDAO.insertar(nuevoPrestamo);
+            ResultadoEscritura guardado = prestamoDAO.insertar(nuevoPrestamo);
 
-            if (guardado) {
+            if (guardado.isEnCola()) {
+                mostrarMensaje("✓ Préstamo guardado sin conexión; se enviará al volver la base de datos", true);
+                cerrarVentana();
+            } else if (guardado.isAceptada()) {
                 mostrarMensaje("✓ Préstamo registrado exitosamente", true);
                 cerrarVentana();
             } else {
@@ -205,6 +216,39 @@ public class PrestamoFormController {
         }
     }
 
+    /**
+     * Pone al usuario en la cola de reservas de un libro sin stock
+     *
+     * @param usuario Usuario que reserva
+     * @param libro Libro sin stock
+     */
+    private void reservar(Usuario usuario, Libro libro) {
+        if (reservaDAO.tieneReservaEnEspera(usuario.getId(), libro.getId())) {
+            mostrarMensaje("El usuario ya está en la cola (posición " +
+                    colaReservas.posicion(libro.getId(), usuario.getId()) + ")", false);
+            return;
+        }
+
+        int enEspera = colaReservas.tamano(libro.getId());
+        Alert confirmacion = new Alert(Alert.AlertType.CONFIRMATION);
+        confirmacion.setTitle("Reservar libro");
+        confirmacion.setHeaderText("El libro no tiene stock disponible");
+        confirmacion.setContentText("¿Añadir a " + usuario.getNombreCompleto() + " a la cola de reservas?\n" +
+                "Reservas en espera: " + enEspera + "\n" +
+                "El préstamo se registrará automáticamente al devolverse un ejemplar.");
+
+        confirmacion.showAndWait().ifPresent(response -> {
+            if (response == ButtonType.OK) {
+                if (reservaDAO.insertar(new Reserva(usuario.getId(), libro.getId()))) {
+                    mostrarMensaje("✓ Reserva registrada (posición " + (enEspera + 1) + ")", true);
+                    cerrarVentana();
+                } else {
+                    mostrarMensaje("Error al registrar la reserva", false);
+                }
+            }
+        });
+    }
+
     private boolean validarCampos() {
         if (cbUsuario.getValue() == null) {
             mostrarMensaje("Debes seleccionar un usuario", false);
@@ -1,8 +1,14 @@
 package com.biblioteca.vista;
 
+import com.biblioteca.controlador.Cambios;
 import com.biblioteca.controlador.PrestamoDAO;
 import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.modelo.Reserva;
+import com.biblioteca.modelo.ResultadoEscritura;
 import com.biblioteca.modelo.Usuario;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.EventoCambio;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -14,8 +20,18 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Controlador para la gestión de préstamos
@@ -45,11 +61,67 @@ public class PrestamosController {
     private PrestamoDAO prestamoDAO;
     private ObservableList<Prestamo> listaPrestamos;
     private Usuario usuarioActual;
+
+    // Tabla virtual (sin filtros): filas por bloques, ordenadas por la base de datos
+    private ListaPaginada<Prestamo> paginaPrestamos;
+    private final Map<TableColumn<Prestamo, ?>, String> columnasOrden = new HashMap<>();
+    
+    // Filtros: páginas por clave (PrestamoDAO.buscar y buscarPorVencimiento)
+    // que se van agregando a listaPrestamos al llegar al final de la tabla
+    private static final int TAM_PAGINA = 100;
+    // Mismo orden que buscar: estado, fecha de préstamo descendente, ID descendente
+    private static final Comparator<Prestamo> ORDEN_BUSQUEDA =
+            Comparator.comparing(Prestamo::getEstado)
+                    .thenComparing(Prestamo::getFechaPrestamo, Comparator.reverseOrder())
+                    .thenComparing(Prestamo::getId, Comparator.reverseOrder());
+    
+    // Activos y retrasados: préstamos sin devolver por fecha de vencimiento.
+    // Retrasados incluye los pendientes y renovados ya vencidos que el
+    // UPDATE diario aún no marcó
+    private static final Predicate<Prestamo> FILTRO_ACTIVOS =
+            p -> p.getEstado() != Prestamo.EstadoPrestamo.DEVUELTO;
+    private static final Predicate<Prestamo> FILTRO_RETRASADOS =
+            p -> p.getEstado() == Prestamo.EstadoPrestamo.RETRASADO ||
+                 (p.getEstado() != Prestamo.EstadoPrestamo.DEVUELTO && p.estaRetrasado());
+    // Mismo orden que buscarPorVencimiento: vencimiento, luego ID
+    private static final Comparator<Prestamo> ORDEN_VENCIMIENTO =
+            Comparator.comparing(Prestamo::getFechaDevolucionEsperada).thenComparing(Prestamo::getId);
+    
+    /**
+     * Filtro de la tabla: qué préstamos muestra, en qué orden y cómo se
+     * pide la página que sigue a una fila. Los cambios incrementales usan
+     * el mismo filtro y orden que la consulta del DAO.
+     */
+    private static final class Filtro {
+        private final Predicate<Prestamo> cumple;
+        private final Comparator<Prestamo> orden;
+        private final Function<Prestamo, List<Prestamo>> paginaDesde;
+        
+        Filtro(Predicate<Prestamo> cumple, Comparator<Prestamo> orden,
+               Function<Prestamo, List<Prestamo>> paginaDesde) {
+            this.cumple = cumple;
+            this.orden = orden;
+            this.paginaDesde = paginaDesde;
+        }
+    }
+    
+    // Filtro actual; null con la tabla virtual
+    private Filtro filtro;
+    private Prestamo ultimoCargado;
+    private boolean hayMasPaginas;
+    private boolean paginaSolicitada;
+    private boolean ajustandoFiltro;
+    
+    private long versionPrestamos;
+    private final AtomicBoolean cambiosPendientes = new AtomicBoolean(false);
+    private final Consumer<EventoCambio> oyenteCambios = this::alRecibirCambio;
     
     @FXML
     public void initialize() {
         prestamoDAO = new PrestamoDAO();
         listaPrestamos = FXCollections.observableArrayList();
+        paginaPrestamos = new ListaPaginada<>(prestamoDAO::contarPrestamos, prestamoDAO::obtenerPagina,
+                PrestamosController::filaVacia, "fecha_prestamo", false);
         
         configurarTabla();
         cargarFiltros();
@@ -67,6 +139,14 @@ public class PrestamosController {
                 btnDetalles.setDisable(!haySeleccion);
             }
         );
+        
+        // Cambios de otros mostradores: suscribirse mientras la vista esté visible
+        BusCambios.getInstance().suscribir(oyenteCambios);
+        tablaPrestamos.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (newScene == null) {
+                BusCambios.getInstance().desuscribir(oyenteCambios);
+            }
+        });
     }
     
     public void setUsuario(Usuario usuario) {
@@ -144,25 +224,55 @@ public class PrestamosController {
             }
         });
         
-        tablaPrestamos.setItems(listaPrestamos);
+        // Con la tabla virtual, el orden por columna lo resuelve la base de datos;
+        // las columnas sin índice sólo se ordenan con resultados en memoria
+        columnasOrden.put(colId, "id");
+        columnasOrden.put(colUsuario, "nombre_usuario");
+        columnasOrden.put(colLibro, "titulo_libro");
+        columnasOrden.put(colFechaPrestamo, "fecha_prestamo");
+        columnasOrden.put(colFechaDevolucion, "fecha_devolucion_esperada");
+        columnasOrden.put(colDiasRestantes, "fecha_devolucion_esperada");
+        tablaPrestamos.setSortPolicy(this::ordenarTabla);
+
+        // Al mostrar la última fila de un filtro, pedir la página siguiente
+        tablaPrestamos.setRowFactory(tabla -> new TableRow<Prestamo>() {
+            @Override
+            public void updateIndex(int i) {
+                super.updateIndex(i);
+                if (hayMasPaginas && !paginaSolicitada && tabla.getItems() == listaPrestamos &&
+                        i == listaPrestamos.size() - 1) {
+                    paginaSolicitada = true;
+                    Platform.runLater(PrestamosController.this::cargarSiguientePagina);
+                }
+            }
+        });
+
+        tablaPrestamos.setItems(paginaPrestamos);
     }
     
     private void cargarFiltros() {
         cbEstado.setItems(FXCollections.observableArrayList(
             "Todos", "PENDIENTE", "RETRASADO", "DEVUELTO", "RENOVADO"
         ));
+        cbEstado.setOnAction(e -> {
+            if (!ajustandoFiltro) {
+                handleFiltroEstado();
+            }
+        });
     }
     
     private void cargarPrestamos() {
         try {
-            // Actualizar estados retrasados primero
-            prestamoDAO.actualizarPrestamosRetrasados();
+            // Actualizar estados retrasados (una vez al día)
+            prestamoDAO.actualizarPrestamosRetrasadosSiCorresponde();
             
-            List<Prestamo> prestamos = prestamoDAO.obtenerTodos();
-            listaPrestamos.clear();
-            listaPrestamos.addAll(prestamos);
+            filtro = null;
+            versionPrestamos = prestamoDAO.obtenerVersionActual();
+            tablaPrestamos.setItems(paginaPrestamos);
+            tablaPrestamos.sort();
+            paginaPrestamos.refrescar();
             actualizarTotal();
-            System.out.println("✓ Préstamos cargados: " + prestamos.size());
+            System.out.println("✓ Préstamos cargados: " + paginaPrestamos.size());
         } catch (Exception e) {
             System.err.println("✗ Error al cargar préstamos: " + e.getMessage());
             e.printStackTrace();
@@ -170,38 +280,187 @@ public class PrestamosController {
         }
     }
     
+    /**
+     * Aplica a la tabla los préstamos creados, modificados o eliminados
+     * desde la última carga, sin recargar la lista completa
+     */
+    private void aplicarCambios() {
+        if (tablaPrestamos.getItems() == paginaPrestamos) {
+            versionPrestamos = prestamoDAO.obtenerVersionActual();
+            paginaPrestamos.invalidar();
+            actualizarTotal();
+            return;
+        }
+        Cambios<Prestamo> cambios = prestamoDAO.cambiosDesde(versionPrestamos);
+        if (cambios.isRecargaCompleta()) {
+            cargarPrestamos();
+            return;
+        }
+        if (!cambios.estaVacio()) {
+            AplicadorCambios.aplicar(listaPrestamos, cambios, Prestamo::getId, this::cumpleFiltro, filtro.orden);
+            actualizarTotal();
+        }
+        versionPrestamos = cambios.getVersion();
+    }
+    
+    /**
+     * Recibe eventos del bus de cambios (en el hilo del bus)
+     * Agrupa ráfagas de eventos en una sola actualización de la tabla.
+     * 
+     * @param evento Evento de cambio
+     */
+    private void alRecibirCambio(EventoCambio evento) {
+        if (evento.getEntidad() == EventoCambio.Entidad.PRESTAMO && cambiosPendientes.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                cambiosPendientes.set(false);
+                aplicarCambios();
+            });
+        }
+    }
+    
+    /**
+     * Política de orden de la tabla
+     * Con la tabla virtual ordena la base de datos; con resultados de
+     * búsqueda o filtros se ordena la lista en memoria como hasta ahora.
+     * Una columna sin orden en la base de datos rechaza el orden y la
+     * tabla vuelve al anterior.
+     *
+     * @param tabla Tabla a ordenar
+     * @return true si se pudo ordenar
+     */
+    private Boolean ordenarTabla(TableView<Prestamo> tabla) {
+        if (tabla.getItems() != paginaPrestamos) {
+            return TableView.DEFAULT_SORT_POLICY.call(tabla);
+        }
+        if (tabla.getSortOrder().isEmpty()) {
+            paginaPrestamos.ordenar("fecha_prestamo", false);
+            return true;
+        }
+        TableColumn<Prestamo, ?> columna = tabla.getSortOrder().get(0);
+        String orden = columnasOrden.get(columna);
+        if (orden == null) {
+            return false;
+        }
+        paginaPrestamos.ordenar(orden, columna.getSortType() == TableColumn.SortType.ASCENDING);
+        return true;
+    }
+
+    /**
+     * Verifica si un préstamo debe mostrarse con el filtro actual
+     * Con más páginas por cargar, los préstamos que quedan después de la
+     * última fila cargada llegarán con la página siguiente.
+     * 
+     * @param p Préstamo a verificar
+     * @return true si debe mostrarse en la tabla
+     */
+    private boolean cumpleFiltro(Prestamo p) {
+        if (!filtro.cumple.test(p)) {
+            return false;
+        }
+        return !hayMasPaginas || ultimoCargado == null || filtro.orden.compare(p, ultimoCargado) < 0;
+    }
+    
     private void actualizarTotal() {
-        lblTotal.setText("Total: " + listaPrestamos.size() + " préstamos");
+        String mas = tablaPrestamos.getItems() == listaPrestamos && hayMasPaginas ? "+" : "";
+        lblTotal.setText("Total: " + tablaPrestamos.getItems().size() + mas + " préstamos");
+    }
+    
+    /**
+     * Carga la primera página de préstamos de un filtro
+     * 
+     * @param nuevoFiltro Filtro a aplicar
+     */
+    private void filtrar(Filtro nuevoFiltro) {
+        try {
+            prestamoDAO.actualizarPrestamosRetrasadosSiCorresponde();
+            
+            filtro = nuevoFiltro;
+            ultimoCargado = null;
+            versionPrestamos = prestamoDAO.obtenerVersionActual();
+            List<Prestamo> pagina = filtro.paginaDesde.apply(null);
+            registrarPagina(pagina);
+            tablaPrestamos.setItems(listaPrestamos);
+            listaPrestamos.setAll(pagina);
+            actualizarTotal();
+        } catch (Exception e) {
+            System.err.println("✗ Error al filtrar préstamos: " + e.getMessage());
+            e.printStackTrace();
+            mostrarAlerta("Error", "Error al filtrar préstamos", Alert.AlertType.ERROR);
+        }
+    }
+    
+    private Filtro filtroEstados(Set<Prestamo.EstadoPrestamo> estados) {
+        return new Filtro(p -> estados.contains(p.getEstado()), ORDEN_BUSQUEDA,
+                cursor -> prestamoDAO.buscar(estados, null, null, null, null, cursor, TAM_PAGINA));
+    }
+    
+    private Filtro filtroVencimiento(boolean soloRetrasados) {
+        return new Filtro(soloRetrasados ? FILTRO_RETRASADOS : FILTRO_ACTIVOS, ORDEN_VENCIMIENTO,
+                cursor -> prestamoDAO.buscarPorVencimiento(soloRetrasados, cursor, TAM_PAGINA));
+    }
+    
+    /**
+     * Agrega a la tabla la página siguiente del filtro actual
+     */
+    private void cargarSiguientePagina() {
+        paginaSolicitada = false;
+        if (!hayMasPaginas || tablaPrestamos.getItems() != listaPrestamos) {
+            return;
+        }
+        List<Prestamo> pagina = filtro.paginaDesde.apply(ultimoCargado);
+        registrarPagina(pagina);
+        
+        // Un préstamo modificado puede haber llegado ya por el feed de cambios
+        Set<Integer> cargados = new HashSet<>();
+        for (Prestamo p : listaPrestamos) {
+            cargados.add(p.getId());
+        }
+        pagina.removeIf(p -> cargados.contains(p.getId()));
+        listaPrestamos.addAll(pagina);
+        actualizarTotal();
+    }
+    
+    private void registrarPagina(List<Prestamo> pagina) {
+        if (!pagina.isEmpty()) {
+            ultimoCargado = pagina.get(pagina.size() - 1);
+        }
+        hayMasPaginas = pagina.size() == TAM_PAGINA;
+    }
+    
+    /**
+     * Selecciona un valor en cbEstado sin disparar su filtro
+     */
+    private void seleccionarEstado(String valor) {
+        ajustandoFiltro = true;
+        cbEstado.setValue(valor);
+        ajustandoFiltro = false;
+    }
+    
+    private void handleFiltroEstado() {
+        String valor = cbEstado.getValue();
+        if (valor == null || valor.equals("Todos")) {
+            cargarPrestamos();
+        } else {
+            filtrar(filtroEstados(EnumSet.of(Prestamo.EstadoPrestamo.valueOf(valor))));
+        }
     }
     
     @FXML
     private void mostrarTodos() {
-        cbEstado.setValue("Todos");
+        seleccionarEstado("Todos");
         cargarPrestamos();
     }
     
     @FXML
     private void mostrarRetrasados() {
-        try {
-            List<Prestamo> retrasados = prestamoDAO.obtenerPrestamosRetrasados();
-            listaPrestamos.clear();
-            listaPrestamos.addAll(retrasados);
-            actualizarTotal();
-        } catch (Exception e) {
-            mostrarAlerta("Error", "Error al cargar préstamos retrasados", Alert.AlertType.ERROR);
-        }
+        seleccionarEstado(null);
+        filtrar(filtroVencimiento(true));
     }
     
     @FXML
     private void mostrarActivos() {
-        try {
-            List<Prestamo> activos = prestamoDAO.obtenerPrestamosActivos();
-            listaPrestamos.clear();
-            listaPrestamos.addAll(activos);
-            actualizarTotal();
-        } catch (Exception e) {
-            mostrarAlerta("Error", "Error al cargar préstamos activos", Alert.AlertType.ERROR);
-        }
+        seleccionarEstado(null);
+        filtrar(filtroVencimiento(false));
     }
     
     @FXML
@@ -220,7 +479,7 @@ public class PrestamosController {
             stage.setResizable(false);
             
             stage.showAndWait();
-            cargarPrestamos();
+            aplicarCambios();
             
         } catch (Exception e) {
             System.err.println("✗ Error al abrir formulario: " + e.getMessage());
@@ -248,11 +507,21 @@ public class PrestamosController {
         
         if (resultado.isPresent() && resultado.get() == ButtonType.OK) {
             try {
-                boolean devuelto = prestamoDAO.registrarDevolucion(prestamoSeleccionado.getId());
+                ResultadoEscritura devolucion = prestamoDAO.registrarDevolucion(prestamoSeleccionado.getId());
                 
-                if (devuelto) {
-                    mostrarAlerta("Éxito", "Devolución registrada correctamente", Alert.AlertType.INFORMATION);
-                    cargarPrestamos();
+                if (devolucion.isAceptada()) {
+                    Reserva reserva = devolucion.getReservaAsignada();
+                    if (devolucion.isEnCola()) {
+                        mostrarAlerta("Sin conexión", "Devolución guardada en esta mesa.\n" +
+                                "Se enviará a la base de datos cuando vuelva la conexión.", Alert.AlertType.INFORMATION);
+                    } else if (reserva != null) {
+                        mostrarAlerta("Éxito", "Devolución registrada correctamente.\n" +
+                                "El ejemplar se prestó a la reserva #" + reserva.getId() +
+                                " (préstamo #" + reserva.getIdPrestamo() + ").", Alert.AlertType.INFORMATION);
+                    } else {
+                        mostrarAlerta("Éxito", "Devolución registrada correctamente", Alert.AlertType.INFORMATION);
+                    }
+                    aplicarCambios();
                 } else {
                     mostrarAlerta("Error", "No se pudo registrar la devolución", Alert.AlertType.ERROR);
                 }
@@ -289,12 +558,18 @@ public class PrestamosController {
                     return;
                 }
                 
-                prestamoSeleccionado.renovarPrestamo(diasInt);
-                boolean renovado = prestamoDAO.actualizar(prestamoSeleccionado);
+                // La fila de la tabla no trae observaciones: actualizar las borraría
+                Prestamo prestamo = prestamoDAO.buscarPorId(prestamoSeleccionado.getId());
+                if (prestamo == null) {
+                    mostrarAlerta("Error", "No se pudo cargar el préstamo", Alert.AlertType.ERROR);
+                    return;
+                }
+                prestamo.renovarPrestamo(diasInt);
+                boolean renovado = prestamoDAO.actualizar(prestamo);
                 
                 if (renovado) {
                     mostrarAlerta("Éxito", "Préstamo renovado por " + dias + " días", Alert.AlertType.INFORMATION);
-                    cargarPrestamos();
+                    aplicarCambios();
                 } else {
                     mostrarAlerta("Error", "No se pudo renovar el préstamo", Alert.AlertType.ERROR);
                 }
@@ -329,7 +604,7 @@ public class PrestamosController {
                 
                 if (eliminado) {
                     mostrarAlerta("Éxito", "Préstamo eliminado correctamente", Alert.AlertType.INFORMATION);
-                    cargarPrestamos();
+                    aplicarCambios();
                 } else {
                     mostrarAlerta("Error", "No se pudo eliminar el préstamo", Alert.AlertType.ERROR);
                 }
@@ -349,6 +624,10 @@ public class PrestamosController {
             return;
         }
         
+        // Las observaciones no vienen en la fila de la tabla
+        Prestamo prestamoCompleto = prestamoDAO.buscarPorId(prestamoSeleccionado.getId());
+        String observaciones = prestamoCompleto != null ? prestamoCompleto.getObservaciones() : null;
+        
         String detalles = String.format(
             "ID: %d\n" +
             "Usuario: %s\n" +
@@ -368,8 +647,7 @@ public class PrestamosController {
                 prestamoSeleccionado.getFechaDevolucionReal() : "No devuelto",
             prestamoSeleccionado.getEstado(),
             prestamoSeleccionado.getDiasRestantes(),
-            prestamoSeleccionado.getObservaciones() != null ? 
-                prestamoSeleccionado.getObservaciones() : "—"
+            observaciones != null ? observaciones : "—"
         );
         
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -379,6 +657,16 @@ public class PrestamosController {
         alert.showAndWait();
     }
     
+    /**
+     * Fila provisional para la tabla virtual mientras se refresca
+     * Marcada como devuelta para que no muestre días restantes.
+     */
+    private static Prestamo filaVacia() {
+        Prestamo prestamo = new Prestamo();
+        prestamo.setEstado(Prestamo.EstadoPrestamo.DEVUELTO);
+        return prestamo;
+    }
+    
     private void mostrarAlerta(String titulo, String mensaje, Alert.AlertType tipo) {
         Alert alert = new Alert(tipo);
         alert.setTitle(titulo);
@@ -2,9 +2,11 @@ package com.biblioteca.vista;
 
 import com.biblioteca.controlador.LibroDAO;
 import com.biblioteca.controlador.PrestamoDAO;
+import com.biblioteca.controlador.StockRecomendadoDAO;
 import com.biblioteca.controlador.UsuarioDAO;
 import com.biblioteca.modelo.Libro;
 import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.modelo.StockRecomendado;
 import com.biblioteca.modelo.Usuario;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
@@ -34,6 +36,7 @@ public class ReportesController {
     private LibroDAO libroDAO;
     private UsuarioDAO usuarioDAO;
     private PrestamoDAO prestamoDAO;
+    private StockRecomendadoDAO stockRecomendadoDAO;
     private Usuario usuarioActual;
 
     @FXML
@@ -41,6 +44,7 @@ public class ReportesController {
         libroDAO = new LibroDAO();
         usuarioDAO = new UsuarioDAO();
         prestamoDAO = new PrestamoDAO();
+        stockRecomendadoDAO = new StockRecomendadoDAO();
     }
 
     public void setUsuario(Usuario usuario) {
@@ -274,6 +278,63 @@ public class ReportesController {
         }
     }
 
+    @FXML
+    private void generarReporteReposicion() {
+        try {
+            List<StockRecomendado> libros = stockRecomendadoDAO.obtenerReposicion();
+
+            if (libros.isEmpty()) {
+                mostrarAlerta("Información", "No hay libros que reponer", Alert.AlertType.INFORMATION);
+                return;
+            }
+
+            String nombreArchivo = generarNombreArchivo("Reporte_Reposicion");
+            File archivo = new File(System.getProperty("user.home") + "/Desktop/" + nombreArchivo);
+
+            try (PrintWriter writer = new PrintWriter(new FileWriter(archivo))) {
+                writer.println("═══════════════════════════════════════════════════════════════");
+                writer.println("      BIBLIOTECA INTELIGENTE 1.0 - REPOSICIÓN DE STOCK");
+                writer.println("═══════════════════════════════════════════════════════════════");
+                writer.println("Fecha de generación: " + LocalDateTime.now().format(
+                        DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+                writer.println("Total de libros: " + libros.size());
+                writer.println("Demanda = préstamos por semana previstos; '-' = sin historial reciente");
+                writer.println("═══════════════════════════════════════════════════════════════");
+                writer.println();
+
+                writer.printf("%-5s %-30s %-6s %-9s %-8s %-11s %-7s%n",
+                        "ID", "TÍTULO", "STOCK", "PRESTADO", "DEMANDA", "RECOMENDADO", "FALTAN");
+                writer.println("───────────────────────────────────────────────────────────────");
+
+                for (StockRecomendado libro : libros) {
+                    String titulo = truncar(libro.getTitulo(), 30);
+                    boolean conPronostico = libro.getEjemplaresRecomendados() != null;
+
+                    writer.printf("%-5d %-30s %-6d %-9d %-8s %-11s %-7d%n",
+                            libro.getIdLibro(),
+                            titulo,
+                            libro.getStock(),
+                            libro.getEnPrestamo(),
+                            conPronostico ? String.format("%.2f", libro.getDemandaSemanal()) : "-",
+                            conPronostico ? String.valueOf(libro.getEjemplaresRecomendados()) : "-",
+                            libro.getFaltantes()
+                    );
+                }
+
+                writer.println("═══════════════════════════════════════════════════════════════");
+                writer.println("Fin del reporte");
+            }
+
+            mostrarMensajeExito("Reporte generado exitosamente en: " + archivo.getAbsolutePath());
+            abrirArchivo(archivo);
+
+        } catch (Exception e) {
+            System.err.println("✗ Error al generar reporte: " + e.getMessage());
+            e.printStackTrace();
+            mostrarAlerta("Error", "Error al generar el reporte: " + e.getMessage(), Alert.AlertType.ERROR);
+        }
+    }
+
     private String generarNombreArchivo(String prefijo) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
         return prefijo + "_" + LocalDateTime.now().format(formatter) + ".txt";
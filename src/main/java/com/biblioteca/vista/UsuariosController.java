@@ -1,7 +1,14 @@
 package com.biblioteca.vista;
 
+import com.biblioteca.controlador.Cambios;
+import com.biblioteca.controlador.IndiceUsuarios;
+import com.biblioteca.controlador.ResumenUsuarios;
 import com.biblioteca.controlador.UsuarioDAO;
+import com.biblioteca.modelo.ResumenUsuario;
 import com.biblioteca.modelo.Usuario;
+import com.biblioteca.util.BusCambios;
+import com.biblioteca.util.EventoCambio;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -13,8 +20,13 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Controlador para la gestión de usuarios
@@ -53,6 +65,18 @@ public class UsuariosController {
     private UsuarioDAO usuarioDAO;
     private ObservableList<Usuario> listaUsuarios;
     private Usuario usuarioActual;
+
+    // Tabla virtual (sin filtros): filas por bloques, ordenadas por la base de datos
+    private ListaPaginada<Usuario> paginaUsuarios;
+    private final Map<TableColumn<Usuario, ?>, String> columnasOrden = new HashMap<>();
+    
+    // Sincronización incremental con la base de datos
+    private long versionUsuarios;
+    private String textoFiltro = "";
+    private String tipoFiltro;
+    private String estadoFiltro;
+    private final AtomicBoolean cambiosPendientes = new AtomicBoolean(false);
+    private final Consumer<EventoCambio> oyenteCambios = this::alRecibirCambio;
     
     /**
      * Inicializa el controlador
@@ -61,6 +85,8 @@ public class UsuariosController {
     public void initialize() {
         usuarioDAO = new UsuarioDAO();
         listaUsuarios = FXCollections.observableArrayList();
+        paginaUsuarios = new ListaPaginada<>(usuarioDAO::contarUsuarios, usuarioDAO::obtenerPagina,
+                Usuario::new, "nombre", true);
         
         // Configurar columnas de la tabla
         configurarTabla();
@@ -86,6 +112,17 @@ public class UsuariosController {
         txtBuscar.textProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal.isEmpty() && cbTipo.getValue() == null && cbEstado.getValue() == null) {
                 cargarUsuarios();
+            } else if (!newVal.isBlank() && IndiceUsuarios.getInstance().estaAlDia()) {
+                // Con el índice en memoria se puede buscar en cada pulsación
+                handleBuscar();
+            }
+        });
+        
+        // Cambios de otros mostradores: suscribirse mientras la vista esté visible
+        BusCambios.getInstance().suscribir(oyenteCambios);
+        tablaUsuarios.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (newScene == null) {
+                BusCambios.getInstance().desuscribir(oyenteCambios);
             }
         });
     }
@@ -163,7 +200,15 @@ public class UsuariosController {
             }
         });
         
-        tablaUsuarios.setItems(listaUsuarios);
+        // Con la tabla virtual, el orden por columna lo resuelve la base de datos;
+        // las columnas sin índice sólo se ordenan con resultados en memoria
+        columnasOrden.put(colId, "id");
+        columnasOrden.put(colNombre, "nombre");
+        columnasOrden.put(colEmail, "email");
+        columnasOrden.put(colUsername, "username");
+        tablaUsuarios.setSortPolicy(this::ordenarTabla);
+
+        tablaUsuarios.setItems(paginaUsuarios);
     }
     
     /**
@@ -188,11 +233,15 @@ public class UsuariosController {
      */
     private void cargarUsuarios() {
         try {
-            List<Usuario> usuarios = usuarioDAO.obtenerTodos();
-            listaUsuarios.clear();
-            listaUsuarios.addAll(usuarios);
+            textoFiltro = "";
+            tipoFiltro = null;
+            estadoFiltro = null;
+            versionUsuarios = usuarioDAO.obtenerVersionActual();
+            tablaUsuarios.setItems(paginaUsuarios);
+            tablaUsuarios.sort();
+            paginaUsuarios.refrescar();
             actualizarTotal();
-            System.out.println("✓ Usuarios cargados: " + usuarios.size());
+            System.out.println("✓ Usuarios cargados: " + paginaUsuarios.size());
         } catch (Exception e) {
             System.err.println("✗ Error al cargar usuarios: " + e.getMessage());
             e.printStackTrace();
@@ -200,11 +249,98 @@ public class UsuariosController {
         }
     }
     
+    /**
+     * Aplica a la tabla los usuarios creados, modificados o eliminados
+     * desde la última carga, sin recargar la lista completa
+     */
+    private void aplicarCambios() {
+        if (tablaUsuarios.getItems() == paginaUsuarios) {
+            versionUsuarios = usuarioDAO.obtenerVersionActual();
+            paginaUsuarios.invalidar();
+            actualizarTotal();
+            return;
+        }
+        Cambios<Usuario> cambios = usuarioDAO.cambiosDesde(versionUsuarios);
+        if (cambios.isRecargaCompleta()) {
+            cargarUsuarios();
+            return;
+        }
+        if (!cambios.estaVacio()) {
+            AplicadorCambios.aplicar(listaUsuarios, cambios, Usuario::getId, this::cumpleFiltro,
+                    Comparator.comparing(Usuario::getNombre, String.CASE_INSENSITIVE_ORDER)
+                            .thenComparing(Usuario::getApellido, String.CASE_INSENSITIVE_ORDER));
+            actualizarTotal();
+        }
+        versionUsuarios = cambios.getVersion();
+    }
+    
+    /**
+     * Recibe eventos del bus de cambios (en el hilo del bus)
+     * Agrupa ráfagas de eventos en una sola actualización de la tabla.
+     * 
+     * @param evento Evento de cambio
+     */
+    private void alRecibirCambio(EventoCambio evento) {
+        if (evento.getEntidad() == EventoCambio.Entidad.USUARIO && cambiosPendientes.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                cambiosPendientes.set(false);
+                aplicarCambios();
+            });
+        }
+    }
+    
+    /**
+     * Verifica si un usuario cumple los filtros de la última búsqueda
+     * 
+     * @param u Usuario a verificar
+     * @return true si debe mostrarse en la tabla
+     */
+    private boolean cumpleFiltro(Usuario u) {
+        if (!textoFiltro.isEmpty() && !IndiceUsuarios.coincide(u, textoFiltro)) {
+            return false;
+        }
+        if (tipoFiltro != null && !tipoFiltro.equals("Todos") &&
+                u.getTipo() != Usuario.TipoUsuario.valueOf(tipoFiltro)) {
+            return false;
+        }
+        if (estadoFiltro != null && !estadoFiltro.equals("Todos")) {
+            return u.isActivo() == estadoFiltro.equals("Activos");
+        }
+        return true;
+    }
+    
+    /**
+     * Política de orden de la tabla
+     * Con la tabla virtual ordena la base de datos; con resultados de
+     * búsqueda o filtros se ordena la lista en memoria como hasta ahora.
+     * Una columna sin orden en la base de datos rechaza el orden y la
+     * tabla vuelve al anterior.
+     *
+     * @param tabla Tabla a ordenar
+     * @return true si se pudo ordenar
+     */
+    private Boolean ordenarTabla(TableView<Usuario> tabla) {
+        if (tabla.getItems() != paginaUsuarios) {
+            return TableView.DEFAULT_SORT_POLICY.call(tabla);
+        }
+        if (tabla.getSortOrder().isEmpty()) {
+            paginaUsuarios.ordenar("nombre", true);
+            return true;
+        }
+        TableColumn<Usuario, ?> columna = tabla.getSortOrder().get(0);
+        String orden = columnasOrden.get(columna);
+        if (orden == null) {
+            return false;
+        }
+        paginaUsuarios.ordenar(orden, columna.getSortType() == TableColumn.SortType.ASCENDING);
+        return true;
+    }
+
     /**
      * Actualiza el label con el total de usuarios
      */
     private void actualizarTotal() {
-        lblTotal.setText("Total: " + listaUsuarios.size() + " usuarios");
+        lblTotal.setText("Total: " + tablaUsuarios.getItems().size() + " usuarios");
     }
     
     /**
@@ -218,16 +354,26 @@ public class UsuariosController {
         
         try {
             List<Usuario> resultados;
-            
-            // Obtener todos primero
-            resultados = usuarioDAO.obtenerTodos();
-            
-            // Filtrar por texto
-            if (!textoBusqueda.isEmpty()) {
-                resultados = resultados.stream()
-                    .filter(u -> u.getNombre().toLowerCase().contains(textoBusqueda.toLowerCase()) ||
-                                u.getApellido().toLowerCase().contains(textoBusqueda.toLowerCase()))
-                    .toList();
+            textoFiltro = textoBusqueda;
+            tipoFiltro = tipo;
+            estadoFiltro = estado;
+            IndiceUsuarios indice = IndiceUsuarios.getInstance();
+            if (!textoBusqueda.isEmpty() && indice.estaAlDia()) {
+                // Desde el índice: sin acentos ni mayúsculas, por prefijo de cada palabra
+                versionUsuarios = indice.getVersion();
+                resultados = indice.buscar(textoBusqueda);
+            } else {
+                versionUsuarios = usuarioDAO.obtenerVersionActual();
+                
+                // Obtener todos primero
+                resultados = usuarioDAO.obtenerTodos();
+                
+                // Filtrar por texto, con el mismo criterio que el índice
+                if (!textoBusqueda.isEmpty()) {
+                    resultados = resultados.stream()
+                        .filter(u -> IndiceUsuarios.coincide(u, textoBusqueda))
+                        .toList();
+                }
             }
             
             // Filtrar por tipo
@@ -246,8 +392,8 @@ public class UsuariosController {
                     .toList();
             }
             
-            listaUsuarios.clear();
-            listaUsuarios.addAll(resultados);
+            tablaUsuarios.setItems(listaUsuarios);
+            listaUsuarios.setAll(resultados);
             actualizarTotal();
             
             System.out.println("✓ Búsqueda completada: " + resultados.size() + " resultados");
@@ -290,8 +436,8 @@ public class UsuariosController {
             
             stage.showAndWait();
             
-            // Recargar usuarios después de cerrar el formulario
-            cargarUsuarios();
+            // Aplicar solo los cambios después de cerrar el formulario
+            aplicarCambios();
             
         } catch (Exception e) {
             System.err.println("✗ Error al abrir formulario: " + e.getMessage());
@@ -312,13 +458,20 @@ public class UsuariosController {
             return;
         }
         
+        // La fila de la tabla no trae dirección ni contraseña: se carga completa
+        Usuario usuarioCompleto = usuarioDAO.buscarPorId(usuarioSeleccionado.getId());
+        if (usuarioCompleto == null) {
+            mostrarAlerta("Error", "No se pudo cargar el usuario", Alert.AlertType.ERROR);
+            return;
+        }
+        
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/UsuarioForm.fxml"));
             Scene scene = new Scene(loader.load());
             
             UsuarioFormController controller = loader.getController();
             controller.setUsuarioDAO(usuarioDAO);
-            controller.setUsuario(usuarioSeleccionado);
+            controller.setUsuario(usuarioCompleto);
             
             Stage stage = new Stage();
             stage.setTitle("Editar Usuario");
@@ -328,8 +481,8 @@ public class UsuariosController {
             
             stage.showAndWait();
             
-            // Recargar usuarios
-            cargarUsuarios();
+            // Aplicar solo los cambios
+            aplicarCambios();
             
         } catch (Exception e) {
             System.err.println("✗ Error al abrir formulario de edición: " + e.getMessage());
@@ -351,12 +504,24 @@ public class UsuariosController {
         }
         
         String nuevoEstado = usuarioSeleccionado.isActivo() ? "desactivar" : "activar";
+        String contenido = usuarioSeleccionado.getNombreCompleto();
+        
+        // Avisar si se desactiva a alguien con libros sin devolver
+        if (usuarioSeleccionado.isActivo()) {
+            ResumenUsuario resumen = ResumenUsuarios.getInstance().obtener(usuarioSeleccionado.getId());
+            if (resumen == null) {
+                contenido += "\n\nATENCIÓN: no se pudo comprobar si tiene préstamos sin devolver.";
+            } else if (resumen.tienePrestamosActivos()) {
+                contenido += "\n\nATENCIÓN: tiene " + resumen.getPrestamosActivos() +
+                             " préstamo(s) sin devolver (" + resumen.getPrestamosRetrasados() + " retrasado(s)).";
+            }
+        }
         
         // Confirmación
         Alert confirmacion = new Alert(Alert.AlertType.CONFIRMATION);
         confirmacion.setTitle("Confirmar Cambio de Estado");
         confirmacion.setHeaderText("¿Deseas " + nuevoEstado + " este usuario?");
-        confirmacion.setContentText(usuarioSeleccionado.getNombreCompleto());
+        confirmacion.setContentText(contenido);
         
         Optional<ButtonType> resultado = confirmacion.showAndWait();
         
@@ -367,7 +532,7 @@ public class UsuariosController {
                 
                 if (cambiado) {
                     mostrarAlerta("Éxito", "Estado cambiado correctamente", Alert.AlertType.INFORMATION);
-                    cargarUsuarios();
+                    aplicarCambios();
                 } else {
                     mostrarAlerta("Error", "No se pudo cambiar el estado", Alert.AlertType.ERROR);
                 }
@@ -392,6 +557,20 @@ public class UsuariosController {
             return;
         }
         
+        // No se puede eliminar a quien tiene libros sin devolver
+        ResumenUsuario resumen = ResumenUsuarios.getInstance().obtener(usuarioSeleccionado.getId());
+        if (resumen == null) {
+            mostrarAlerta("Error", "No se pudo comprobar si " + usuarioSeleccionado.getNombreCompleto() +
+                         " tiene préstamos sin devolver.\nInténtalo de nuevo más tarde.", Alert.AlertType.ERROR);
+            return;
+        }
+        if (resumen.tienePrestamosActivos()) {
+            mostrarAlerta("Advertencia", usuarioSeleccionado.getNombreCompleto() + " tiene " +
+                         resumen.getPrestamosActivos() + " préstamo(s) sin devolver.\n" +
+                         "Registra las devoluciones antes de eliminarlo.", Alert.AlertType.WARNING);
+            return;
+        }
+        
         // Confirmación
         Alert confirmacion = new Alert(Alert.AlertType.CONFIRMATION);
         confirmacion.setTitle("Confirmar Eliminación");
@@ -407,7 +586,7 @@ public class UsuariosController {
                 
                 if (eliminado) {
                     mostrarAlerta("Éxito", "Usuario eliminado correctamente", Alert.AlertType.INFORMATION);
-                    cargarUsuarios();
+                    aplicarCambios();
                 } else {
                     mostrarAlerta("Error", "No se pudo eliminar el usuario", Alert.AlertType.ERROR);
                 }
@@ -432,6 +611,20 @@ public class UsuariosController {
             return;
         }
         
+        ResumenUsuario resumen = ResumenUsuarios.getInstance().obtener(usuarioSeleccionado.getId());
+        String prestamos = resumen == null ? "Préstamos: no disponibles" : String.format(
+            "Préstamos activos: %d (%d retrasados)\n" +
+            "Préstamos totales: %d\n" +
+            "Último préstamo: %s",
+            resumen.getPrestamosActivos(),
+            resumen.getPrestamosRetrasados(),
+            resumen.getTotalPrestamos(),
+            resumen.getUltimoPrestamo() != null ? resumen.getUltimoPrestamo() : "Nunca"
+        );
+        // La dirección no viene en la fila de la tabla
+        Usuario usuarioCompleto = usuarioDAO.buscarPorId(usuarioSeleccionado.getId());
+        String direccion = usuarioCompleto != null ? usuarioCompleto.getDireccion() : null;
+        
         String detalles = String.format(
             "ID: %d\n" +
             "Nombre Completo: %s\n" +
@@ -441,16 +634,18 @@ public class UsuariosController {
             "Dirección: %s\n" +
             "Usuario: %s\n" +
             "Fecha de Registro: %s\n" +
-            "Estado: %s",
+            "Estado: %s\n\n" +
+            "%s",
             usuarioSeleccionado.getId(),
             usuarioSeleccionado.getNombreCompleto(),
             usuarioSeleccionado.getTipo().getDescripcion(),
             usuarioSeleccionado.getEmail(),
             usuarioSeleccionado.getTelefono(),
-            usuarioSeleccionado.getDireccion(),
+            direccion != null ? direccion : "—",
             usuarioSeleccionado.getUsername(),
             usuarioSeleccionado.getFechaRegistro(),
-            usuarioSeleccionado.isActivo() ? "Activo" : "Inactivo"
+            usuarioSeleccionado.isActivo() ? "Activo" : "Inactivo",
+            prestamos
         );
         
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
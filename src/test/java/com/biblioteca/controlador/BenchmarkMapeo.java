@@ -0,0 +1,133 @@
+package com.biblioteca.controlador;
+
+import com.biblioteca.modelo.Prestamo;
+import com.biblioteca.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Benchmark del mapeo de filas de préstamos por nombre y por posición
+ *
+ * Carga una vez hasta FILAS filas de prestamos_vista en un ResultSet
+ * desplazable (el driver las guarda en memoria) y las recorre muchas veces
+ * con el mapeo anterior (rs.getInt("id"), que busca cada nombre en cada
+ * fila) y con el actual, PrestamoDAO.mapearFila (rs.getInt(1)), llamado
+ * directamente para medir el código que usa la aplicación. Así se mide
+ * sólo el mapeo, sin la consulta ni la red. Necesita la base de datos
+ * configurada en DatabaseConnection; ejecutar con:
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:&lt;driver MySQL&gt; com.biblioteca.controlador.BenchmarkMapeo
+ */
+public class BenchmarkMapeo {
+
+    private static final int FILAS = 100_000;
+    private static final int RONDAS_CALENTAMIENTO = 5;
+    private static final int RONDAS_MEDIDAS = 10;
+
+    public static void main(String[] args) throws SQLException {
+        System.out.println("===========================================");
+        System.out.println("  BENCHMARK: MAPEO DE FILAS DE PRÉSTAMOS");
+        System.out.println("===========================================\n");
+
+        try (Connection conn = DatabaseConnection.getInstance().abrirConexionDedicada();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = stmt.executeQuery("SELECT " + PrestamoDAO.COLUMNAS_LISTA + " FROM prestamos_vista LIMIT " + FILAS)) {
+
+            int filas = 0;
+            while (rs.next()) {
+                filas++;
+            }
+            if (filas == 0) {
+                System.out.println("✗ prestamos_vista está vacía: no hay nada que medir");
+                return;
+            }
+            // Con pocas filas se repite el recorrido para que cada pasada dure lo suficiente
+            int vueltas = Math.max(1, FILAS / filas);
+            System.out.println("Filas cargadas: " + filas + " (" + vueltas + " recorridos por pasada)\n");
+
+            for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+                pasadaAnterior(rs, vueltas);
+                pasadaActual(rs, vueltas);
+            }
+
+            long totalAnterior = 0;
+            long totalActual = 0;
+            long control = 0;
+            for (int i = 0; i < RONDAS_MEDIDAS; i++) {
+                long inicio = System.nanoTime();
+                control += pasadaAnterior(rs, vueltas);
+                totalAnterior += System.nanoTime() - inicio;
+
+                inicio = System.nanoTime();
+                control -= pasadaActual(rs, vueltas);
+                totalActual += System.nanoTime() - inicio;
+            }
+
+            double msAnterior = totalAnterior / 1e6 / RONDAS_MEDIDAS;
+            double msActual = totalActual / 1e6 / RONDAS_MEDIDAS;
+            long filasPorPasada = (long) filas * vueltas;
+            System.out.printf("Mapeo anterior (por nombre):  %8.2f ms por pasada (%.0f ns por fila)%n",
+                    msAnterior, msAnterior * 1e6 / filasPorPasada);
+            System.out.printf("Mapeo actual (por posición):  %8.2f ms por pasada (%.0f ns por fila)%n",
+                    msActual, msActual * 1e6 / filasPorPasada);
+            System.out.printf("Mejora: x%.1f%n", msAnterior / msActual);
+
+            // Ambos mapeos deben dar lo mismo (control == 0)
+            System.out.println(control == 0 ? "✓ Resultados idénticos" : "✗ Los resultados difieren");
+        }
+    }
+
+    /**
+     * Mapeo como se hacía antes: cada columna por su nombre
+     */
+    private static long pasadaAnterior(ResultSet rs, int vueltas) throws SQLException {
+        long suma = 0;
+        for (int v = 0; v < vueltas; v++) {
+            rs.beforeFirst();
+            while (rs.next()) {
+                Prestamo prestamo = new Prestamo(
+                        rs.getInt("id"),
+                        rs.getInt("id_usuario"),
+                        rs.getInt("id_libro"),
+                        rs.getDate("fecha_prestamo").toLocalDate(),
+                        rs.getDate("fecha_devolucion_esperada").toLocalDate(),
+                        rs.getDate("fecha_devolucion_real") != null ?
+                                rs.getDate("fecha_devolucion_real").toLocalDate() : null,
+                        Prestamo.EstadoPrestamo.valueOf(rs.getString("estado")),
+                        null
+                );
+                prestamo.setNombreUsuario(rs.getString("nombre_usuario"));
+                prestamo.setTituloLibro(rs.getString("titulo_libro"));
+                suma += resumir(prestamo);
+            }
+        }
+        return suma;
+    }
+
+    /**
+     * Mapeo actual: PrestamoDAO.mapearFila, cada columna por su posición
+     */
+    private static long pasadaActual(ResultSet rs, int vueltas) throws SQLException {
+        long suma = 0;
+        for (int v = 0; v < vueltas; v++) {
+            rs.beforeFirst();
+            while (rs.next()) {
+                suma += resumir(PrestamoDAO.mapearFila(rs));
+            }
+        }
+        return suma;
+    }
+
+    // Usa todos los campos leídos para que el JIT no descarte el mapeo
+    private static long resumir(Prestamo p) {
+        return p.getId() + p.getIdUsuario() + p.getIdLibro()
+                + p.getFechaPrestamo().toEpochDay() + p.getFechaDevolucionEsperada().toEpochDay()
+                + (p.getFechaDevolucionReal() != null ? p.getFechaDevolucionReal().toEpochDay() : 0)
+                + p.getEstado().ordinal()
+                + (p.getNombreUsuario() != null ? p.getNombreUsuario().length() : 0)
+                + (p.getTituloLibro() != null ? p.getTituloLibro().length() : 0);
+    }
+}
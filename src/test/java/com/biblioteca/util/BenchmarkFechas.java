@@ -0,0 +1,102 @@
+package com.biblioteca.util;
+
+import com.biblioteca.modelo.Prestamo;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark del cálculo de días restantes y retraso de préstamos
+ *
+ * Simula un pase de repintado/reporte sobre 1.000.000 de préstamos y
+ * compara el cálculo anterior (LocalDate.now() y ChronoUnit por llamada)
+ * con el actual (FechaNegocio + epoch-day cacheado en Prestamo).
+ * No necesita base de datos. Está en las fuentes de prueba para que no
+ * viaje en el jar de la aplicación; ejecutar con:
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.biblioteca.util.BenchmarkFechas
+ */
+public class BenchmarkFechas {
+
+    private static final int FILAS = 1_000_000;
+    private static final int RONDAS_CALENTAMIENTO = 5;
+    private static final int RONDAS_MEDIDAS = 10;
+
+    public static void main(String[] args) {
+        System.out.println("===========================================");
+        System.out.println("  BENCHMARK: DÍAS RESTANTES / RETRASO");
+        System.out.println("===========================================\n");
+
+        List<Prestamo> prestamos = generarPrestamos();
+        System.out.println("Préstamos generados: " + prestamos.size() + "\n");
+
+        for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+            pasadaAnterior(prestamos);
+            pasadaActual(prestamos);
+        }
+
+        long totalAnterior = 0;
+        long totalActual = 0;
+        long control = 0;
+        for (int i = 0; i < RONDAS_MEDIDAS; i++) {
+            long inicio = System.nanoTime();
+            control += pasadaAnterior(prestamos);
+            totalAnterior += System.nanoTime() - inicio;
+
+            inicio = System.nanoTime();
+            control -= pasadaActual(prestamos);
+            totalActual += System.nanoTime() - inicio;
+        }
+
+        double msAnterior = totalAnterior / 1e6 / RONDAS_MEDIDAS;
+        double msActual = totalActual / 1e6 / RONDAS_MEDIDAS;
+        System.out.printf("Cálculo anterior (LocalDate.now): %8.2f ms por pasada%n", msAnterior);
+        System.out.printf("Cálculo actual (epoch-day):       %8.2f ms por pasada%n", msActual);
+        System.out.printf("Mejora: x%.1f%n", msAnterior / msActual);
+
+        // Ambos cálculos deben dar lo mismo (control == 0)
+        System.out.println(control == 0 ? "✓ Resultados idénticos" : "✗ Los resultados difieren");
+    }
+
+    private static List<Prestamo> generarPrestamos() {
+        Random random = new Random(42);
+        LocalDate hoy = LocalDate.now();
+        Prestamo.EstadoPrestamo[] estados = Prestamo.EstadoPrestamo.values();
+        List<Prestamo> prestamos = new ArrayList<>(FILAS);
+
+        for (int i = 0; i < FILAS; i++) {
+            LocalDate fechaPrestamo = hoy.minusDays(random.nextInt(60));
+            prestamos.add(new Prestamo(i + 1, 1, 1, fechaPrestamo,
+                    fechaPrestamo.plusDays(14), null,
+                    estados[random.nextInt(estados.length)], null));
+        }
+        return prestamos;
+    }
+
+    /**
+     * Cálculo como se hacía antes: reloj del sistema en cada llamada
+     */
+    private static long pasadaAnterior(List<Prestamo> prestamos) {
+        long suma = 0;
+        for (Prestamo p : prestamos) {
+            if (p.getEstado() != Prestamo.EstadoPrestamo.DEVUELTO) {
+                suma += ChronoUnit.DAYS.between(LocalDate.now(), p.getFechaDevolucionEsperada());
+                if (LocalDate.now().isAfter(p.getFechaDevolucionEsperada())) {
+                    suma += ChronoUnit.DAYS.between(p.getFechaDevolucionEsperada(), LocalDate.now());
+                }
+            }
+        }
+        return suma;
+    }
+
+    private static long pasadaActual(List<Prestamo> prestamos) {
+        long suma = 0;
+        for (Prestamo p : prestamos) {
+            suma += p.getDiasRestantes() + p.getDiasRetraso();
+        }
+        return suma;
+    }
+}